@@ -1,9 +1,9 @@
 import React, { useState, useEffect } from 'react';
 import { NavigationContainer } from '@react-navigation/native';
-import { onAuthStateChanged } from 'firebase/auth';
+import { onAuthStateChanged, signOut } from 'firebase/auth';
 import { auth, db } from './firebase';
 import { doc, getDoc } from 'firebase/firestore';
-import { NativeModules } from 'react-native';
+import { Alert, NativeModules } from 'react-native';
 import AuthNavigator from './navigation/AuthNavigator';
 import AppNavigator from './navigation/AppNavigator';
 import { SettingsProvider } from './context/SettingsContext';
@@ -35,11 +35,42 @@ export default function App() {
       // Load and broadcast caretaker settings when user logs in
       if (user) {
         loadAndBroadcastCaretakerSettings(user);
+        checkNativeSession(user);
       }
     });
     return unsubscribe;
   }, [initializing]);
 
+  // Sessions from before the native sign-in have no native session; the service
+  // then cannot upload falls or alerts with the app closed until the next sign-in
+  const checkNativeSession = async (user: any) => {
+    const { AuthStorage } = NativeModules;
+    if (!AuthStorage?.getNativeUserId) return;
+    // A brand-new account is still being signed in natively by the signup screen
+    const { creationTime, lastSignInTime } = user.metadata ?? {};
+    if (creationTime && creationTime === lastSignInTime) return;
+    try {
+      const nativeUid = await AuthStorage.getNativeUserId();
+      if (nativeUid === user.uid) return;
+      Alert.alert(
+        'Sign in again',
+        'Please sign in once more so falls and alerts are saved even while the app is closed.',
+        [
+          { text: 'Later', style: 'cancel' },
+          {
+            text: 'Sign in',
+            onPress: async () => {
+              await AuthStorage.signOutNative();
+              await signOut(auth);
+            },
+          },
+        ],
+      );
+    } catch (error) {
+      console.error('Error checking the native session:', error);
+    }
+  };
+
   const loadAndBroadcastCaretakerSettings = async (user: any) => {
     try {
       const userDoc = doc(db, 'users', user.uid);
@@ -63,6 +94,12 @@ export default function App() {
         } else {
           console.log('No caretaker settings found for user');
         }
+
+        // Home, clinic and family places let fall alerts name where the user is
+        const { LocationContext } = NativeModules;
+        if (LocationContext && Array.isArray(data.knownPlaces)) {
+          await LocationContext.setKnownPlaces(data.knownPlaces);
+        }
       }
     } catch (error) {
       console.error('Error loading caretaker settings on startup:', error);
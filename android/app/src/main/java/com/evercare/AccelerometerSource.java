@@ -0,0 +1,155 @@
+package com.evercare;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.util.Log;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The phone's own accelerometer. Samples arrive on the given handler's
+ * thread, or the main looper if it is null.
+ *
+ * With a step listener set, the hardware step counter is registered on the
+ * same listener and thread as a batched non-wakeup sensor, so it reports
+ * only when the CPU is awake anyway.
+ */
+public class AccelerometerSource implements SensorSource, SensorEventListener {
+
+    private static final String TAG = "AccelerometerSource";
+    public static final String NAME = "phone";
+    private static final int STEP_REPORT_LATENCY_US = 10 * 60 * 1000000; // 10 minutes
+    private static final int BATCH_REPORT_LATENCY_US = 1000000; // held in the sensor FIFO for up to 1 s
+
+    public interface StepListener {
+        void onSteps(long totalSinceBoot);
+    }
+
+    private final SensorManager sensorManager;
+    private final Sensor accelerometer;
+    private final Handler handler;
+    private Sink sink;
+    private StepListener stepListener;
+    private boolean accelerometerRegistered = false;
+    private boolean batched = false;
+    private long samples = 0;
+
+    public AccelerometerSource(SensorManager sensorManager, Handler handler) {
+        this.sensorManager = sensorManager;
+        this.handler = handler;
+        this.accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+    }
+
+    /**
+     * Call before start(). Needs ACTIVITY_RECOGNITION on Android 10+.
+     */
+    public void setStepListener(StepListener stepListener) {
+        this.stepListener = stepListener;
+    }
+
+    /**
+     * Whether start() registered the hardware step counter.
+     */
+    public boolean hasStepCounter() {
+        return stepListener != null && sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER, false) != null;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean start(Sink sink) {
+        if (!startAccelerometer(sink)) {
+            return false;
+        }
+        startStepCounter();
+        return true;
+    }
+
+    /**
+     * The accelerometer alone, for when samples come another way.
+     */
+    public boolean startAccelerometer(Sink sink) {
+        if (accelerometer == null) {
+            Log.e(TAG, "Accelerometer not available on this device");
+            return false;
+        }
+        this.sink = sink;
+        registerAccelerometer();
+        Log.d(TAG, "Accelerometer registered successfully");
+        return true;
+    }
+
+    /**
+     * Same rate, but samples wait in the sensor hub's FIFO and arrive a
+     * second's worth at a time; without a FIFO this changes nothing. Takes
+     * effect at once if the accelerometer is running. Call on the handler's
+     * thread.
+     */
+    public void setBatched(boolean batched) {
+        if (batched == this.batched) {
+            return;
+        }
+        this.batched = batched;
+        if (accelerometerRegistered) {
+            sensorManager.unregisterListener(this, accelerometer);
+            registerAccelerometer();
+            Log.d(TAG, "Accelerometer re-registered " + (batched ? "batched" : "unbatched"));
+        }
+    }
+
+    private void registerAccelerometer() {
+        if (batched) {
+            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME, BATCH_REPORT_LATENCY_US, handler);
+        } else {
+            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME, handler);
+        }
+        accelerometerRegistered = true;
+    }
+
+    /**
+     * The step counter alone, if a step listener is set; stop() ends it too.
+     */
+    public void startStepCounter() {
+        if (hasStepCounter()) {
+            sensorManager.registerListener(this, sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER, false),
+                    SensorManager.SENSOR_DELAY_NORMAL, STEP_REPORT_LATENCY_US, handler);
+        }
+    }
+
+    @Override
+    public void stop() {
+        sensorManager.unregisterListener(this);
+        accelerometerRegistered = false;
+        Log.d(TAG, "Accelerometer unregistered");
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            samples++;
+            // SensorEvent.timestamp is in nanoseconds on the elapsedRealtime clock
+            sink.onSample(NAME, event.values[0], event.values[1], event.values[2], event.timestamp / 1000000L);
+        } else if (event.sensor.getType() == Sensor.TYPE_STEP_COUNTER && stepListener != null) {
+            stepListener.onSteps((long) event.values[0]);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        Log.d(TAG, "Sensor accuracy changed: " + accuracy);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("samples", samples);
+        stats.put("batched", batched);
+        return stats;
+    }
+}
@@ -0,0 +1,296 @@
+package com.evercare;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Daily steps, active minutes and longest sedentary stretch, worked out
+ * from the resampled phone stream the detector already gets.
+ *
+ * Steps come from the hardware step counter when it reports (batched, no
+ * extra wakeups); otherwise from peaks in the gravity-removed magnitude,
+ * counted only once four arrive at walking pace so a single bump is not a
+ * step. A minute is active with 20+ steps or enough movement; a run of
+ * inactive minutes is a sedentary stretch, broken by a gap in the samples
+ * longer than MAX_GAP_MINUTES. The last DAYS days are kept in
+ * activity_summary.bin, about 18 bytes a day.
+ */
+public class ActivitySummary {
+
+    private static final String TAG = "ActivitySummary";
+    private static final String FILE_NAME = "activity_summary.bin";
+    private static final int FILE_VERSION = 1;
+    public static final int DAYS = 35;
+    private static final long DAY_MS = 86400000L;
+    private static final long MINUTE_MS = 60000L;
+    private static final long SAVE_INTERVAL_MS = 15 * MINUTE_MS;
+
+    // Step detection on the resampled 50 Hz stream
+    private static final float GRAVITY_ALPHA = 0.02f; // ~1 s to follow orientation changes
+    private static final float SMOOTHING_ALPHA = 0.3f;
+    private static final float PEAK_THRESHOLD = 1.0f; // m/s² above gravity
+    private static final long MIN_STEP_INTERVAL_MS = 300; // faster than ~3.3 steps/s is not walking
+    private static final long MAX_STEP_INTERVAL_MS = 2000;
+    private static final int STEPS_TO_CONFIRM = 4;
+
+    private static final int ACTIVE_MINUTE_STEPS = 20;
+    private static final float ACTIVE_MINUTE_LEVEL = 0.8f; // mean |a - g| in m/s²
+    private static final long MAX_GAP_MINUTES = 10;
+
+    private static class Day {
+        int day; // local days since the epoch
+        int hardwareSteps;
+        int estimatedSteps;
+        boolean hasHardware;
+        int activeMinutes;
+        int longestSedentaryMinutes;
+    }
+
+    private static ActivitySummary instance;
+
+    private final Context context;
+    private final Day[] days = new Day[DAYS];
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    // Sensor thread only
+    private float gravity = -1;
+    private float smoothed = 0;
+    private float previous1 = 0;
+    private float previous2 = 0;
+    private long lastCandidateMs = -MAX_STEP_INTERVAL_MS;
+    private int run = 0;
+    private long minute = -1;
+    private int minuteSteps = 0;
+    private float minuteMotion = 0;
+    private int minuteSamples = 0;
+    private int sedentaryMinutes = 0;
+    private long lastSaveMs = 0;
+    private long lastHardwareTotal = -1;
+
+    public static synchronized ActivitySummary getInstance(Context context) {
+        if (instance == null) {
+            instance = new ActivitySummary(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ActivitySummary(Context context) {
+        this.context = context;
+        load();
+    }
+
+    /**
+     * One resampled accelerometer sample; timestampMs is the sensor's
+     * elapsedRealtime clock.
+     */
+    public void onSample(float x, float y, float z, long timestampMs) {
+        long sampleMinute = timestampMs / MINUTE_MS;
+        if (sampleMinute != minute) {
+            if (minute >= 0) {
+                closeMinute(sampleMinute - minute);
+            }
+            minute = sampleMinute;
+        }
+
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        gravity = gravity < 0 ? magnitude : gravity + GRAVITY_ALPHA * (magnitude - gravity);
+        float dynamic = magnitude - gravity;
+        smoothed += SMOOTHING_ALPHA * (dynamic - smoothed);
+        minuteMotion += Math.abs(dynamic);
+        minuteSamples++;
+
+        // previous1 is a peak if it rose and then fell
+        if (previous1 > PEAK_THRESHOLD && previous1 > previous2 && previous1 >= smoothed) {
+            onCandidate(timestampMs);
+        }
+        previous2 = previous1;
+        previous1 = smoothed;
+    }
+
+    /**
+     * TYPE_STEP_COUNTER value: steps since boot.
+     */
+    public synchronized void onHardwareSteps(long totalSinceBoot) {
+        if (lastHardwareTotal >= 0 && totalSinceBoot >= lastHardwareTotal) {
+            Day day = today();
+            day.hardwareSteps += (int) (totalSinceBoot - lastHardwareTotal);
+            day.hasHardware = true;
+        }
+        lastHardwareTotal = totalSinceBoot;
+    }
+
+    /**
+     * Oldest first, ending today: date, steps (hardware if it reported that
+     * day, estimated otherwise), stepSource, estimatedSteps, activeMinutes,
+     * longestSedentaryMinutes.
+     */
+    public synchronized List<Map<String, Object>> getDaily(int count) {
+        TimeZone timeZone = TimeZone.getDefault();
+        long now = System.currentTimeMillis();
+        int today = localDay(now, timeZone);
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC")); // day numbers are already local
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int d = today - count + 1; d <= today; d++) {
+            Day day = days[Math.floorMod(d, DAYS)];
+            boolean known = day != null && day.day == d;
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("date", format.format(new Date(d * DAY_MS)));
+            map.put("steps", known ? (day.hasHardware ? day.hardwareSteps : day.estimatedSteps) : 0);
+            map.put("stepSource", known && day.hasHardware ? "hardware" : "estimated");
+            map.put("estimatedSteps", known ? day.estimatedSteps : 0);
+            map.put("activeMinutes", known ? day.activeMinutes : 0);
+            map.put("longestSedentaryMinutes", known ? day.longestSedentaryMinutes : 0);
+            list.add(map);
+        }
+        return list;
+    }
+
+    public void flush() {
+        saveAsync();
+    }
+
+    private void onCandidate(long timestampMs) {
+        long interval = timestampMs - lastCandidateMs;
+        if (interval < MIN_STEP_INTERVAL_MS) {
+            return;
+        }
+        lastCandidateMs = timestampMs;
+        run = interval > MAX_STEP_INTERVAL_MS ? 1 : run + 1;
+        if (run == STEPS_TO_CONFIRM) {
+            minuteSteps += STEPS_TO_CONFIRM; // the ones held back until walking was clear
+        } else if (run > STEPS_TO_CONFIRM) {
+            minuteSteps++;
+        }
+    }
+
+    private void closeMinute(long minutesSince) {
+        boolean active = minuteSteps >= ACTIVE_MINUTE_STEPS
+                || (minuteSamples > 0 && minuteMotion / minuteSamples > ACTIVE_MINUTE_LEVEL);
+        synchronized (this) {
+            Day day = today();
+            day.estimatedSteps += minuteSteps;
+            if (active) {
+                day.activeMinutes++;
+                sedentaryMinutes = 0;
+            } else {
+                sedentaryMinutes++;
+                day.longestSedentaryMinutes = Math.max(day.longestSedentaryMinutes, sedentaryMinutes);
+            }
+        }
+        if (minutesSince > MAX_GAP_MINUTES) {
+            sedentaryMinutes = 0; // nobody knows what happened in between
+        }
+        minuteSteps = 0;
+        minuteMotion = 0;
+        minuteSamples = 0;
+
+        long now = System.currentTimeMillis();
+        if (now - lastSaveMs >= SAVE_INTERVAL_MS) {
+            lastSaveMs = now;
+            saveAsync();
+        }
+    }
+
+    private Day today() {
+        int d = localDay(System.currentTimeMillis(), TimeZone.getDefault());
+        int slot = Math.floorMod(d, DAYS);
+        if (days[slot] == null || days[slot].day != d) {
+            Day day = new Day();
+            day.day = d;
+            days[slot] = day;
+        }
+        return days[slot];
+    }
+
+    private static int localDay(long wallMs, TimeZone timeZone) {
+        return (int) Math.floorDiv(wallMs + timeZone.getOffset(wallMs), DAY_MS);
+    }
+
+    private void load() {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Unknown activity summary file version - starting empty");
+                return;
+            }
+            int count = in.readUnsignedByte();
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    Day day = new Day();
+                    day.day = in.readInt();
+                    day.hardwareSteps = in.readInt();
+                    day.estimatedSteps = in.readInt();
+                    day.hasHardware = in.readBoolean();
+                    day.activeMinutes = in.readUnsignedShort();
+                    day.longestSedentaryMinutes = in.readUnsignedShort();
+                    days[Math.floorMod(day.day, DAYS)] = day;
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading activity summary: " + e.getMessage());
+        }
+    }
+
+    private synchronized void saveAsync() {
+        final List<Day> snapshot = new ArrayList<>();
+        for (Day day : days) {
+            if (day != null) {
+                Day copy = new Day();
+                copy.day = day.day;
+                copy.hardwareSteps = day.hardwareSteps;
+                copy.estimatedSteps = day.estimatedSteps;
+                copy.hasHardware = day.hasHardware;
+                copy.activeMinutes = day.activeMinutes;
+                copy.longestSedentaryMinutes = day.longestSedentaryMinutes;
+                snapshot.add(copy);
+            }
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = new File(context.getFilesDir(), FILE_NAME);
+                File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    out.writeInt(FILE_VERSION);
+                    out.writeByte(snapshot.size());
+                    for (Day day : snapshot) {
+                        out.writeInt(day.day);
+                        out.writeInt(day.hardwareSteps);
+                        out.writeInt(day.estimatedSteps);
+                        out.writeBoolean(day.hasHardware);
+                        out.writeShort(Math.min(day.activeMinutes, 0xFFFF));
+                        out.writeShort(Math.min(day.longestSedentaryMinutes, 0xFFFF));
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Error saving activity summary: " + e.getMessage());
+                    return;
+                }
+                if (!tmp.renameTo(file)) {
+                    Log.e(TAG, "Could not replace " + file);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import java.util.Map;
+
+public class ActivitySummaryModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "ActivitySummaryModule";
+
+    public ActivitySummaryModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "ActivitySummary";
+    }
+
+    /**
+     * Per day, oldest first: {date, steps, stepSource ("hardware" or
+     * "estimated"), estimatedSteps, activeMinutes, longestSedentaryMinutes}.
+     * At most 35 days are kept.
+     */
+    @ReactMethod
+    public void getDaily(int days, Promise promise) {
+        try {
+            WritableArray array = Arguments.createArray();
+            for (Map<String, Object> day : ActivitySummary.getInstance(getReactApplicationContext())
+                    .getDaily(Math.max(1, Math.min(ActivitySummary.DAYS, days)))) {
+                WritableMap map = Arguments.createMap();
+                for (Map.Entry<String, Object> entry : day.entrySet()) {
+                    Object value = entry.getValue();
+                    if (value instanceof Number) {
+                        map.putDouble(entry.getKey(), ((Number) value).doubleValue());
+                    } else {
+                        map.putString(entry.getKey(), String.valueOf(value));
+                    }
+                }
+                array.pushMap(map);
+            }
+            promise.resolve(array);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading activity summary: " + e.getMessage());
+            promise.reject("ACTIVITY_ERROR", e.getMessage());
+        }
+    }
+}
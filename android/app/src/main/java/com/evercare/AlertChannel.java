@@ -0,0 +1,29 @@
+package com.evercare;
+
+/**
+ * One way of telling someone about a fall: a Firestore document, a
+ * notification, an SMS, a phone call. AlertDispatcher sends on every channel
+ * at once and gives each its own timeout.
+ */
+public interface AlertChannel {
+
+    interface Callback {
+        void onAcknowledged(String detail);
+
+        void onFailed(String reason);
+    }
+
+    String getName();
+
+    /**
+     * How long the dispatcher waits for this channel before counting it as
+     * timed out.
+     */
+    long getTimeoutMs();
+
+    /**
+     * Called on a dispatcher worker thread. May block, or call back later
+     * from any thread. Only the first callback counts.
+     */
+    void send(AlertDispatcher.Alert alert, Callback callback);
+}
@@ -0,0 +1,218 @@
+package com.evercare;
+
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends one fall alert on every channel, or a chosen few, in parallel. Each
+ * channel has its own timeout; a slow or hanging channel never holds up the
+ * others. The result of each alert says which channel acknowledged first and
+ * how long each one took; keeping totals across alerts is up to the caller.
+ *
+ * Plain Java apart from logging, so channels can be swapped for local
+ * stand-ins; with a virtual Scheduler and a direct Executor the timeouts
+ * run in virtual time too.
+ */
+public class AlertDispatcher {
+
+    private static final String TAG = "AlertDispatcher";
+
+    public static final int PENDING = 0;
+    public static final int ACKNOWLEDGED = 1;
+    public static final int FAILED = 2;
+    public static final int TIMED_OUT = 3;
+
+    public static class Alert {
+        public final FallEvent event;
+        public final String caretakerPhone; // null if none is set
+        public final String reason;
+
+        public Alert(FallEvent event, String caretakerPhone, String reason) {
+            this.event = event;
+            this.caretakerPhone = caretakerPhone;
+            this.reason = reason;
+        }
+    }
+
+    public static class ChannelResult {
+        public final String channel;
+        public int status = PENDING;
+        public long latencyMs = -1;
+        public String detail;
+
+        ChannelResult(String channel) {
+            this.channel = channel;
+        }
+    }
+
+    public static class Result {
+        public final String eventId;
+        public final List<ChannelResult> channels;
+        public String firstChannel; // null if nothing acknowledged
+        public long firstLatencyMs = -1;
+
+        Result(String eventId, List<ChannelResult> channels) {
+            this.eventId = eventId;
+            this.channels = channels;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called once every channel has acknowledged, failed or timed out.
+         */
+        void onComplete(Result result);
+    }
+
+    private final List<AlertChannel> channels;
+    private final Scheduler scheduler; // channel timeouts and latencies
+    private final Executor sendExecutor;
+
+    public AlertDispatcher(List<AlertChannel> channels) {
+        this(channels, new Scheduler.ExecutorScheduler(), Executors.newCachedThreadPool());
+    }
+
+    public AlertDispatcher(List<AlertChannel> channels, Scheduler scheduler, Executor sendExecutor) {
+        this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+        this.scheduler = scheduler;
+        this.sendExecutor = sendExecutor;
+    }
+
+    public void dispatch(Alert alert, Listener listener) {
+        dispatch(alert, null, listener);
+    }
+
+    /**
+     * Sends only on the channels named in only, or on all of them if it is
+     * null. The result lists just the channels sent on, in dispatcher order.
+     */
+    public void dispatch(Alert alert, Set<String> only, Listener listener) {
+        final List<AlertChannel> sending = new ArrayList<>();
+        List<ChannelResult> results = new ArrayList<>();
+        for (AlertChannel channel : channels) {
+            if (only == null || only.contains(channel.getName())) {
+                sending.add(channel);
+                results.add(new ChannelResult(channel.getName()));
+            }
+        }
+        final Dispatch dispatch = new Dispatch(new Result(alert.event.id, results), listener);
+        Log.i(TAG, "Dispatching alert " + alert.event.id + " (" + alert.reason + ") on " + sending.size() + " channel(s)");
+        if (sending.isEmpty()) {
+            if (listener != null) {
+                listener.onComplete(dispatch.result);
+            }
+            return;
+        }
+
+        for (int i = 0; i < sending.size(); i++) {
+            final int index = i;
+            final AlertChannel channel = sending.get(i);
+            final Alert sent = alert;
+            dispatch.timeouts[i] = new Runnable() {
+                @Override
+                public void run() {
+                    dispatch.settle(index, TIMED_OUT, "no answer within " + channel.getTimeoutMs() + "ms");
+                }
+            };
+            scheduler.postDelayed(dispatch.timeouts[i], channel.getTimeoutMs());
+
+            sendExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        channel.send(sent, new AlertChannel.Callback() {
+                            @Override
+                            public void onAcknowledged(String detail) {
+                                dispatch.settle(index, ACKNOWLEDGED, detail);
+                            }
+
+                            @Override
+                            public void onFailed(String reason) {
+                                dispatch.settle(index, FAILED, reason);
+                            }
+                        });
+                    } catch (Exception e) {
+                        dispatch.settle(index, FAILED, e.getMessage());
+                    }
+                }
+            });
+        }
+    }
+
+    public void shutdown() {
+        if (sendExecutor instanceof ExecutorService) {
+            ((ExecutorService) sendExecutor).shutdownNow();
+        }
+        if (scheduler instanceof Scheduler.ExecutorScheduler) {
+            ((Scheduler.ExecutorScheduler) scheduler).shutdown();
+        }
+    }
+
+    private class Dispatch {
+        final Result result;
+        final Listener listener;
+        final Runnable[] timeouts;
+        final long startMs = scheduler.elapsedRealtime();
+        int remaining;
+
+        Dispatch(Result result, Listener listener) {
+            this.result = result;
+            this.listener = listener;
+            this.timeouts = new Runnable[result.channels.size()];
+            this.remaining = result.channels.size();
+        }
+
+        void settle(int index, int status, String detail) {
+            boolean done;
+            boolean first = false;
+            ChannelResult channel = result.channels.get(index);
+            synchronized (this) {
+                if (channel.status != PENDING) {
+                    if (status == ACKNOWLEDGED) {
+                        Log.d(TAG, channel.channel + " acknowledged after its timeout");
+                    }
+                    return;
+                }
+                channel.status = status;
+                channel.latencyMs = scheduler.elapsedRealtime() - startMs;
+                channel.detail = detail;
+                if (status == ACKNOWLEDGED && result.firstChannel == null) {
+                    result.firstChannel = channel.channel;
+                    result.firstLatencyMs = channel.latencyMs;
+                    first = true;
+                }
+                done = --remaining == 0;
+            }
+
+            Runnable timeout = timeouts[index];
+            if (timeout != null && status != TIMED_OUT) {
+                scheduler.removeCallbacks(timeout);
+            }
+            Log.i(TAG, channel.channel + " " + statusName(status) + " after " + channel.latencyMs + "ms"
+                    + (detail != null ? " (" + detail + ")" : "") + (first ? " - first" : ""));
+
+            if (done && listener != null) {
+                listener.onComplete(result);
+            }
+        }
+    }
+
+    public static String statusName(int status) {
+        switch (status) {
+            case ACKNOWLEDGED:
+                return "acknowledged";
+            case FAILED:
+                return "failed";
+            case TIMED_OUT:
+                return "timed out";
+            default:
+                return "pending";
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.evercare;
+
+import android.content.Context;
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableMap;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AlertDispatcherModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "AlertDispatcherModule";
+    private static final String PREFS_NAME = "EverCareAlertStats";
+
+    public AlertDispatcherModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "AlertDispatcher";
+    }
+
+    /**
+     * Per-channel alert outcomes and latency, plus which channel answered
+     * first on the last alert:
+     * {channels: {firestore: {attempts, acknowledged, failed, timedOut, first,
+     * avgLatencyMs, maxLatencyMs, lastLatencyMs}, ...}, lastEventId,
+     * lastFirstChannel, lastFirstLatencyMs}
+     */
+    @ReactMethod
+    public void getStats(Promise promise) {
+        try {
+            Map<String, ?> stored = getReactApplicationContext()
+                    .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getAll();
+            Map<String, WritableMap> channels = new HashMap<>();
+            WritableMap result = Arguments.createMap();
+            for (Map.Entry<String, ?> entry : stored.entrySet()) {
+                String key = entry.getKey();
+                int dot = key.indexOf('.');
+                if (dot < 0) {
+                    if (entry.getValue() instanceof String) {
+                        result.putString(key, (String) entry.getValue());
+                    } else if (entry.getValue() instanceof Number) {
+                        result.putDouble(key, ((Number) entry.getValue()).doubleValue());
+                    }
+                    continue;
+                }
+                String channel = key.substring(0, dot);
+                WritableMap map = channels.get(channel);
+                if (map == null) {
+                    map = Arguments.createMap();
+                    channels.put(channel, map);
+                }
+                if (entry.getValue() instanceof Number) {
+                    map.putDouble(key.substring(dot + 1), ((Number) entry.getValue()).doubleValue());
+                }
+            }
+
+            WritableMap channelMap = Arguments.createMap();
+            for (Map.Entry<String, WritableMap> entry : channels.entrySet()) {
+                WritableMap map = entry.getValue();
+                double acknowledged = map.hasKey("acknowledged") ? map.getDouble("acknowledged") : 0;
+                double total = map.hasKey("totalLatencyMs") ? map.getDouble("totalLatencyMs") : 0;
+                map.putDouble("avgLatencyMs", acknowledged > 0 ? total / acknowledged : -1);
+                channelMap.putMap(entry.getKey(), map);
+            }
+            result.putMap("channels", channelMap);
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading alert stats: " + e.getMessage());
+            promise.reject("ALERT_STATS_ERROR", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.evercare;
+
+import android.util.Log;
+
+/**
+ * The countdown between an alert going up and the emergency call: the
+ * notification is shown, refreshed every second with the time left, and if
+ * nobody taps "I'm OK" or dismisses it before the delay runs out the alert
+ * is escalated once. A fall seen by two sources within DUPLICATE_WINDOW_MS
+ * counts once; a later fall restarts the countdown.
+ *
+ * The pending alert goes to a Store as soon as it has an event, and
+ * restore() picks it up in a new service, so a restart delays the call at
+ * most until the service is back rather than losing it.
+ *
+ * All calls come on the Scheduler's thread. Plain Java apart from logging,
+ * so timelines can be replayed on the JVM in virtual time.
+ */
+public class AlertTimeline {
+
+    private static final String TAG = "AlertTimeline";
+
+    public static final int KIND_FALL = 0;
+    public static final int KIND_INACTIVITY = 1;
+    public static final long DUPLICATE_WINDOW_MS = 2000;
+
+    public interface Actions {
+        void showAlert(int kind, FallEvent event);
+
+        void updateCountdown(int kind, long remainingMs);
+
+        void clearAlert();
+
+        /**
+         * The countdown ran out; event is null if it never arrived.
+         */
+        void escalate(int kind, FallEvent event);
+    }
+
+    /**
+     * Keeps the pending alert across service restarts; deadline is wall time.
+     */
+    public interface Store {
+        void save(int kind, FallEvent event, long deadlineMs);
+
+        void clear();
+    }
+
+    private final Scheduler scheduler;
+    private final long delayMs;
+    private final long tickMs;
+    private final Actions actions;
+    private final Store store;
+
+    private boolean running = false;
+    private int kind;
+    private FallEvent event;
+    private long deadline; // scheduler elapsedRealtime
+    private long nextTick;
+    private long lastFallSensorMs = -DUPLICATE_WINDOW_MS;
+
+    private final Runnable expiry = new Runnable() {
+        @Override
+        public void run() {
+            expire();
+        }
+    };
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            long remaining = deadline - scheduler.elapsedRealtime();
+            if (remaining <= 0) {
+                // A Handler's clock stops in deep sleep; the elapsed clock does not
+                scheduler.removeCallbacks(expiry);
+                expire();
+                return;
+            }
+            actions.updateCountdown(kind, remaining);
+            // Stay on whole steps from the start rather than drifting by the update's own cost
+            nextTick += tickMs;
+            scheduler.postDelayed(tick, Math.max(0, nextTick - scheduler.elapsedRealtime()));
+        }
+    };
+
+    public AlertTimeline(Scheduler scheduler, long delayMs, long tickMs, Actions actions, Store store) {
+        this.scheduler = scheduler;
+        this.delayMs = delayMs;
+        this.tickMs = tickMs;
+        this.actions = actions;
+        this.store = store;
+    }
+
+    /**
+     * A detected fall, by the confirming sample's timestamp. False if another
+     * source already reported it.
+     */
+    public boolean onFall(long sensorTimestampMs) {
+        if (Math.abs(sensorTimestampMs - lastFallSensorMs) < DUPLICATE_WINDOW_MS) {
+            return false;
+        }
+        lastFallSensorMs = sensorTimestampMs;
+        start(KIND_FALL, null, delayMs);
+        return true;
+    }
+
+    /**
+     * The event the running fall countdown escalates with; it is built
+     * after the notification is up.
+     */
+    public void setEvent(FallEvent event) {
+        if (!running) {
+            return;
+        }
+        this.event = event;
+        save();
+    }
+
+    public void startInactivity(FallEvent event) {
+        start(KIND_INACTIVITY, event, delayMs);
+    }
+
+    /**
+     * Resumes an alert a previous service left pending; past its deadline
+     * it escalates right away.
+     */
+    public void restore(int kind, FallEvent event, long deadlineMs) {
+        long remaining = deadlineMs - scheduler.currentTimeMillis();
+        Log.w(TAG, "Resuming alert " + (event != null ? event.id : null) + " with " + remaining + "ms left");
+        start(kind, event, Math.max(0, remaining));
+    }
+
+    public void onOk() {
+        if (cancel()) {
+            actions.clearAlert();
+        }
+    }
+
+    public void onDismissed() {
+        cancel();
+    }
+
+    /**
+     * The service is going away: stop the timers but keep the stored alert.
+     */
+    public void stop() {
+        scheduler.removeCallbacks(expiry);
+        scheduler.removeCallbacks(tick);
+        running = false;
+    }
+
+    /**
+     * The event of the running countdown, or null.
+     */
+    public FallEvent getEvent() {
+        return running ? event : null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getRemainingMs() {
+        return running ? Math.max(0, deadline - scheduler.elapsedRealtime()) : 0;
+    }
+
+    private void start(int kind, FallEvent event, long delay) {
+        stop();
+        this.kind = kind;
+        this.event = event;
+        running = true;
+        long now = scheduler.elapsedRealtime();
+        deadline = now + delay;
+        nextTick = now;
+        Log.i(TAG, "Alert countdown started: " + delay + "ms");
+        if (event != null) {
+            save();
+        } else {
+            store.clear(); // a fall replacing the last alert saves itself once it has its event
+        }
+        actions.showAlert(kind, event);
+        scheduler.postDelayed(expiry, delay);
+        scheduler.postDelayed(tick, 0);
+    }
+
+    private boolean cancel() {
+        if (!running) {
+            return false;
+        }
+        stop();
+        store.clear();
+        Log.i(TAG, "Alert countdown cancelled");
+        return true;
+    }
+
+    private void expire() {
+        if (!running) {
+            return;
+        }
+        stop();
+        store.clear();
+        actions.clearAlert();
+        actions.escalate(kind, event);
+    }
+
+    private void save() {
+        store.save(kind, event, scheduler.currentTimeMillis() + (deadline - scheduler.elapsedRealtime()));
+    }
+}
@@ -6,6 +6,7 @@ import android.content.BroadcastReceiver;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
+import android.util.Base64;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
@@ -13,7 +14,16 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.auth.AuthResult;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class AuthStorageModule extends ReactContextBaseJavaModule {
     private static final String MODULE_NAME = "AuthStorage";
@@ -33,26 +43,23 @@ public class AuthStorageModule extends ReactContextBaseJavaModule {
                 
                 if ("com.evercare.FREE_FALL_DETECTED".equals(intent.getAction())) {
                     android.util.Log.d(TAG, "AUTHSTORAGE: Processing fall detection broadcast");
+                    byte[] record = intent.getByteArrayExtra("record");
+                    String eventId;
+                    try {
+                        eventId = FallRecords.wrapEvent(record).getString(FallRecords.EVENT_ID);
+                    } catch (IllegalArgumentException e) {
+                        android.util.Log.e(TAG, "AUTHSTORAGE: Unreadable fall record: " + e.getMessage());
+                        return;
+                    }
+                    FallTrace.mark(context, eventId, FallTrace.BROADCAST_RECEIVED);
                     
+                    // The record as is; JS reads it in place with services/fallRecord.ts
                     WritableMap params = Arguments.createMap();
-                    params.putDouble("acceleration", intent.getFloatExtra("acceleration", 0));
-                    params.putDouble("duration", intent.getLongExtra("duration", 0));
-                    params.putDouble("timestamp", intent.getLongExtra("timestamp", 0));
-                    
-                    android.util.Log.d(TAG, "AUTHSTORAGE: Fall data - acceleration: " + intent.getFloatExtra("acceleration", 0) + ", duration: " + intent.getLongExtra("duration", 0));
-                    
-                    // Add location data if available
-                    if (intent.hasExtra("latitude")) {
-                        params.putDouble("latitude", intent.getDoubleExtra("latitude", 0));
-                        params.putDouble("longitude", intent.getDoubleExtra("longitude", 0));
-                        params.putDouble("accuracy", intent.getFloatExtra("accuracy", 0));
-                        params.putString("provider", intent.getStringExtra("provider"));
-                        params.putDouble("locationTimestamp", intent.getLongExtra("locationTimestamp", 0));
-                        android.util.Log.d(TAG, "AUTHSTORAGE: Location data included");
-                    }
+                    params.putString("record", Base64.encodeToString(record, Base64.NO_WRAP));
                     
                     android.util.Log.d(TAG, "AUTHSTORAGE: Sending event to React Native");
                     sendEvent("FREE_FALL_DETECTED", params);
+                    FallTrace.mark(context, eventId, FallTrace.JS_EMITTED);
                 } else {
                     android.util.Log.d(TAG, "AUTHSTORAGE: Ignoring broadcast with action: " + intent.getAction());
                 }
@@ -87,6 +94,71 @@ public class AuthStorageModule extends ReactContextBaseJavaModule {
         return MODULE_NAME;
     }
 
+    @Override
+    public Map<String, Object> getConstants() {
+        // The fall record fields JS may read, so it never hardcodes the layout
+        FlatTable.Schema schema = FallRecords.EVENT;
+        List<Map<String, Object>> fields = new ArrayList<>();
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.goesTo(i, FlatTable.BRIDGE)) {
+                Map<String, Object> field = new HashMap<>();
+                field.put("id", i);
+                field.put("name", schema.name(i));
+                field.put("type", schema.type(i));
+                field.put("upload", schema.goesTo(i, FlatTable.UPLOAD));
+                field.put("group", schema.group(i));
+                fields.add(field);
+            }
+        }
+        Map<String, Object> fallEventSchema = new HashMap<>();
+        fallEventSchema.put("id", schema.id);
+        fallEventSchema.put("version", schema.version);
+        fallEventSchema.put("fields", fields);
+        Map<String, Object> constants = new HashMap<>();
+        constants.put("fallEventSchema", fallEventSchema);
+        return constants;
+    }
+
+    /**
+     * Signs the native FirebaseAuth in as the user the JS SDK signs in. The
+     * two SDKs keep separate sessions, and the service needs its own to
+     * reach Firestore while the app is closed; it persists across restarts.
+     * Resolves the uid.
+     */
+    @ReactMethod
+    public void signInNative(String email, String password, final Promise promise) {
+        FirebaseAuth.getInstance().signInWithEmailAndPassword(email, password)
+                .addOnCompleteListener(new OnCompleteListener<AuthResult>() {
+                    @Override
+                    public void onComplete(Task<AuthResult> task) {
+                        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+                        if (task.isSuccessful() && user != null) {
+                            android.util.Log.i(TAG, "AUTHSTORAGE: Native session signed in");
+                            promise.resolve(user.getUid());
+                        } else {
+                            String message = task.getException() != null ? task.getException().getMessage() : "unknown";
+                            android.util.Log.e(TAG, "AUTHSTORAGE: Native sign-in failed: " + message);
+                            promise.reject("AUTH_ERROR", message);
+                        }
+                    }
+                });
+    }
+
+    @ReactMethod
+    public void signOutNative(Promise promise) {
+        FirebaseAuth.getInstance().signOut();
+        promise.resolve(true);
+    }
+
+    /**
+     * The uid the native session is signed in as, or null.
+     */
+    @ReactMethod
+    public void getNativeUserId(Promise promise) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        promise.resolve(user != null ? user.getUid() : null);
+    }
+
     @ReactMethod
     public void storeUserId(String userId, Promise promise) {
         try {
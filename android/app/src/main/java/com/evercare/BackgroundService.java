@@ -5,9 +5,6 @@ import android.content.Intent;
 import android.os.IBinder;
 import android.util.Log;
 import android.content.Context;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -15,11 +12,13 @@ import androidx.core.app.NotificationCompat;
 import android.os.Build;
 import android.app.PendingIntent;
 import android.os.Vibrator;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseUser;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -37,39 +36,93 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import android.content.BroadcastReceiver;
 import android.content.IntentFilter;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Base64;
 
-public class BackgroundService extends Service implements SensorEventListener{
+public class BackgroundService extends Service {
 
     private static final String TAG = "BackgroundService";
     private static final String CHANNEL_ID = "FREE_FALL_CHANNEL";
     private static final int NOTIFICATION_ID = 1234;
 
     private SensorManager sensorManager;
-    private Sensor accelerometer;
+    private HandlerThread sensorThread; // phone samples and the phone's detector, off the main thread
+    private Handler sensorHandler;
+    private DirectChannelSource phoneSource;
+    private SensorSource externalSource; // wristband bridge, simulator or replay over a local socket
     private NotificationManager notificationManager;
-    private FirebaseFirestore db;
-    private FirebaseAuth mAuth;
+    private FallEventUploader fallUploader;
+    private FallAlertSms smsAlert;
+    private AlertDispatcher alertDispatcher;
+    private FirestoreAlertChannel firestoreAlerts;
+    private volatile String smsSentEventId; // the fall the caretaker was already texted about
+    private String deviceId;
+    private int bootCount;
     private LocationManager locationManager;
     private Location lastKnownLocation;
+    private LocationContextCache locationContext;
+    private FallHotspotIndex fallHotspots;
+    private DegradationPolicy degradationPolicy;
+    private volatile boolean liveStreamsAllowed = true; // read on the sensor threads
     private String caretakerPhone = null;
     private BroadcastReceiver settingsReceiver;
 
-    private static final float FREE_FALL_THRESHOLD = 2.0f; // m/s²
-    private static final long FREE_FALL_TIME_THRESHOLD = 50; // milliseconds
     private static final long AUTO_CALL_DELAY = 120000; // 2 minutes in milliseconds
+    private static final String ALERT_STATS_PREFS_NAME = "EverCareAlertStats";
+    private static final String PENDING_ALERT_PREFS_NAME = "EverCarePendingAlert";
+    private static final int ESCALATION_NOTIFICATION_ID = NOTIFICATION_ID + 1;
+    // Channels that reach the caretaker before the countdown is up; the call waits for it
+    private static final Set<String> DETECTION_CHANNELS = new HashSet<>(Arrays.asList("firestore", "sms"));
 
+    // Per-user threshold calibration
+    private static final String CALIBRATION_PREFS_NAME = "EverCareCalibration";
+    private static final long CALIBRATION_PERSIST_INTERVAL = 15 * 60 * 1000; // 15 minutes
+
+    private ThresholdCalibrator calibrator;
+    private String calibrationKey;
+    private long lastCalibrationPersistTime = 0;
+
+    private FreeFallDetector detector;
+    // Detectors see a uniform 50 Hz stream; blind periods reset them
+    private UniformResampler phoneResampler;
+    // Candidate thresholds on the same phone stream - counted, never alerted
+    private ShadowDetectorRunner shadowDetectors;
+    private FallWindowStore fallWindows; // the samples leading up to each fall, for export
+    private ActivitySummary activitySummary; // daily steps and activity from the same stream
     
-    private long freeFallStartTime = 0;
-    private boolean inFreeFall = false;
-    private boolean fallEventProcessed = false;
+    // One detector per external device, touched only on the socket source's delivery thread
+    private final Map<String, FreeFallDetector> externalDetectors = new HashMap<>();
+    private final Map<String, UniformResampler> externalResamplers = new HashMap<>();
+    // Each device learns and keeps its own thresholds, under calibrationKey + "_" + source
+    private final Map<String, ThresholdCalibrator> externalCalibrators = new HashMap<>();
+    private long lastExternalCalibrationPersistTime = 0;
     
-    // Auto-call timer variables
+    // Battery accounting - rate meters are fed from the thread their source delivers on
+    private EnergyLedger energyLedger;
+    private volatile EnergyLedger.RateMeter phoneRateMeter;
+    private final Map<String, EnergyLedger.RateMeter> externalRateMeters = new HashMap<>();
+    private boolean deliveryThreadRegistered = false;
+    
+    // Auto-call timer: notification, countdown and escalation, on the main thread
     private Handler autoCallHandler;
-    private Runnable autoCallRunnable;
-    private Runnable countdownUpdateRunnable;
+    private AlertTimeline alertTimeline;
     private BroadcastReceiver notificationInteractionReceiver;
-    private long autoCallStartTime;
+    // What the alert notification is about - a fall, or no answer to an inactivity check-in
+    private String alertTitle = "Fall Detected";
+    private String alertMessage = "Fall detected!";
+
+    // Everything not needed to detect a fall runs after the accelerometer is armed
+    private boolean deferredInitDone = false;
+    private boolean firstSampleSeen = false;
+    private final Runnable deferredInitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ensureInitialized();
+        }
+    };
 
     
     @Override
@@ -77,131 +130,421 @@ public class BackgroundService extends Service implements SensorEventListener{
         super.onCreate();
         Log.d(TAG, "Service created");
         
-        // Initialize sensor manager
+        // Arm the accelerometer first - after a boot, nothing else matters until it is listening
         sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
-        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        autoCallHandler = new Handler(Looper.getMainLooper());
+        sensorThread = new HandlerThread("SensorThread");
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+        alertTimeline = new AlertTimeline(new HandlerScheduler(autoCallHandler), AUTO_CALL_DELAY, 1000,
+                alertActions, pendingAlertStore);
+        
+        // Restore this user's learned thresholds before the sensor starts delivering
+        loadCalibration();
+        shadowDetectors = ShadowDetectorRunner.getInstance(this);
+        fallWindows = FallWindowStore.getInstance(this);
+        activitySummary = ActivitySummary.getInstance(this);
+        detector = new FreeFallDetector(calibrator, new FreeFallDetector.Listener() {
+            @Override
+            public void onFreeFall(final float acceleration, final long durationMs, final long timestampMs) {
+                FallTrace.begin(BackgroundService.this, timestampMs - durationMs, timestampMs);
+                fallWindows.capture(phoneResampler, timestampMs);
+                shadowDetectors.onPrimaryDetection(timestampMs);
+                autoCallHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFreeFallDetected(AccelerometerSource.NAME, acceleration, durationMs, timestampMs);
+                    }
+                });
+            }
+        });
+
+        phoneResampler = UniformResampler.toDetector(AccelerometerSource.NAME, detector, new SensorSource.Sink() {
+            @Override
+            public void onSample(String source, float x, float y, float z, long timestampMs) {
+                shadowDetectors.onSample(x, y, z, timestampMs);
+                activitySummary.onSample(x, y, z, timestampMs);
+            }
+        }, new UniformResampler.GapListener() {
+            @Override
+            public void onBlind(String source, long fromMs, long toMs) {
+                Log.w(TAG, "No phone samples for " + (toMs - fromMs) + "ms");
+                shadowDetectors.reset();
+            }
+        });
+
+        AccelerometerSource accelerometer = new AccelerometerSource(sensorManager, sensorHandler);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || ActivityCompat.checkSelfPermission(this,
+                android.Manifest.permission.ACTIVITY_RECOGNITION) == PackageManager.PERMISSION_GRANTED) {
+            accelerometer.setStepListener(new AccelerometerSource.StepListener() {
+                @Override
+                public void onSteps(long totalSinceBoot) {
+                    activitySummary.onHardwareSteps(totalSinceBoot);
+                }
+            });
+        }
+        // Hot or low on battery, give things up a tier at a time before the OS kills us. Known
+        // before any sample arrives, so every fall is stamped with the tier it was seen in
+        degradationPolicy = new DegradationPolicy(new HandlerScheduler(autoCallHandler),
+                new DegradationPolicy.Listener() {
+            @Override
+            public void onTierChanged(int tier, int previous, String cause) {
+                applyTier(tier, previous);
+            }
+        });
+        degradationPolicy.start(this);
+        
+        // Straight from shared memory where the device allows it, else through the listener
+        phoneSource = new DirectChannelSource(sensorManager, sensorHandler, accelerometer);
+        if (degradationPolicy.getTier() >= DegradationPolicy.TIER_BATCHED_SAMPLING) {
+            phoneSource.setBatched(true);
+        }
+        if (phoneSource.start(new SensorSource.Sink() {
+            @Override
+            public void onSample(String source, float x, float y, float z, long timestampMs) {
+                onPhoneSample(x, y, z, timestampMs);
+            }
+        })) {
+            StartupMetrics.onArmed();
+        }
+        
+        // The socket source, location, Firebase, receivers and the notification channel follow on a later main loop turn
+        autoCallHandler.post(deferredInitRunnable);
+    }
+    
+    /**
+     * The part of startup that fall detection itself does not need. Runs once,
+     * either from the posted runnable or right away if a fall is detected first.
+     */
+    private void ensureInitialized() {
+        if (deferredInitDone) {
+            return;
+        }
+        deferredInitDone = true;
+        long start = SystemClock.elapsedRealtime();
+        
+        // Account for our own battery use, per thread and per subsystem
+        energyLedger = EnergyLedger.getInstance(this);
+        energyLedger.start();
+        phoneRateMeter = energyLedger.newRateMeter(AccelerometerSource.NAME);
+        sensorHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                energyLedger.registerCurrentThread(EnergyLedger.CPU_SENSOR_MS);
+            }
+        });
         
         // Initialize notification manager and create channel
         notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         createNotificationChannel();
         
-        // Initialize Firebase
-        db = FirebaseFirestore.getInstance();
-        mAuth = FirebaseAuth.getInstance();
+        // Fall records are uploaded natively with ids derived from device, boot and sensor time
+        fallUploader = FallEventUploader.getInstance(this);
+        fallUploader.setDeferred(degradationPolicy.getTier() >= DegradationPolicy.TIER_DEFERRED_UPLOADS);
+        smsAlert = new FallAlertSms(this);
+        
+        // A detected fall goes out on DETECTION_CHANNELS at once, the escalation on every channel
+        List<AlertChannel> channels = new ArrayList<>();
+        firestoreAlerts = new FirestoreAlertChannel(15000);
+        channels.add(firestoreAlerts);
+        channels.add(new NotificationAlertChannel(this, CHANNEL_ID, ESCALATION_NOTIFICATION_ID, 2000));
+        channels.add(new SmsAlertChannel(smsAlert, 10000));
+        channels.add(new CallAlertChannel(this, 5000));
+        alertDispatcher = new AlertDispatcher(channels);
+        deviceId = Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID);
+        bootCount = Settings.Global.getInt(getContentResolver(), Settings.Global.BOOT_COUNT, 0);
+        
+        // Known places and cached addresses, so a fall can be described without the network
+        locationContext = LocationContextCache.getInstance(this);
+        fallHotspots = FallHotspotIndex.getInstance(this);
         
         // Initialize location manager
         locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
         requestLocationUpdates();
         
-        // Initialize caretaker phone to null - will be set via broadcast from React Native
-        caretakerPhone = null;
-        
         // Register broadcast receiver for settings updates
         registerSettingsReceiver();
         
-        // Initialize auto-call handler
-        autoCallHandler = new Handler(Looper.getMainLooper());
-        
         // Register notification interaction receiver
         registerNotificationInteractionReceiver();
-
-        if (accelerometer != null) {
-            // Register for accelerometer updates
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME);
-            Log.d(TAG, "Accelerometer registered successfully");
-        } else {
-            Log.e(TAG, "Accelerometer not available on this device");
-        }
+        
+        // An alert a previous instance of the service left counting down
+        restorePendingAlert();
+        
+        // Long stillness prompts a check-in, and comes back here if it goes unanswered
+        InactivityMonitor.getInstance(this).start();
+        
+        // Samples pushed from a wristband bridge, simulator or replay go through their own detectors
+        externalSource = new LocalSocketSensorSource();
+        externalSource.start(new SensorSource.Sink() {
+            @Override
+            public void onSample(String source, float x, float y, float z, long timestampMs) {
+                onExternalSample(source, x, y, z, timestampMs);
+            }
+        });
+        
+        long duration = SystemClock.elapsedRealtime() - start;
+        StartupMetrics.onDeferredInitDone(duration);
+        StartupMetrics.save(this);
+        Log.d(TAG, "Deferred initialization took " + duration + "ms");
     }
 
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d("FallDetection","Service Started");
+        if (intent != null && InactivityMonitor.ACTION_INACTIVITY_ALERT.equals(intent.getAction())) {
+            onInactivityAlert(intent.getLongExtra(InactivityMonitor.EXTRA_INACTIVE_MS, 0));
+        }
         return START_STICKY;
     }
 
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            float x = event.values[0];
-            float y = event.values[1];
-            float z = event.values[2];
-            
-            // Calculate total acceleration magnitude
-            float acceleration = (float) Math.sqrt(x * x + y * y + z * z);
-            
-            // Check for free fall (acceleration significantly less than gravity)
-            if (acceleration < FREE_FALL_THRESHOLD) {
-                if (!inFreeFall) {
-                    // Start of potential free fall
-                    freeFallStartTime = System.currentTimeMillis();
-                    
-                    inFreeFall = true;
-                    Log.d(TAG, "Potential free fall detected, acceleration: " + acceleration);
-                }
-                
-                // Check if free fall has lasted long enough and hasn't been processed yet
-                long freeFallDuration = System.currentTimeMillis() - freeFallStartTime;
-                if (freeFallDuration >= FREE_FALL_TIME_THRESHOLD && !fallEventProcessed) {
-                    fallEventProcessed = true; // Mark as processed to prevent duplicates
-                    onFreeFallDetected(acceleration, freeFallDuration);
+    private void onPhoneSample(float x, float y, float z, long timestampMs) {
+        phoneResampler.onSample(AccelerometerSource.NAME, x, y, z, timestampMs);
+        EnergyLedger.RateMeter meter = phoneRateMeter;
+        if (meter != null) {
+            meter.onSample(timestampMs);
+        }
+        MotionFrameCoalescer live = MotionFrameCoalescer.active();
+        if (live != null && liveStreamsAllowed) {
+            live.onSample(AccelerometerSource.NAME, x, y, z, timestampMs);
+        }
+        
+        if (!firstSampleSeen) {
+            firstSampleSeen = true;
+            StartupMetrics.onFirstSample(timestampMs);
+            StartupMetrics.save(this);
+        }
+        
+        long now = System.currentTimeMillis();
+        if (now - lastCalibrationPersistTime >= CALIBRATION_PERSIST_INTERVAL) {
+            saveCalibration();
+        }
+    }
+    
+    private void onExternalSample(final String source, float x, float y, float z, long timestampMs) {
+        if (!deliveryThreadRegistered) {
+            deliveryThreadRegistered = true;
+            energyLedger.registerCurrentThread(EnergyLedger.CPU_SOCKET_MS);
+        }
+        EnergyLedger.RateMeter meter = externalRateMeters.get(source);
+        if (meter == null) {
+            meter = energyLedger.newRateMeter(source);
+            externalRateMeters.put(source, meter);
+        }
+        meter.onSample(timestampMs);
+        
+        FreeFallDetector external = externalDetectors.get(source);
+        if (external == null) {
+            // A band moves differently from a phone in a pocket - it learns its own thresholds
+            ThresholdCalibrator calibration = readCalibration(calibrationKey + "_" + source);
+            externalCalibrators.put(source, calibration);
+            Log.d(TAG, "Calibration loaded for " + source + " (" + calibration.getSampleCount() + " samples)");
+            external = new FreeFallDetector(calibration, new FreeFallDetector.Listener() {
+                @Override
+                public void onFreeFall(final float acceleration, final long durationMs, final long timestampMs) {
+                    FallTrace.begin(BackgroundService.this, timestampMs - durationMs, timestampMs);
+                    fallWindows.capture(externalResamplers.get(source), timestampMs);
+                    autoCallHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onFreeFallDetected(source, acceleration, durationMs, timestampMs);
+                        }
+                    });
                 }
-            } else {
-                // Reset free fall detection
-                if (inFreeFall) {
-                    Log.d(TAG, "Free fall ended, acceleration returned to: " + acceleration);
+            });
+            externalDetectors.put(source, external);
+        }
+        UniformResampler resampler = externalResamplers.get(source);
+        if (resampler == null) {
+            resampler = UniformResampler.toDetector(source, external, null, new UniformResampler.GapListener() {
+                @Override
+                public void onBlind(String source, long fromMs, long toMs) {
+                    Log.w(TAG, "No samples from " + source + " for " + (toMs - fromMs) + "ms");
                 }
-                inFreeFall = false;
-                fallEventProcessed = false; // Reset for next fall detection
-                freeFallStartTime = 0;
-            }
+            });
+            externalResamplers.put(source, resampler);
+        }
+        resampler.onSample(source, x, y, z, timestampMs);
+        MotionFrameCoalescer live = MotionFrameCoalescer.active();
+        if (live != null && liveStreamsAllowed) {
+            live.onSample(source, x, y, z, timestampMs);
+        }
+        
+        long now = System.currentTimeMillis();
+        if (now - lastExternalCalibrationPersistTime >= CALIBRATION_PERSIST_INTERVAL) {
+            saveExternalCalibration();
         }
     }
 
-    private void onFreeFallDetected(float acceleration, long duration) {
-        Log.w(TAG, "FREE FALL DETECTED! Duration: " + duration + "ms, Acceleration: " + acceleration);
-
+    private void loadCalibration() {
+        // Calibration is per user - fall back to a device-wide key before login
+        SharedPreferences authPrefs = getSharedPreferences("EverCareAuth", Context.MODE_PRIVATE);
+        String userId = authPrefs.getString("userId", null);
+        calibrationKey = "calibration_" + (userId != null ? userId : "device");
+        
+        calibrator = readCalibration(calibrationKey);
+        lastCalibrationPersistTime = System.currentTimeMillis();
+        Log.d(TAG, "Calibration loaded for " + calibrationKey + " (" + calibrator.getSampleCount()
+                + " samples): threshold " + calibrator.getFreeFallThreshold() + " m/s², "
+                + calibrator.getFreeFallTimeThreshold() + " ms");
+    }
+    
+    private void saveCalibration() {
+        if (calibrator == null) {
+            return;
+        }
+        lastCalibrationPersistTime = System.currentTimeMillis();
+        Log.d(TAG, "Saving calibration: threshold " + detector.getFreeFallThreshold() + " m/s², "
+                + detector.getFreeFallTimeThreshold() + " ms");
+        writeCalibration(calibrationKey, calibrator);
+    }
+    
+    // On the socket source's delivery thread, or once it has stopped
+    private void saveExternalCalibration() {
+        lastExternalCalibrationPersistTime = System.currentTimeMillis();
+        for (Map.Entry<String, ThresholdCalibrator> entry : externalCalibrators.entrySet()) {
+            writeCalibration(calibrationKey + "_" + entry.getKey(), entry.getValue());
+        }
+    }
+    
+    private ThresholdCalibrator readCalibration(String key) {
+        byte[] state = null;
+        try {
+            String encoded = getSharedPreferences(CALIBRATION_PREFS_NAME, Context.MODE_PRIVATE)
+                    .getString(key, null);
+            if (encoded != null) {
+                state = Base64.decode(encoded, Base64.NO_WRAP);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading calibration state: " + e.getMessage());
+        }
+        return ThresholdCalibrator.fromBytes(state);
+    }
+    
+    private void writeCalibration(String key, ThresholdCalibrator calibration) {
+        getSharedPreferences(CALIBRATION_PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(key, Base64.encodeToString(calibration.toBytes(), Base64.NO_WRAP))
+                .apply();
+    }
 
-        // Show notification immediately
-        showFreeFallNotification(acceleration, duration);
+    private void onFreeFallDetected(String source, float acceleration, long duration, long sensorTimestampMs) {
+        // A fall right after boot may beat the deferred setup
+        ensureInitialized();
+        
+        // Shows the notification immediately and starts the 2-minute auto-call timer
+        if (!alertTimeline.onFall(sensorTimestampMs)) {
+            // The phone and a band can both see the same fall
+            Log.i(TAG, "Fall from " + source + " already reported by another source");
+            FallTrace.attach(this, sensorTimestampMs, null);
+            fallWindows.attach(sensorTimestampMs, null);
+            return;
+        }
+        Log.w(TAG, "FREE FALL DETECTED by " + source + "! Duration: " + duration + "ms, Acceleration: " + acceleration);
+        
+        // The event id doubles as the correlation id of the latency trace
+        String eventId = FallEvent.makeId(deviceId, bootCount, sensorTimestampMs);
+        FallTrace.attach(this, sensorTimestampMs, eventId);
+        fallWindows.attach(sensorTimestampMs, eventId);
+        FallTrace.mark(this, eventId, FallTrace.NOTIFIED);
 
-        // Start 2-minute auto-call timer
-        startAutoCallTimer();
+        //queue the fall for upload and broadcast it to the app
+        handleFreeFallEvent(eventId, acceleration, duration, sensorTimestampMs);
+    }
+    
+    /**
+     * The patient did not answer the inactivity check-in: same notification,
+     * countdown and escalation as a fall, but not recorded as one.
+     */
+    private void onInactivityAlert(long inactiveMs) {
+        Log.w(TAG, "No answer after " + inactiveMs / 60000 + " min without motion - raising the alert");
+        ensureInitialized();
 
-        //broadcast to app with fall data for React Native to save
-        handleFreeFallEvent(acceleration, duration);
+        long now = SystemClock.elapsedRealtime();
+        Location location = lastKnownLocation;
+        LocationContextCache.Description where = location != null
+                ? locationContext.describe(location.getLatitude(), location.getLongitude())
+                : null;
+        FallEvent event = new FallEvent("inactivity-" + FallEvent.makeId(deviceId, bootCount, now),
+                System.currentTimeMillis(), 0, inactiveMs,
+                location != null,
+                location != null ? location.getLatitude() : 0,
+                location != null ? location.getLongitude() : 0,
+                location != null ? location.getAccuracy() : 0,
+                location != null ? location.getProvider() : null,
+                location != null ? location.getTime() : 0,
+                where != null ? where.place : null,
+                where != null ? where.address : null,
+                now, degradationPolicy.getTierName());
+        alertTimeline.startInactivity(event);
     }
     
-    private void handleFreeFallEvent(float acceleration, long duration) {
-        // Send broadcast with fall data for React Native to save to Firebase
-        Log.i(TAG, "Broadcasting free fall event to React Native for Firebase saving");
+    private void handleFreeFallEvent(String eventId, float acceleration, long duration, long sensorTimestampMs) {
+        // Sensor timestamps share the elapsedRealtime clock - convert to wall time
+        long eventTime = System.currentTimeMillis() - (SystemClock.elapsedRealtime() - sensorTimestampMs);
         
-        Intent freeFallIntent = new Intent("com.evercare.FREE_FALL_DETECTED");
-        freeFallIntent.putExtra("acceleration", acceleration);
-        freeFallIntent.putExtra("duration", duration);
-        freeFallIntent.putExtra("timestamp", System.currentTimeMillis());
+        Location location = lastKnownLocation;
+        LocationContextCache.Description where = location != null
+                ? locationContext.describe(location.getLatitude(), location.getLongitude())
+                : null;
+        FallEvent event = new FallEvent(eventId, eventTime, acceleration, duration,
+                location != null,
+                location != null ? location.getLatitude() : 0,
+                location != null ? location.getLongitude() : 0,
+                location != null ? location.getAccuracy() : 0,
+                location != null ? location.getProvider() : null,
+                location != null ? location.getTime() : 0,
+                where != null ? where.place : null,
+                where != null ? where.address : null,
+                SystemClock.elapsedRealtime(), degradationPolicy.getTierName());
+        fallUploader.enqueue(event);
+        alertTimeline.setEvent(event);
+        fallHotspots.add(event);
         
-        // Add location data if available
-        if (lastKnownLocation != null) {
-            freeFallIntent.putExtra("latitude", lastKnownLocation.getLatitude());
-            freeFallIntent.putExtra("longitude", lastKnownLocation.getLongitude());
-            freeFallIntent.putExtra("accuracy", lastKnownLocation.getAccuracy());
-            freeFallIntent.putExtra("provider", lastKnownLocation.getProvider());
-            freeFallIntent.putExtra("locationTimestamp", lastKnownLocation.getTime());
-        }
+        alertOnDetection(event);
+        
+        // Send broadcast with fall data for React Native; the record itself is uploaded natively
+        Log.i(TAG, "Broadcasting free fall event " + eventId + " to React Native");
+        
+        // One versioned record rather than an extra per field; see FallRecords
+        Intent freeFallIntent = new Intent("com.evercare.FREE_FALL_DETECTED");
+        freeFallIntent.putExtra("record", FallRecords.encode(event));
         
         // Send both regular broadcast and local broadcast
         sendBroadcast(freeFallIntent);
+        energyLedger.count(EnergyLedger.BROADCASTS);
         
         // Also try LocalBroadcastManager for internal app communication
         try {
             LocalBroadcastManager.getInstance(this).sendBroadcast(freeFallIntent);
+            energyLedger.count(EnergyLedger.BROADCASTS);
             Log.i(TAG, "Local broadcast also sent");
         } catch (Exception e) {
             Log.e(TAG, "Error sending local broadcast: " + e.getMessage());
         }
     }
+    
+    /**
+     * What the degradation tier allows: live streams, upload timing,
+     * location providers and sample delivery. On the main thread; called
+     * from onCreate before the sources and the deferred setup exist, which
+     * then pick up the tier themselves.
+     */
+    private void applyTier(int tier, int previous) {
+        liveStreamsAllowed = tier < DegradationPolicy.TIER_NO_LIVE_STREAMS;
+        if (deferredInitDone) {
+            fallUploader.setDeferred(tier >= DegradationPolicy.TIER_DEFERRED_UPLOADS);
+            if ((tier >= DegradationPolicy.TIER_PASSIVE_LOCATION) != (previous >= DegradationPolicy.TIER_PASSIVE_LOCATION)) {
+                requestLocationUpdates();
+            }
+        }
+        if (phoneSource != null
+                && (tier >= DegradationPolicy.TIER_BATCHED_SAMPLING) != (previous >= DegradationPolicy.TIER_BATCHED_SAMPLING)) {
+            phoneSource.setBatched(tier >= DegradationPolicy.TIER_BATCHED_SAMPLING);
+        }
+    }
+    
     private void requestLocationUpdates() {
         try {
             if (ActivityCompat.checkSelfPermission(this, android.Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && 
@@ -210,15 +553,28 @@ public class BackgroundService extends Service implements SensorEventListener{
                 return;
             }
             
-            // Request location updates from both GPS and Network providers
-            if (locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER)) {
-                locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, 30000, 10, locationListener);
-                Log.d(TAG, "GPS location updates requested");
-            }
+            // Called again on a tier change - start over from no providers
+            locationManager.removeUpdates(locationListener);
+            energyLedger.onLocationActive(EnergyLedger.LOCATION_GPS_MS, false);
+            energyLedger.onLocationActive(EnergyLedger.LOCATION_NETWORK_MS, false);
             
-            if (locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER)) {
-                locationManager.requestLocationUpdates(LocationManager.NETWORK_PROVIDER, 30000, 10, locationListener);
-                Log.d(TAG, "Network location updates requested");
+            if (degradationPolicy != null && degradationPolicy.getTier() >= DegradationPolicy.TIER_PASSIVE_LOCATION) {
+                // Only fixes other apps pay for
+                locationManager.requestLocationUpdates(LocationManager.PASSIVE_PROVIDER, 30000, 10, locationListener);
+                Log.d(TAG, "Passive location updates requested");
+            } else {
+                // Request location updates from both GPS and Network providers
+                if (locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER)) {
+                    locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, 30000, 10, locationListener);
+                    energyLedger.onLocationActive(EnergyLedger.LOCATION_GPS_MS, true);
+                    Log.d(TAG, "GPS location updates requested");
+                }
+                
+                if (locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER)) {
+                    locationManager.requestLocationUpdates(LocationManager.NETWORK_PROVIDER, 30000, 10, locationListener);
+                    energyLedger.onLocationActive(EnergyLedger.LOCATION_NETWORK_MS, true);
+                    Log.d(TAG, "Network location updates requested");
+                }
             }
             
             // Get last known location
@@ -230,6 +586,7 @@ public class BackgroundService extends Service implements SensorEventListener{
             } else if (networkLocation != null) {
                 lastKnownLocation = networkLocation;
             }
+            locationContext.onLocation(lastKnownLocation);
             
         } catch (Exception e) {
             Log.e(TAG, "Error requesting location updates: " + e.getMessage());
@@ -241,6 +598,9 @@ public class BackgroundService extends Service implements SensorEventListener{
         public void onLocationChanged(Location location) {
             lastKnownLocation = location;
             Log.d(TAG, "Location updated: " + location.getLatitude() + ", " + location.getLongitude());
+            
+            // Reverse-geocode new surroundings ahead of time while on Wi-Fi
+            locationContext.onLocation(location);
         }
         
         @Override
@@ -311,15 +671,51 @@ public class BackgroundService extends Service implements SensorEventListener{
     public void onDestroy() {
         super.onDestroy();
         
-        // Unregister sensor listener to save battery
-        if (sensorManager != null) {
-            sensorManager.unregisterListener(this);
-            Log.d(TAG, "Accelerometer unregistered");
+        if (autoCallHandler != null) {
+            autoCallHandler.removeCallbacks(deferredInitRunnable);
+        }
+        
+        if (degradationPolicy != null) {
+            degradationPolicy.stop(this);
+            Log.d(TAG, "Power tiers: " + degradationPolicy.getStats());
+        }
+        
+        // Stop the sensor sources to save battery
+        if (phoneSource != null) {
+            phoneSource.stop();
+        }
+        if (externalSource != null) {
+            externalSource.stop(); // waits for its delivery thread
+            saveExternalCalibration();
+        }
+        if (sensorThread != null) {
+            // Let samples already queued reach the detector before the calibration is saved below
+            sensorThread.quitSafely();
+            try {
+                sensorThread.join(1000);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted waiting for the sensor thread");
+            }
+        }
+        if (phoneResampler != null) {
+            Log.d(TAG, "Phone stream: " + phoneResampler.getStats());
+            phoneResampler.release();
+        }
+        if (shadowDetectors != null) {
+            shadowDetectors.flush();
+        }
+        if (activitySummary != null) {
+            activitySummary.flush();
+        }
+        for (UniformResampler resampler : externalResamplers.values()) {
+            resampler.release();
         }
         
         // Stop location updates
         if (locationManager != null) {
             locationManager.removeUpdates(locationListener);
+            energyLedger.onLocationActive(EnergyLedger.LOCATION_GPS_MS, false);
+            energyLedger.onLocationActive(EnergyLedger.LOCATION_NETWORK_MS, false);
             Log.d(TAG, "Location updates stopped");
         }
         
@@ -343,91 +739,186 @@ public class BackgroundService extends Service implements SensorEventListener{
             }
         }
         
-        // Cancel auto-call timer
-        cancelAutoCallTimer();
+        // Stop the auto-call timer; a pending alert is picked up again by the next service
+        if (alertTimeline != null) {
+            alertTimeline.stop();
+        }
+        if (alertDispatcher != null) {
+            alertDispatcher.shutdown();
+        }
+        
+        // Keep what was learned since the last periodic save
+        saveCalibration();
+        
+        if (energyLedger != null) {
+            energyLedger.onSensorStopped(AccelerometerSource.NAME);
+            energyLedger.stop();
+        }
         
         Log.d(TAG, "Service destroyed");
     }
     
-    private void startAutoCallTimer() {
-        // Cancel any existing timer
-        cancelAutoCallTimer();
-        
-        Log.i(TAG, "Starting 2-minute auto-call timer with countdown");
-        autoCallStartTime = System.currentTimeMillis();
-        
-        // Main auto-call timer
-        autoCallRunnable = new Runnable() {
-            @Override
-            public void run() {
-                Log.w(TAG, "Auto-call timer expired - making emergency call");
-                makeEmergencyCall();
+    private final AlertTimeline.Actions alertActions = new AlertTimeline.Actions() {
+        @Override
+        public void showAlert(int kind, FallEvent event) {
+            if (kind == AlertTimeline.KIND_INACTIVITY) {
+                long minutes = event != null ? event.duration / 60000 : 0;
+                alertTitle = "No Movement";
+                alertMessage = "No movement for " + minutes + " minutes and no answer to the check-in.";
+            } else {
+                alertTitle = "Fall Detected";
+                alertMessage = "Fall detected!";
             }
-        };
-        
-        // Countdown update timer (updates every second)
-        countdownUpdateRunnable = new Runnable() {
+            showFreeFallNotification();
+        }
+
+        @Override
+        public void updateCountdown(int kind, long remainingMs) {
+            updateCountdownNotification(remainingMs);
+        }
+
+        @Override
+        public void clearAlert() {
+            notificationManager.cancel(NOTIFICATION_ID);
+        }
+
+        @Override
+        public void escalate(int kind, FallEvent event) {
+            Log.w(TAG, "Auto-call timer expired - making emergency call");
+            makeEmergencyCall(event, kind == AlertTimeline.KIND_INACTIVITY ? "no answer to the check-in" : "no response");
+        }
+    };
+
+    // One pending alert at a time, so a restarted service can finish its countdown
+    private final AlertTimeline.Store pendingAlertStore = new AlertTimeline.Store() {
+        @Override
+        public void save(int kind, FallEvent event, long deadlineMs) {
+            try {
+                getSharedPreferences(PENDING_ALERT_PREFS_NAME, Context.MODE_PRIVATE).edit()
+                        .putInt("kind", kind)
+                        .putString("record", Base64.encodeToString(FallRecords.encode(event), Base64.NO_WRAP))
+                        .putLong("deadline", deadlineMs)
+                        .apply();
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving the pending alert: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void clear() {
+            // "smsSent" stays: the escalation clears the alert before it reads that
+            getSharedPreferences(PENDING_ALERT_PREFS_NAME, Context.MODE_PRIVATE).edit()
+                    .remove("kind")
+                    .remove("record")
+                    .remove("deadline")
+                    .apply();
+        }
+    };
+
+    private void restorePendingAlert() {
+        SharedPreferences prefs = getSharedPreferences(PENDING_ALERT_PREFS_NAME, Context.MODE_PRIVATE);
+        smsSentEventId = prefs.getString("smsSent", null);
+        String record = prefs.getString("record", null);
+        if (record == null) {
+            return;
+        }
+        try {
+            FallEvent event = FallRecords.decode(Base64.decode(record, Base64.NO_WRAP));
+            alertTimeline.restore(prefs.getInt("kind", AlertTimeline.KIND_FALL), event, prefs.getLong("deadline", 0));
+        } catch (Exception e) {
+            Log.e(TAG, "Error restoring the pending alert: " + e.getMessage());
+            pendingAlertStore.clear();
+        }
+    }
+    
+    /**
+     * Tells the caretaker about a fall the moment it is detected: the
+     * Firestore alert document, and without data, where that write waits,
+     * the SMS as well. The countdown still decides about the call.
+     */
+    private void alertOnDetection(final FallEvent event) {
+        Set<String> channels = new HashSet<>(DETECTION_CHANNELS);
+        if (FallAlertSms.hasDataConnection(this)) {
+            channels.remove("sms");
+        }
+        alertDispatcher.dispatch(new AlertDispatcher.Alert(event, caretakerPhoneOrNull(), "fall detected"), channels,
+                new AlertDispatcher.Listener() {
             @Override
-            public void run() {
-                updateCountdownNotification();
-                if (autoCallRunnable != null) {
-                    // Schedule next update in 1 second
-                    autoCallHandler.postDelayed(countdownUpdateRunnable, 1000);
+            public void onComplete(AlertDispatcher.Result result) {
+                for (AlertDispatcher.ChannelResult channel : result.channels) {
+                    if ("sms".equals(channel.channel) && channel.status == AlertDispatcher.ACKNOWLEDGED) {
+                        markSmsSent(event.id);
+                    }
                 }
+                saveAlertStats(result);
             }
-        };
-        
-        autoCallHandler.postDelayed(autoCallRunnable, AUTO_CALL_DELAY);
-        autoCallHandler.post(countdownUpdateRunnable); // Start countdown updates immediately
+        });
     }
     
-    private void cancelAutoCallTimer() {
-        if (autoCallHandler != null) {
-            if (autoCallRunnable != null) {
-                autoCallHandler.removeCallbacks(autoCallRunnable);
-                autoCallRunnable = null;
-            }
-            if (countdownUpdateRunnable != null) {
-                autoCallHandler.removeCallbacks(countdownUpdateRunnable);
-                countdownUpdateRunnable = null;
-            }
-            Log.i(TAG, "Auto-call timer and countdown cancelled");
-        }
+    private void markSmsSent(String eventId) {
+        smsSentEventId = eventId;
+        // Kept next to the pending alert, so a restarted service does not text twice either
+        getSharedPreferences(PENDING_ALERT_PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString("smsSent", eventId)
+                .apply();
     }
     
-    private void makeEmergencyCall() {
-        Log.w(TAG, "Making automatic emergency call");
-        
-        // Determine which phone number to call
-        String phoneNumber = (caretakerPhone != null && !caretakerPhone.trim().isEmpty()) ? caretakerPhone : "101";
-        String contactType = (caretakerPhone != null && !caretakerPhone.trim().isEmpty()) ? "caretaker" : "emergency services (101)";
+    private String caretakerPhoneOrNull() {
+        return (caretakerPhone != null && !caretakerPhone.trim().isEmpty()) ? caretakerPhone.trim() : null;
+    }
+    
+    private void makeEmergencyCall(FallEvent event, String reason) {
+        Log.w(TAG, "No response to the alert - alerting on all channels");
         
-        Log.i(TAG, "Auto-calling: " + phoneNumber + " (" + contactType + ")");
+        String phone = caretakerPhoneOrNull();
+        Log.i(TAG, "Alerting " + (phone != null ? "caretaker: " + phone : "emergency services (101)"));
         
-        try {
-            Intent callIntent = new Intent(Intent.ACTION_CALL);
-            callIntent.setData(android.net.Uri.parse("tel:" + phoneNumber));
-            callIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            startActivity(callIntent);
-            
-            // Clear the notification after making the call
-            notificationManager.cancel(NOTIFICATION_ID);
-            
-            Log.i(TAG, "Emergency call initiated successfully");
-        } catch (Exception e) {
-            Log.e(TAG, "Error making emergency call: " + e.getMessage());
+        if (event == null) {
+            Log.e(TAG, "No fall event to alert about");
+            return;
+        }
+        Set<String> channels = null;
+        if (event.id.equals(smsSentEventId)) {
+            // The same SMS went out when the fall was detected
+            Log.i(TAG, "Caretaker already texted about " + event.id + " - not sending the SMS again");
+            channels = new HashSet<>(Arrays.asList("firestore", "notification", "call"));
         }
+        alertDispatcher.dispatch(new AlertDispatcher.Alert(event, phone, reason), channels, new AlertDispatcher.Listener() {
+            @Override
+            public void onComplete(AlertDispatcher.Result result) {
+                saveAlertStats(result);
+            }
+        });
     }
     
-    private void updateCountdownNotification() {
-        long currentTime = System.currentTimeMillis();
-        long elapsed = currentTime - autoCallStartTime;
-        long remaining = AUTO_CALL_DELAY - elapsed;
-        
-        if (remaining <= 0) {
-            return; // Timer has expired
+    private void saveAlertStats(AlertDispatcher.Result result) {
+        // Cumulative flat "<channel>.<stat>" counters across service restarts, read by AlertDispatcherModule
+        SharedPreferences prefs = getSharedPreferences(ALERT_STATS_PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = prefs.edit();
+        for (AlertDispatcher.ChannelResult channel : result.channels) {
+            String prefix = channel.channel + ".";
+            String outcome = channel.status == AlertDispatcher.ACKNOWLEDGED ? "acknowledged"
+                    : channel.status == AlertDispatcher.FAILED ? "failed" : "timedOut";
+            editor.putLong(prefix + "attempts", prefs.getLong(prefix + "attempts", 0) + 1);
+            editor.putLong(prefix + outcome, prefs.getLong(prefix + outcome, 0) + 1);
+            if (channel.status == AlertDispatcher.ACKNOWLEDGED) {
+                editor.putLong(prefix + "totalLatencyMs", prefs.getLong(prefix + "totalLatencyMs", 0) + channel.latencyMs);
+                editor.putLong(prefix + "maxLatencyMs", Math.max(prefs.getLong(prefix + "maxLatencyMs", 0), channel.latencyMs));
+                editor.putLong(prefix + "lastLatencyMs", channel.latencyMs);
+            }
+            if (channel.channel.equals(result.firstChannel)) {
+                editor.putLong(prefix + "first", prefs.getLong(prefix + "first", 0) + 1);
+            }
         }
-        
+        editor.putString("lastEventId", result.eventId);
+        editor.putString("lastFirstChannel", result.firstChannel);
+        editor.putLong("lastFirstLatencyMs", result.firstLatencyMs);
+        editor.apply();
+        Log.i(TAG, "Alert " + result.eventId + " first acknowledged by " + result.firstChannel
+                + " after " + result.firstLatencyMs + "ms");
+    }
+    
+    private void updateCountdownNotification(long remaining) {
         int minutes = (int) (remaining / 60000);
         int seconds = (int) ((remaining % 60000) / 1000);
         String countdownText = String.format("%d:%02d", minutes, seconds);
@@ -456,10 +947,10 @@ public class BackgroundService extends Service implements SensorEventListener{
         // Build updated notification with countdown (silent updates)
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setSmallIcon(android.R.drawable.stat_sys_warning)
-                .setContentTitle("Fall Detected")
+                .setContentTitle(alertTitle)
                 .setContentText("Emergency call in " + countdownText + ". Tap 'I'm OK' if you're fine.")
                 .setStyle(new NotificationCompat.BigTextStyle()
-                        .bigText("Fall detected! Emergency call to " + contactType + " in " + countdownText + " unless you tap 'I'm OK'."))
+                        .bigText(alertMessage + " Emergency call to " + contactType + " in " + countdownText + " unless you tap 'I'm OK'."))
                 .setPriority(NotificationCompat.PRIORITY_HIGH)
                 .setCategory(NotificationCompat.CATEGORY_ALARM)
                 .setAutoCancel(false)
@@ -476,6 +967,7 @@ public class BackgroundService extends Service implements SensorEventListener{
         
         try {
             notificationManager.notify(NOTIFICATION_ID, builder.build());
+            energyLedger.count(EnergyLedger.NOTIFICATIONS);
         } catch (Exception e) {
             Log.e(TAG, "Error updating countdown notification: " + e.getMessage());
         }
@@ -490,12 +982,18 @@ public class BackgroundService extends Service implements SensorEventListener{
                 
                 if ("com.evercare.FALL_NOTIFICATION_OK".equals(action)) {
                     Log.i(TAG, "User indicated they are OK - cancelling auto-call timer");
-                    cancelAutoCallTimer();
-                    // Clear the notification
-                    notificationManager.cancel(NOTIFICATION_ID);
+                    // Cancels the timer and clears the notification
+                    FallEvent answered = alertTimeline.getEvent();
+                    alertTimeline.onOk();
+                    if (answered != null && firestoreAlerts != null) {
+                        // The caretaker already has the detection-time alert
+                        firestoreAlerts.resolve(answered.id, "cancelled");
+                    }
+                    // An answer is a check-in too
+                    InactivityMonitor.getInstance(context).onCheckedIn();
                 } else if ("com.evercare.FALL_NOTIFICATION_DISMISSED".equals(action)) {
                     Log.i(TAG, "Fall notification was dismissed - cancelling auto-call timer");
-                    cancelAutoCallTimer();
+                    alertTimeline.onDismissed();
                 }
             }
         };
@@ -513,10 +1011,6 @@ public class BackgroundService extends Service implements SensorEventListener{
         Log.d(TAG, "Notification interaction receiver registered");
     }
     
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        Log.d(TAG, "Sensor accuracy changed: " + accuracy);
-    }
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             CharSequence name = "Free Fall Detection";
@@ -536,7 +1030,7 @@ public class BackgroundService extends Service implements SensorEventListener{
             Log.d(TAG, "Notification channel created with high importance");
         }    
     }
-    private void showFreeFallNotification(float acceleration, long duration) {
+    private void showFreeFallNotification() {
         Log.w(TAG, "Trigger Freefall Notification");
         // Check if notifications are enabled
         if (!notificationManager.areNotificationsEnabled()) {
@@ -571,10 +1065,10 @@ public class BackgroundService extends Service implements SensorEventListener{
         // Build the notification with help message and action buttons
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setSmallIcon(android.R.drawable.stat_sys_warning)
-                .setContentTitle("Fall Detected")
+                .setContentTitle(alertTitle)
                 .setContentText("Emergency call in 2 minutes. Tap 'I'm OK' if you're fine.")
                 .setStyle(new NotificationCompat.BigTextStyle()
-                        .bigText("Fall detected! Emergency call to " + contactType + " in 2 minutes unless you tap 'I'm OK'."))
+                        .bigText(alertMessage + " Emergency call to " + contactType + " in 2 minutes unless you tap 'I'm OK'."))
                 .setPriority(NotificationCompat.PRIORITY_MAX)
                 .setCategory(NotificationCompat.CATEGORY_ALARM)
                 .setAutoCancel(false)
@@ -595,6 +1089,7 @@ public class BackgroundService extends Service implements SensorEventListener{
         try {
             // Show the notification
             notificationManager.notify(NOTIFICATION_ID, builder.build());
+            energyLedger.count(EnergyLedger.NOTIFICATIONS);
             Log.i(TAG, "Free fall notification sent to system");
             
             // Also try to show as heads-up notification
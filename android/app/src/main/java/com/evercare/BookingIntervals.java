@@ -0,0 +1,64 @@
+package com.evercare;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The patient's booked appointment times as a set of intervals ordered by
+ * start time. Accepted bookings never overlap, so a conflict check only has to
+ * look at the booking that starts just before the end of the candidate.
+ */
+public class BookingIntervals {
+
+    private final TreeMap<Long, long[]> byStart = new TreeMap<>(); // start -> {end}
+    private final Map<String, Long> startById = new HashMap<>();
+
+    /**
+     * True if [startMs, endMs) overlaps an existing booking.
+     */
+    public boolean conflicts(long startMs, long endMs) {
+        return conflicts(startMs, endMs, null);
+    }
+
+    // As above, leaving out the booking that starts at ignoreStart
+    private boolean conflicts(long startMs, long endMs, Long ignoreStart) {
+        Map.Entry<Long, long[]> before = byStart.lowerEntry(endMs);
+        if (before != null && before.getKey().equals(ignoreStart)) {
+            before = byStart.lowerEntry(ignoreStart);
+        }
+        return before != null && before.getValue()[0] > startMs;
+    }
+
+    /**
+     * Records a booking. Returns false (and records nothing) if it would
+     * overlap an existing one; re-adding the same id replaces it, and a
+     * replacement that conflicts leaves the original in place.
+     */
+    public boolean add(String id, long startMs, long endMs) {
+        Long current = startById.get(id);
+        if (conflicts(startMs, endMs, current)) {
+            return false;
+        }
+        remove(id);
+        byStart.put(startMs, new long[]{endMs});
+        startById.put(id, startMs);
+        return true;
+    }
+
+    public void remove(String id) {
+        Long start = startById.remove(id);
+        if (start != null) {
+            byStart.remove(start);
+        }
+    }
+
+    public void clear() {
+        byStart.clear();
+        startById.clear();
+    }
+
+    public int size() {
+        return byStart.size();
+    }
+}
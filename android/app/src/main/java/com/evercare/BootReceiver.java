@@ -3,13 +3,49 @@ package com.evercare;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.core.content.ContextCompat;
 
 public class BootReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "BootReceiver";
+
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onReceive(final Context context, Intent intent) {
         if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
-            Intent serviceIntent = new Intent(context, BackgroundService.class);
-            context.startService(serviceIntent);
+            StartupMetrics.onBootReceived();
+
+            // Fall detection first. BOOT_COMPLETED allows a foreground service
+            // start but, on API 26-30, not a background startService; the
+            // foreground service starts BackgroundService once it is in the
+            // foreground, and that arms the sensor before anything else
+            try {
+                ContextCompat.startForegroundService(context, new Intent(context, FallDetectionForegroundService.class));
+            } catch (Exception e) {
+                Log.e(TAG, "Could not start the foreground service at boot: " + e.getMessage());
+                try {
+                    context.startService(new Intent(context, BackgroundService.class));
+                } catch (Exception again) {
+                    Log.e(TAG, "Could not start fall detection at boot: " + again.getMessage());
+                }
+            }
+
+            // Alarms do not survive a reboot - re-arm the single reminder alarm.
+            // Reading the deadline file stays off the main thread the service is starting on.
+            final long start = SystemClock.elapsedRealtime();
+            final PendingResult result = goAsync();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        DeadlineScheduler.getInstance(context).arm();
+                        EnergyLedger.getInstance(context).onWake(SystemClock.elapsedRealtime() - start);
+                    } finally {
+                        result.finish();
+                    }
+                }
+            }, "BootReArm").start();
         }
     }
-}
\ No newline at end of file
+}
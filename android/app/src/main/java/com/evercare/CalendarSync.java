@@ -0,0 +1,240 @@
+package com.evercare;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.provider.CalendarContract;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Makes the device calendar hold exactly the booked appointments.
+ *
+ * Each appointment's calendar event carries a stable id in UID_2445
+ * ("evercare:<provider>:<slotId>"). A sync reads every EverCare event in
+ * one query, diffs it against the booked list, and applies the inserts,
+ * updates and deletes in a single applyBatch: one round trip whatever the
+ * number of appointments, and running it twice changes nothing.
+ *
+ * Events saved one at a time by the old JS path have no id and, on Android,
+ * no notes either; one in the app's calendar matching an appointment's title
+ * and start is adopted and given the id, and its copies are deleted.
+ *
+ * Only events this device put in the calendar (the created set, kept by the
+ * caller) and that have not started yet are ever deleted as cancelled, so an
+ * empty booked list after a reinstall leaves the calendar alone.
+ */
+public class CalendarSync {
+
+    private static final String TAG = "CalendarSync";
+    public static final String ID_PREFIX = "evercare:";
+    public static final String NOTES = "EverCare reminder";
+    private static final String TITLE_PREFIX = "Appointment: "; // appointmentTitle in calendarService.ts
+
+    private static final String[] EVENT_PROJECTION = {
+            CalendarContract.Events._ID,
+            CalendarContract.Events.UID_2445,
+            CalendarContract.Events.TITLE,
+            CalendarContract.Events.DTSTART,
+            CalendarContract.Events.DTEND,
+            CalendarContract.Events.EVENT_LOCATION,
+    };
+
+    public static class Entry {
+        public final String id; // without the prefix
+        public final String title;
+        public final long startMs;
+        public final long endMs;
+        public final String location;
+
+        public Entry(String id, String title, long startMs, long endMs, String location) {
+            this.id = id;
+            this.title = title;
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.location = location;
+        }
+    }
+
+    public static class Result {
+        public int inserted;
+        public int updated;
+        public int deleted;
+        public int unchanged;
+        public int adopted; // old JS events now carrying an id, counted in updated
+        public int operations;
+        public long queryMs;
+        public long applyMs;
+        public long durationMs;
+    }
+
+    private final ContentResolver resolver;
+
+    public CalendarSync(ContentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Syncs the calendar to entries. created holds the ids whose events this
+     * device keeps; it is updated in place for the caller to save once the
+     * batch went through.
+     */
+    public Result sync(List<Entry> entries, Set<String> created) throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        long calendarId = findCalendar();
+        Result result = new Result();
+
+        Map<String, Entry> wanted = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            wanted.put(entry.id, entry); // a repeated id is one event
+        }
+
+        // Existing EverCare events: by id, and the old unmarked ones in our calendar by title and start
+        Map<String, Long> byId = new HashMap<>();
+        Map<Long, Entry> current = new HashMap<>();
+        Map<String, List<Long>> legacy = new HashMap<>();
+        List<Long> stale = new ArrayList<>();
+        String selection = CalendarContract.Events.DELETED + "=0 AND ("
+                + CalendarContract.Events.UID_2445 + " LIKE ? OR ("
+                + CalendarContract.Events.UID_2445 + " IS NULL AND "
+                + CalendarContract.Events.CALENDAR_ID + "=? AND "
+                + CalendarContract.Events.TITLE + " LIKE ?))";
+        try (Cursor cursor = resolver.query(CalendarContract.Events.CONTENT_URI, EVENT_PROJECTION, selection,
+                new String[]{ID_PREFIX + "%", String.valueOf(calendarId), TITLE_PREFIX + "%"}, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                long rowId = cursor.getLong(0);
+                String uid = cursor.getString(1);
+                Entry existing = new Entry(uid != null ? uid.substring(ID_PREFIX.length()) : null,
+                        cursor.getString(2), cursor.getLong(3), cursor.getLong(4), cursor.getString(5));
+                current.put(rowId, existing);
+                if (uid == null) {
+                    String key = legacyKey(existing.title, existing.startMs);
+                    List<Long> rows = legacy.get(key);
+                    if (rows == null) {
+                        rows = new ArrayList<>();
+                        legacy.put(key, rows);
+                    }
+                    rows.add(rowId);
+                } else if (byId.containsKey(existing.id)) {
+                    stale.add(rowId); // a duplicate from an interrupted sync
+                } else {
+                    byId.put(existing.id, rowId);
+                }
+            }
+        }
+        result.queryMs = SystemClock.elapsedRealtime() - start;
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        List<String> adopted = new ArrayList<>();
+        for (Entry entry : wanted.values()) {
+            Long rowId = byId.remove(entry.id);
+            boolean adopting = false;
+            if (rowId == null) {
+                List<Long> rows = legacy.get(legacyKey(entry.title, entry.startMs));
+                if (rows != null && !rows.isEmpty()) {
+                    rowId = rows.remove(0);
+                    adopting = true;
+                }
+            }
+            if (rowId == null) {
+                operations.add(ContentProviderOperation.newInsert(CalendarContract.Events.CONTENT_URI)
+                        .withValue(CalendarContract.Events.CALENDAR_ID, calendarId)
+                        .withValue(CalendarContract.Events.UID_2445, ID_PREFIX + entry.id)
+                        .withValue(CalendarContract.Events.TITLE, entry.title)
+                        .withValue(CalendarContract.Events.DTSTART, entry.startMs)
+                        .withValue(CalendarContract.Events.DTEND, entry.endMs)
+                        .withValue(CalendarContract.Events.EVENT_TIMEZONE, "UTC")
+                        .withValue(CalendarContract.Events.EVENT_LOCATION, entry.location)
+                        .withValue(CalendarContract.Events.DESCRIPTION, NOTES)
+                        .build());
+                result.inserted++;
+            } else if (adopting || !same(current.get(rowId), entry)) {
+                operations.add(ContentProviderOperation.newUpdate(
+                                ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, rowId))
+                        .withValue(CalendarContract.Events.UID_2445, ID_PREFIX + entry.id)
+                        .withValue(CalendarContract.Events.TITLE, entry.title)
+                        .withValue(CalendarContract.Events.DTSTART, entry.startMs)
+                        .withValue(CalendarContract.Events.DTEND, entry.endMs)
+                        .withValue(CalendarContract.Events.EVENT_LOCATION, entry.location)
+                        .build());
+                result.updated++;
+                if (adopting) {
+                    result.adopted++;
+                    adopted.add(legacyKey(entry.title, entry.startMs));
+                }
+            } else {
+                result.unchanged++;
+            }
+        }
+
+        // Whatever is left is cancelled, or a copy; cancelled only counts for
+        // events of ours still to come, the rest could be another install's
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> left : byId.entrySet()) {
+            if (created.contains(left.getKey()) && current.get(left.getValue()).startMs > now) {
+                stale.add(left.getValue());
+            }
+        }
+        for (String key : adopted) {
+            stale.addAll(legacy.get(key));
+        }
+        for (long rowId : stale) {
+            operations.add(ContentProviderOperation.newDelete(
+                    ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, rowId)).build());
+            result.deleted++;
+        }
+
+        // From here on every booked appointment's event is one this device keeps
+        created.clear();
+        created.addAll(wanted.keySet());
+
+        result.operations = operations.size();
+        if (!operations.isEmpty()) {
+            long applyStart = SystemClock.elapsedRealtime();
+            resolver.applyBatch(CalendarContract.AUTHORITY, operations);
+            result.applyMs = SystemClock.elapsedRealtime() - applyStart;
+        }
+        result.durationMs = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Synced " + wanted.size() + " appointment(s): " + result.inserted + " inserted, "
+                + result.updated + " updated (" + result.adopted + " adopted), " + result.deleted + " deleted, "
+                + result.unchanged + " unchanged - " + result.operations + " operation(s) in " + result.durationMs + "ms");
+        return result;
+    }
+
+    /**
+     * The primary calendar if it can be written to, else the first visible writable one.
+     */
+    private long findCalendar() {
+        String[] projection = {CalendarContract.Calendars._ID};
+        String selection = CalendarContract.Calendars.VISIBLE + "=1 AND "
+                + CalendarContract.Calendars.CALENDAR_ACCESS_LEVEL + ">=" + CalendarContract.Calendars.CAL_ACCESS_CONTRIBUTOR;
+        try (Cursor cursor = resolver.query(CalendarContract.Calendars.CONTENT_URI, projection, selection, null,
+                CalendarContract.Calendars.IS_PRIMARY + " DESC")) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        }
+        throw new IllegalStateException("No writable calendar on this device");
+    }
+
+    private static boolean same(Entry a, Entry b) {
+        return a.startMs == b.startMs && a.endMs == b.endMs
+                && equal(a.title, b.title) && equal(a.location, b.location);
+    }
+
+    private static boolean equal(String a, String b) {
+        // The provider may hand back "" for a column written as null
+        return (a == null ? "" : a).equals(b == null ? "" : b);
+    }
+
+    private static String legacyKey(String title, long startMs) {
+        return startMs + "|" + title;
+    }
+}
@@ -0,0 +1,107 @@
+package com.evercare;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.util.Log;
+import androidx.core.content.ContextCompat;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class CalendarSyncModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "CalendarSyncModule";
+    private static final String PREFS_NAME = "EverCareCalendar";
+    private static final String KEY_CREATED = "createdIds";
+
+    // One sync at a time, in the order they were asked for
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public CalendarSyncModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "CalendarSync";
+    }
+
+    /**
+     * Makes the calendar hold exactly these appointments, given as
+     * [{id, title, start, end, location}] with UTC ISO times. Resolves
+     * {inserted, updated, adopted, deleted, unchanged, operations, queryMs,
+     * applyMs, durationMs}.
+     */
+    @ReactMethod
+    public void sync(ReadableArray appointments, final Promise promise) {
+        if (ContextCompat.checkSelfPermission(getReactApplicationContext(), android.Manifest.permission.READ_CALENDAR)
+                != PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(getReactApplicationContext(), android.Manifest.permission.WRITE_CALENDAR)
+                != PackageManager.PERMISSION_GRANTED) {
+            promise.reject("NO_CALENDAR_PERMISSION", "Calendar permission not granted");
+            return;
+        }
+        final List<CalendarSync.Entry> entries = new ArrayList<>();
+        try {
+            for (int i = 0; i < appointments.size(); i++) {
+                ReadableMap appointment = appointments.getMap(i);
+                entries.add(new CalendarSync.Entry(
+                        appointment.getString("id"),
+                        appointment.getString("title"),
+                        SlotCatalogReader.parseIsoUtc(appointment.getString("start")),
+                        SlotCatalogReader.parseIsoUtc(appointment.getString("end")),
+                        appointment.hasKey("location") ? appointment.getString("location") : null));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Invalid appointment: " + e.getMessage());
+            promise.reject("CALENDAR_SYNC_ERROR", e.getMessage());
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Only events this install put there may be deleted; none after a reinstall
+                    SharedPreferences prefs = getReactApplicationContext()
+                            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+                    Set<String> created = new HashSet<>(prefs.getStringSet(KEY_CREATED, new HashSet<String>()));
+                    CalendarSync.Result result = new CalendarSync(getReactApplicationContext().getContentResolver())
+                            .sync(entries, created);
+                    prefs.edit().putStringSet(KEY_CREATED, created).apply();
+                    WritableMap map = Arguments.createMap();
+                    map.putInt("inserted", result.inserted);
+                    map.putInt("updated", result.updated);
+                    map.putInt("adopted", result.adopted);
+                    map.putInt("deleted", result.deleted);
+                    map.putInt("unchanged", result.unchanged);
+                    map.putInt("operations", result.operations);
+                    map.putDouble("queryMs", result.queryMs);
+                    map.putDouble("applyMs", result.applyMs);
+                    map.putDouble("durationMs", result.durationMs);
+                    promise.resolve(map);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error syncing calendar: " + e.getMessage());
+                    promise.reject("CALENDAR_SYNC_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void invalidate() {
+        executor.shutdown();
+        super.invalidate();
+    }
+}
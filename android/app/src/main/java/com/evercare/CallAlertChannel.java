@@ -0,0 +1,42 @@
+package com.evercare;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+/**
+ * Phones the caretaker, or emergency services (101) if no caretaker is set.
+ * Acknowledged once the dialer has been started.
+ */
+public class CallAlertChannel implements AlertChannel {
+
+    private static final String EMERGENCY_NUMBER = "101";
+
+    private final Context context;
+    private final long timeoutMs;
+
+    public CallAlertChannel(Context context, long timeoutMs) {
+        this.context = context;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public String getName() {
+        return "call";
+    }
+
+    @Override
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    public void send(AlertDispatcher.Alert alert, Callback callback) {
+        String phoneNumber = alert.caretakerPhone != null ? alert.caretakerPhone : EMERGENCY_NUMBER;
+        Intent callIntent = new Intent(Intent.ACTION_CALL);
+        callIntent.setData(Uri.parse("tel:" + phoneNumber));
+        callIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        context.startActivity(callIntent);
+        callback.onAcknowledged(alert.caretakerPhone != null ? "caretaker" : "emergency services");
+    }
+}
@@ -0,0 +1,56 @@
+package com.evercare;
+
+/**
+ * Maps a sender's clock onto ours. Every arrival gives (receive time -
+ * sender time) = true offset + transport delay; the delay is never negative,
+ * so the smallest difference seen recently is the best estimate. The
+ * minimum is kept over two alternating windows so the estimate follows
+ * drift between the clocks instead of sticking to an old value.
+ * Thread safe.
+ */
+public class ClockOffsetEstimator {
+
+    private final long windowNs;
+    private long windowStartNs = Long.MIN_VALUE;
+    private long currentMin = Long.MAX_VALUE;
+    private long previousMin = Long.MAX_VALUE;
+    private long observations = 0;
+
+    public ClockOffsetEstimator(long windowNs) {
+        this.windowNs = windowNs;
+    }
+
+    public synchronized void observe(long senderNs, long receivedNs) {
+        if (windowStartNs == Long.MIN_VALUE) {
+            windowStartNs = receivedNs;
+        } else if (receivedNs - windowStartNs >= windowNs) {
+            previousMin = currentMin;
+            currentMin = Long.MAX_VALUE;
+            windowStartNs = receivedNs;
+        }
+        currentMin = Math.min(currentMin, receivedNs - senderNs);
+        observations++;
+    }
+
+    /**
+     * Add to a sender timestamp to get our time. 0 before any observation.
+     */
+    public synchronized long getOffsetNs() {
+        long best = Math.min(currentMin, previousMin);
+        return best == Long.MAX_VALUE ? 0 : best;
+    }
+
+    public synchronized boolean hasEstimate() {
+        return observations > 0;
+    }
+
+    /**
+     * Forget everything, e.g. when a sender reconnects and may have restarted its clock.
+     */
+    public synchronized void reset() {
+        windowStartNs = Long.MIN_VALUE;
+        currentMin = Long.MAX_VALUE;
+        previousMin = Long.MAX_VALUE;
+        observations = 0;
+    }
+}
@@ -0,0 +1,18 @@
+package com.evercare;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+
+public class DeadlineAlarmReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (DeadlineScheduler.ACTION_DEADLINE_ALARM.equals(intent.getAction())) {
+            // The alarm holds the device awake until onReceive returns
+            long start = SystemClock.elapsedRealtime();
+            DeadlineScheduler.getInstance(context).processDue();
+            EnergyLedger.getInstance(context).onWake(SystemClock.elapsedRealtime() - start);
+        }
+    }
+}
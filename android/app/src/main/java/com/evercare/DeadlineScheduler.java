@@ -0,0 +1,370 @@
+package com.evercare;
+
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+import androidx.core.app.NotificationCompat;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestore;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * All medication doses, medication expiries and appointment reminders in one
+ * priority queue, with exactly one exact alarm armed for the earliest
+ * deadline. When it fires, every deadline that is due is handled in the same
+ * wakeup, repeating ones are pushed to their next occurrence, and the alarm is
+ * re-armed for whatever is now first.
+ */
+public class DeadlineScheduler {
+
+    private static final String TAG = "DeadlineScheduler";
+    private static final String FILE_NAME = "deadlines.bin";
+    private static final int FILE_VERSION = 1;
+    private static final String CHANNEL_ID = "REMINDERS_CHANNEL";
+    private static final String PREFS_NAME = "EverCareDeadlines";
+    private static final String KEY_EXPIRED = "expiredMedications"; // ids whose document is still to be deleted
+    public static final String ACTION_DEADLINE_ALARM = "com.evercare.DEADLINE_ALARM";
+
+    public static final int KIND_MEDICATION_DOSE = 1;
+    public static final int KIND_MEDICATION_EXPIRY = 2;
+    public static final int KIND_APPOINTMENT_REMINDER = 3;
+
+    // Deadlines this close together are handled in the same wakeup
+    private static final long BATCH_WINDOW_MS = 60 * 1000;
+
+    public static class Deadline {
+        public final String id;
+        public final int kind;
+        public long dueAt;
+        public final long repeatMs; // 0 for one-shot
+        public final long until; // last time a repeat may fire, 0 for no limit
+        public final String title;
+        public final String message;
+
+        public Deadline(String id, int kind, long dueAt, long repeatMs, long until, String title, String message) {
+            this.id = id;
+            this.kind = kind;
+            this.dueAt = dueAt;
+            this.repeatMs = repeatMs;
+            this.until = until;
+            this.title = title != null ? title : "";
+            this.message = message != null ? message : "";
+        }
+    }
+
+    private static DeadlineScheduler instance;
+
+    private final Context context;
+    private final PriorityQueue<Deadline> queue = new PriorityQueue<>(16, new Comparator<Deadline>() {
+        @Override
+        public int compare(Deadline a, Deadline b) {
+            return Long.compare(a.dueAt, b.dueAt);
+        }
+    });
+    private final Map<String, Deadline> byId = new HashMap<>();
+    private long armedFor = 0;
+
+    public static synchronized DeadlineScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new DeadlineScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DeadlineScheduler(Context context) {
+        this.context = context;
+        load();
+        // Expiries while the native session was signed out are deleted once it signs in
+        FirebaseAuth.getInstance().addAuthStateListener(new FirebaseAuth.AuthStateListener() {
+            @Override
+            public void onAuthStateChanged(FirebaseAuth auth) {
+                if (auth.getCurrentUser() != null) {
+                    deleteExpiredMedications();
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds or replaces a deadline (matched by id) and re-arms if it is now the earliest.
+     */
+    public synchronized void schedule(Deadline deadline) {
+        Deadline existing = byId.remove(deadline.id);
+        if (existing != null) {
+            queue.remove(existing);
+        }
+        queue.add(deadline);
+        byId.put(deadline.id, deadline);
+        save();
+        arm();
+    }
+
+    /**
+     * Removes every deadline whose id starts with the prefix, e.g. all of one medication's entries.
+     */
+    public synchronized int cancel(String idPrefix) {
+        List<Deadline> removed = new ArrayList<>();
+        for (Deadline deadline : byId.values()) {
+            if (deadline.id.startsWith(idPrefix)) {
+                removed.add(deadline);
+            }
+        }
+        for (Deadline deadline : removed) {
+            byId.remove(deadline.id);
+            queue.remove(deadline);
+        }
+        if (!removed.isEmpty()) {
+            save();
+            arm();
+        }
+        return removed.size();
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    public synchronized long getNextDeadline() {
+        Deadline head = queue.peek();
+        return head != null ? head.dueAt : 0;
+    }
+
+    /**
+     * Called from the alarm: handles every due deadline in one batch, then re-arms.
+     */
+    public synchronized void processDue() {
+        long now = System.currentTimeMillis();
+        List<Deadline> due = new ArrayList<>();
+        while (!queue.isEmpty() && queue.peek().dueAt <= now + BATCH_WINDOW_MS) {
+            due.add(queue.poll());
+        }
+        Log.i(TAG, "Processing " + due.size() + " due deadline(s), " + queue.size() + " remaining");
+
+        for (Deadline deadline : due) {
+            byId.remove(deadline.id);
+            if (deadline.kind == KIND_MEDICATION_EXPIRY) {
+                expireMedication(deadline);
+            } else {
+                showReminder(deadline);
+            }
+
+            if (deadline.repeatMs > 0) {
+                // Skip occurrences missed while the device was off rather than firing them all
+                long next = deadline.dueAt + deadline.repeatMs;
+                if (next <= now) {
+                    next += ((now - next) / deadline.repeatMs + 1) * deadline.repeatMs;
+                }
+                if (deadline.until == 0 || next <= deadline.until) {
+                    deadline.dueAt = next;
+                    queue.add(deadline);
+                    byId.put(deadline.id, deadline);
+                }
+            }
+        }
+
+        armedFor = 0;
+        save();
+        arm();
+    }
+
+    /**
+     * Arms the single alarm for the earliest deadline. Also used after boot,
+     * when the system has dropped every alarm.
+     */
+    public synchronized void arm() {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = alarmIntent();
+        Deadline head = queue.peek();
+        if (head == null) {
+            alarmManager.cancel(pendingIntent);
+            armedFor = 0;
+            return;
+        }
+        if (head.dueAt == armedFor) {
+            return; // Already armed for this time
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            Log.w(TAG, "Exact alarms not permitted - using an inexact alarm");
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, head.dueAt, pendingIntent);
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, head.dueAt, pendingIntent);
+        }
+        armedFor = head.dueAt;
+        EnergyLedger.getInstance(context).count(EnergyLedger.ALARMS);
+        Log.d(TAG, "Alarm armed for " + head.id + " at " + head.dueAt + " (" + queue.size() + " queued)");
+    }
+
+    private PendingIntent alarmIntent() {
+        Intent intent = new Intent(context, DeadlineAlarmReceiver.class);
+        intent.setAction(ACTION_DEADLINE_ALARM);
+        return PendingIntent.getBroadcast(context, 0, intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private void showReminder(Deadline deadline) {
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && notificationManager.getNotificationChannel(CHANNEL_ID) == null) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Reminders", NotificationManager.IMPORTANCE_HIGH);
+            channel.setDescription("Medication and appointment reminders");
+            notificationManager.createNotificationChannel(channel);
+        }
+
+        Intent openIntent = new Intent(context, MainActivity.class);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0, openIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_popup_reminder)
+                .setContentTitle(deadline.title)
+                .setContentText(deadline.message)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_REMINDER)
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true);
+
+        try {
+            notificationManager.notify(deadline.id.hashCode(), builder.build());
+            EnergyLedger.getInstance(context).count(EnergyLedger.NOTIFICATIONS);
+        } catch (Exception e) {
+            Log.e(TAG, "Error showing reminder " + deadline.id + ": " + e.getMessage());
+        }
+    }
+
+    private void expireMedication(Deadline deadline) {
+        // Expiry ids are "med:<documentId>:expiry"; drop the doses and the Firestore document
+        String[] parts = deadline.id.split(":");
+        if (parts.length < 2) {
+            return;
+        }
+        String medicationId = parts[1];
+        String prefix = "med:" + medicationId + ":";
+        List<Deadline> doses = new ArrayList<>();
+        for (Deadline other : byId.values()) {
+            if (other.id.startsWith(prefix)) {
+                doses.add(other);
+            }
+        }
+        for (Deadline dose : doses) {
+            byId.remove(dose.id);
+            queue.remove(dose);
+        }
+
+        Log.i(TAG, "Medication " + medicationId + " expired");
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        Set<String> expired = new HashSet<>(prefs.getStringSet(KEY_EXPIRED, new HashSet<String>()));
+        expired.add(medicationId);
+        prefs.edit().putStringSet(KEY_EXPIRED, expired).apply();
+        deleteExpiredMedications();
+    }
+
+    /**
+     * Deletes the documents of expired medications, once the native session
+     * (see AuthStorageModule.signInNative) is signed in; each id is kept
+     * until its delete succeeds.
+     */
+    private void deleteExpiredMedications() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        final SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        Set<String> expired = prefs.getStringSet(KEY_EXPIRED, new HashSet<String>());
+        if (expired.isEmpty()) {
+            return;
+        }
+        if (user == null) {
+            Log.w(TAG, expired.size() + " expired medication(s) waiting for the native session to sign in");
+            return;
+        }
+        for (final String medicationId : new ArrayList<>(expired)) {
+            FirebaseFirestore.getInstance()
+                    .collection("users").document(user.getUid())
+                    .collection("medications").document(medicationId)
+                    .delete()
+                    .addOnCompleteListener(new OnCompleteListener<Void>() {
+                        @Override
+                        public void onComplete(Task<Void> task) {
+                            if (!task.isSuccessful()) {
+                                Log.w(TAG, "Could not delete medication " + medicationId + ": "
+                                        + (task.getException() != null ? task.getException().getMessage() : "unknown"));
+                                return;
+                            }
+                            synchronized (DeadlineScheduler.this) {
+                                Set<String> left = new HashSet<>(prefs.getStringSet(KEY_EXPIRED, new HashSet<String>()));
+                                left.remove(medicationId);
+                                prefs.edit().putStringSet(KEY_EXPIRED, left).apply();
+                            }
+                        }
+                    });
+        }
+    }
+
+    private void load() {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Unknown deadline file version - starting empty");
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Deadline deadline = new Deadline(in.readUTF(), in.readByte(), in.readLong(),
+                        in.readLong(), in.readLong(), in.readUTF(), in.readUTF());
+                queue.add(deadline);
+                byId.put(deadline.id, deadline);
+            }
+            Log.d(TAG, "Restored " + count + " deadline(s)");
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading deadlines: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(queue.size());
+            for (Deadline deadline : queue) {
+                out.writeUTF(deadline.id);
+                out.writeByte(deadline.kind);
+                out.writeLong(deadline.dueAt);
+                out.writeLong(deadline.repeatMs);
+                out.writeLong(deadline.until);
+                out.writeUTF(deadline.title);
+                out.writeUTF(deadline.message);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving deadlines: " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Could not replace " + file);
+        }
+    }
+}
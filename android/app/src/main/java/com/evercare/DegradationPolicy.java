@@ -0,0 +1,258 @@
+package com.evercare;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides how much the service may spend, from the thermal status, battery
+ * saver and the battery level. Each tier gives up one more thing on top of
+ * those before it, the least missed first:
+ *
+ *   0 full
+ *   1 no live motion streams
+ *   2 fall records uploaded in deferred batches; alerts still go out at once
+ *   3 passive-only location: fixes other apps asked for, no GPS or network of our own
+ *   4 batched sampling: accelerometer samples held in the sensor hub and
+ *     delivered once a second, so the CPU wakes once a second instead of fifty
+ *     times
+ *
+ * Detection is never switched off, and the sampling rate is not lowered
+ * either: below 50 Hz the resampled stream misses free falls shorter than
+ * ~100 ms that it catches now (see DegradationPolicyTest). The detector gets the
+ * same samples at every tier, only later.
+ *
+ * Worse conditions raise the tier at once; better ones lower it only after
+ * they have held for STEP_DOWN_DELAY_MS, and the battery thresholds have
+ * some hysteresis, so a phone sitting on a boundary does not flap. Every
+ * transition is logged with its cause. Runs on the scheduler's thread,
+ * which start() expects to be the main thread.
+ */
+public class DegradationPolicy {
+
+    private static final String TAG = "DegradationPolicy";
+
+    public static final int TIER_FULL = 0;
+    public static final int TIER_NO_LIVE_STREAMS = 1;
+    public static final int TIER_DEFERRED_UPLOADS = 2;
+    public static final int TIER_PASSIVE_LOCATION = 3;
+    public static final int TIER_BATCHED_SAMPLING = 4;
+    private static final String[] TIER_NAMES = {
+            "full", "noLiveStreams", "deferredUploads", "passiveLocation", "batchedSampling"};
+
+    // Battery levels, while not charging, at or below which each tier applies
+    private static final int[] BATTERY_PERCENT = {30, 15, 5};
+    private static final int[] BATTERY_TIER = {TIER_DEFERRED_UPLOADS, TIER_PASSIVE_LOCATION, TIER_BATCHED_SAMPLING};
+    private static final int BATTERY_HYSTERESIS = 3; // percent above a threshold before it is let go
+    public static final long STEP_DOWN_DELAY_MS = 60000;
+
+    public interface Listener {
+        void onTierChanged(int tier, int previous, String cause);
+    }
+
+    private final Scheduler scheduler;
+    private final Listener listener;
+
+    private int thermalStatus = 0; // PowerManager.THERMAL_STATUS_NONE
+    private boolean powerSave = false;
+    private int batteryPercent = -1; // unknown
+    private boolean charging = false;
+
+    private volatile int tier = TIER_FULL; // getTier may be called off the main thread
+    private long tierSince;
+    private final long[] msInTier = new long[TIER_NAMES.length];
+    private int transitions = 0;
+    private String stepDownCause;
+
+    private PowerManager powerManager;
+    private PowerManager.OnThermalStatusChangedListener thermalListener; // API 29+
+    private BroadcastReceiver receiver;
+
+    private final Runnable stepDown = new Runnable() {
+        @Override
+        public void run() {
+            int required = requiredTier(thermalStatus, powerSave, batteryPercent, charging, tier);
+            if (required < tier) {
+                setTier(required, stepDownCause);
+            }
+        }
+    };
+
+    public DegradationPolicy(Scheduler scheduler, Listener listener) {
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.tierSince = scheduler.elapsedRealtime();
+    }
+
+    /**
+     * The tier the conditions call for. The current tier only matters for
+     * the battery hysteresis.
+     */
+    public static int requiredTier(int thermalStatus, boolean powerSave, int batteryPercent, boolean charging, int current) {
+        // LIGHT, MODERATE and SEVERE map onto tiers 1-3; CRITICAL and worse onto the last
+        int required = Math.max(0, Math.min(thermalStatus, TIER_BATCHED_SAMPLING));
+        if (powerSave) {
+            required = Math.max(required, TIER_PASSIVE_LOCATION);
+        }
+        if (!charging && batteryPercent >= 0) {
+            for (int i = 0; i < BATTERY_PERCENT.length; i++) {
+                int threshold = BATTERY_PERCENT[i] + (current >= BATTERY_TIER[i] ? BATTERY_HYSTERESIS : 0);
+                if (batteryPercent <= threshold) {
+                    required = Math.max(required, BATTERY_TIER[i]);
+                }
+            }
+        }
+        return required;
+    }
+
+    public static String tierName(int tier) {
+        return TIER_NAMES[tier];
+    }
+
+    public void onThermalStatus(int status) {
+        if (status != thermalStatus) {
+            thermalStatus = status;
+            evaluate("thermal status " + status);
+        }
+    }
+
+    public void onPowerSaveMode(boolean enabled) {
+        if (enabled != powerSave) {
+            powerSave = enabled;
+            evaluate("battery saver " + (enabled ? "on" : "off"));
+        }
+    }
+
+    public void onBattery(int percent, boolean charging) {
+        if (percent != batteryPercent || charging != this.charging) {
+            batteryPercent = percent;
+            this.charging = charging;
+            evaluate("battery " + percent + "%" + (charging ? ", charging" : ""));
+        }
+    }
+
+    private void evaluate(String cause) {
+        int required = requiredTier(thermalStatus, powerSave, batteryPercent, charging, tier);
+        if (required > tier) {
+            scheduler.removeCallbacks(stepDown);
+            stepDownCause = null;
+            setTier(required, cause);
+        } else if (required == tier) {
+            scheduler.removeCallbacks(stepDown);
+            stepDownCause = null;
+        } else {
+            if (stepDownCause == null) {
+                scheduler.postDelayed(stepDown, STEP_DOWN_DELAY_MS);
+            }
+            stepDownCause = cause;
+        }
+    }
+
+    private void setTier(int newTier, String cause) {
+        long now = scheduler.elapsedRealtime();
+        msInTier[tier] += now - tierSince;
+        tierSince = now;
+        int previous = tier;
+        tier = newTier;
+        stepDownCause = null;
+        transitions++;
+        Log.i(TAG, "Tier " + TIER_NAMES[previous] + " -> " + TIER_NAMES[newTier] + " (" + cause + "; thermal "
+                + thermalStatus + ", battery saver " + (powerSave ? "on" : "off") + ", battery "
+                + batteryPercent + "%" + (charging ? " charging" : "") + ")");
+        listener.onTierChanged(newTier, previous, cause);
+    }
+
+    public int getTier() {
+        return tier;
+    }
+
+    public String getTierName() {
+        return TIER_NAMES[tier];
+    }
+
+    public int getTransitions() {
+        return transitions;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tier", TIER_NAMES[tier]);
+        stats.put("transitions", transitions);
+        long now = scheduler.elapsedRealtime();
+        for (int i = 0; i < TIER_NAMES.length; i++) {
+            stats.put(TIER_NAMES[i] + "Ms", msInTier[i] + (i == tier ? now - tierSince : 0));
+        }
+        return stats;
+    }
+
+    /**
+     * Starts watching the device; the current conditions are applied right
+     * away. Call on the main thread.
+     */
+    public void start(Context context) {
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            thermalListener = new PowerManager.OnThermalStatusChangedListener() {
+                @Override
+                public void onThermalStatusChanged(int status) {
+                    onThermalStatus(status);
+                }
+            };
+            onThermalStatus(powerManager.getCurrentThermalStatus());
+            powerManager.addThermalStatusListener(thermalListener);
+        }
+        onPowerSaveMode(powerManager.isPowerSaveMode());
+
+        receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(intent.getAction())) {
+                    onPowerSaveMode(powerManager.isPowerSaveMode());
+                } else if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                    onBatteryChanged(intent);
+                }
+            }
+        };
+        IntentFilter filter = new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        filter.addAction(Intent.ACTION_BATTERY_CHANGED);
+        // Both are protected system broadcasts; the sticky battery one comes back right away
+        Intent battery = context.registerReceiver(receiver, filter);
+        if (battery != null) {
+            onBatteryChanged(battery);
+        }
+        Log.d(TAG, "Watching power state, tier " + TIER_NAMES[tier]);
+    }
+
+    public void stop(Context context) {
+        scheduler.removeCallbacks(stepDown);
+        if (receiver != null) {
+            try {
+                context.unregisterReceiver(receiver);
+            } catch (Exception e) {
+                Log.e(TAG, "Error unregistering power receiver: " + e.getMessage());
+            }
+            receiver = null;
+        }
+        if (thermalListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            powerManager.removeThermalStatusListener(thermalListener);
+            thermalListener = null;
+        }
+    }
+
+    private void onBatteryChanged(Intent intent) {
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level < 0 || scale <= 0) {
+            return;
+        }
+        boolean plugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        onBattery(level * 100 / scale, plugged);
+    }
+}
@@ -0,0 +1,209 @@
+package com.evercare;
+
+import android.hardware.Sensor;
+import android.hardware.SensorDirectChannel;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.MemoryFile;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The phone's accelerometer read straight out of shared memory: the sensor
+ * service writes samples into a SensorDirectChannel ring and this polls it
+ * on the handler's thread at the detector's cadence, with no SensorEvent
+ * or callback per sample. Each poll costs one bulk copy of what is new.
+ *
+ * Where the device has no direct channel for the accelerometer, or the
+ * channel cannot be set up, or it stops delivering, samples come through
+ * the listener path of the given AccelerometerSource instead. The step
+ * counter always uses the listener path.
+ */
+public class DirectChannelSource implements SensorSource {
+
+    private static final String TAG = "DirectChannelSource";
+    private static final int RING_RECORDS = 512; // ~10 s at the nominal 50 Hz of RATE_NORMAL
+    private static final long POLL_INTERVAL_MS = UniformResampler.DEFAULT_PERIOD_MS;
+    private static final long BATCHED_POLL_INTERVAL_MS = 1000; // the ring holds ten times that
+    private static final long STALL_MS = 2000; // awake time with nothing new before falling back
+
+    private final SensorManager sensorManager;
+    private final Handler handler;
+    private final AccelerometerSource listenerPath;
+    private final Sensor accelerometer;
+
+    private Sink sink;
+    private MemoryFile memory;
+    private SensorDirectChannel channel;
+    private DirectReportReader reader;
+    private volatile boolean direct = false;
+    private long lastRecordUptime;
+    private volatile long pollInterval = POLL_INTERVAL_MS;
+    private long polls = 0;
+    private long fallbacks = 0;
+
+    private final Runnable poll = new Runnable() {
+        @Override
+        public void run() {
+            if (!direct) {
+                return;
+            }
+            polls++;
+            long now = SystemClock.uptimeMillis(); // stops in deep sleep, when nothing is written either
+            try {
+                if (reader.poll(sink, AccelerometerSource.NAME) > 0) {
+                    lastRecordUptime = now;
+                } else if (now - lastRecordUptime > STALL_MS) {
+                    fallBack("no records for " + (now - lastRecordUptime) + "ms");
+                    return;
+                }
+            } catch (RuntimeException e) {
+                fallBack(e.getMessage());
+                return;
+            }
+            handler.postDelayed(this, pollInterval);
+        }
+    };
+
+    public DirectChannelSource(SensorManager sensorManager, Handler handler, AccelerometerSource listenerPath) {
+        this.sensorManager = sensorManager;
+        this.handler = handler;
+        this.listenerPath = listenerPath;
+        this.accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+    }
+
+    public static boolean isSupported(SensorManager sensorManager) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return false;
+        }
+        Sensor sensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        return sensor != null
+                && sensor.isDirectChannelTypeSupported(SensorDirectChannel.TYPE_MEMORY_FILE)
+                && sensor.getHighestDirectReportRateLevel() >= SensorDirectChannel.RATE_NORMAL;
+    }
+
+    @Override
+    public String getName() {
+        return AccelerometerSource.NAME;
+    }
+
+    @Override
+    public boolean start(Sink sink) {
+        this.sink = sink;
+        if (!isSupported(sensorManager) || !openChannel()) {
+            Log.i(TAG, "Direct channel not available - using the sensor listener");
+            return listenerPath.start(sink);
+        }
+        listenerPath.startStepCounter();
+        lastRecordUptime = SystemClock.uptimeMillis();
+        handler.post(poll);
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        handler.removeCallbacks(poll);
+        closeChannel();
+        listenerPath.stop();
+    }
+
+    /**
+     * Fewer wakeups: the ring is polled once a second instead of at the
+     * detector's cadence, or the listener path is batched. No sample is
+     * dropped either way.
+     */
+    public void setBatched(final boolean batched) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                pollInterval = batched ? BATCHED_POLL_INTERVAL_MS : POLL_INTERVAL_MS;
+                listenerPath.setBatched(batched);
+                if (direct && !batched) {
+                    // Back to the short cadence now rather than after the pending long wait
+                    handler.removeCallbacks(poll);
+                    handler.post(poll);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(listenerPath.getStats());
+        stats.put("mode", direct ? "direct" : "listener");
+        stats.put("fallbacks", fallbacks);
+        stats.put("pollIntervalMs", pollInterval);
+        DirectReportReader current = reader;
+        if (current != null) {
+            stats.put("directSamples", current.getDelivered());
+            stats.put("directLost", current.getLost());
+            stats.put("directTorn", current.getTorn());
+            stats.put("directForeign", current.getForeign());
+            stats.put("directPolls", polls);
+        }
+        return stats;
+    }
+
+    private boolean openChannel() {
+        try {
+            memory = new MemoryFile("evercare-accelerometer", RING_RECORDS * DirectReportReader.RECORD_SIZE);
+            channel = sensorManager.createDirectChannel(memory);
+            int token = channel.configure(accelerometer, SensorDirectChannel.RATE_NORMAL);
+            if (token <= 0) {
+                throw new IllegalStateException("configure returned " + token);
+            }
+            final MemoryFile ring = memory;
+            reader = new DirectReportReader(new DirectReportReader.Region() {
+                @Override
+                public int size() {
+                    return ring.length();
+                }
+
+                @Override
+                public void read(int offset, byte[] dst, int dstOffset, int count) {
+                    try {
+                        ring.readBytes(dst, offset, dstOffset, count);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Direct channel memory unreadable: " + e.getMessage());
+                    }
+                }
+            }, token);
+            direct = true;
+            Log.d(TAG, "Direct channel configured, token " + token);
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "Could not set up the direct channel: " + e.getMessage());
+            closeChannel();
+            return false;
+        }
+    }
+
+    private void closeChannel() {
+        direct = false;
+        if (channel != null) {
+            try {
+                channel.configure(accelerometer, SensorDirectChannel.RATE_STOP);
+            } catch (Exception e) {
+                Log.w(TAG, "Error stopping the direct channel: " + e.getMessage());
+            }
+            channel.close();
+            channel = null;
+        }
+        if (memory != null) {
+            memory.close();
+            memory = null;
+        }
+    }
+
+    // On the handler's thread
+    private void fallBack(String reason) {
+        Log.w(TAG, "Direct channel failed (" + reason + ") - switching to the sensor listener");
+        fallbacks++;
+        closeChannel();
+        listenerPath.startAccelerometer(sink);
+    }
+}
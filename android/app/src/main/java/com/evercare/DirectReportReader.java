@@ -0,0 +1,237 @@
+package com.evercare;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads accelerometer records out of a SensorDirectChannel ring. The
+ * sensor service writes fixed records one after another, wrapping at the
+ * end of the shared memory, all native (little) endian:
+ *
+ *   int32   record size (104)
+ *   int32   report token, as returned by configure()
+ *   int32   sensor type
+ *   uint32  atomic counter: 1, 2, 3, ... wrapping to 1; 0 = never written
+ *   int64   timestamp, elapsedRealtime ns
+ *   float   data[16]; x, y, z in m/s² for the accelerometer
+ *   int32   reserved[4]
+ *
+ * poll() copies only the records written since the last poll, in one bulk
+ * read per contiguous run, into a reused buffer and hands them to the sink:
+ * no object per sample. The counter tells a new record from an old one;
+ * one further ahead than expected means the writer lapped the reader: the
+ * reader then moves just past the oldest record left, out of the writer's
+ * way, and counts what it skipped as lost. A copied run is only trusted if
+ * the slot before it still holds the run's predecessor afterwards: the
+ * writer fills slots in order, so it cannot have been rewriting the run.
+ *
+ * Plain Java, so the format can be checked against a stand-in writer.
+ */
+public class DirectReportReader {
+
+    public static final int RECORD_SIZE = 104;
+    public static final int TYPE_ACCELEROMETER = 1; // Sensor.TYPE_ACCELEROMETER
+
+    private static final int OFFSET_SIZE = 0;
+    private static final int OFFSET_TOKEN = 4;
+    private static final int OFFSET_TYPE = 8;
+    private static final int OFFSET_COUNTER = 12;
+    private static final int OFFSET_TIMESTAMP = 16;
+    private static final int OFFSET_DATA = 24;
+    private static final int MAX_RECORDS_PER_READ = 64;
+    public static final int RESYNC_MARGIN = 8; // after a lap, skip 1/8 of the ring past the oldest record
+
+    /**
+     * The shared memory, or a stand-in for it.
+     */
+    public interface Region {
+        int size();
+
+        void read(int offset, byte[] dst, int dstOffset, int count);
+    }
+
+    /**
+     * A Region over a ByteBuffer, e.g. one a test writer fills.
+     */
+    public static class BufferRegion implements Region {
+        private final ByteBuffer buffer;
+
+        public BufferRegion(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int size() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public void read(int offset, byte[] dst, int dstOffset, int count) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(dst, dstOffset, count);
+        }
+    }
+
+    private final Region region;
+    private final int token;
+    private final int capacity; // records in the ring
+    private final byte[] chunk = new byte[MAX_RECORDS_PER_READ * RECORD_SIZE];
+    private final ByteBuffer records = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] guard = new byte[4];
+
+    private int slot = 0;
+    private int expected = 1;
+    private long delivered = 0;
+    private long lost = 0;
+    private long torn = 0;
+    private long foreign = 0;
+
+    public DirectReportReader(Region region, int token) {
+        this.region = region;
+        this.token = token;
+        this.capacity = region.size() / RECORD_SIZE;
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Ring holds fewer than two records");
+        }
+    }
+
+    /**
+     * Delivers every record written since the last call. Returns how many
+     * accelerometer samples reached the sink.
+     */
+    public int poll(SensorSource.Sink sink, String source) {
+        int count = 0;
+        int retries = 0;
+        while (true) {
+            int run = Math.min(MAX_RECORDS_PER_READ, capacity - slot);
+            region.read(slot * RECORD_SIZE, chunk, 0, run * RECORD_SIZE);
+
+            // The counter sits before the data, so a new counter is read before its record
+            int taken = 0;
+            boolean jumped = false;
+            while (taken < run) {
+                int counter = records.getInt(taken * RECORD_SIZE + OFFSET_COUNTER);
+                if (counter != next(expected, taken)) {
+                    jumped = counter != 0 && counter - next(expected, taken) > 0;
+                    break;
+                }
+                taken++;
+            }
+            if (taken == 0) {
+                if (jumped && retries++ < 3) {
+                    resync();
+                    continue;
+                }
+                return count;
+            }
+
+            // A writer a whole ring ahead may have been rewriting the run while it was
+            // copied; it would have rewritten the slot before the run first
+            region.read((slot == 0 ? capacity - 1 : slot - 1) * RECORD_SIZE + OFFSET_COUNTER, guard, 0, 4);
+            int before = (guard[0] & 0xff) | (guard[1] & 0xff) << 8 | (guard[2] & 0xff) << 16 | guard[3] << 24;
+            boolean intact = expected == 1 ? before == 0 || before == -1 : before == expected - 1;
+            if (!intact) {
+                torn++;
+                if (retries++ >= 3) {
+                    return count;
+                }
+                resync();
+                continue;
+            }
+
+            expected = next(expected, taken);
+            for (int i = 0; i < taken; i++) {
+                int base = i * RECORD_SIZE;
+                if (records.getInt(base + OFFSET_SIZE) != RECORD_SIZE
+                        || records.getInt(base + OFFSET_TOKEN) != token
+                        || records.getInt(base + OFFSET_TYPE) != TYPE_ACCELEROMETER) {
+                    foreign++;
+                    continue;
+                }
+                sink.onSample(source,
+                        records.getFloat(base + OFFSET_DATA),
+                        records.getFloat(base + OFFSET_DATA + 4),
+                        records.getFloat(base + OFFSET_DATA + 8),
+                        records.getLong(base + OFFSET_TIMESTAMP) / 1000000L);
+                delivered++;
+                count++;
+            }
+            slot = (slot + taken) % capacity;
+            if (taken < run) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * After a lap: moves to a record near the oldest still in the ring,
+     * found after the newest, and counts what is skipped as lost.
+     */
+    private void resync() {
+        int newestSlot = -1;
+        int newest = 0;
+        for (int start = 0; start < capacity; start += MAX_RECORDS_PER_READ) {
+            int run = Math.min(MAX_RECORDS_PER_READ, capacity - start);
+            region.read(start * RECORD_SIZE, chunk, 0, run * RECORD_SIZE);
+            for (int i = 0; i < run; i++) {
+                int counter = records.getInt(i * RECORD_SIZE + OFFSET_COUNTER);
+                if (counter != 0 && (newestSlot < 0 || counter - newest > 0)) {
+                    newest = counter;
+                    newestSlot = start + i;
+                }
+            }
+        }
+        if (newestSlot < 0 || newest - expected < 0) {
+            return;
+        }
+        // The ring is full once it has been lapped, so the slot after the newest holds the
+        // oldest; that is the writer's next slot, so start a little later
+        int oldest = newest - capacity + 1;
+        int resume = oldest + capacity / RESYNC_MARGIN;
+        if (resume - newest > 0) {
+            resume = newest; // a tiny ring
+        }
+        if (resume - expected > 0) {
+            lost += (resume - expected) & 0xffffffffL;
+            expected = resume;
+        }
+        slot = (int) ((newestSlot + 1 + (long) (expected - oldest)) % capacity);
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Records overwritten before they were read.
+     */
+    public long getLost() {
+        return lost;
+    }
+
+    public long getTorn() {
+        return torn;
+    }
+
+    /**
+     * Records of another sensor or report, or malformed.
+     */
+    public long getForeign() {
+        return foreign;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public static int next(int counter) {
+        return counter == -1 ? 1 : counter + 1; // 0xffffffff wraps to 1, never 0
+    }
+
+    private static int next(int counter, int steps) {
+        int result = counter + steps;
+        // Crossing the wrap skips 0
+        return (counter < 0 && result >= 0) || result == 0 ? result + 1 : result;
+    }
+}
@@ -0,0 +1,404 @@
+package com.evercare;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.Process;
+import android.os.SystemClock;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the detection service costs, hour by hour for the last week: CPU
+ * time of the process and of the sensor, socket and main threads, time
+ * with location updates on, time the device was held awake for our alarms
+ * and boot work, how long sensors ran at each sample rate, and counts of
+ * notifications, broadcasts and alarms.
+ *
+ * Nothing here runs per sample except RateMeter, which is a counter and a
+ * compare. Thread CPU is read from /proc at a checkpoint every 15 minutes;
+ * the checkpoint measures its own CPU time into ACCOUNTING_US.
+ */
+public class EnergyLedger {
+
+    private static final String TAG = "EnergyLedger";
+    private static final String FILE_NAME = "energy_ledger.bin";
+    private static final int FILE_VERSION = 1;
+    private static final long CHECKPOINT_INTERVAL_MS = 15 * 60 * 1000;
+    private static final long RATE_WINDOW_MS = 10000;
+    private static final long RATE_STALE_MS = 3 * RATE_WINDOW_MS;
+
+    public static final int CPU_PROCESS_MS = 0;
+    public static final int CPU_SENSOR_MS = 1;
+    public static final int CPU_SOCKET_MS = 2;
+    public static final int CPU_MAIN_MS = 3;
+    public static final int LOCATION_GPS_MS = 4;
+    public static final int LOCATION_NETWORK_MS = 5;
+    public static final int WAKE_MS = 6;
+    public static final int WAKEUPS = 7;
+    public static final int NOTIFICATIONS = 8;
+    public static final int BROADCASTS = 9;
+    public static final int ALARMS = 10;
+    public static final int ACCOUNTING_US = 11;
+    // Sensor time per rate class, summed over sources; a source counts in the first class at or above its rate
+    public static final int RATE_BASE = 12;
+    public static final int[] RATE_CLASSES_HZ = {5, 25, 60, 120, 250, 500};
+    public static final int FIELDS = RATE_BASE + RATE_CLASSES_HZ.length;
+
+    private static final String[] FIELD_NAMES = {
+        "cpuProcessMs", "cpuSensorMs", "cpuSocketMs", "cpuMainMs",
+        "locationGpsMs", "locationNetworkMs", "wakeMs", "wakeups",
+        "notifications", "broadcasts", "alarms", "accountingUs",
+    };
+
+    /**
+     * Measures the sample rate of one source from its own timestamps and
+     * reports it to the ledger every 10 seconds. Use from one thread.
+     */
+    public static class RateMeter {
+        private final EnergyLedger ledger;
+        private final String source;
+        private long windowStartMs = -1;
+        private int count = 0;
+
+        RateMeter(EnergyLedger ledger, String source) {
+            this.ledger = ledger;
+            this.source = source;
+        }
+
+        public void onSample(long timestampMs) {
+            count++;
+            if (windowStartMs < 0) {
+                windowStartMs = timestampMs;
+            } else if (timestampMs - windowStartMs >= RATE_WINDOW_MS) {
+                ledger.onSensorRate(source, count * 1000f / (timestampMs - windowStartMs));
+                windowStartMs = timestampMs;
+                count = 0;
+            }
+        }
+    }
+
+    private static class OpenRate {
+        int field;
+        long sinceElapsed;
+        long lastReportElapsed;
+    }
+
+    private static EnergyLedger instance;
+
+    private final Context context;
+    private final HourlyBuckets buckets = new HourlyBuckets(FIELDS);
+    private final long clockTicksPerSecond;
+    private final Map<Integer, Integer> threadFields = new HashMap<>(); // tid -> CPU field
+    private final Map<Integer, Long> threadTicks = new HashMap<>(); // tid -> ticks at the last checkpoint
+    private final long[] locationSince = {-1, -1}; // elapsedRealtime, per LOCATION_ field, -1 if off
+    private final Map<String, OpenRate> sensorRates = new HashMap<>();
+    private long lastProcessCpuMs;
+    private ScheduledExecutorService scheduler;
+
+    public static synchronized EnergyLedger getInstance(Context context) {
+        if (instance == null) {
+            instance = new EnergyLedger(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private EnergyLedger(Context context) {
+        this.context = context;
+        long ticks = 100;
+        try {
+            ticks = Os.sysconf(OsConstants._SC_CLK_TCK);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read clock ticks, assuming 100/s: " + e.getMessage());
+        }
+        this.clockTicksPerSecond = ticks > 0 ? ticks : 100;
+        this.lastProcessCpuMs = Process.getElapsedCpuTime();
+        // The main thread's id is the process id
+        registerThread(Process.myPid(), CPU_MAIN_MS);
+        load();
+    }
+
+    /**
+     * Starts the periodic checkpoint. The executor only runs while the
+     * device is awake; it never wakes it.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                checkpoint();
+                save();
+            }
+        }, CHECKPOINT_INTERVAL_MS, CHECKPOINT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes open intervals, records the last CPU deltas and saves.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        checkpoint();
+        save();
+    }
+
+    /**
+     * Attributes the calling thread's CPU time to field from now on.
+     */
+    public void registerCurrentThread(int field) {
+        registerThread(Process.myTid(), field);
+    }
+
+    public synchronized void count(int field) {
+        buckets.add(field, System.currentTimeMillis(), 1);
+    }
+
+    /**
+     * Time the device was kept awake for us, e.g. an alarm receiver or boot work.
+     */
+    public synchronized void onWake(long heldMs) {
+        long now = System.currentTimeMillis();
+        buckets.addInterval(WAKE_MS, now - heldMs, now);
+        buckets.add(WAKEUPS, now, 1);
+    }
+
+    /**
+     * field is LOCATION_GPS_MS or LOCATION_NETWORK_MS.
+     */
+    public synchronized void onLocationActive(int field, boolean active) {
+        int index = field - LOCATION_GPS_MS;
+        long now = SystemClock.elapsedRealtime();
+        if (active && locationSince[index] < 0) {
+            locationSince[index] = now;
+        } else if (!active && locationSince[index] >= 0) {
+            accrue(field, locationSince[index], now);
+            locationSince[index] = -1;
+        }
+    }
+
+    public RateMeter newRateMeter(String source) {
+        return new RateMeter(this, source);
+    }
+
+    public synchronized void onSensorStopped(String source) {
+        OpenRate open = sensorRates.remove(source);
+        if (open != null) {
+            accrue(open.field, open.sinceElapsed, SystemClock.elapsedRealtime());
+        }
+    }
+
+    synchronized void onSensorRate(String source, float hz) {
+        int field = RATE_BASE + RATE_CLASSES_HZ.length - 1;
+        for (int i = 0; i < RATE_CLASSES_HZ.length; i++) {
+            if (hz <= RATE_CLASSES_HZ[i]) {
+                field = RATE_BASE + i;
+                break;
+            }
+        }
+        long now = SystemClock.elapsedRealtime();
+        OpenRate open = sensorRates.get(source);
+        if (open == null) {
+            // The first report covers the window it was measured over
+            open = new OpenRate();
+            open.field = field;
+            open.sinceElapsed = now - RATE_WINDOW_MS;
+            sensorRates.put(source, open);
+        } else if (open.field != field) {
+            accrue(open.field, open.sinceElapsed, now);
+            open.field = field;
+            open.sinceElapsed = now;
+        }
+        open.lastReportElapsed = now;
+    }
+
+    /**
+     * Brings the current hour up to date: CPU since the last checkpoint
+     * and the open location and sensor intervals so far.
+     */
+    public void checkpoint() {
+        long startCpuNs = Debug.threadCpuTimeNanos();
+        Map<Integer, Integer> threads;
+        synchronized (this) {
+            threads = new HashMap<>(threadFields);
+        }
+        // /proc is read outside the lock; the sensor thread may be reporting a rate meanwhile
+        Map<Integer, Long> ticks = new HashMap<>();
+        for (Integer tid : threads.keySet()) {
+            ticks.put(tid, readThreadTicks(tid));
+        }
+        long processCpuMs = Process.getElapsedCpuTime();
+
+        synchronized (this) {
+            long wallNow = System.currentTimeMillis();
+            long now = SystemClock.elapsedRealtime();
+            buckets.add(CPU_PROCESS_MS, wallNow, Math.max(0, processCpuMs - lastProcessCpuMs));
+            lastProcessCpuMs = processCpuMs;
+
+            List<Integer> gone = new ArrayList<>();
+            for (Map.Entry<Integer, Long> entry : ticks.entrySet()) {
+                Integer tid = entry.getKey();
+                Long previous = threadTicks.get(tid);
+                if (entry.getValue() < 0) {
+                    gone.add(tid); // the thread has exited
+                    continue;
+                }
+                if (previous != null && previous >= 0) {
+                    long ms = (entry.getValue() - previous) * 1000L / clockTicksPerSecond;
+                    buckets.add(threads.get(tid), wallNow, Math.max(0, ms));
+                }
+                threadTicks.put(tid, entry.getValue());
+            }
+            for (Integer tid : gone) {
+                threadFields.remove(tid);
+                threadTicks.remove(tid);
+            }
+
+            for (int i = 0; i < locationSince.length; i++) {
+                if (locationSince[i] >= 0) {
+                    accrue(LOCATION_GPS_MS + i, locationSince[i], now);
+                    locationSince[i] = now;
+                }
+            }
+            List<String> stale = new ArrayList<>();
+            for (Map.Entry<String, OpenRate> entry : sensorRates.entrySet()) {
+                OpenRate open = entry.getValue();
+                if (now - open.lastReportElapsed > RATE_STALE_MS) {
+                    // The source went quiet without saying so - stop counting at its last report
+                    accrue(open.field, open.sinceElapsed, open.lastReportElapsed);
+                    stale.add(entry.getKey());
+                } else {
+                    accrue(open.field, open.sinceElapsed, now);
+                    open.sinceElapsed = now;
+                }
+            }
+            for (String source : stale) {
+                sensorRates.remove(source);
+            }
+            buckets.add(ACCOUNTING_US, wallNow, (Debug.threadCpuTimeNanos() - startCpuNs) / 1000L);
+        }
+    }
+
+    /**
+     * The last days, oldest first: date (yyyy-MM-dd, local) and one entry
+     * per counter, with sensor time per rate class as sensorHz<class>Ms.
+     */
+    public List<Map<String, Object>> getDailyBreakdown(int days) {
+        checkpoint();
+        long now = System.currentTimeMillis();
+        TimeZone timeZone = TimeZone.getDefault();
+        long[][] totals;
+        synchronized (this) {
+            totals = buckets.daily(days, now, timeZone);
+        }
+        long[] starts = HourlyBuckets.dayStarts(days, now, timeZone);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        dateFormat.setTimeZone(timeZone);
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int d = 0; d < days; d++) {
+            Map<String, Object> day = new HashMap<>();
+            day.put("date", dateFormat.format(new Date(starts[d])));
+            for (int f = 0; f < FIELDS; f++) {
+                day.put(fieldName(f), totals[d][f]);
+            }
+            result.add(day);
+        }
+        return result;
+    }
+
+    public static String fieldName(int field) {
+        if (field < RATE_BASE) {
+            return FIELD_NAMES[field];
+        }
+        return "sensorHz" + RATE_CLASSES_HZ[field - RATE_BASE] + "Ms";
+    }
+
+    private synchronized void registerThread(int tid, int field) {
+        threadFields.put(tid, field);
+        threadTicks.put(tid, readThreadTicks(tid));
+    }
+
+    // Caller holds the lock
+    private void accrue(int field, long fromElapsed, long toElapsed) {
+        if (toElapsed <= fromElapsed) {
+            return;
+        }
+        long wallNow = System.currentTimeMillis();
+        long elapsedNow = SystemClock.elapsedRealtime();
+        buckets.addInterval(field, wallNow - (elapsedNow - fromElapsed), wallNow - (elapsedNow - toElapsed));
+    }
+
+    // utime + stime of one of our threads in clock ticks, -1 if it is gone
+    private static long readThreadTicks(int tid) {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/task/" + tid + "/stat"))) {
+            String line = reader.readLine();
+            // The thread name in parentheses may contain spaces; fields are counted after it
+            String[] fields = line.substring(line.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void load() {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Unknown energy ledger file version - starting empty");
+                return;
+            }
+            synchronized (this) {
+                buckets.read(in);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading energy ledger: " + e.getMessage());
+        }
+    }
+
+    private synchronized void save() {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            buckets.write(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving energy ledger: " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Could not replace " + file);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import java.util.List;
+import java.util.Map;
+
+public class EnergyReportModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "EnergyReportModule";
+    private static final int MAX_DAYS = 7;
+
+    public EnergyReportModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "EnergyReport";
+    }
+
+    /**
+     * Per-day battery accounting, oldest first: {days: [{date, cpuProcessMs,
+     * cpuSensorMs, ..., sensorHz60Ms, ...}], accountingShare} where
+     * accountingShare is the CPU spent on the accounting itself as a
+     * fraction of the process's CPU. At most 7 days are kept.
+     */
+    @ReactMethod
+    public void getBreakdown(int days, Promise promise) {
+        try {
+            List<Map<String, Object>> breakdown = EnergyLedger.getInstance(getReactApplicationContext())
+                    .getDailyBreakdown(Math.max(1, Math.min(MAX_DAYS, days)));
+            WritableArray array = Arguments.createArray();
+            double accountingUs = 0;
+            double processMs = 0;
+            for (Map<String, Object> day : breakdown) {
+                WritableMap map = Arguments.createMap();
+                for (Map.Entry<String, Object> entry : day.entrySet()) {
+                    Object value = entry.getValue();
+                    if (value instanceof Number) {
+                        map.putDouble(entry.getKey(), ((Number) value).doubleValue());
+                    } else {
+                        map.putString(entry.getKey(), String.valueOf(value));
+                    }
+                }
+                accountingUs += ((Number) day.get("accountingUs")).doubleValue();
+                processMs += ((Number) day.get("cpuProcessMs")).doubleValue();
+                array.pushMap(map);
+            }
+            WritableMap result = Arguments.createMap();
+            result.putArray("days", array);
+            result.putDouble("accountingShare", processMs > 0 ? accountingUs / 1000.0 / processMs : 0);
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading energy breakdown: " + e.getMessage());
+            promise.reject("ENERGY_REPORT_ERROR", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.evercare;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Single-segment SMS encoding of a fall alert, for when there is no data
+ * connection. The message is a short human-readable line (time, place and a
+ * map link) followed by a machine-readable tag the caretaker's app expands:
+ *
+ *   EverCare: possible fall at 03:12, Home https://maps.google.com/?q=31.78012,35.21004 #EVC:EAAb...
+ *
+ * Tag payload, big endian, then base64 without padding:
+ *   byte    version (high nibble) | flags (bit 0: has location)
+ *   uint32  seconds since 2024-01-01T00:00:00Z
+ *   uint16  acceleration, 0.01 m/s²
+ *   uint16  duration, ms (saturating)
+ *   uint24  latitude, (lat + 90) / 180 scaled to 24 bits     } only with
+ *   uint24  longitude, (lon + 180) / 360 scaled to 24 bits   } the location
+ *   uint8   accuracy, 4 m steps (saturating)                 } flag
+ *   uint16  CRC-16/CCITT-FALSE over everything before it
+ *
+ * 24-bit coordinates are ~1.2 m of latitude and ~2.4 m of longitude at the
+ * equator. Everything is GSM 7-bit default alphabet, so the whole message
+ * stays within one 160 character segment.
+ */
+public final class FallAlertCodec {
+
+    public static final int VERSION = 1;
+    public static final int MAX_SMS_LENGTH = 160;
+    public static final String TAG_MARKER = "#EVC:";
+
+    private static final long EPOCH_BASE_SECONDS = 1704067200L; // 2024-01-01T00:00:00Z
+    private static final int FLAG_LOCATION = 0x01;
+    private static final int COORDINATE_MAX = (1 << 24) - 1;
+    private static final float ACCURACY_STEP = 4f;
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    public static class Alert {
+        public final long timestamp; // epoch milliseconds, whole seconds after decoding
+        public final float acceleration;
+        public final long duration;
+        public final boolean hasLocation;
+        public final double latitude;
+        public final double longitude;
+        public final float accuracy;
+
+        public Alert(long timestamp, float acceleration, long duration,
+                     boolean hasLocation, double latitude, double longitude, float accuracy) {
+            this.timestamp = timestamp;
+            this.acceleration = acceleration;
+            this.duration = duration;
+            this.hasLocation = hasLocation;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+        }
+    }
+
+    private FallAlertCodec() {
+    }
+
+    /**
+     * The full SMS text. place may be null; characters outside plain GSM
+     * text are dropped from it and it is shortened to fit.
+     */
+    public static String encode(Alert alert, String place, TimeZone timeZone) {
+        String tag = TAG_MARKER + encodeTag(alert);
+
+        SimpleDateFormat clock = new SimpleDateFormat("HH:mm", Locale.US);
+        clock.setTimeZone(timeZone);
+        StringBuilder text = new StringBuilder("EverCare: possible fall at ")
+                .append(clock.format(new Date(alert.timestamp)));
+
+        String map = "";
+        if (alert.hasLocation) {
+            Alert q = decodeTag(encodeTag(alert)); // link to the same point the tag carries
+            map = String.format(Locale.US, " https://maps.google.com/?q=%.5f,%.5f", q.latitude, q.longitude);
+        }
+
+        String cleanPlace = gsmSafe(place);
+        int room = MAX_SMS_LENGTH - text.length() - map.length() - 1 - tag.length() - 2;
+        if (!cleanPlace.isEmpty() && room > 3) {
+            if (cleanPlace.length() > room) {
+                cleanPlace = cleanPlace.substring(0, room - 1).trim() + ".";
+            }
+            text.append(", ").append(cleanPlace);
+        }
+        return text.append(map).append(' ').append(tag).toString();
+    }
+
+    /**
+     * The alert carried by a message, or null if it has no valid tag.
+     */
+    public static Alert decode(String sms) {
+        if (sms == null) {
+            return null;
+        }
+        int start = sms.lastIndexOf(TAG_MARKER);
+        if (start < 0) {
+            return null;
+        }
+        start += TAG_MARKER.length();
+        int end = start;
+        while (end < sms.length() && base64Value(sms.charAt(end)) >= 0) {
+            end++;
+        }
+        return decodeTag(sms.substring(start, end));
+    }
+
+    public static String encodeTag(Alert alert) {
+        byte[] payload = new byte[alert.hasLocation ? 18 : 11];
+        int p = 0;
+        payload[p++] = (byte) ((VERSION << 4) | (alert.hasLocation ? FLAG_LOCATION : 0));
+        long seconds = clamp(alert.timestamp / 1000 - EPOCH_BASE_SECONDS, 0, 0xFFFFFFFFL);
+        p = put(payload, p, seconds, 4);
+        p = put(payload, p, clamp(Math.round(alert.acceleration * 100.0), 0, 0xFFFF), 2);
+        p = put(payload, p, clamp(alert.duration, 0, 0xFFFF), 2);
+        if (alert.hasLocation) {
+            p = put(payload, p, clamp(Math.round((alert.latitude + 90) / 180 * COORDINATE_MAX), 0, COORDINATE_MAX), 3);
+            p = put(payload, p, clamp(Math.round((alert.longitude + 180) / 360 * COORDINATE_MAX), 0, COORDINATE_MAX), 3);
+            p = put(payload, p, clamp((long) Math.ceil(alert.accuracy / ACCURACY_STEP), 0, 0xFF), 1);
+        }
+        put(payload, p, crc16(payload, p), 2);
+        return toBase64(payload);
+    }
+
+    public static Alert decodeTag(String tag) {
+        byte[] payload = fromBase64(tag);
+        if (payload == null || payload.length < 11) {
+            return null;
+        }
+        int header = payload[0] & 0xFF;
+        if ((header >>> 4) != VERSION) {
+            return null; // A newer sender; an updated app will read it
+        }
+        boolean hasLocation = (header & FLAG_LOCATION) != 0;
+        int length = hasLocation ? 18 : 11;
+        if (payload.length != length || crc16(payload, length - 2) != get(payload, length - 2, 2)) {
+            return null;
+        }
+
+        long timestamp = (get(payload, 1, 4) + EPOCH_BASE_SECONDS) * 1000;
+        float acceleration = get(payload, 5, 2) / 100f;
+        long duration = get(payload, 7, 2);
+        if (!hasLocation) {
+            return new Alert(timestamp, acceleration, duration, false, 0, 0, 0);
+        }
+        double latitude = get(payload, 9, 3) * 180.0 / COORDINATE_MAX - 90;
+        double longitude = get(payload, 12, 3) * 360.0 / COORDINATE_MAX - 180;
+        float accuracy = get(payload, 15, 1) * ACCURACY_STEP;
+        return new Alert(timestamp, acceleration, duration, true, latitude, longitude, accuracy);
+    }
+
+    // Plain ASCII minus the characters that are escapes or missing in the GSM default alphabet
+    static String gsmSafe(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c < 0x7F && "[]{}\\^~|`#".indexOf(c) < 0) {
+                out.append(c);
+            }
+        }
+        return out.toString().replaceAll(" {2,}", " ").trim();
+    }
+
+    static int crc16(byte[] data, int length) {
+        int crc = 0xFFFF;
+        for (int i = 0; i < length; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int put(byte[] out, int offset, long value, int bytes) {
+        for (int i = bytes - 1; i >= 0; i--) {
+            out[offset++] = (byte) (value >>> (8 * i));
+        }
+        return offset;
+    }
+
+    private static long get(byte[] in, int offset, int bytes) {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value = (value << 8) | (in[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static String toBase64(byte[] data) {
+        StringBuilder out = new StringBuilder((data.length * 4 + 2) / 3);
+        for (int i = 0; i < data.length; i += 3) {
+            int n = (data[i] & 0xFF) << 16;
+            if (i + 1 < data.length) {
+                n |= (data[i + 1] & 0xFF) << 8;
+            }
+            if (i + 2 < data.length) {
+                n |= data[i + 2] & 0xFF;
+            }
+            int chars = Math.min(4, (data.length - i) * 8 / 6 + 1);
+            for (int j = 0; j < chars; j++) {
+                out.append(BASE64[(n >>> (18 - 6 * j)) & 0x3F]);
+            }
+        }
+        return out.toString();
+    }
+
+    private static byte[] fromBase64(String text) {
+        if (text.length() % 4 == 1) {
+            return null;
+        }
+        byte[] out = new byte[text.length() * 6 / 8];
+        int buffer = 0;
+        int bits = 0;
+        int o = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int v = base64Value(text.charAt(i));
+            if (v < 0) {
+                return null;
+            }
+            buffer = (buffer << 6) | v;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out[o++] = (byte) (buffer >>> bits);
+            }
+        }
+        // Leftover bits must be zero, so each payload has exactly one spelling
+        if ((buffer & ((1 << bits) - 1)) != 0) {
+            return null;
+        }
+        return out;
+    }
+
+    private static int base64Value(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        } else if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        } else if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        } else if (c == '+') {
+            return 62;
+        } else if (c == '/') {
+            return 63;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,107 @@
+package com.evercare;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.os.Build;
+import android.telephony.SmsManager;
+import android.util.Log;
+import androidx.core.content.ContextCompat;
+import java.util.TimeZone;
+
+/**
+ * Sends the compact fall alert by SMS. The Firestore record of a fall only
+ * reaches the caretaker once there is data again; an SMS only needs cellular
+ * coverage and goes out the moment the fall is detected.
+ */
+public class FallAlertSms {
+
+    private static final String TAG = "FallAlertSms";
+
+    /**
+     * Where messages go. The real one wraps SmsManager; tests swap in one
+     * that only records them.
+     */
+    public interface Transport {
+        void send(String destination, String text) throws Exception;
+    }
+
+    private final Transport transport;
+
+    private volatile long sentCount = 0;
+    private volatile long failedCount = 0;
+
+    public FallAlertSms(Context context) {
+        this(smsManagerTransport(context.getApplicationContext()));
+    }
+
+    public FallAlertSms(Transport transport) {
+        this.transport = transport;
+    }
+
+    public static Transport smsManagerTransport(final Context context) {
+        return new Transport() {
+            @Override
+            public void send(String destination, String text) throws Exception {
+                if (ContextCompat.checkSelfPermission(context, android.Manifest.permission.SEND_SMS)
+                        != PackageManager.PERMISSION_GRANTED) {
+                    throw new SecurityException("SEND_SMS not granted");
+                }
+                SmsManager smsManager = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                        ? context.getSystemService(SmsManager.class)
+                        : SmsManager.getDefault();
+                smsManager.sendTextMessage(destination, null, text, null, null);
+            }
+        };
+    }
+
+    /**
+     * True if the active network has working internet access, i.e. the
+     * Firestore upload can be expected to go through.
+     */
+    public static boolean hasDataConnection(Context context) {
+        try {
+            ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkCapabilities capabilities = connectivity.getNetworkCapabilities(connectivity.getActiveNetwork());
+            return capabilities != null
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        } catch (Exception e) {
+            Log.e(TAG, "Error checking connectivity: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Encodes the fall and sends it as one SMS. Returns false if there is no
+     * number or the transport failed, e.g. without the SEND_SMS permission.
+     */
+    public boolean send(String phoneNumber, FallEvent event) {
+        if (phoneNumber == null || phoneNumber.trim().isEmpty()) {
+            Log.w(TAG, "No caretaker number - not sending SMS alert");
+            return false;
+        }
+        FallAlertCodec.Alert alert = new FallAlertCodec.Alert(event.timestamp, event.acceleration, event.duration,
+                event.hasLocation, event.latitude, event.longitude, event.accuracy);
+        String text = FallAlertCodec.encode(alert, event.place != null ? event.place : event.address, TimeZone.getDefault());
+        try {
+            transport.send(phoneNumber.trim(), text);
+            sentCount++;
+            Log.i(TAG, "SMS alert sent for " + event.id + " (" + text.length() + " chars)");
+            return true;
+        } catch (Exception e) {
+            failedCount++;
+            Log.e(TAG, "Error sending SMS alert: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+}
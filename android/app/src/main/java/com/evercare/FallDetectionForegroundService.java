@@ -41,6 +41,14 @@ public class FallDetectionForegroundService extends Service {
             startForeground(NOTIFICATION_ID, notification);
         }
         
+        // In the foreground the app may start the detection service, which a
+        // start from the boot receiver alone is not allowed to
+        try {
+            startService(new Intent(this, BackgroundService.class));
+        } catch (Exception e) {
+            Log.e(TAG, "Could not start fall detection: " + e.getMessage());
+        }
+        
         return START_STICKY; // Service will be restarted if killed
     }
 
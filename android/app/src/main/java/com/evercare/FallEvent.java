@@ -0,0 +1,48 @@
+package com.evercare;
+
+/**
+ * One detected fall, as queued for upload. The id is derived from the device,
+ * the boot it happened in and the sensor timestamp of the detection, so the
+ * same fall always maps to the same Firestore document.
+ */
+public class FallEvent {
+
+    public final String id;
+    public final long timestamp; // wall clock, milliseconds
+    public final float acceleration;
+    public final long duration;
+    public final boolean hasLocation;
+    public final double latitude;
+    public final double longitude;
+    public final float accuracy;
+    public final String provider;
+    public final long locationTimestamp;
+    public final String place; // known place the fall happened at, or null
+    public final String address; // cached street address, or null
+    public final long enqueuedAt; // elapsedRealtime when queued, for upload latency
+    public final String powerTier; // DegradationPolicy tier in effect at detection, or null if not known
+
+    public FallEvent(String id, long timestamp, float acceleration, long duration,
+                     boolean hasLocation, double latitude, double longitude, float accuracy,
+                     String provider, long locationTimestamp, String place, String address,
+                     long enqueuedAt, String powerTier) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.acceleration = acceleration;
+        this.duration = duration;
+        this.hasLocation = hasLocation;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.provider = provider;
+        this.locationTimestamp = locationTimestamp;
+        this.place = place;
+        this.address = address;
+        this.enqueuedAt = enqueuedAt;
+        this.powerTier = powerTier;
+    }
+
+    public static String makeId(String deviceId, int bootCount, long sensorTimestampMs) {
+        return deviceId + "-" + bootCount + "-" + sensorTimestampMs;
+    }
+}
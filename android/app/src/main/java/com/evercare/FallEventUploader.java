@@ -0,0 +1,364 @@
+package com.evercare;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import org.json.JSONArray;
+
+/**
+ * Uploads detected falls to users/{uid}/falls from the native side, so they
+ * are saved even when the React Native UI is not running.
+ *
+ * Events are queued on disk, coalesced for a short moment and written with a
+ * single WriteBatch. Each document id is the event's deterministic id, so a
+ * retried batch or a duplicate broadcast overwrites the same document instead
+ * of creating a second one. Failed commits are retried with exponential
+ * backoff and full jitter.
+ *
+ * Events are kept as FallRecords tables, on disk and in memory; the document
+ * carries the schema's upload fields plus the record itself.
+ */
+public class FallEventUploader {
+
+    private static final String TAG = "FallEventUploader";
+    private static final String PREFS_NAME = "EverCareFallQueue";
+    private static final String KEY_RECORDS = "records"; // JSON array of base64 fall records
+
+    private static final long COALESCE_DELAY = 2000; // let near-simultaneous events share a batch
+    private static final long DEFERRED_DELAY = 15 * 60 * 1000; // while saving power, falls wait to share a batch
+    private static final long BASE_RETRY_DELAY = 2000;
+    private static final long MAX_RETRY_DELAY = 5 * 60 * 1000;
+    private static final int MAX_BATCH_SIZE = 500; // Firestore limit per WriteBatch
+
+    private static FallEventUploader instance;
+
+    private final Context context;
+    private final Handler handler;
+    private final Executor handlerExecutor;
+    private final Random jitter = new Random();
+
+    // Only touched on the uploader thread
+    private final LinkedHashMap<String, byte[]> pending = new LinkedHashMap<>(); // records by event id
+    private boolean commitInFlight = false;
+    private boolean flushScheduled = false;
+    private volatile boolean deferred = false; // written on the uploader thread
+    private int failedAttempts = 0;
+
+    // Stats, read from other threads
+    private volatile int queueDepth = 0;
+    private volatile long uploadedCount = 0;
+    private volatile long failedCommits = 0;
+    private volatile long lastLatencyMs = -1;
+    private volatile long maxLatencyMs = 0;
+    private volatile long totalLatencyMs = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flush();
+        }
+    };
+
+    public static synchronized FallEventUploader getInstance(Context context) {
+        if (instance == null) {
+            instance = new FallEventUploader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private FallEventUploader(Context context) {
+        this.context = context;
+        HandlerThread thread = new HandlerThread("FallEventUploader");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handlerExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        };
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                loadPending();
+                scheduleFlush(0);
+            }
+        });
+        // Falls wait for the native session, which AuthStorageModule signs in
+        FirebaseAuth.getInstance().addAuthStateListener(new FirebaseAuth.AuthStateListener() {
+            @Override
+            public void onAuthStateChanged(FirebaseAuth auth) {
+                if (auth.getCurrentUser() != null) {
+                    retryNow();
+                }
+            }
+        });
+    }
+
+    public void enqueue(final FallEvent event) {
+        final byte[] record = FallRecords.encode(event);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (pending.containsKey(event.id)) {
+                    Log.d(TAG, "Event " + event.id + " already queued - ignoring duplicate");
+                    return;
+                }
+                pending.put(event.id, record);
+                queueDepth = pending.size();
+                savePending();
+                scheduleFlush(deferred ? DEFERRED_DELAY : COALESCE_DELAY);
+            }
+        });
+    }
+
+    /**
+     * Holds new records back for up to DEFERRED_DELAY so the radio wakes
+     * less often; the alert itself does not go through here. Turning it off
+     * sends what is waiting.
+     */
+    public void setDeferred(final boolean defer) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (defer == deferred) {
+                    return;
+                }
+                deferred = defer;
+                Log.i(TAG, "Uploads " + (defer ? "deferred" : "no longer deferred"));
+                if (!defer && !pending.isEmpty() && failedAttempts == 0) {
+                    handler.removeCallbacks(flushRunnable);
+                    flushScheduled = false;
+                    scheduleFlush(COALESCE_DELAY);
+                }
+            }
+        });
+    }
+
+    /**
+     * Try again now, e.g. after the user signed in.
+     */
+    public void retryNow() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                failedAttempts = 0;
+                handler.removeCallbacks(flushRunnable);
+                flushScheduled = false;
+                flush();
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", queueDepth);
+        stats.put("deferred", deferred);
+        stats.put("uploaded", uploadedCount);
+        stats.put("failedCommits", failedCommits);
+        stats.put("lastLatencyMs", lastLatencyMs);
+        stats.put("maxLatencyMs", maxLatencyMs);
+        stats.put("avgLatencyMs", uploadedCount > 0 ? totalLatencyMs / uploadedCount : -1);
+        return stats;
+    }
+
+    private void scheduleFlush(long delay) {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        handler.postDelayed(flushRunnable, delay);
+    }
+
+    private void flush() {
+        if (commitInFlight || pending.isEmpty()) {
+            return;
+        }
+
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            Log.w(TAG, pending.size() + " fall event(s) waiting for the native session to sign in");
+            scheduleRetry();
+            return;
+        }
+
+        final List<String> batchIds = new ArrayList<>();
+        for (String id : pending.keySet()) {
+            batchIds.add(id);
+            if (batchIds.size() == MAX_BATCH_SIZE) {
+                break;
+            }
+        }
+
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        CollectionReference falls = db.collection("users").document(user.getUid()).collection("falls");
+        WriteBatch batch = db.batch();
+        for (String id : batchIds) {
+            batch.set(falls.document(id), toDocument(pending.get(id), user.getUid()));
+        }
+
+        commitInFlight = true;
+        Log.i(TAG, "Committing batch of " + batchIds.size() + " fall event(s)");
+        batch.commit().addOnCompleteListener(handlerExecutor, new OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(Task<Void> task) {
+                commitInFlight = false;
+                if (task.isSuccessful()) {
+                    long now = SystemClock.elapsedRealtime();
+                    for (String id : batchIds) {
+                        byte[] record = pending.remove(id);
+                        FallTrace.mark(context, id, FallTrace.FIRESTORE_ACK);
+                        long latency = now - FallRecords.wrapEvent(record).getLong(FallRecords.ENQUEUED_AT, now);
+                        lastLatencyMs = latency;
+                        maxLatencyMs = Math.max(maxLatencyMs, latency);
+                        totalLatencyMs += latency;
+                        uploadedCount++;
+                    }
+                    queueDepth = pending.size();
+                    failedAttempts = 0;
+                    savePending();
+                    Log.i(TAG, "Uploaded " + batchIds.size() + " fall event(s), last latency " + lastLatencyMs + "ms");
+                    if (!pending.isEmpty()) {
+                        scheduleFlush(0);
+                    }
+                } else {
+                    failedCommits++;
+                    Log.e(TAG, "Fall batch commit failed: "
+                            + (task.getException() != null ? task.getException().getMessage() : "unknown"));
+                    scheduleRetry();
+                }
+            }
+        });
+    }
+
+    private void scheduleRetry() {
+        // Full jitter: uniform in [0, min(cap, base * 2^attempt)]
+        long ceiling = Math.min(MAX_RETRY_DELAY, BASE_RETRY_DELAY << Math.min(failedAttempts, 16));
+        failedAttempts++;
+        long delay = (long) (jitter.nextDouble() * ceiling);
+        Log.d(TAG, "Retrying upload in " + delay + "ms (attempt " + failedAttempts + ")");
+        scheduleFlush(delay);
+    }
+
+    /**
+     * The document for one record: every UPLOAD field of the schema under its
+     * name, grouped fields in a nested map (null when none are present), plus
+     * the record itself for readers that want it whole.
+     */
+    static Map<String, Object> toDocument(byte[] record, String uid) {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        FlatTable.Schema schema = FallRecords.EVENT;
+        FlatTable.Table table = FallRecords.wrapEvent(record);
+        Map<String, Object> doc = new HashMap<>();
+        for (int field = 0; field < schema.size(); field++) {
+            if (!schema.goesTo(field, FlatTable.UPLOAD)) {
+                continue;
+            }
+            String group = schema.group(field);
+            if (group != null && !doc.containsKey(group)) {
+                doc.put(group, null);
+            }
+            Object value = table.get(schema, field);
+            if (value == null) {
+                continue;
+            }
+            if (schema.type(field) == FlatTable.TIME) {
+                value = new Timestamp(new Date((Long) value));
+            }
+            if (group == null) {
+                doc.put(schema.name(field), value);
+            } else {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> nested = (Map<String, Object>) doc.get(group);
+                if (nested == null) {
+                    nested = new HashMap<>();
+                    doc.put(group, nested);
+                }
+                nested.put(schema.name(field), value);
+            }
+        }
+        doc.put("deviceInfo", "Android Native Service");
+        doc.put("userId", uid);
+        doc.put("readableTimestamp", iso.format(new Date(table.getLong(FallRecords.TIMESTAMP, 0))));
+        doc.put("schemaVersion", table.version());
+        doc.put("record", Blob.fromBytes(record));
+        return doc;
+    }
+
+    private void loadPending() {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long now = SystemClock.elapsedRealtime();
+        int skipped = 0;
+        try {
+            JSONArray records = new JSONArray(prefs.getString(KEY_RECORDS, "[]"));
+            for (int i = 0; i < records.length(); i++) {
+                try {
+                    restore(FallRecords.decode(Base64.decode(records.getString(i), Base64.NO_WRAP)), now);
+                } catch (Exception e) {
+                    skipped++;
+                    Log.e(TAG, "Skipping unreadable queued fall " + i + ": " + e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error restoring fall queue: " + e.getMessage());
+            return; // leave what is on disk alone rather than overwrite it with nothing
+        }
+        queueDepth = pending.size();
+        if (!pending.isEmpty() || skipped > 0) {
+            Log.i(TAG, "Restored " + pending.size() + " pending fall event(s), skipped " + skipped);
+        }
+    }
+
+    private void restore(FallEvent event, long now) {
+        if (event.enqueuedAt > now) {
+            // Queued before a reboot - the elapsed clock restarted
+            event = new FallEvent(event.id, event.timestamp, event.acceleration, event.duration,
+                    event.hasLocation, event.latitude, event.longitude, event.accuracy,
+                    event.provider, event.locationTimestamp, event.place, event.address, now, event.powerTier);
+        }
+        pending.put(event.id, FallRecords.encode(event));
+    }
+
+    private void savePending() {
+        try {
+            JSONArray array = new JSONArray();
+            for (byte[] record : pending.values()) {
+                array.put(Base64.encodeToString(record, Base64.NO_WRAP));
+            }
+            // commit() rather than apply(): a queued fall must survive the process dying right after
+            context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                    .edit()
+                    .putString(KEY_RECORDS, array.toString())
+                    .commit();
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving fall queue: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.evercare;
+
+import android.app.Activity;
+import android.content.ClipData;
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+import androidx.core.content.FileProvider;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestore;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class FallExportModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "FallExportModule";
+    private static final String PROGRESS_EVENT = "FALL_EXPORT_PROGRESS";
+    private static final String EXPORT_DIR = "exports"; // under the cache dir, see res/xml/export_paths.xml
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile FallHistoryExporter current;
+
+    public FallExportModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "FallExport";
+    }
+
+    /**
+     * Exports the fall history of the given user, the one signed in on the JS
+     * side, and the saved sensor windows. Firestore is read through the
+     * native session (AuthStorageModule.signInNative); if that is not signed
+     * in as the same user this rejects with NOT_SIGNED_IN.
+     * Resolves {fallsCsv, windowsCsv, archive} as shareable content:// URIs
+     * plus {falls, windows, bytes, durationMs}; progress arrives as
+     * FALL_EXPORT_PROGRESS events {phase, done, total} (total -1 if unknown).
+     * Only one export runs at a time.
+     */
+    @ReactMethod
+    public void exportHistory(String uid, final Promise promise) {
+        final FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null || !user.getUid().equals(uid)) {
+            promise.reject("NOT_SIGNED_IN", "The native session is not signed in as this user");
+            return;
+        }
+        if (current != null) {
+            promise.reject("EXPORT_IN_PROGRESS", "An export is already running");
+            return;
+        }
+        final FallHistoryExporter exporter = new FallHistoryExporter();
+        current = exporter;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FallHistoryExporter.FirestoreFalls falls = new FallHistoryExporter.FirestoreFalls(
+                            FirebaseFirestore.getInstance().collection("users").document(user.getUid()).collection("falls"));
+                    File[] windows = FallWindowStore.getInstance(getReactApplicationContext()).list();
+                    File dir = new File(getReactApplicationContext().getCacheDir(), EXPORT_DIR);
+                    FallHistoryExporter.Result result = exporter.run(falls, windows, dir, new FallHistoryExporter.Progress() {
+                        @Override
+                        public void onProgress(String phase, long done, long total) {
+                            WritableMap params = Arguments.createMap();
+                            params.putString("phase", phase);
+                            params.putDouble("done", done);
+                            params.putDouble("total", total);
+                            sendEvent(params);
+                        }
+                    });
+                    WritableMap map = Arguments.createMap();
+                    map.putString("fallsCsv", toUri(result.fallsCsv).toString());
+                    map.putString("windowsCsv", toUri(result.windowsCsv).toString());
+                    map.putString("archive", toUri(result.archive).toString());
+                    map.putDouble("falls", result.falls);
+                    map.putDouble("windows", result.windows);
+                    map.putDouble("bytes", result.bytes);
+                    map.putDouble("durationMs", result.durationMs);
+                    Log.i(TAG, "Exported " + result.falls + " falls and " + result.windows + " windows ("
+                            + result.bytes + " bytes) in " + result.durationMs + "ms");
+                    promise.resolve(map);
+                } catch (CancellationException e) {
+                    promise.reject("EXPORT_CANCELLED", "Export cancelled");
+                } catch (Exception e) {
+                    Log.e(TAG, "Error exporting fall history: " + e.getMessage());
+                    promise.reject("EXPORT_ERROR", e.getMessage());
+                } finally {
+                    current = null;
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void cancel() {
+        FallHistoryExporter exporter = current;
+        if (exporter != null) {
+            exporter.cancel();
+        }
+    }
+
+    /**
+     * Opens the share sheet for the given export URIs
+     */
+    @ReactMethod
+    public void share(ReadableArray uris, Promise promise) {
+        Activity activity = getCurrentActivity();
+        if (activity == null) {
+            promise.reject("EXPORT_ERROR", "No activity to share from");
+            return;
+        }
+        try {
+            ArrayList<Uri> list = new ArrayList<>();
+            for (int i = 0; i < uris.size(); i++) {
+                list.add(Uri.parse(uris.getString(i)));
+            }
+            Intent intent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+            intent.setType("*/*");
+            intent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, list);
+            ClipData clip = ClipData.newRawUri("", list.get(0));
+            for (int i = 1; i < list.size(); i++) {
+                clip.addItem(new ClipData.Item(list.get(i)));
+            }
+            intent.setClipData(clip);
+            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            activity.startActivity(Intent.createChooser(intent, "Share fall history"));
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Error sharing export: " + e.getMessage());
+            promise.reject("EXPORT_ERROR", e.getMessage());
+        }
+    }
+
+    private Uri toUri(File file) {
+        return FileProvider.getUriForFile(getReactApplicationContext(),
+                getReactApplicationContext().getPackageName() + ".fileprovider", file);
+    }
+
+    private void sendEvent(WritableMap params) {
+        getReactApplicationContext()
+            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit(PROGRESS_EVENT, params);
+    }
+}
@@ -0,0 +1,333 @@
+package com.evercare;
+
+import android.os.SystemClock;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Streams a patient's whole fall history and the saved sensor windows to
+ * three files in outDir:
+ *
+ *   falls.csv    one row per fall
+ *   windows.csv  one row per window sample, t relative to the confirming sample
+ *   falls.evx    both, in a compact binary archive:
+ *
+ *     "EVFX", uint8 version, int64 created (wall ms), then records:
+ *     1 fall    string id, int64 timestamp, float acceleration, int64 durationMs,
+ *               uint8 hasLocation [double lat, double lon, float accuracy,
+ *               string provider, int64 locationTimestamp, string place, string address]
+ *     2 window  string id, int64 confirmSampleMs, uint16 periodMs, uint16 count,
+ *               count x (int16 x, y, z) in 0.01 m/s²
+ *     0 end     int32 falls, int32 windows
+ *
+ *   Strings are a uint16 length and UTF-8; numbers are big-endian.
+ *
+ * Falls are read a page at a time and windows a file at a time, and every
+ * file goes through one ExportWriter, so memory does not grow with the
+ * history. cancel() stops at the next record and removes the partial files.
+ */
+public class FallHistoryExporter {
+
+    private static final byte[] MAGIC = {'E', 'V', 'F', 'X'};
+    private static final int VERSION = 1;
+    private static final int RECORD_END = 0;
+    private static final int RECORD_FALL = 1;
+    private static final int RECORD_WINDOW = 2;
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    public static final String PHASE_FALLS = "falls";
+    public static final String PHASE_WINDOWS = "windows";
+
+    /**
+     * Falls oldest first, one page per call; an empty page ends the history.
+     */
+    public interface FallSource {
+        List<FallEvent> nextPage() throws Exception;
+
+        long count(); // -1 if unknown
+    }
+
+    public interface Progress {
+        void onProgress(String phase, long done, long total);
+    }
+
+    public static class Result {
+        public File fallsCsv;
+        public File windowsCsv;
+        public File archive;
+        public long falls;
+        public long windows;
+        public long bytes;
+        public long durationMs;
+    }
+
+    private volatile boolean cancelled = false;
+    private long lastProgressMs = 0;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public Result run(FallSource falls, File[] windowFiles, File outDir, Progress progress) throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        if (!outDir.exists() && !outDir.mkdirs()) {
+            throw new IOException("Could not create " + outDir);
+        }
+        Result result = new Result();
+        result.fallsCsv = new File(outDir, "falls.csv");
+        result.windowsCsv = new File(outDir, "windows.csv");
+        result.archive = new File(outDir, "falls.evx");
+
+        boolean complete = false;
+        try (ExportWriter fallsCsv = new ExportWriter(result.fallsCsv);
+             ExportWriter windowsCsv = new ExportWriter(result.windowsCsv);
+             ExportWriter archive = new ExportWriter(result.archive)) {
+            archive.writeBytes(MAGIC);
+            archive.writeByte(VERSION);
+            archive.writeLong(System.currentTimeMillis());
+            fallsCsv.writeText("id,timestamp,acceleration,duration_ms,latitude,longitude,accuracy_m,provider,place,address\n");
+            windowsCsv.writeText("id,t_ms,x,y,z\n");
+
+            SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+            iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+            long totalFalls = falls.count();
+            List<FallEvent> page;
+            while (!(page = falls.nextPage()).isEmpty()) {
+                for (FallEvent event : page) {
+                    checkCancelled();
+                    writeFall(fallsCsv, archive, event, iso);
+                    result.falls++;
+                }
+                report(progress, PHASE_FALLS, result.falls, totalFalls, false);
+            }
+            report(progress, PHASE_FALLS, result.falls, result.falls, true);
+
+            FallWindowStore.Window window = new FallWindowStore.Window();
+            for (File file : windowFiles) {
+                checkCancelled();
+                try {
+                    FallWindowStore.read(file, window);
+                } catch (IOException e) {
+                    continue; // one unreadable window should not sink the export
+                }
+                writeWindow(windowsCsv, archive, window);
+                result.windows++;
+                report(progress, PHASE_WINDOWS, result.windows, windowFiles.length, false);
+            }
+            report(progress, PHASE_WINDOWS, result.windows, windowFiles.length, true);
+
+            archive.writeByte(RECORD_END);
+            archive.writeInt((int) result.falls);
+            archive.writeInt((int) result.windows);
+            result.bytes = fallsCsv.getBytesWritten() + windowsCsv.getBytesWritten() + archive.getBytesWritten();
+            complete = true;
+        } finally {
+            if (!complete) {
+                result.fallsCsv.delete();
+                result.windowsCsv.delete();
+                result.archive.delete();
+            }
+        }
+        result.durationMs = SystemClock.elapsedRealtime() - start;
+        return result;
+    }
+
+    private static void writeFall(ExportWriter csv, ExportWriter archive, FallEvent event, SimpleDateFormat iso)
+            throws IOException {
+        csv.writeCsvField(event.id);
+        csv.writeByte(',');
+        csv.writeText(iso.format(new Date(event.timestamp)));
+        csv.writeByte(',');
+        csv.writeText(Float.toString(event.acceleration));
+        csv.writeByte(',');
+        csv.writeText(Long.toString(event.duration));
+        csv.writeByte(',');
+        if (event.hasLocation) {
+            csv.writeText(Double.toString(event.latitude));
+            csv.writeByte(',');
+            csv.writeText(Double.toString(event.longitude));
+            csv.writeByte(',');
+            csv.writeText(Float.toString(event.accuracy));
+            csv.writeByte(',');
+            csv.writeCsvField(event.provider);
+            csv.writeByte(',');
+            csv.writeCsvField(event.place);
+            csv.writeByte(',');
+            csv.writeCsvField(event.address);
+        } else {
+            csv.writeText(",,,,,");
+        }
+        csv.writeByte('\n');
+
+        archive.writeByte(RECORD_FALL);
+        archive.writeString(event.id);
+        archive.writeLong(event.timestamp);
+        archive.writeFloat(event.acceleration);
+        archive.writeLong(event.duration);
+        archive.writeByte(event.hasLocation ? 1 : 0);
+        if (event.hasLocation) {
+            archive.writeDouble(event.latitude);
+            archive.writeDouble(event.longitude);
+            archive.writeFloat(event.accuracy);
+            archive.writeString(event.provider);
+            archive.writeLong(event.locationTimestamp);
+            archive.writeString(event.place);
+            archive.writeString(event.address);
+        }
+    }
+
+    private static void writeWindow(ExportWriter csv, ExportWriter archive, FallWindowStore.Window window)
+            throws IOException {
+        // The last sample is the confirming one
+        for (int i = 0; i < window.count; i++) {
+            csv.writeCsvField(window.id);
+            csv.writeByte(',');
+            csv.writeText(Long.toString((i - window.count + 1) * window.periodMs));
+            csv.writeByte(',');
+            csv.writeText(Float.toString(FallWindowStore.toMs2(window.x[i])));
+            csv.writeByte(',');
+            csv.writeText(Float.toString(FallWindowStore.toMs2(window.y[i])));
+            csv.writeByte(',');
+            csv.writeText(Float.toString(FallWindowStore.toMs2(window.z[i])));
+            csv.writeByte('\n');
+        }
+
+        archive.writeByte(RECORD_WINDOW);
+        archive.writeString(window.id);
+        archive.writeLong(window.confirmSampleMs);
+        archive.writeShort((int) window.periodMs);
+        archive.writeShort(window.count);
+        for (int i = 0; i < window.count; i++) {
+            archive.writeShort(window.x[i]);
+            archive.writeShort(window.y[i]);
+            archive.writeShort(window.z[i]);
+        }
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Export cancelled");
+        }
+    }
+
+    private void report(Progress progress, String phase, long done, long total, boolean force) {
+        long now = SystemClock.elapsedRealtime();
+        if (force || now - lastProgressMs >= PROGRESS_INTERVAL_MS) {
+            lastProgressMs = now;
+            progress.onProgress(phase, done, total);
+        }
+    }
+
+    /**
+     * users/{uid}/falls in timestamp order, read with blocking calls - use
+     * from a background thread.
+     */
+    public static class FirestoreFalls implements FallSource {
+
+        private static final int PAGE_SIZE = 200;
+
+        private final CollectionReference falls;
+        private DocumentSnapshot last;
+        private boolean done = false;
+
+        public FirestoreFalls(CollectionReference falls) {
+            this.falls = falls;
+        }
+
+        @Override
+        public List<FallEvent> nextPage() throws Exception {
+            List<FallEvent> page = new ArrayList<>();
+            if (done) {
+                return page;
+            }
+            Query query = falls.orderBy("timestamp").limit(PAGE_SIZE);
+            if (last != null) {
+                query = query.startAfter(last);
+            }
+            QuerySnapshot snapshot = Tasks.await(query.get());
+            List<DocumentSnapshot> documents = snapshot.getDocuments();
+            for (DocumentSnapshot document : documents) {
+                page.add(toEvent(document));
+            }
+            if (documents.size() < PAGE_SIZE) {
+                done = true;
+            } else {
+                last = documents.get(documents.size() - 1);
+            }
+            return page;
+        }
+
+        @Override
+        public long count() {
+            try {
+                return Tasks.await(falls.count().get(AggregateSource.SERVER)).getCount();
+            } catch (Exception e) {
+                return -1;
+            }
+        }
+
+        // Documents come from both the native uploader and older JS writes, so every field is optional;
+        // the uploader's own record, where there is one, is read as is
+        private static FallEvent toEvent(DocumentSnapshot document) {
+            Object record = document.get("record");
+            if (record instanceof Blob) {
+                try {
+                    return FallRecords.decode(((Blob) record).toBytes());
+                } catch (IllegalArgumentException e) {
+                    // Fall back to the fields
+                }
+            }
+            long timestamp = toMillis(document.get("timestamp"));
+            Object location = document.get("location");
+            boolean hasLocation = location instanceof Map;
+            Map<?, ?> map = hasLocation ? (Map<?, ?>) location : null;
+            return new FallEvent(document.getId(), timestamp,
+                    toNumber(document.get("acceleration")).floatValue(),
+                    toNumber(document.get("duration")).longValue(),
+                    hasLocation,
+                    hasLocation ? toNumber(map.get("latitude")).doubleValue() : 0,
+                    hasLocation ? toNumber(map.get("longitude")).doubleValue() : 0,
+                    hasLocation ? toNumber(map.get("accuracy")).floatValue() : 0,
+                    hasLocation ? toText(map.get("provider")) : null,
+                    hasLocation ? toMillis(map.get("locationTimestamp")) : 0,
+                    hasLocation ? toText(map.get("place")) : null,
+                    hasLocation ? toText(map.get("address")) : null,
+                    0,
+                    toText(document.get("powerTier")));
+        }
+
+        private static long toMillis(Object value) {
+            if (value instanceof Timestamp) {
+                return ((Timestamp) value).toDate().getTime();
+            }
+            if (value instanceof Date) {
+                return ((Date) value).getTime();
+            }
+            return toNumber(value).longValue();
+        }
+
+        private static Number toNumber(Object value) {
+            return value instanceof Number ? (Number) value : 0;
+        }
+
+        private static String toText(Object value) {
+            return value == null ? null : String.valueOf(value);
+        }
+    }
+}
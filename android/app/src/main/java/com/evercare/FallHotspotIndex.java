@@ -0,0 +1,526 @@
+package com.evercare;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Where falls cluster, kept up to date one fall at a time.
+ *
+ * Each fall's weight of 1 is shared between the geohash cells (~38 x 19 m)
+ * its accuracy circle covers, so a vague fix counts a little everywhere it
+ * may have been rather than all of it in one wrong cell; fixes coarser than
+ * MAX_SPREAD are too vague to place and are left out of the hotspots. A
+ * hotspot is a cell scored together with its eight neighbours, so a cluster
+ * on a cell border is not split in two, and the hotspots returned never
+ * overlap. Cells are keyed by row and column, which makes the neighbours
+ * plain arithmetic, and kept ranked by that score as falls come and go, so
+ * the top hotspots are read off the front.
+ *
+ * Fall points are also bucketed in coarse (~1.2 x 0.6 km) cells for radius
+ * queries. Adding or removing a fall touches a bounded number of cells; a
+ * fall already indexed (by id) is ignored, so the history can be fed again.
+ */
+public class FallHotspotIndex {
+
+    private static final String TAG = "FallHotspotIndex";
+    private static final String FILE_NAME = "fall_hotspots.bin";
+    private static final int FILE_VERSION = 1;
+
+    private static final int CELL_PRECISION = 8;
+    private static final int POINT_PRECISION = 6;
+    public static final float MAX_SPREAD = 100; // meters
+    private static final double MAX_GRID_RADIUS = 10000; // larger queries scan every fall
+    private static final long MAX_SPAN_CELLS = 4096; // ~80 at mid latitudes; only near a pole is it more
+    private static final double EARTH_RADIUS = 6371000.0; // meters, as Geohash.distanceMeters
+    // Cell weights are fixed point, so taking a fall back removes exactly what adding it put in
+    private static final long ONE = 1L << 40;
+
+    public static class Fall {
+        public final String id;
+        public final long timestamp;
+        public final double latitude;
+        public final double longitude;
+        public final float accuracy;
+
+        public Fall(String id, long timestamp, double latitude, double longitude, float accuracy) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = Math.max(0, accuracy);
+        }
+    }
+
+    public static class Hotspot {
+        public final String geohash;
+        public final double latitude; // weighted centre of the falls counted
+        public final double longitude;
+        public final double weight; // falls expected here, given the accuracy of each fix
+        public final int falls; // falls that may have been here
+
+        Hotspot(String geohash, double latitude, double longitude, double weight, int falls) {
+            this.geohash = geohash;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.weight = weight;
+            this.falls = falls;
+        }
+    }
+
+    public static class Nearby {
+        public final Fall fall;
+        public final double distance;
+
+        Nearby(Fall fall, double distance) {
+            this.fall = fall;
+            this.distance = distance;
+        }
+    }
+
+    private static class Cell {
+        final int row;
+        final int col;
+        long weight; // in ONE per fall
+        double sumLat; // weighted, for the centre
+        double sumLon;
+        long score; // weight of the cell and its eight neighbours
+        final Set<String> falls = new HashSet<>();
+
+        Cell(int row, int col) {
+            this.row = row;
+            this.col = col;
+        }
+    }
+
+    /**
+     * The cells a region covers at a precision, as row/column ranges.
+     */
+    private static class Span {
+        final int rowMin;
+        final int rowMax;
+        final int colMin;
+        final int colCount;
+        final int cols; // columns around the globe, for wrapping
+
+        Span(double latitude, double longitude, double radius, int precision) {
+            double height = Geohash.cellHeight(precision);
+            double width = Geohash.cellWidth(precision);
+            // On the sphere distanceMeters measures on, with a hair to spare for rounding
+            double angle = radius / EARTH_RADIUS;
+            double dLat = Math.toDegrees(angle) + 1e-9;
+            int rows = (int) Math.round(180 / height);
+            cols = (int) Math.round(360 / width);
+            rowMin = Math.max(0, row(latitude - dLat, height));
+            rowMax = Math.min(rows - 1, row(latitude + dLat, height));
+            if (Math.abs(latitude) + dLat >= 90) {
+                // The circle takes in a pole, and so every longitude
+                colMin = 0;
+                colCount = cols;
+            } else {
+                // Widest at the tangent points, which lie poleward of the centre
+                double dLon = Math.toDegrees(Math.asin(Math.min(1,
+                        Math.sin(angle) / Math.cos(Math.toRadians(latitude))))) + 1e-9;
+                colMin = col(longitude - dLon, width);
+                colCount = Math.min(cols, col(longitude + dLon, width) - colMin + 1);
+            }
+        }
+
+        int colAt(int i) {
+            return Math.floorMod(colMin + i, cols);
+        }
+    }
+
+    private static FallHotspotIndex instance;
+
+    private final Context context;
+    private final ExecutorService executor;
+
+    private final Map<String, Fall> falls = new LinkedHashMap<>();
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final Map<Long, List<Fall>> points = new HashMap<>();
+    private final TreeSet<Cell> ranked = new TreeSet<>(new Comparator<Cell>() {
+        @Override
+        public int compare(Cell a, Cell b) {
+            int byScore = Long.compare(b.score, a.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            return a.row != b.row ? Integer.compare(a.row, b.row) : Integer.compare(a.col, b.col);
+        }
+    });
+    private int imprecise = 0;
+
+    public static synchronized FallHotspotIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new FallHotspotIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * An index that is not saved, e.g. to replay a history off the device.
+     */
+    public FallHotspotIndex() {
+        this.context = null;
+        this.executor = null;
+    }
+
+    private FallHotspotIndex(Context context) {
+        this.context = context;
+        this.executor = Executors.newSingleThreadExecutor();
+        load();
+    }
+
+    public void add(FallEvent event) {
+        if (event.hasLocation) {
+            add(new Fall(event.id, event.timestamp, event.latitude, event.longitude, event.accuracy));
+        }
+    }
+
+    /**
+     * False if a fall with this id is already indexed.
+     */
+    public boolean add(Fall fall) {
+        synchronized (this) {
+            if (falls.containsKey(fall.id)) {
+                return false;
+            }
+            falls.put(fall.id, fall);
+            index(fall, 1);
+        }
+        saveAsync();
+        return true;
+    }
+
+    /**
+     * Adds a batch, e.g. the history loaded from Firestore, with one save.
+     * Returns how many were new.
+     */
+    public int addAll(List<Fall> list) {
+        int added = 0;
+        synchronized (this) {
+            for (Fall fall : list) {
+                if (!falls.containsKey(fall.id)) {
+                    falls.put(fall.id, fall);
+                    index(fall, 1);
+                    added++;
+                }
+            }
+        }
+        if (added > 0) {
+            saveAsync();
+        }
+        return added;
+    }
+
+    public boolean remove(String id) {
+        synchronized (this) {
+            Fall fall = falls.remove(id);
+            if (fall == null) {
+                return false;
+            }
+            index(fall, -1);
+        }
+        saveAsync();
+        return true;
+    }
+
+    /**
+     * The places falls cluster most, strongest first, counting only
+     * hotspots with at least minWeight.
+     */
+    public synchronized List<Hotspot> top(int limit, double minWeight) {
+        // Cells come best neighbourhood first; a cell next to an earlier pick is skipped
+        List<Hotspot> result = new ArrayList<>();
+        Set<Long> taken = new HashSet<>();
+        for (Cell cell : ranked) {
+            if (result.size() >= limit || cell.score < minWeight * ONE) {
+                break;
+            }
+            if (taken.contains(key(cell.row, cell.col))) {
+                continue;
+            }
+            long weight = 0;
+            double sumLat = 0;
+            double sumLon = 0;
+            Set<String> ids = new HashSet<>();
+            for (int y = -1; y <= 1; y++) {
+                for (int x = -1; x <= 1; x++) {
+                    long neighbourKey = key(cell.row + y, wrapCol(cell.col + x, CELL_PRECISION));
+                    Cell neighbour = cells.get(neighbourKey);
+                    if (neighbour != null && taken.add(neighbourKey)) {
+                        weight += neighbour.weight;
+                        sumLat += neighbour.sumLat;
+                        sumLon += neighbour.sumLon;
+                        ids.addAll(neighbour.falls);
+                    }
+                }
+            }
+            if (weight < minWeight * ONE) {
+                continue; // its neighbours went to a stronger hotspot
+            }
+            double latitude = sumLat * ONE / weight;
+            double longitude = sumLon * ONE / weight;
+            result.add(new Hotspot(Geohash.encode(latitude, longitude, CELL_PRECISION),
+                    latitude, longitude, weight / (double) ONE, ids.size()));
+        }
+        return result;
+    }
+
+    /**
+     * Falls within radius meters of a point, nearest first.
+     */
+    public synchronized List<Nearby> near(double latitude, double longitude, double radius) {
+        List<Nearby> result = new ArrayList<>();
+        if (radius > MAX_GRID_RADIUS) {
+            for (Fall fall : falls.values()) {
+                collect(fall, latitude, longitude, radius, result);
+            }
+        } else {
+            Span span = new Span(latitude, longitude, radius, POINT_PRECISION);
+            for (int row = span.rowMin; row <= span.rowMax; row++) {
+                for (int i = 0; i < span.colCount; i++) {
+                    List<Fall> bucket = points.get(key(row, span.colAt(i)));
+                    if (bucket != null) {
+                        for (Fall fall : bucket) {
+                            collect(fall, latitude, longitude, radius, result);
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(result, new Comparator<Nearby>() {
+            @Override
+            public int compare(Nearby a, Nearby b) {
+                return Double.compare(a.distance, b.distance);
+            }
+        });
+        return result;
+    }
+
+    public synchronized int size() {
+        return falls.size();
+    }
+
+    public synchronized int cellCount() {
+        return cells.size();
+    }
+
+    /**
+     * Falls whose fix was too vague for the hotspots.
+     */
+    public synchronized int impreciseCount() {
+        return imprecise;
+    }
+
+    public synchronized void clear() {
+        falls.clear();
+        cells.clear();
+        ranked.clear();
+        points.clear();
+        imprecise = 0;
+        saveAsync();
+    }
+
+    private static void collect(Fall fall, double latitude, double longitude, double radius, List<Nearby> out) {
+        double distance = Geohash.distanceMeters(latitude, longitude, fall.latitude, fall.longitude);
+        if (distance <= radius) {
+            out.add(new Nearby(fall, distance));
+        }
+    }
+
+    /**
+     * Adds (sign 1) or takes back (sign -1) a fall's share of every cell; both
+     * walk the same cells, so a removal leaves the grid as it was.
+     */
+    private void index(Fall fall, int sign) {
+        long pointKey = key(row(fall.latitude, Geohash.cellHeight(POINT_PRECISION)),
+                col(fall.longitude, Geohash.cellWidth(POINT_PRECISION)));
+        List<Fall> bucket = points.get(pointKey);
+        if (sign > 0) {
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                points.put(pointKey, bucket);
+            }
+            bucket.add(fall);
+        } else if (bucket != null) {
+            bucket.remove(fall);
+            if (bucket.isEmpty()) {
+                points.remove(pointKey);
+            }
+        }
+
+        if (fall.accuracy > MAX_SPREAD) {
+            imprecise += sign;
+            return;
+        }
+
+        // The cells whose centre is inside the accuracy circle, and always the fall's own
+        double height = Geohash.cellHeight(CELL_PRECISION);
+        double width = Geohash.cellWidth(CELL_PRECISION);
+        int ownRow = row(fall.latitude, height);
+        int ownCol = col(fall.longitude, width);
+        Span span = new Span(fall.latitude, fall.longitude, fall.accuracy, CELL_PRECISION);
+        List<Long> covered = new ArrayList<>();
+        // Near a pole cells shrink to slivers; there the fall goes in its own cell only
+        long spanCells = (long) (span.rowMax - span.rowMin + 1) * span.colCount;
+        for (int row = span.rowMin; spanCells <= MAX_SPAN_CELLS && row <= span.rowMax; row++) {
+            double centerLat = (row + 0.5) * height - 90;
+            for (int i = 0; i < span.colCount; i++) {
+                int col = span.colAt(i);
+                double centerLon = (col + 0.5) * width - 180;
+                if ((row == ownRow && col == ownCol)
+                        || Geohash.distanceMeters(fall.latitude, fall.longitude, centerLat, centerLon) <= fall.accuracy) {
+                    covered.add(key(row, col));
+                }
+            }
+        }
+        if (covered.isEmpty()) {
+            covered.add(key(ownRow, ownCol)); // the span rounding can miss the own cell at the poles
+        }
+
+        long share = sign * (ONE / covered.size());
+        double part = share / (double) ONE;
+        for (Long cellKey : covered) {
+            Cell cell = cells.get(cellKey);
+            if (cell == null) {
+                cell = new Cell((int) (cellKey >> 32), (int) (long) cellKey);
+                for (int y = -1; y <= 1; y++) {
+                    for (int x = -1; x <= 1; x++) {
+                        Cell neighbour = cells.get(key(cell.row + y, wrapCol(cell.col + x, CELL_PRECISION)));
+                        if (neighbour != null) {
+                            cell.score += neighbour.weight;
+                        }
+                    }
+                }
+                cells.put(cellKey, cell);
+                ranked.add(cell);
+            }
+            // The cell's weight counts in its own score and its neighbours'; re-rank them all
+            for (int y = -1; y <= 1; y++) {
+                for (int x = -1; x <= 1; x++) {
+                    Cell neighbour = cells.get(key(cell.row + y, wrapCol(cell.col + x, CELL_PRECISION)));
+                    if (neighbour != null) {
+                        ranked.remove(neighbour);
+                        neighbour.score += share;
+                        ranked.add(neighbour);
+                    }
+                }
+            }
+            cell.weight += share;
+            cell.sumLat += part * fall.latitude;
+            cell.sumLon += part * fall.longitude;
+            if (sign > 0) {
+                cell.falls.add(fall.id);
+            } else {
+                cell.falls.remove(fall.id);
+            }
+            if (cell.falls.isEmpty()) {
+                ranked.remove(cell);
+                cells.remove(cellKey); // also drops the rounding left in the sums
+            }
+        }
+    }
+
+    private static int row(double latitude, double height) {
+        return (int) Math.floor((Math.max(-90, Math.min(90, latitude)) + 90) / height);
+    }
+
+    private static int col(double longitude, double width) {
+        return (int) Math.floor((longitude + 180) / width);
+    }
+
+    private static int wrapCol(int col, int precision) {
+        return Math.floorMod(col, (int) Math.round(360 / Geohash.cellWidth(precision)));
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private void saveAsync() {
+        if (executor == null) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                save();
+            }
+        });
+    }
+
+    private void load() {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Unknown fall hotspot file version - starting empty");
+                return;
+            }
+            synchronized (this) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Fall fall = new Fall(in.readUTF(), in.readLong(), in.readDouble(), in.readDouble(), in.readFloat());
+                    if (!falls.containsKey(fall.id)) {
+                        falls.put(fall.id, fall);
+                        index(fall, 1);
+                    }
+                }
+            }
+            Log.d(TAG, "Restored " + falls.size() + " fall location(s) in " + cells.size() + " cells");
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading fall hotspots: " + e.getMessage());
+        }
+    }
+
+    // Runs on the executor only
+    private void save() {
+        List<Fall> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(falls.values());
+        }
+
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(snapshot.size());
+            for (Fall fall : snapshot) {
+                out.writeUTF(fall.id);
+                out.writeLong(fall.timestamp);
+                out.writeDouble(fall.latitude);
+                out.writeDouble(fall.longitude);
+                out.writeFloat(fall.accuracy);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving fall hotspots: " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Could not replace " + file);
+        }
+    }
+}
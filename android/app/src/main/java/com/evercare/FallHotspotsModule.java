@@ -0,0 +1,130 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FallHotspotsModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "FallHotspotsModule";
+    private static final int DEFAULT_LIMIT = 5;
+    private static final double DEFAULT_MIN_WEIGHT = 2; // one fall is not a pattern
+
+    public FallHotspotsModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "FallHotspots";
+    }
+
+    /**
+     * Adds falls from the history, [{id, timestamp, location: {latitude,
+     * longitude, accuracy}}]; entries without a location or already indexed
+     * are skipped. Resolves with how many were new.
+     */
+    @ReactMethod
+    public void addFalls(ReadableArray list, Promise promise) {
+        try {
+            List<FallHotspotIndex.Fall> falls = new ArrayList<>();
+            for (int i = 0; i < list.size(); i++) {
+                ReadableMap item = list.getMap(i);
+                if (!item.hasKey("location") || item.isNull("location")) {
+                    continue;
+                }
+                ReadableMap location = item.getMap("location");
+                falls.add(new FallHotspotIndex.Fall(item.getString("id"),
+                        item.hasKey("timestamp") ? (long) item.getDouble("timestamp") : 0,
+                        location.getDouble("latitude"), location.getDouble("longitude"),
+                        location.hasKey("accuracy") ? (float) location.getDouble("accuracy") : 0));
+            }
+            promise.resolve(FallHotspotIndex.getInstance(getReactApplicationContext()).addAll(falls));
+        } catch (Exception e) {
+            Log.e(TAG, "Error adding falls: " + e.getMessage());
+            promise.reject("HOTSPOT_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void removeFall(String id, Promise promise) {
+        promise.resolve(FallHotspotIndex.getInstance(getReactApplicationContext()).remove(id));
+    }
+
+    /**
+     * Where falls cluster: [{geohash, latitude, longitude, weight, falls,
+     * place, address}], strongest first. weight is the number of falls
+     * expected in the spot given each fix's accuracy. Options: limit,
+     * minWeight (default 2).
+     */
+    @ReactMethod
+    public void getHotspots(ReadableMap options, Promise promise) {
+        try {
+            int limit = options != null && options.hasKey("limit") ? options.getInt("limit") : DEFAULT_LIMIT;
+            double minWeight = options != null && options.hasKey("minWeight")
+                    ? options.getDouble("minWeight") : DEFAULT_MIN_WEIGHT;
+            LocationContextCache locationContext = LocationContextCache.getInstance(getReactApplicationContext());
+            WritableArray result = Arguments.createArray();
+            for (FallHotspotIndex.Hotspot hotspot : FallHotspotIndex.getInstance(getReactApplicationContext()).top(limit, minWeight)) {
+                WritableMap map = Arguments.createMap();
+                map.putString("geohash", hotspot.geohash);
+                map.putDouble("latitude", hotspot.latitude);
+                map.putDouble("longitude", hotspot.longitude);
+                map.putDouble("weight", hotspot.weight);
+                map.putInt("falls", hotspot.falls);
+                LocationContextCache.Description where = locationContext.describe(hotspot.latitude, hotspot.longitude);
+                map.putString("place", where.place);
+                map.putString("address", where.address);
+                result.pushMap(map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error listing hotspots: " + e.getMessage());
+            promise.reject("HOTSPOT_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Falls within radius meters of a point, nearest first:
+     * [{id, timestamp, latitude, longitude, accuracy, distance}].
+     */
+    @ReactMethod
+    public void fallsNear(double latitude, double longitude, double radius, Promise promise) {
+        try {
+            WritableArray result = Arguments.createArray();
+            for (FallHotspotIndex.Nearby nearby : FallHotspotIndex.getInstance(getReactApplicationContext()).near(latitude, longitude, radius)) {
+                WritableMap map = Arguments.createMap();
+                map.putString("id", nearby.fall.id);
+                map.putDouble("timestamp", nearby.fall.timestamp);
+                map.putDouble("latitude", nearby.fall.latitude);
+                map.putDouble("longitude", nearby.fall.longitude);
+                map.putDouble("accuracy", nearby.fall.accuracy);
+                map.putDouble("distance", nearby.distance);
+                result.pushMap(map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error finding falls nearby: " + e.getMessage());
+            promise.reject("HOTSPOT_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getStats(Promise promise) {
+        FallHotspotIndex index = FallHotspotIndex.getInstance(getReactApplicationContext());
+        WritableMap map = Arguments.createMap();
+        map.putInt("falls", index.size());
+        map.putInt("cells", index.cellCount());
+        map.putInt("imprecise", index.impreciseCount());
+        promise.resolve(map);
+    }
+}
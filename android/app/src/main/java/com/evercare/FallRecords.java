@@ -0,0 +1,149 @@
+package com.evercare;
+
+/**
+ * The two kinds of FlatTable a fall is kept as: the event, from detection
+ * through the broadcast, the bridge, the upload queue and the Firestore
+ * document; and the accelerometer window leading up to it.
+ *
+ * To add a field, append it with the next id and bump the version; never
+ * renumber or retype one.
+ */
+public final class FallRecords {
+
+    public static final int EVENT_SCHEMA_ID = 1;
+    public static final int WINDOW_SCHEMA_ID = 2;
+
+    // Fall event fields
+    public static final int EVENT_ID = 0;
+    public static final int TIMESTAMP = 1;
+    public static final int ACCELERATION = 2;
+    public static final int DURATION = 3;
+    public static final int LATITUDE = 4; // present iff there is a location
+    public static final int LONGITUDE = 5;
+    public static final int ACCURACY = 6;
+    public static final int PROVIDER = 7;
+    public static final int LOCATION_TIMESTAMP = 8;
+    public static final int PLACE = 9;
+    public static final int ADDRESS = 10;
+    public static final int ENQUEUED_AT = 11;
+    public static final int POWER_TIER = 12;
+
+    public static final FlatTable.Schema EVENT = new FlatTable.Schema(EVENT_SCHEMA_ID, 1)
+            .field(EVENT_ID, "eventId", FlatTable.STRING, FlatTable.BRIDGE, null) // the document id, not a field
+            .field(TIMESTAMP, "timestamp", FlatTable.TIME, FlatTable.BRIDGE | FlatTable.UPLOAD, null)
+            .field(ACCELERATION, "acceleration", FlatTable.FLOAT, FlatTable.BRIDGE | FlatTable.UPLOAD, null)
+            .field(DURATION, "duration", FlatTable.LONG, FlatTable.BRIDGE | FlatTable.UPLOAD, null)
+            .field(LATITUDE, "latitude", FlatTable.DOUBLE, FlatTable.BRIDGE | FlatTable.UPLOAD, "location")
+            .field(LONGITUDE, "longitude", FlatTable.DOUBLE, FlatTable.BRIDGE | FlatTable.UPLOAD, "location")
+            .field(ACCURACY, "accuracy", FlatTable.FLOAT, FlatTable.BRIDGE | FlatTable.UPLOAD, "location")
+            .field(PROVIDER, "provider", FlatTable.STRING, FlatTable.BRIDGE | FlatTable.UPLOAD, "location")
+            .field(LOCATION_TIMESTAMP, "locationTimestamp", FlatTable.TIME, FlatTable.BRIDGE | FlatTable.UPLOAD, "location")
+            .field(PLACE, "place", FlatTable.STRING, FlatTable.BRIDGE | FlatTable.UPLOAD, "location")
+            .field(ADDRESS, "address", FlatTable.STRING, FlatTable.BRIDGE | FlatTable.UPLOAD, "location")
+            .field(ENQUEUED_AT, "enqueuedAt", FlatTable.LONG, 0, null) // elapsedRealtime, this boot only
+            .field(POWER_TIER, "powerTier", FlatTable.STRING, FlatTable.BRIDGE | FlatTable.UPLOAD, null);
+
+    // Fall window fields
+    public static final int WINDOW_EVENT_ID = 0;
+    public static final int CONFIRM_SAMPLE_MS = 1;
+    public static final int PERIOD_MS = 2;
+    public static final int SAMPLES = 3; // x, y, z interleaved, 0.01 m/s²
+
+    public static final FlatTable.Schema WINDOW = new FlatTable.Schema(WINDOW_SCHEMA_ID, 1)
+            .field(WINDOW_EVENT_ID, "eventId", FlatTable.STRING, 0, null)
+            .field(CONFIRM_SAMPLE_MS, "confirmSampleMs", FlatTable.LONG, 0, null)
+            .field(PERIOD_MS, "periodMs", FlatTable.INT, 0, null)
+            .field(SAMPLES, "samples", FlatTable.SHORTS, 0, null);
+
+    private static final FlatTable.Writer eventWriter = new FlatTable.Writer(EVENT);
+    private static final FlatTable.Writer windowWriter = new FlatTable.Writer(WINDOW);
+
+    private FallRecords() {
+    }
+
+    public static byte[] encode(FallEvent event) {
+        synchronized (eventWriter) {
+            eventWriter.begin()
+                    .putString(EVENT_ID, event.id)
+                    .putLong(TIMESTAMP, event.timestamp)
+                    .putFloat(ACCELERATION, event.acceleration)
+                    .putLong(DURATION, event.duration);
+            if (event.hasLocation) {
+                eventWriter.putDouble(LATITUDE, event.latitude)
+                        .putDouble(LONGITUDE, event.longitude)
+                        .putFloat(ACCURACY, event.accuracy)
+                        .putString(PROVIDER, event.provider)
+                        .putLong(LOCATION_TIMESTAMP, event.locationTimestamp)
+                        .putString(PLACE, event.place)
+                        .putString(ADDRESS, event.address);
+            }
+            return eventWriter.putLong(ENQUEUED_AT, event.enqueuedAt)
+                    .putString(POWER_TIER, event.powerTier)
+                    .finish();
+        }
+    }
+
+    /**
+     * A fall event table, checked; throws IllegalArgumentException if it is not one.
+     */
+    public static FlatTable.Table wrapEvent(byte[] bytes) {
+        return FlatTable.Table.wrap(bytes, EVENT);
+    }
+
+    public static FallEvent decode(byte[] bytes) {
+        FlatTable.Table table = wrapEvent(bytes);
+        String id = table.getString(EVENT_ID);
+        if (id == null) {
+            throw new IllegalArgumentException("Fall event without an id");
+        }
+        boolean hasLocation = table.has(LATITUDE);
+        return new FallEvent(id,
+                table.getLong(TIMESTAMP, 0),
+                table.getFloat(ACCELERATION, 0),
+                table.getLong(DURATION, 0),
+                hasLocation,
+                table.getDouble(LATITUDE, 0),
+                table.getDouble(LONGITUDE, 0),
+                table.getFloat(ACCURACY, 0),
+                table.getString(PROVIDER),
+                table.getLong(LOCATION_TIMESTAMP, 0),
+                table.getString(PLACE),
+                table.getString(ADDRESS),
+                table.getLong(ENQUEUED_AT, 0),
+                table.getString(POWER_TIER));
+    }
+
+    public static byte[] encode(FallWindowStore.Window window) {
+        synchronized (windowWriter) {
+            short[] samples = new short[3 * window.count];
+            for (int i = 0; i < window.count; i++) {
+                samples[3 * i] = window.x[i];
+                samples[3 * i + 1] = window.y[i];
+                samples[3 * i + 2] = window.z[i];
+            }
+            return windowWriter.begin()
+                    .putString(WINDOW_EVENT_ID, window.id)
+                    .putLong(CONFIRM_SAMPLE_MS, window.confirmSampleMs)
+                    .putInt(PERIOD_MS, (int) window.periodMs)
+                    .putShorts(SAMPLES, samples, samples.length)
+                    .finish();
+        }
+    }
+
+    /**
+     * Reads a window table into the given Window, keeping at most
+     * WINDOW_SAMPLES samples.
+     */
+    public static void decode(byte[] bytes, FallWindowStore.Window into) {
+        FlatTable.Table table = FlatTable.Table.wrap(bytes, WINDOW);
+        into.id = table.getString(WINDOW_EVENT_ID);
+        into.confirmSampleMs = table.getLong(CONFIRM_SAMPLE_MS, 0);
+        into.periodMs = table.getInt(PERIOD_MS, 0);
+        into.count = Math.min(table.getShortsCount(SAMPLES) / 3, FallWindowStore.WINDOW_SAMPLES);
+        for (int i = 0; i < into.count; i++) {
+            into.x[i] = table.getShort(SAMPLES, 3 * i);
+            into.y[i] = table.getShort(SAMPLES, 3 * i + 1);
+            into.z[i] = table.getShort(SAMPLES, 3 * i + 2);
+        }
+    }
+}
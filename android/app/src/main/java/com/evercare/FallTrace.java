@@ -0,0 +1,331 @@
+package com.evercare;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Latency of each fall from the first free-fall sample to the record
+ * being saved, one incident per fall, correlated by the fall's event id.
+ *
+ *   sensor             timestamp of the first sample under the threshold
+ *   confirmed          detector fired
+ *   notified           fall notification posted
+ *   broadcastReceived  AuthStorageModule got the broadcast
+ *   jsEmitted          event handed to the JS bridge
+ *   jsReceived         JS listener ran
+ *   firestoreAck       Firestore acknowledged the write
+ *
+ * Every stage after "confirmed" is also an async android.os.Trace section
+ * (API 29+) starting where the previous stage ended, so Perfetto shows the
+ * path as one track per incident. The last 64 incidents are kept in a ring
+ * persisted to fall_trace.bin; times are elapsedRealtime, and a stage that
+ * arrives after a reboot is dropped rather than measured across it.
+ */
+public final class FallTrace {
+
+    private static final String TAG = "FallTrace";
+    private static final String FILE_NAME = "fall_trace.bin";
+    private static final int FILE_VERSION = 1;
+    private static final int RING_SIZE = 64;
+    private static final long REBOOT_TOLERANCE_MS = 60000;
+
+    public static final int SENSOR = 0;
+    public static final int CONFIRMED = 1;
+    public static final int NOTIFIED = 2;
+    public static final int BROADCAST_RECEIVED = 3;
+    public static final int JS_EMITTED = 4;
+    public static final int JS_RECEIVED = 5;
+    public static final int FIRESTORE_ACK = 6;
+    public static final String[] STAGE_NAMES = {
+        "sensor", "confirmed", "notified", "broadcastReceived", "jsEmitted", "jsReceived", "firestoreAck",
+    };
+
+    private static class Incident {
+        long key; // sensor timestamp (ms) of the confirming sample, until the id is known
+        String id;
+        long confirmedWallMs;
+        final long[] stageNs = new long[STAGE_NAMES.length]; // elapsedRealtime, 0 if not reached
+    }
+
+    private static final Incident[] ring = new Incident[RING_SIZE];
+    private static int next = 0;
+    private static boolean loaded = false;
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    private FallTrace() {
+    }
+
+    /**
+     * A fall was confirmed on a sample at confirmSampleMs after free fall
+     * began at fallStartMs, both sensor timestamps.
+     */
+    public static synchronized void begin(Context context, long fallStartMs, long confirmSampleMs) {
+        ensureLoaded(context);
+        long now = SystemClock.elapsedRealtimeNanos();
+        Incident incident = new Incident();
+        incident.key = confirmSampleMs;
+        incident.confirmedWallMs = System.currentTimeMillis();
+        incident.stageNs[SENSOR] = fallStartMs * 1000000L;
+        incident.stageNs[CONFIRMED] = now;
+        ring[next] = incident;
+        next = (next + 1) % RING_SIZE;
+
+        traceInstant("fall:confirmed +" + (now - incident.stageNs[SENSOR]) / 1000000L + "ms");
+        beginSpan(incident, CONFIRMED + 1);
+    }
+
+    /**
+     * Gives the incident begun for confirmSampleMs its event id, or drops it
+     * if id is null (the fall was a duplicate of one already reported).
+     */
+    public static synchronized void attach(Context context, long confirmSampleMs, String id) {
+        for (int i = 0; i < RING_SIZE; i++) {
+            Incident incident = ring[i];
+            if (incident != null && incident.id == null && incident.key == confirmSampleMs) {
+                if (id == null) {
+                    endOpenSpans(incident);
+                    ring[i] = null;
+                } else {
+                    incident.id = id;
+                    saveAsync(context);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records a stage for the fall with this event id. Only the first time
+     * a stage is reached counts.
+     */
+    public static synchronized void mark(Context context, String id, int stage) {
+        if (id == null) {
+            return;
+        }
+        ensureLoaded(context);
+        Incident incident = find(id);
+        if (incident == null || incident.stageNs[stage] != 0) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        long elapsedSinceMs = (now - incident.stageNs[CONFIRMED]) / 1000000L;
+        long wallSinceMs = System.currentTimeMillis() - incident.confirmedWallMs;
+        if (now < incident.stageNs[CONFIRMED] || Math.abs(elapsedSinceMs - wallSinceMs) > REBOOT_TOLERANCE_MS) {
+            Log.d(TAG, STAGE_NAMES[stage] + " for " + id + " came after a reboot - not measured");
+            return;
+        }
+        incident.stageNs[stage] = now;
+        if (incident.stageNs[stage - 1] != 0) {
+            endSpan(incident, stage); // begun when the previous stage was reached
+        }
+        if (stage + 1 < STAGE_NAMES.length && incident.stageNs[stage + 1] == 0) {
+            beginSpan(incident, stage + 1);
+        }
+        saveAsync(context);
+    }
+
+    /**
+     * Incidents oldest first: id and, per reached stage, milliseconds since
+     * the first free-fall sample.
+     */
+    public static synchronized List<Map<String, Object>> getIncidents(Context context) {
+        ensureLoaded(context);
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 0; i < RING_SIZE; i++) {
+            Incident incident = ring[(next + i) % RING_SIZE];
+            if (incident == null || incident.id == null) {
+                continue;
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", incident.id);
+            map.put("confirmedAt", incident.confirmedWallMs);
+            for (int s = 1; s < STAGE_NAMES.length; s++) {
+                if (incident.stageNs[s] != 0) {
+                    map.put(STAGE_NAMES[s] + "Ms", (incident.stageNs[s] - incident.stageNs[SENSOR]) / 1e6);
+                }
+            }
+            list.add(map);
+        }
+        return list;
+    }
+
+    /**
+     * For each step (previous stage to stage) and for the whole path
+     * (sensor to stage): count, p50, p90, p99 and max in milliseconds.
+     */
+    public static synchronized Map<String, Map<String, Double>> getSummary(Context context) {
+        ensureLoaded(context);
+        Map<String, Map<String, Double>> summary = new LinkedHashMap<>();
+        for (int s = 1; s < STAGE_NAMES.length; s++) {
+            summary.put(STAGE_NAMES[s - 1] + "->" + STAGE_NAMES[s], percentiles(collect(s - 1, s)));
+        }
+        for (int s = 2; s < STAGE_NAMES.length; s++) {
+            summary.put(STAGE_NAMES[SENSOR] + "->" + STAGE_NAMES[s], percentiles(collect(SENSOR, s)));
+        }
+        return summary;
+    }
+
+    private static double[] collect(int from, int to) {
+        double[] values = new double[RING_SIZE];
+        int count = 0;
+        for (Incident incident : ring) {
+            // A step is skipped when its stages happened out of order, e.g. the upload beat the JS listener
+            if (incident != null && incident.id != null && incident.stageNs[from] != 0
+                    && incident.stageNs[to] >= incident.stageNs[from]) {
+                values[count++] = (incident.stageNs[to] - incident.stageNs[from]) / 1e6;
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    // Nearest-rank percentiles
+    static Map<String, Double> percentiles(double[] values) {
+        Arrays.sort(values);
+        Map<String, Double> result = new LinkedHashMap<>();
+        result.put("count", (double) values.length);
+        if (values.length == 0) {
+            return result;
+        }
+        result.put("p50", rank(values, 0.50));
+        result.put("p90", rank(values, 0.90));
+        result.put("p99", rank(values, 0.99));
+        result.put("max", values[values.length - 1]);
+        return result;
+    }
+
+    private static double rank(double[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static Incident find(String id) {
+        for (Incident incident : ring) {
+            if (incident != null && id.equals(incident.id)) {
+                return incident;
+            }
+        }
+        return null;
+    }
+
+    private static void beginSpan(Incident incident, int stage) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection("fall:" + STAGE_NAMES[stage], cookie(incident));
+        }
+    }
+
+    private static void endSpan(Incident incident, int stage) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection("fall:" + STAGE_NAMES[stage], cookie(incident));
+        } else {
+            traceInstant("fall:" + STAGE_NAMES[stage]);
+        }
+    }
+
+    private static void endOpenSpans(Incident incident) {
+        for (int s = CONFIRMED + 1; s < STAGE_NAMES.length; s++) {
+            if (incident.stageNs[s] == 0 && incident.stageNs[s - 1] != 0) {
+                endSpan(incident, s);
+            }
+        }
+    }
+
+    // Spans begin before the event id is known, so the cookie comes from the sensor timestamp
+    private static int cookie(Incident incident) {
+        return (int) (incident.key ^ (incident.key >>> 32));
+    }
+
+    private static void traceInstant(String name) {
+        Trace.beginSection(name);
+        Trace.endSection();
+    }
+
+    private static void ensureLoaded(Context context) {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Unknown fall trace file version - starting empty");
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count && i < RING_SIZE; i++) {
+                Incident incident = new Incident();
+                incident.id = in.readUTF();
+                incident.key = in.readLong();
+                incident.confirmedWallMs = in.readLong();
+                for (int s = 0; s < STAGE_NAMES.length; s++) {
+                    incident.stageNs[s] = in.readLong();
+                }
+                ring[next] = incident;
+                next = (next + 1) % RING_SIZE;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading fall trace: " + e.getMessage());
+        }
+    }
+
+    private static void saveAsync(Context context) {
+        final File dir = context.getApplicationContext().getFilesDir();
+        final List<Incident> snapshot = new ArrayList<>();
+        for (int i = 0; i < RING_SIZE; i++) {
+            Incident incident = ring[(next + i) % RING_SIZE];
+            if (incident != null && incident.id != null) {
+                Incident copy = new Incident();
+                copy.id = incident.id;
+                copy.key = incident.key;
+                copy.confirmedWallMs = incident.confirmedWallMs;
+                System.arraycopy(incident.stageNs, 0, copy.stageNs, 0, copy.stageNs.length);
+                snapshot.add(copy);
+            }
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = new File(dir, FILE_NAME);
+                File tmp = new File(dir, FILE_NAME + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    out.writeInt(FILE_VERSION);
+                    out.writeInt(snapshot.size());
+                    for (Incident incident : snapshot) {
+                        out.writeUTF(incident.id);
+                        out.writeLong(incident.key);
+                        out.writeLong(incident.confirmedWallMs);
+                        for (long ns : incident.stageNs) {
+                            out.writeLong(ns);
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Error saving fall trace: " + e.getMessage());
+                    return;
+                }
+                if (!tmp.renameTo(file)) {
+                    Log.e(TAG, "Could not replace " + file);
+                }
+            }
+        });
+    }
+}
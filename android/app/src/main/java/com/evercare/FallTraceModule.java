@@ -0,0 +1,104 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class FallTraceModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "FallTraceModule";
+
+    public FallTraceModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "FallTrace";
+    }
+
+    /**
+     * Called by the JS listener when a FREE_FALL_DETECTED event arrives
+     */
+    @ReactMethod
+    public void markJsReceived(String eventId) {
+        FallTrace.mark(getReactApplicationContext(), eventId, FallTrace.JS_RECEIVED);
+    }
+
+    /**
+     * {"sensor->confirmed": {count, p50, p90, p99, max}, ..., "sensor->firestoreAck": {...}} in milliseconds
+     */
+    @ReactMethod
+    public void getSummary(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+            for (Map.Entry<String, Map<String, Double>> span : FallTrace.getSummary(getReactApplicationContext()).entrySet()) {
+                WritableMap stats = Arguments.createMap();
+                for (Map.Entry<String, Double> entry : span.getValue().entrySet()) {
+                    stats.putDouble(entry.getKey(), entry.getValue());
+                }
+                result.putMap(span.getKey(), stats);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading fall trace summary: " + e.getMessage());
+            promise.reject("TRACE_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getIncidents(Promise promise) {
+        try {
+            WritableArray result = Arguments.createArray();
+            for (Map<String, Object> incident : FallTrace.getIncidents(getReactApplicationContext())) {
+                WritableMap map = Arguments.createMap();
+                for (Map.Entry<String, Object> entry : incident.entrySet()) {
+                    if (entry.getValue() instanceof Number) {
+                        map.putDouble(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+                    } else {
+                        map.putString(entry.getKey(), String.valueOf(entry.getValue()));
+                    }
+                }
+                result.pushMap(map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading fall trace incidents: " + e.getMessage());
+            promise.reject("TRACE_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Summary and incidents as one JSON document, for sharing with support
+     */
+    @ReactMethod
+    public void exportTrace(Promise promise) {
+        try {
+            JSONObject summary = new JSONObject();
+            for (Map.Entry<String, Map<String, Double>> span : FallTrace.getSummary(getReactApplicationContext()).entrySet()) {
+                summary.put(span.getKey(), new JSONObject(span.getValue()));
+            }
+            JSONArray incidents = new JSONArray();
+            List<Map<String, Object>> list = FallTrace.getIncidents(getReactApplicationContext());
+            for (Map<String, Object> incident : list) {
+                incidents.put(new JSONObject(incident));
+            }
+            JSONObject export = new JSONObject();
+            export.put("summary", summary);
+            export.put("incidents", incidents);
+            promise.resolve(export.toString());
+        } catch (Exception e) {
+            Log.e(TAG, "Error exporting fall trace: " + e.getMessage());
+            promise.reject("TRACE_ERROR", e.getMessage());
+        }
+    }
+}
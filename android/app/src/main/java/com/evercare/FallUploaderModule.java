@@ -0,0 +1,50 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableMap;
+import java.util.Map;
+
+public class FallUploaderModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "FallUploaderModule";
+
+    public FallUploaderModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "FallUploader";
+    }
+
+    /**
+     * Queue depth and upload latency of the native fall uploader
+     */
+    @ReactMethod
+    public void getStats(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+            for (Map.Entry<String, Object> entry : FallEventUploader.getInstance(getReactApplicationContext()).getStats().entrySet()) {
+                result.putDouble(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading uploader stats: " + e.getMessage());
+            promise.reject("UPLOADER_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Skip the backoff and try to upload queued falls now, e.g. right after login
+     */
+    @ReactMethod
+    public void retryNow(Promise promise) {
+        FallEventUploader.getInstance(getReactApplicationContext()).retryNow();
+        promise.resolve(true);
+    }
+}
@@ -0,0 +1,180 @@
+package com.evercare;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The resampled accelerometer window leading up to each detected fall,
+ * one small file per fall in files/fall_windows named by event id.
+ *
+ * Windows are captured on the sensor thread when the detector fires, keyed
+ * by the confirming sample's timestamp like FallTrace, and written once the
+ * fall has its event id; a duplicate fall's window is dropped. Samples are
+ * stored as int16 in 0.01 m/s², the same as SampleFrameCodec. The oldest
+ * files go past MAX_FILES.
+ *
+ * Each file is a FallRecords window table.
+ */
+public class FallWindowStore {
+
+    private static final String TAG = "FallWindowStore";
+    private static final String DIR_NAME = "fall_windows";
+    public static final int WINDOW_SAMPLES = 256; // ~5 s at the resampled 50 Hz
+    private static final int MAX_PENDING = 8;
+    private static final int MAX_FILES = 500;
+    private static final float SCALE = 100f;
+
+    public static class Window {
+        public String id;
+        public long confirmSampleMs;
+        public long periodMs;
+        public int count;
+        public final short[] x = new short[WINDOW_SAMPLES];
+        public final short[] y = new short[WINDOW_SAMPLES];
+        public final short[] z = new short[WINDOW_SAMPLES];
+    }
+
+    private static FallWindowStore instance;
+
+    private final File dir;
+    private final Map<Long, Window> pending = new LinkedHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    // Scratch for capture, sensor threads only one at a time
+    private final float[] captureX = new float[WINDOW_SAMPLES];
+    private final float[] captureY = new float[WINDOW_SAMPLES];
+    private final float[] captureZ = new float[WINDOW_SAMPLES];
+
+    public static synchronized FallWindowStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new FallWindowStore(new File(context.getApplicationContext().getFilesDir(), DIR_NAME));
+        }
+        return instance;
+    }
+
+    private FallWindowStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Copies the resampler's last samples for the fall confirmed on the
+     * sample at confirmSampleMs.
+     */
+    public synchronized void capture(UniformResampler resampler, long confirmSampleMs) {
+        int n = resampler.window(WINDOW_SAMPLES, captureX, captureY, captureZ);
+        Window window = new Window();
+        window.confirmSampleMs = confirmSampleMs;
+        window.periodMs = resampler.getPeriodMs();
+        window.count = n;
+        for (int i = 0; i < n; i++) {
+            window.x[i] = quantize(captureX[i]);
+            window.y[i] = quantize(captureY[i]);
+            window.z[i] = quantize(captureZ[i]);
+        }
+        pending.put(confirmSampleMs, window);
+        if (pending.size() > MAX_PENDING) {
+            Iterator<Long> oldest = pending.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Saves the window captured for confirmSampleMs under the event id, or
+     * drops it if id is null (a duplicate of a fall already reported).
+     */
+    public synchronized void attach(long confirmSampleMs, String id) {
+        final Window window = pending.remove(confirmSampleMs);
+        if (window == null || id == null) {
+            return;
+        }
+        window.id = id;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(window);
+                prune();
+            }
+        });
+    }
+
+    /**
+     * Saved windows, oldest first.
+     */
+    public File[] list() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Reads a saved window into the given one, so a caller going through
+     * many files can reuse a single Window.
+     */
+    public static void read(File file, Window into) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        try {
+            FallRecords.decode(bytes, into);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unreadable fall window " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void write(Window window) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.e(TAG, "Could not create " + dir);
+            return;
+        }
+        // Event ids are device-boot-timestamp, safe as file names
+        File file = new File(dir, window.id + ".bin");
+        File tmp = new File(dir, window.id + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(FallRecords.encode(window));
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving fall window: " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Could not replace " + file);
+        }
+    }
+
+    private void prune() {
+        File[] files = list();
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            if (!files[i].delete()) {
+                Log.w(TAG, "Could not delete " + files[i]);
+            }
+        }
+    }
+
+    private static short quantize(float value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * SCALE)));
+    }
+
+    public static float toMs2(short value) {
+        return value / SCALE;
+    }
+}
@@ -0,0 +1,140 @@
+package com.evercare;
+
+import android.util.Log;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes users/{uid}/alerts/{eventId} for caretaker devices listening on it.
+ * Acknowledged when the server confirms the write, not when it is cached
+ * locally, so offline it times out rather than reporting a false success.
+ *
+ * Writing needs the native session, which AuthStorageModule signs in. An
+ * alert sent while it is signed out fails at once instead of waiting out
+ * the timeout, and is written when the session signs in, so caretakers
+ * still see it in the alert history.
+ */
+public class FirestoreAlertChannel implements AlertChannel {
+
+    private static final String TAG = "FirestoreAlertChannel";
+
+    private final long timeoutMs;
+    private final Map<String, Map<String, Object>> unsent = new LinkedHashMap<>(); // by event id
+
+    public FirestoreAlertChannel(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        FirebaseAuth.getInstance().addAuthStateListener(new FirebaseAuth.AuthStateListener() {
+            @Override
+            public void onAuthStateChanged(FirebaseAuth auth) {
+                if (auth.getCurrentUser() != null) {
+                    writeUnsent(auth.getCurrentUser());
+                }
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return "firestore";
+    }
+
+    @Override
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    public void send(AlertDispatcher.Alert alert, final Callback callback) {
+        FallEvent event = alert.event;
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("eventId", event.id);
+        doc.put("reason", alert.reason);
+        doc.put("status", "open");
+        doc.put("timestamp", new Timestamp(new Date(event.timestamp)));
+        doc.put("acceleration", event.acceleration);
+        doc.put("duration", event.duration);
+        doc.put("createdAt", FieldValue.serverTimestamp());
+        if (event.hasLocation) {
+            Map<String, Object> location = new HashMap<>();
+            location.put("latitude", event.latitude);
+            location.put("longitude", event.longitude);
+            location.put("accuracy", event.accuracy);
+            if (event.place != null) {
+                location.put("place", event.place);
+            }
+            if (event.address != null) {
+                location.put("address", event.address);
+            }
+            doc.put("location", location);
+        }
+
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            synchronized (unsent) {
+                unsent.put(event.id, doc);
+            }
+            callback.onFailed("native session not signed in - written once it is");
+            return;
+        }
+        write(user, event.id, doc).addOnCompleteListener(new OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(Task<Void> task) {
+                if (task.isSuccessful()) {
+                    callback.onAcknowledged(null);
+                } else {
+                    callback.onFailed(task.getException() != null ? task.getException().getMessage() : "unknown");
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the status of an alert already sent, e.g. "cancelled" when the
+     * patient answered the countdown after a detection-time alert.
+     */
+    public void resolve(String eventId, String status) {
+        synchronized (unsent) {
+            Map<String, Object> doc = unsent.get(eventId);
+            if (doc != null) {
+                doc.put("status", status);
+                return;
+            }
+        }
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            Log.w(TAG, "Alert " + eventId + " not marked " + status + ": native session not signed in");
+            return;
+        }
+        FirebaseFirestore.getInstance()
+                .collection("users").document(user.getUid())
+                .collection("alerts").document(eventId)
+                .update("status", status);
+    }
+
+    // Same document id as the fall, so a repeated dispatch updates rather than duplicates
+    private static Task<Void> write(FirebaseUser user, String eventId, Map<String, Object> doc) {
+        return FirebaseFirestore.getInstance()
+                .collection("users").document(user.getUid())
+                .collection("alerts").document(eventId)
+                .set(doc);
+    }
+
+    private void writeUnsent(FirebaseUser user) {
+        synchronized (unsent) {
+            for (Map.Entry<String, Map<String, Object>> entry : unsent.entrySet()) {
+                Log.i(TAG, "Writing alert " + entry.getKey() + " held while signed out");
+                write(user, entry.getKey(), entry.getValue());
+            }
+            unsent.clear();
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.evercare;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A flat table in the manner of FlatBuffers: fields are read in place,
+ * through an offset table at the front, without unpacking the rest. All
+ * little endian:
+ *
+ *   uint16  schema id, which kind of table this is
+ *   uint8   schema version of the writer
+ *   uint8   N, the field slots the writer's schema has
+ *   uint32  size of the whole table in bytes
+ *   uint16  N offsets, one per field id, from the start of the table; 0 = absent
+ *   field data, back to back:
+ *     LONG, TIME  int64 (TIME: epoch milliseconds)
+ *     INT         int32
+ *     FLOAT       float32
+ *     DOUBLE      float64
+ *     STRING      uint16 byte length, then UTF-8
+ *     SHORTS      uint16 count, then int16 values
+ *
+ * A field id is its slot in the offset table. Ids are never reused and a
+ * field's type never changes; a new field takes the next id. A reader
+ * finds fields past the writer's N absent, and never looks at slots past
+ * its own schema, so old and new versions each read the fields they share.
+ *
+ * The schema also names each field and says where it goes beyond the
+ * table - bridge, upload, a nested group - so no hop copies fields by hand.
+ */
+public final class FlatTable {
+
+    public static final int LONG = 1;
+    public static final int TIME = 2;
+    public static final int INT = 3;
+    public static final int FLOAT = 4;
+    public static final int DOUBLE = 5;
+    public static final int STRING = 6;
+    public static final int SHORTS = 7;
+
+    // Where a field travels besides the table itself
+    public static final int BRIDGE = 1; // to React Native
+    public static final int UPLOAD = 2; // into the Firestore document
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_SIZE = 0xffff; // offsets are uint16
+
+    private FlatTable() {
+    }
+
+    /**
+     * Field ids, names, types and destinations of one kind of table.
+     */
+    public static final class Schema {
+        public final int id;
+        public final int version;
+        private String[] names = new String[0];
+        private int[] types = new int[0];
+        private int[] scopes = new int[0];
+        private String[] groups = new String[0];
+
+        public Schema(int id, int version) {
+            this.id = id;
+            this.version = version;
+        }
+
+        /**
+         * Declares the next field; ids must come in order from 0.
+         */
+        public Schema field(int fieldId, String name, int type, int scope, String group) {
+            if (fieldId != names.length) {
+                throw new IllegalArgumentException("Field " + name + " declared as " + fieldId + ", expected " + names.length);
+            }
+            names = Arrays.copyOf(names, fieldId + 1);
+            types = Arrays.copyOf(types, fieldId + 1);
+            scopes = Arrays.copyOf(scopes, fieldId + 1);
+            groups = Arrays.copyOf(groups, fieldId + 1);
+            names[fieldId] = name;
+            types[fieldId] = type;
+            scopes[fieldId] = scope;
+            groups[fieldId] = group;
+            return this;
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public String name(int field) {
+            return names[field];
+        }
+
+        public int type(int field) {
+            return types[field];
+        }
+
+        public boolean goesTo(int field, int scope) {
+            return (scopes[field] & scope) != 0;
+        }
+
+        /**
+         * Name of the nested object the field belongs in outside the table,
+         * e.g. "location", or null at the top level.
+         */
+        public String group(int field) {
+            return groups[field];
+        }
+    }
+
+    /**
+     * Builds tables of one schema. Reusable: begin() starts the next one.
+     * Not thread safe.
+     */
+    public static final class Writer {
+        private final Schema schema;
+        private byte[] bytes = new byte[256];
+        private ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        private int position;
+
+        public Writer(Schema schema) {
+            this.schema = schema;
+        }
+
+        public Writer begin() {
+            int fields = schema.size();
+            ensure(HEADER_BYTES + 2 * fields);
+            Arrays.fill(bytes, 0, HEADER_BYTES + 2 * fields, (byte) 0);
+            buffer.putShort(0, (short) schema.id);
+            buffer.put(2, (byte) schema.version);
+            buffer.put(3, (byte) fields);
+            position = HEADER_BYTES + 2 * fields;
+            return this;
+        }
+
+        public Writer putLong(int field, long value) {
+            check(field, LONG, TIME, 8);
+            buffer.putLong(position, value);
+            position += 8;
+            return this;
+        }
+
+        public Writer putInt(int field, int value) {
+            check(field, INT, INT, 4);
+            buffer.putInt(position, value);
+            position += 4;
+            return this;
+        }
+
+        public Writer putFloat(int field, float value) {
+            check(field, FLOAT, FLOAT, 4);
+            buffer.putFloat(position, value);
+            position += 4;
+            return this;
+        }
+
+        public Writer putDouble(int field, double value) {
+            check(field, DOUBLE, DOUBLE, 8);
+            buffer.putDouble(position, value);
+            position += 8;
+            return this;
+        }
+
+        /**
+         * A null value leaves the field absent.
+         */
+        public Writer putString(int field, String value) {
+            if (value == null) {
+                return this;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length > 0xffff) {
+                throw new IllegalArgumentException(schema.name(field) + " too long");
+            }
+            check(field, STRING, STRING, 2 + utf8.length);
+            buffer.putShort(position, (short) utf8.length);
+            System.arraycopy(utf8, 0, bytes, position + 2, utf8.length);
+            position += 2 + utf8.length;
+            return this;
+        }
+
+        public Writer putShorts(int field, short[] values, int count) {
+            check(field, SHORTS, SHORTS, 2 + 2 * count);
+            buffer.putShort(position, (short) count);
+            for (int i = 0; i < count; i++) {
+                buffer.putShort(position + 2 + 2 * i, values[i]);
+            }
+            position += 2 + 2 * count;
+            return this;
+        }
+
+        public byte[] finish() {
+            buffer.putInt(4, position);
+            return Arrays.copyOf(bytes, position);
+        }
+
+        private void check(int field, int type, int alternative, int length) {
+            int declared = schema.type(field);
+            if (declared != type && declared != alternative) {
+                throw new IllegalArgumentException(schema.name(field) + " is not of this type");
+            }
+            if (position + length > MAX_SIZE) {
+                throw new IllegalArgumentException("Table over " + MAX_SIZE + " bytes");
+            }
+            ensure(position + length);
+            buffer.putShort(HEADER_BYTES + 2 * field, (short) position);
+        }
+
+        private void ensure(int length) {
+            if (length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.min(MAX_SIZE, Math.max(length, 2 * bytes.length)));
+                buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    /**
+     * Read access to one table, straight from its bytes. wrap() checks the
+     * header and offsets; a field's contents are checked when read, and
+     * anything out of bounds is an IllegalArgumentException.
+     */
+    public static final class Table {
+        private final byte[] bytes;
+        private final ByteBuffer buffer;
+        private final int fields;
+
+        private Table(byte[] bytes) {
+            this.bytes = bytes;
+            this.buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            this.fields = bytes[3] & 0xff;
+        }
+
+        public static Table wrap(byte[] bytes, Schema schema) {
+            if (bytes == null || bytes.length < HEADER_BYTES) {
+                throw new IllegalArgumentException("Not a table");
+            }
+            Table table = new Table(bytes);
+            if (table.schemaId() != schema.id) {
+                throw new IllegalArgumentException("Table of schema " + table.schemaId() + ", expected " + schema.id);
+            }
+            int dataStart = HEADER_BYTES + 2 * table.fields;
+            if (table.buffer.getInt(4) != bytes.length || dataStart > bytes.length) {
+                throw new IllegalArgumentException("Table size does not match");
+            }
+            for (int i = 0; i < table.fields; i++) {
+                int offset = table.offset(i);
+                if (offset != 0 && (offset < dataStart || offset >= bytes.length)) {
+                    throw new IllegalArgumentException("Field " + i + " outside the table");
+                }
+            }
+            return table;
+        }
+
+        public int schemaId() {
+            return buffer.getShort(0) & 0xffff;
+        }
+
+        public int version() {
+            return bytes[2] & 0xff;
+        }
+
+        public int fieldSlots() {
+            return fields;
+        }
+
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        public boolean has(int field) {
+            return offset(field) != 0;
+        }
+
+        public long getLong(int field, long absent) {
+            int offset = at(field, 8);
+            return offset == 0 ? absent : buffer.getLong(offset);
+        }
+
+        public int getInt(int field, int absent) {
+            int offset = at(field, 4);
+            return offset == 0 ? absent : buffer.getInt(offset);
+        }
+
+        public float getFloat(int field, float absent) {
+            int offset = at(field, 4);
+            return offset == 0 ? absent : buffer.getFloat(offset);
+        }
+
+        public double getDouble(int field, double absent) {
+            int offset = at(field, 8);
+            return offset == 0 ? absent : buffer.getDouble(offset);
+        }
+
+        public String getString(int field) {
+            int offset = at(field, 2);
+            if (offset == 0) {
+                return null;
+            }
+            int length = buffer.getShort(offset) & 0xffff;
+            if (offset + 2 + length > bytes.length) {
+                throw new IllegalArgumentException("String field " + field + " runs past the table");
+            }
+            return new String(bytes, offset + 2, length, StandardCharsets.UTF_8);
+        }
+
+        public int getShortsCount(int field) {
+            int offset = at(field, 2);
+            if (offset == 0) {
+                return 0;
+            }
+            int count = buffer.getShort(offset) & 0xffff;
+            if (offset + 2 + 2 * count > bytes.length) {
+                throw new IllegalArgumentException("Array field " + field + " runs past the table");
+            }
+            return count;
+        }
+
+        /**
+         * Element i of a SHORTS field; check the count first.
+         */
+        public short getShort(int field, int index) {
+            return buffer.getShort(offset(field) + 2 + 2 * index);
+        }
+
+        /**
+         * The field boxed by its declared type, for the generic hops; null if
+         * absent. SHORTS come back as a short[].
+         */
+        public Object get(Schema schema, int field) {
+            if (!has(field)) {
+                return null;
+            }
+            switch (schema.type(field)) {
+                case LONG:
+                case TIME:
+                    return getLong(field, 0);
+                case INT:
+                    return getInt(field, 0);
+                case FLOAT:
+                    return getFloat(field, 0);
+                case DOUBLE:
+                    return getDouble(field, 0);
+                case STRING:
+                    return getString(field);
+                case SHORTS:
+                    short[] values = new short[getShortsCount(field)];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = getShort(field, i);
+                    }
+                    return values;
+                default:
+                    throw new IllegalArgumentException("Unknown type of field " + field);
+            }
+        }
+
+        private int offset(int field) {
+            return field < fields ? buffer.getShort(HEADER_BYTES + 2 * field) & 0xffff : 0;
+        }
+
+        private int at(int field, int length) {
+            int offset = offset(field);
+            if (offset != 0 && offset + length > bytes.length) {
+                throw new IllegalArgumentException("Field " + field + " runs past the table");
+            }
+            return offset;
+        }
+    }
+}
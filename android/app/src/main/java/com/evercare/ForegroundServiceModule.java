@@ -3,10 +3,13 @@ package com.evercare;
 import android.content.Intent;
 import android.os.Build;
 import android.util.Log;
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+import java.util.Map;
 
 public class ForegroundServiceModule extends ReactContextBaseJavaModule {
 
@@ -55,4 +58,26 @@ public class ForegroundServiceModule extends ReactContextBaseJavaModule {
             promise.reject("STOP_SERVICE_ERROR", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Timings of the last service start: boot to armed, process start to first sample, deferred setup
+     */
+    @ReactMethod
+    public void getStartupMetrics(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+            for (Map.Entry<String, Object> entry : StartupMetrics.load(getReactApplicationContext()).entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof Boolean) {
+                    result.putBoolean(entry.getKey(), (Boolean) value);
+                } else if (value instanceof Number) {
+                    result.putDouble(entry.getKey(), ((Number) value).doubleValue());
+                }
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading startup metrics: " + e.getMessage());
+            promise.reject("METRICS_ERROR", e.getMessage());
+        }
+    }
+}
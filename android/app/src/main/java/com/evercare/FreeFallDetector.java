@@ -0,0 +1,95 @@
+package com.evercare;
+
+/**
+ * Free-fall detection state machine, independent of the Android sensor
+ * framework so it can be driven by BackgroundService or by a synthetic stream.
+ *
+ * A fall is reported once when the acceleration magnitude stays below the
+ * threshold for at least the time threshold; it re-arms when the magnitude
+ * comes back above the threshold. Timestamps are the sample timestamps in
+ * milliseconds, not the time the sample was delivered.
+ */
+public class FreeFallDetector {
+
+    public interface Listener {
+        void onFreeFall(float acceleration, long durationMs, long timestampMs);
+    }
+
+    private static final int CALIBRATION_REFRESH_SAMPLES = 3000; // 1 minute at the resampled 50 Hz
+
+    private final ThresholdCalibrator calibrator;
+    private final Listener listener;
+
+    private float freeFallThreshold;
+    private long freeFallTimeThreshold;
+    private int samplesSinceCalibrationRefresh = 0;
+
+    private long freeFallStartTime = 0;
+    private boolean inFreeFall = false;
+    private boolean fallEventProcessed = false;
+
+    public FreeFallDetector(ThresholdCalibrator calibrator, Listener listener) {
+        this.calibrator = calibrator;
+        this.listener = listener;
+        this.freeFallThreshold = calibrator.getFreeFallThreshold();
+        this.freeFallTimeThreshold = calibrator.getFreeFallTimeThreshold();
+    }
+
+    public void onSample(float x, float y, float z, long timestampMs) {
+        // Calculate total acceleration magnitude
+        float acceleration = (float) Math.sqrt(x * x + y * y + z * z);
+
+        if (!fallEventProcessed) {
+            calibrator.observe(acceleration, timestampMs);
+        }
+        if (++samplesSinceCalibrationRefresh >= CALIBRATION_REFRESH_SAMPLES) {
+            samplesSinceCalibrationRefresh = 0;
+            freeFallThreshold = calibrator.getFreeFallThreshold();
+            freeFallTimeThreshold = calibrator.getFreeFallTimeThreshold();
+        }
+
+        // Check for free fall (acceleration significantly less than gravity)
+        if (acceleration < freeFallThreshold) {
+            if (!inFreeFall) {
+                // Start of potential free fall
+                freeFallStartTime = timestampMs;
+                inFreeFall = true;
+            }
+
+            // Check if free fall has lasted long enough and hasn't been processed yet
+            long freeFallDuration = timestampMs - freeFallStartTime;
+            if (freeFallDuration >= freeFallTimeThreshold && !fallEventProcessed) {
+                fallEventProcessed = true; // Mark as processed to prevent duplicates
+                calibrator.discardCurrentDip(); // A real fall must not teach the calibrator
+                listener.onFreeFall(acceleration, freeFallDuration, timestampMs);
+            }
+        } else {
+            // Reset free fall detection
+            inFreeFall = false;
+            fallEventProcessed = false; // Reset for next fall detection
+            freeFallStartTime = 0;
+        }
+    }
+
+    /**
+     * Forgets a free fall in progress. Called after a gap in the samples so
+     * the duration is not measured across time nobody saw.
+     */
+    public void reset() {
+        inFreeFall = false;
+        fallEventProcessed = false;
+        freeFallStartTime = 0;
+    }
+
+    public boolean isInFreeFall() {
+        return inFreeFall;
+    }
+
+    public float getFreeFallThreshold() {
+        return freeFallThreshold;
+    }
+
+    public long getFreeFallTimeThreshold() {
+        return freeFallTimeThreshold;
+    }
+}
@@ -0,0 +1,36 @@
+package com.evercare;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Runs a Scheduler's tasks on a Handler's thread.
+ */
+public class HandlerScheduler implements Scheduler {
+
+    private final Handler handler;
+
+    public HandlerScheduler(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        handler.postDelayed(task, delayMs);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+}
@@ -0,0 +1,177 @@
+package com.evercare;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * A week of hourly counters in a fixed ring: one slot per hour, reused
+ * when the same slot comes round again. Amounts are added by wall clock
+ * time; an interval is split across the hours it covers.
+ *
+ * Stored as a varint per counter, so a bucket of mostly zeros is a few
+ * bytes and the whole week a few kilobytes.
+ */
+public class HourlyBuckets {
+
+    public static final int HOURS = 7 * 24;
+    private static final long HOUR_MS = 3600000L;
+
+    private final int fields;
+    private final long[] hourKeys = new long[HOURS]; // hours since the epoch, -1 if unused
+    private final long[][] values;
+    private final long[] discarded; // amounts for hours the ring has already moved past
+
+    public HourlyBuckets(int fields) {
+        this.fields = fields;
+        this.values = new long[HOURS][fields];
+        this.discarded = new long[fields];
+        Arrays.fill(hourKeys, -1);
+    }
+
+    public void add(int field, long wallMs, long amount) {
+        bucket(wallMs / HOUR_MS)[field] += amount;
+    }
+
+    /**
+     * Adds the length of [fromMs, toMs) in milliseconds, split by hour.
+     */
+    public void addInterval(int field, long fromMs, long toMs) {
+        long start = fromMs;
+        while (start < toMs) {
+            long hour = start / HOUR_MS;
+            long end = Math.min(toMs, (hour + 1) * HOUR_MS);
+            bucket(hour)[field] += end - start;
+            start = end;
+        }
+    }
+
+    /**
+     * Totals per local calendar day, oldest first, ending with the day of nowMs.
+     * Hours older than the ring are not included.
+     */
+    public long[][] daily(int days, long nowMs, TimeZone timeZone) {
+        long[][] totals = new long[days][fields];
+        long[] dayStarts = dayStarts(days, nowMs, timeZone);
+        for (int slot = 0; slot < HOURS; slot++) {
+            if (hourKeys[slot] < 0) {
+                continue;
+            }
+            long hourStart = hourKeys[slot] * HOUR_MS;
+            for (int d = days - 1; d >= 0; d--) {
+                if (hourStart >= dayStarts[d]) {
+                    if (d < days - 1 || hourStart <= nowMs) {
+                        for (int f = 0; f < fields; f++) {
+                            totals[d][f] += values[slot][f];
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Local midnight of each of the last days, oldest first.
+     */
+    public static long[] dayStarts(int days, long nowMs, TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(nowMs);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        long[] starts = new long[days];
+        for (int d = days - 1; d >= 0; d--) {
+            starts[d] = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        return starts;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        int used = 0;
+        for (long key : hourKeys) {
+            if (key >= 0) {
+                used++;
+            }
+        }
+        out.writeShort(fields);
+        out.writeShort(used);
+        for (int slot = 0; slot < HOURS; slot++) {
+            if (hourKeys[slot] < 0) {
+                continue;
+            }
+            writeVarint(out, hourKeys[slot]);
+            for (int f = 0; f < fields; f++) {
+                writeVarint(out, values[slot][f]);
+            }
+        }
+    }
+
+    /**
+     * Reads what write() produced. Counters added since the file was
+     * written (more fields than stored) start at zero; unknown extra
+     * fields are skipped.
+     *
+     * @throws IOException on a truncated or corrupt file
+     */
+    public void read(DataInputStream in) throws IOException {
+        int storedFields = in.readUnsignedShort();
+        int used = in.readUnsignedShort();
+        if (used > HOURS) {
+            throw new IOException("More hours than the ring holds: " + used);
+        }
+        for (int i = 0; i < used; i++) {
+            long hour = readVarint(in);
+            if (hour < 0) {
+                // write() never stores one; it would index before the ring
+                throw new IOException("Negative hour: " + hour);
+            }
+            long[] bucket = bucket(hour);
+            for (int f = 0; f < storedFields; f++) {
+                long value = readVarint(in);
+                if (f < fields) {
+                    bucket[f] += value;
+                }
+            }
+        }
+    }
+
+    private long[] bucket(long hour) {
+        int slot = (int) (hour % HOURS);
+        if (hourKeys[slot] != hour) {
+            if (hour < hourKeys[slot]) {
+                // A week older than what the slot holds, e.g. after a clock change
+                return discarded;
+            }
+            hourKeys[slot] = hour;
+            Arrays.fill(values[slot], 0);
+        }
+        return values[slot];
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,23 @@
+package com.evercare;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+
+public class InactivityAlarmReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        InactivityMonitor monitor = InactivityMonitor.getInstance(context);
+        String action = intent.getAction();
+        if (InactivityMonitor.ACTION_INACTIVITY_ALARM.equals(action)) {
+            // The alarm may have restarted the process on its own - re-request the triggers first
+            long start = SystemClock.elapsedRealtime();
+            monitor.start();
+            monitor.onAlarm();
+            EnergyLedger.getInstance(context).onWake(SystemClock.elapsedRealtime() - start);
+        } else if (InactivityMonitor.ACTION_CHECK_IN_OK.equals(action)) {
+            monitor.onCheckedIn();
+        }
+    }
+}
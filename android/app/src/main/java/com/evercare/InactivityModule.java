@@ -0,0 +1,89 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import java.util.Map;
+
+public class InactivityModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "InactivityModule";
+
+    public InactivityModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "Inactivity";
+    }
+
+    /**
+     * {enabled, periodMinutes, responseMinutes, quietStart, quietEnd}, quiet
+     * hours as minutes of the day
+     */
+    @ReactMethod
+    public void getConfig(Promise promise) {
+        try {
+            promise.resolve(toMap(InactivityMonitor.getInstance(getReactApplicationContext()).getConfig()));
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading inactivity config: " + e.getMessage());
+            promise.reject("INACTIVITY_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Any subset of the getConfig fields; the rest keep their values
+     */
+    @ReactMethod
+    public void setConfig(ReadableMap config, Promise promise) {
+        try {
+            InactivityMonitor monitor = InactivityMonitor.getInstance(getReactApplicationContext());
+            Map<String, Object> current = monitor.getConfig();
+            monitor.setConfig(
+                    config.hasKey("enabled") ? config.getBoolean("enabled") : (Boolean) current.get("enabled"),
+                    config.hasKey("periodMinutes") ? config.getInt("periodMinutes") : (Integer) current.get("periodMinutes"),
+                    config.hasKey("responseMinutes") ? config.getInt("responseMinutes") : (Integer) current.get("responseMinutes"),
+                    config.hasKey("quietStart") ? config.getInt("quietStart") : (Integer) current.get("quietStart"),
+                    config.hasKey("quietEnd") ? config.getInt("quietEnd") : (Integer) current.get("quietEnd"));
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Error setting inactivity config: " + e.getMessage());
+            promise.reject("INACTIVITY_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * {stage: watching|prompted|escalated, lastMotionAt, alarmAt, supported,
+     * stationaryDetect, wakeups}
+     */
+    @ReactMethod
+    public void getStatus(Promise promise) {
+        try {
+            promise.resolve(toMap(InactivityMonitor.getInstance(getReactApplicationContext()).getStatus()));
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading inactivity status: " + e.getMessage());
+            promise.reject("INACTIVITY_ERROR", e.getMessage());
+        }
+    }
+
+    private static WritableMap toMap(Map<String, Object> values) {
+        WritableMap map = Arguments.createMap();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Boolean) {
+                map.putBoolean(entry.getKey(), (Boolean) value);
+            } else if (value instanceof String) {
+                map.putString(entry.getKey(), (String) value);
+            } else {
+                map.putDouble(entry.getKey(), ((Number) value).doubleValue());
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,463 @@
+package com.evercare;
+
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.core.app.NotificationCompat;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Asks the patient to check in after a long stretch without significant
+ * motion, and raises the fall alert path if nobody answers.
+ *
+ * Motion comes from the one-shot wake-up significant-motion sensor and,
+ * where the phone has it, the stationary detector: significant motion marks
+ * the patient moving, stationary marks when they settled. Each re-requests
+ * the other, so a walk costs two wakeups and a still phone none. One alarm
+ * sits at the last motion plus the inactivity period and only moves when
+ * that time shifts by a minute or more.
+ *
+ * Quiet hours restart the count: stillness through the night is sleep, so
+ * the period runs from the end of quiet hours or the last motion, whichever
+ * is later. Off until the patient turns it on in app settings.
+ *
+ * When the alarm fires a check-in prompt is posted; motion or "I'm OK"
+ * clears it. Unanswered after the response window,
+ * BackgroundService gets ACTION_INACTIVITY_ALERT and runs the same alert
+ * notification, auto-call countdown and AlertDispatcher as for a fall.
+ */
+public class InactivityMonitor {
+
+    private static final String TAG = "InactivityMonitor";
+    private static final String PREFS_NAME = "EverCareInactivity";
+    private static final String CHANNEL_ID = "INACTIVITY_CHANNEL";
+    private static final int NOTIFICATION_ID = 1240;
+    private static final long MINUTE_MS = 60000L;
+    private static final long RESCHEDULE_SLACK_MS = MINUTE_MS;
+
+    public static final String ACTION_INACTIVITY_ALARM = "com.evercare.INACTIVITY_ALARM";
+    public static final String ACTION_CHECK_IN_OK = "com.evercare.INACTIVITY_CHECK_IN_OK";
+    public static final String ACTION_INACTIVITY_ALERT = "com.evercare.INACTIVITY_ALERT";
+    public static final String EXTRA_INACTIVE_MS = "inactiveMs";
+
+    public static final int DEFAULT_PERIOD_MINUTES = 240;
+    public static final int DEFAULT_RESPONSE_MINUTES = 15;
+    public static final int DEFAULT_QUIET_START = 22 * 60; // minute of the day
+    public static final int DEFAULT_QUIET_END = 7 * 60;
+
+    private static final int WATCHING = 0;
+    private static final int PROMPTED = 1;
+    private static final int ESCALATED = 2;
+    private static final String[] STAGE_NAMES = {"watching", "prompted", "escalated"};
+
+    private static InactivityMonitor instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private boolean enabled;
+    private int periodMinutes;
+    private int responseMinutes;
+    private int quietStart;
+    private int quietEnd;
+
+    private long lastMotionAt;
+    private int stage;
+    private long promptedAt;
+    private long armedFor = 0;
+    private boolean started = false;
+    private Sensor significantMotion;
+    private Sensor stationary;
+    private long wakeups = 0;
+
+    private final TriggerEventListener motionListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            long start = SystemClock.elapsedRealtime();
+            onMotion(false);
+            EnergyLedger.getInstance(context).onWake(SystemClock.elapsedRealtime() - start);
+        }
+    };
+
+    private final TriggerEventListener stationaryListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            long start = SystemClock.elapsedRealtime();
+            onMotion(true);
+            EnergyLedger.getInstance(context).onWake(SystemClock.elapsedRealtime() - start);
+        }
+    };
+
+    public static synchronized InactivityMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new InactivityMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private InactivityMonitor(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        enabled = prefs.getBoolean("enabled", false);
+        periodMinutes = prefs.getInt("periodMinutes", DEFAULT_PERIOD_MINUTES);
+        responseMinutes = prefs.getInt("responseMinutes", DEFAULT_RESPONSE_MINUTES);
+        quietStart = prefs.getInt("quietStart", DEFAULT_QUIET_START);
+        quietEnd = prefs.getInt("quietEnd", DEFAULT_QUIET_END);
+        lastMotionAt = prefs.getLong("lastMotionAt", 0);
+        stage = prefs.getInt("stage", WATCHING);
+        promptedAt = prefs.getLong("promptedAt", 0);
+    }
+
+    /**
+     * Requests the motion triggers and arms the alarm. Safe to call again;
+     * the process may have been restarted by the alarm alone.
+     */
+    public synchronized void start() {
+        if (started || !enabled) {
+            return;
+        }
+        // Turning the phone on is motion enough
+        long bootedAt = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+        if (lastMotionAt < bootedAt) {
+            lastMotionAt = bootedAt;
+        }
+        SensorManager sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        significantMotion = sensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+        stationary = sensorManager.getDefaultSensor(Sensor.TYPE_STATIONARY_DETECT);
+        if (stationary != null && stationary.getReportingMode() != Sensor.REPORTING_MODE_ONE_SHOT) {
+            stationary = null; // only the one-shot form wakes us once per stretch
+        }
+        if (significantMotion == null) {
+            Log.w(TAG, "No significant motion sensor - inactivity check-ins are off");
+            return;
+        }
+        started = true;
+        sensorManager.requestTriggerSensor(motionListener, significantMotion);
+        if (stationary != null) {
+            sensorManager.requestTriggerSensor(stationaryListener, stationary);
+        }
+        arm();
+        Log.i(TAG, "Watching for " + periodMinutes + " min without motion"
+                + (stationary != null ? " (with stationary detect)" : ""));
+    }
+
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        SensorManager sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        sensorManager.cancelTriggerSensor(motionListener, significantMotion);
+        if (stationary != null) {
+            sensorManager.cancelTriggerSensor(stationaryListener, stationary);
+        }
+        cancelAlarm();
+        cancelPrompt();
+        stage = WATCHING;
+        save();
+    }
+
+    /**
+     * The inactivity or response alarm fired.
+     */
+    public synchronized void onAlarm() {
+        armedFor = 0;
+        if (!enabled) {
+            return;
+        }
+        wakeups++;
+        long now = System.currentTimeMillis();
+        if (stage == PROMPTED) {
+            if (now >= promptedAt + responseMinutes * MINUTE_MS) {
+                escalate(now);
+            } else {
+                arm();
+            }
+            return;
+        }
+        if (stage == ESCALATED) {
+            return; // the alert path owns it until the patient moves or answers
+        }
+        if (now < dueAt(now) - RESCHEDULE_SLACK_MS) {
+            arm(); // moved, or quiet hours, since the alarm was set
+        } else {
+            prompt(now);
+        }
+    }
+
+    /**
+     * The patient answered the check-in prompt or the alert.
+     */
+    public synchronized void onCheckedIn() {
+        Log.i(TAG, "Checked in");
+        lastMotionAt = Math.max(lastMotionAt, System.currentTimeMillis());
+        stage = WATCHING;
+        cancelPrompt();
+        save();
+        arm();
+    }
+
+    public synchronized void setConfig(boolean enabled, int periodMinutes, int responseMinutes,
+                                       int quietStart, int quietEnd) {
+        if (periodMinutes < 15 || responseMinutes < 1 || quietStart < 0 || quietStart >= 1440
+                || quietEnd < 0 || quietEnd >= 1440) {
+            throw new IllegalArgumentException("Period must be at least 15 minutes, response at least 1 and quiet hours within the day");
+        }
+        this.enabled = enabled;
+        this.periodMinutes = periodMinutes;
+        this.responseMinutes = responseMinutes;
+        this.quietStart = quietStart;
+        this.quietEnd = quietEnd;
+        prefs.edit()
+                .putBoolean("enabled", enabled)
+                .putInt("periodMinutes", periodMinutes)
+                .putInt("responseMinutes", responseMinutes)
+                .putInt("quietStart", quietStart)
+                .putInt("quietEnd", quietEnd)
+                .apply();
+        if (enabled) {
+            start();
+            armedFor = 0;
+            arm();
+        } else {
+            stop();
+        }
+    }
+
+    /**
+     * {enabled, periodMinutes, responseMinutes, quietStart, quietEnd}; quiet
+     * hours are minutes of the day and may wrap past midnight.
+     */
+    public synchronized Map<String, Object> getConfig() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", enabled);
+        map.put("periodMinutes", periodMinutes);
+        map.put("responseMinutes", responseMinutes);
+        map.put("quietStart", quietStart);
+        map.put("quietEnd", quietEnd);
+        return map;
+    }
+
+    /**
+     * {stage, lastMotionAt, alarmAt, supported, stationaryDetect, wakeups}
+     */
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("stage", STAGE_NAMES[stage]);
+        map.put("lastMotionAt", lastMotionAt);
+        map.put("alarmAt", armedFor);
+        map.put("supported", significantMotion != null);
+        map.put("stationaryDetect", stationary != null);
+        map.put("wakeups", wakeups);
+        return map;
+    }
+
+    private synchronized void onMotion(boolean settled) {
+        wakeups++;
+        if (!started) {
+            return;
+        }
+        lastMotionAt = System.currentTimeMillis();
+        SensorManager sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        if (settled) {
+            sensorManager.requestTriggerSensor(motionListener, significantMotion);
+        } else if (stationary != null) {
+            // Significant motion stays off until the patient settles again
+            sensorManager.requestTriggerSensor(stationaryListener, stationary);
+        } else {
+            sensorManager.requestTriggerSensor(motionListener, significantMotion);
+        }
+        if (stage != WATCHING) {
+            Log.i(TAG, "Motion after the check-in prompt");
+            stage = WATCHING;
+            cancelPrompt();
+        }
+        arm();
+    }
+
+    private void prompt(long now) {
+        Log.w(TAG, "No motion for " + (now - lastMotionAt) / MINUTE_MS + " min - asking the patient to check in");
+        stage = PROMPTED;
+        promptedAt = now;
+        save();
+        showPrompt(now - lastMotionAt);
+        arm();
+    }
+
+    private void escalate(long now) {
+        Log.w(TAG, "Check-in unanswered - raising the alert");
+        stage = ESCALATED;
+        save();
+        cancelPrompt();
+        Intent intent = new Intent(context, BackgroundService.class);
+        intent.setAction(ACTION_INACTIVITY_ALERT);
+        intent.putExtra(EXTRA_INACTIVE_MS, now - lastMotionAt);
+        try {
+            // The while-idle alarm lets the app start its service from the background
+            context.startService(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "Could not start the alert: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Arms the single alarm for the current stage.
+     */
+    private void arm() {
+        if (!started || !enabled) {
+            return;
+        }
+        if (stage == PROMPTED) {
+            armAt(promptedAt + responseMinutes * MINUTE_MS);
+        } else if (stage == WATCHING) {
+            long due = dueAt(System.currentTimeMillis());
+            if (Math.abs(due - armedFor) < RESCHEDULE_SLACK_MS) {
+                return; // close enough - save the AlarmManager call and the write
+            }
+            save();
+            armAt(due);
+        }
+    }
+
+    private void armAt(long at) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = alarmIntent();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, at, pendingIntent);
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, at, pendingIntent);
+        }
+        armedFor = at;
+        EnergyLedger.getInstance(context).count(EnergyLedger.ALARMS);
+    }
+
+    private void cancelAlarm() {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(alarmIntent());
+        armedFor = 0;
+    }
+
+    private PendingIntent alarmIntent() {
+        Intent intent = new Intent(context, InactivityAlarmReceiver.class);
+        intent.setAction(ACTION_INACTIVITY_ALARM);
+        return PendingIntent.getBroadcast(context, 0, intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * When the check-in is due as seen at wallMs: the period counted from
+     * the last motion or the most recent end of quiet hours, whichever is
+     * later. Inside quiet hours that is the coming end.
+     */
+    private long dueAt(long wallMs) {
+        long countFrom = lastMotionAt;
+        if (quietStart != quietEnd) {
+            long quietOver = isQuiet(wallMs) ? quietEndAfter(wallMs) : quietEndAtOrBefore(wallMs);
+            countFrom = Math.max(countFrom, quietOver);
+        }
+        return countFrom + periodMinutes * MINUTE_MS;
+    }
+
+    private boolean isQuiet(long wallMs) {
+        if (quietStart == quietEnd) {
+            return false;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(wallMs);
+        int minute = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+        return quietStart < quietEnd
+                ? minute >= quietStart && minute < quietEnd
+                : minute >= quietStart || minute < quietEnd;
+    }
+
+    private long quietEndAfter(long wallMs) {
+        Calendar calendar = quietEndOn(wallMs);
+        if (calendar.getTimeInMillis() <= wallMs) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    private long quietEndAtOrBefore(long wallMs) {
+        Calendar calendar = quietEndOn(wallMs);
+        if (calendar.getTimeInMillis() > wallMs) {
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    private Calendar quietEndOn(long wallMs) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(wallMs);
+        calendar.set(Calendar.HOUR_OF_DAY, quietEnd / 60);
+        calendar.set(Calendar.MINUTE, quietEnd % 60);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+
+    private void showPrompt(long inactiveMs) {
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && notificationManager.getNotificationChannel(CHANNEL_ID) == null) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Check-ins", NotificationManager.IMPORTANCE_HIGH);
+            channel.setDescription("Asks if you are OK after a long time without movement");
+            channel.enableVibration(true);
+            notificationManager.createNotificationChannel(channel);
+        }
+
+        Intent okIntent = new Intent(context, InactivityAlarmReceiver.class);
+        okIntent.setAction(ACTION_CHECK_IN_OK);
+        PendingIntent okPendingIntent = PendingIntent.getBroadcast(context, 1, okIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        Intent openIntent = new Intent(context, MainActivity.class);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0, openIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        long hours = inactiveMs / (60 * MINUTE_MS);
+        String still = hours >= 1 ? hours + (hours == 1 ? " hour" : " hours") : inactiveMs / MINUTE_MS + " minutes";
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_warning)
+                .setContentTitle("Are you OK?")
+                .setContentText("No movement for " + still + ". Tap 'I'm OK' or help will be called in "
+                        + responseMinutes + " minutes.")
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_REMINDER)
+                .setContentIntent(contentIntent)
+                .setDeleteIntent(okPendingIntent) // dismissing it is an answer too
+                .addAction(android.R.drawable.ic_menu_close_clear_cancel, "I'm OK", okPendingIntent)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setAutoCancel(true);
+
+        try {
+            notificationManager.notify(NOTIFICATION_ID, builder.build());
+            EnergyLedger.getInstance(context).count(EnergyLedger.NOTIFICATIONS);
+        } catch (Exception e) {
+            Log.e(TAG, "Error showing check-in prompt: " + e.getMessage());
+        }
+    }
+
+    private void cancelPrompt() {
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.cancel(NOTIFICATION_ID);
+    }
+
+    private void save() {
+        prefs.edit()
+                .putLong("lastMotionAt", lastMotionAt)
+                .putInt("stage", stage)
+                .putLong("promptedAt", promptedAt)
+                .apply();
+    }
+}
@@ -0,0 +1,352 @@
+package com.evercare;
+
+import android.net.Credentials;
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accepts accelerometer samples pushed over a local socket in the
+ * SampleFrameCodec format: a wristband bridge, a simulator or a replay
+ * tool. Each connection names its device; a device that reconnects keeps
+ * its counters, and a second connection under the same name replaces the
+ * first. Sender timestamps are moved onto the elapsedRealtime clock by a
+ * per-device ClockOffsetEstimator. Samples go through a bounded SampleRing
+ * to one delivery thread, so a slow detector drops old samples instead of
+ * stalling the readers.
+ *
+ * Only this app's uid may connect (and adb shell in debug builds), checked
+ * with the peer credentials of each connection.
+ */
+public class LocalSocketSensorSource implements SensorSource {
+
+    private static final String TAG = "LocalSocketSource";
+    public static final String DEFAULT_SOCKET_NAME = "com.evercare.sensors";
+
+    private static final int MAX_DEVICES = 16;
+    private static final int RING_CAPACITY = 8192; // ~5 s of four 400 Hz devices
+    private static final long OFFSET_WINDOW_NS = 30000000000L; // 30 seconds
+    private static final long MAX_ACCEPT_BACKOFF_MS = 30000;
+    private static final int SHELL_UID = 2000;
+
+    private static class Device {
+        final int index;
+        final String name;
+        final ClockOffsetEstimator clock = new ClockOffsetEstimator(OFFSET_WINDOW_NS);
+        LocalSocket socket;
+        long connections;
+        long frames;
+        long samples;
+        long bytes;
+        long malformed;
+
+        Device(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+    }
+
+    private final String socketName;
+    private final SampleRing ring = new SampleRing(RING_CAPACITY, MAX_DEVICES);
+    private final Map<String, Device> devices = new HashMap<>();
+    private final List<Device> deviceList = new ArrayList<>();
+    // Read by the delivery thread without the source lock; a name is set before its first sample is buffered
+    private final String[] deviceNames = new String[MAX_DEVICES];
+    private volatile boolean running = false;
+    private LocalServerSocket server;
+    private Thread acceptThread;
+    private Thread deliveryThread;
+    private long rejected = 0;
+
+    public LocalSocketSensorSource() {
+        this(DEFAULT_SOCKET_NAME);
+    }
+
+    public LocalSocketSensorSource(String socketName) {
+        this.socketName = socketName;
+    }
+
+    @Override
+    public String getName() {
+        return "socket:" + socketName;
+    }
+
+    @Override
+    public synchronized boolean start(final Sink sink) {
+        if (running) {
+            return true;
+        }
+        running = true;
+
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "SensorSocketAccept");
+        acceptThread.start();
+
+        deliveryThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                deliver(sink);
+            }
+        }, "SensorSocketDelivery");
+        deliveryThread.start();
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        List<LocalSocket> open = new ArrayList<>();
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            for (Device device : deviceList) {
+                if (device.socket != null) {
+                    open.add(device.socket);
+                }
+            }
+        }
+        for (LocalSocket socket : open) {
+            closeQuietly(socket);
+        }
+        // accept() does not return when the server socket is closed; wake it with a connection
+        try {
+            LocalSocket wake = new LocalSocket();
+            wake.connect(new LocalSocketAddress(socketName));
+            wake.close();
+        } catch (IOException e) {
+            Log.d(TAG, "Accept thread already gone: " + e.getMessage());
+        }
+        if (deliveryThread != null) {
+            deliveryThread.interrupt();
+            // The sink's state is the caller's to save once nothing more is delivered
+            try {
+                deliveryThread.join(1000);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted waiting for the delivery thread");
+            }
+        }
+        Log.d(TAG, "Stopped " + socketName);
+    }
+
+    private void acceptLoop() {
+        long backoffMs = 500;
+        while (running) {
+            try {
+                if (server == null) {
+                    server = new LocalServerSocket(socketName);
+                    Log.i(TAG, "Listening on " + socketName);
+                    backoffMs = 500;
+                }
+                final LocalSocket socket = server.accept();
+                if (!running) {
+                    closeQuietly(socket);
+                    break;
+                }
+                if (!isTrusted(socket)) {
+                    closeQuietly(socket);
+                    continue;
+                }
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        read(socket);
+                    }
+                }, "SensorSocketReader").start();
+            } catch (IOException e) {
+                Log.e(TAG, "Accept failed, retrying in " + backoffMs + "ms: " + e.getMessage());
+                closeServer();
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_ACCEPT_BACKOFF_MS);
+            }
+        }
+        closeServer();
+    }
+
+    private boolean isTrusted(LocalSocket socket) {
+        try {
+            Credentials peer = socket.getPeerCredentials();
+            if (peer.getUid() == Process.myUid() || (BuildConfig.DEBUG && peer.getUid() == SHELL_UID)) {
+                return true;
+            }
+            Log.w(TAG, "Rejected sensor connection from uid " + peer.getUid());
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read peer credentials: " + e.getMessage());
+        }
+        synchronized (this) {
+            rejected++;
+        }
+        return false;
+    }
+
+    private void read(LocalSocket socket) {
+        SampleFrameCodec codec = new SampleFrameCodec();
+        Device device = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 8192));
+            device = attach(codec.readHandshake(in), socket);
+            if (device == null) {
+                return;
+            }
+            final Device current = device;
+            SampleFrameCodec.FrameListener listener = new SampleFrameCodec.FrameListener() {
+                @Override
+                public void onSamples(long[] timestampsNs, float[] x, float[] y, float[] z, int count) {
+                    // The newest sample of a frame was taken closest to when it was sent
+                    current.clock.observe(timestampsNs[count - 1], SystemClock.elapsedRealtimeNanos());
+                    ring.put(current.index, timestampsNs, x, y, z, count, current.clock.getOffsetNs());
+                    synchronized (LocalSocketSensorSource.this) {
+                        current.frames++;
+                        current.samples += count;
+                    }
+                }
+
+                @Override
+                public void onClock(long senderNs) {
+                    current.clock.observe(senderNs, SystemClock.elapsedRealtimeNanos());
+                }
+            };
+            long counted = codec.getBytesRead();
+            while (running) {
+                codec.readFrame(in, listener);
+                synchronized (this) {
+                    device.bytes += codec.getBytesRead() - counted;
+                }
+                counted = codec.getBytesRead();
+            }
+        } catch (EOFException e) {
+            Log.i(TAG, (device != null ? device.name : "Unnamed sender") + " disconnected");
+        } catch (IOException e) {
+            if (running && device != null && device.socket == socket) {
+                synchronized (this) {
+                    device.malformed++;
+                }
+                Log.w(TAG, "Dropping connection from " + device.name + ": " + e.getMessage());
+            }
+        } finally {
+            closeQuietly(socket);
+            synchronized (this) {
+                if (device != null && device.socket == socket) {
+                    device.socket = null;
+                }
+            }
+        }
+    }
+
+    private Device attach(String name, LocalSocket socket) {
+        LocalSocket replaced = null;
+        Device device;
+        synchronized (this) {
+            device = devices.get(name);
+            if (device == null) {
+                if (deviceList.size() == MAX_DEVICES) {
+                    Log.w(TAG, "Too many sensor devices, refusing " + name);
+                    closeQuietly(socket);
+                    return null;
+                }
+                device = new Device(deviceList.size(), name);
+                deviceNames[device.index] = name;
+                devices.put(name, device);
+                deviceList.add(device);
+            }
+            replaced = device.socket;
+            device.socket = socket;
+            device.connections++;
+            // A reconnecting sender may have restarted its clock
+            device.clock.reset();
+        }
+        if (replaced != null) {
+            Log.w(TAG, name + " connected again, closing the previous connection");
+            closeQuietly(replaced);
+        }
+        Log.i(TAG, name + " connected (connection " + device.connections + ")");
+        return device;
+    }
+
+    private void deliver(final Sink sink) {
+        SampleRing.Consumer consumer = new SampleRing.Consumer() {
+            @Override
+            public void onSample(int index, float x, float y, float z, long timestampNs) {
+                sink.onSample(deviceNames[index], x, y, z, timestampNs / 1000000L);
+            }
+        };
+        while (running) {
+            try {
+                ring.drainTo(consumer, 1000);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "Error delivering samples: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Per device: connected, connections, frames, samples, bytes, dropped,
+     * malformed, offsetMs and overheadBytesPerSample - the bytes on the wire
+     * per sample beyond its 6 bytes of axis data.
+     */
+    @Override
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("running", running);
+        stats.put("rejected", rejected);
+        stats.put("buffered", ring.size());
+        Map<String, Object> perDevice = new HashMap<>();
+        for (Device device : deviceList) {
+            Map<String, Object> d = new HashMap<>();
+            d.put("connected", device.socket != null);
+            d.put("connections", device.connections);
+            d.put("frames", device.frames);
+            d.put("samples", device.samples);
+            d.put("bytes", device.bytes);
+            d.put("dropped", ring.getDropped(device.index));
+            d.put("malformed", device.malformed);
+            d.put("offsetMs", device.clock.getOffsetNs() / 1e6);
+            d.put("overheadBytesPerSample", device.samples > 0
+                    ? (device.bytes - (double) SampleFrameCodec.AXIS_BYTES * device.samples) / device.samples
+                    : 0.0);
+            perDevice.put(device.name, d);
+        }
+        stats.put("devices", perDevice);
+        return stats;
+    }
+
+    private synchronized void closeServer() {
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                Log.d(TAG, "Error closing server socket: " + e.getMessage());
+            }
+            server = null;
+        }
+    }
+
+    private static void closeQuietly(LocalSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.d(TAG, "Error closing sensor socket: " + e.getMessage());
+        }
+    }
+}
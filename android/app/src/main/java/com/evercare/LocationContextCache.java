@@ -0,0 +1,422 @@
+package com.evercare;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+import android.location.Location;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Turns a fall location into something a caretaker can read at a glance,
+ * without touching the network when the fall happens.
+ *
+ * Known places (home, clinic, family) are bucketed into geohash cells they
+ * overlap, so finding the place a point is in means one map lookup and a
+ * distance check against the few places in that cell. Street addresses come
+ * from an LRU of reverse-geocoded cells that is filled in the background
+ * while the device is on Wi-Fi, as the user moves around.
+ */
+public class LocationContextCache {
+
+    private static final String TAG = "LocationContextCache";
+    private static final String FILE_NAME = "location_context.bin";
+    private static final int FILE_VERSION = 1;
+
+    private static final int PLACE_PRECISION = 7; // ~150 m cells
+    private static final int ADDRESS_PRECISION = 8; // ~38 x 19 m cells
+    private static final int MAX_ADDRESSES = 512;
+    private static final float MAX_PLACE_RADIUS = 1000; // meters
+    private static final float MAX_GEOCODE_ACCURACY = 100; // coarser fixes would name the wrong street
+    private static final long MIN_GEOCODE_INTERVAL = 30 * 1000;
+
+    public static class Place {
+        public final String id;
+        public final String kind; // "home", "clinic", "family", ...
+        public final String label;
+        public final double latitude;
+        public final double longitude;
+        public final float radius;
+
+        public Place(String id, String kind, String label, double latitude, double longitude, float radius) {
+            this.id = id != null ? id : "";
+            this.kind = kind != null ? kind : "";
+            this.label = label != null ? label : "";
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radius = Math.max(10, Math.min(MAX_PLACE_RADIUS, radius));
+        }
+    }
+
+    /**
+     * What is known about a point. Either field may be null.
+     */
+    public static class Description {
+        public final String place;
+        public final String address;
+
+        Description(String place, String address) {
+            this.place = place;
+            this.address = address;
+        }
+    }
+
+    private static LocationContextCache instance;
+
+    private final Context context;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final List<Place> places = new ArrayList<>();
+    private final Map<String, List<Place>> placeGrid = new HashMap<>();
+    private final LinkedHashMap<String, String> addresses = new LinkedHashMap<String, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ADDRESSES;
+        }
+    };
+
+    private long lastGeocodeAt = 0;
+    private boolean geocodeInFlight = false;
+    private long placeHits = 0;
+    private long addressHits = 0;
+    private long lookups = 0;
+    private long geocodes = 0;
+    private long geocodeFailures = 0;
+
+    public static synchronized LocationContextCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocationContextCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LocationContextCache(Context context) {
+        this.context = context;
+        load();
+    }
+
+    /**
+     * Replaces the known places, e.g. after the user edits them in the app.
+     */
+    public void setKnownPlaces(List<Place> newPlaces) {
+        synchronized (this) {
+            places.clear();
+            places.addAll(newPlaces);
+            rebuildGrid();
+            Log.d(TAG, "Known places set: " + places.size() + " in " + placeGrid.size() + " cells");
+        }
+        saveAsync();
+        prefetchPlaces();
+    }
+
+    /**
+     * Place and address for a point from memory only. Safe to call from the
+     * sensor thread at the moment of a fall.
+     */
+    public synchronized Description describe(double latitude, double longitude) {
+        lookups++;
+
+        Place best = null;
+        double bestDistance = Double.MAX_VALUE;
+        List<Place> candidates = placeGrid.get(Geohash.encode(latitude, longitude, PLACE_PRECISION));
+        if (candidates != null) {
+            for (Place place : candidates) {
+                double distance = Geohash.distanceMeters(latitude, longitude, place.latitude, place.longitude);
+                if (distance <= place.radius && distance < bestDistance) {
+                    best = place;
+                    bestDistance = distance;
+                }
+            }
+        }
+
+        // The point's own cell, else whichever neighbouring cell was geocoded
+        String address = null;
+        for (String cell : Geohash.withNeighbors(latitude, longitude, ADDRESS_PRECISION)) {
+            address = addresses.get(cell);
+            if (address != null) {
+                break;
+            }
+        }
+
+        if (best != null) {
+            placeHits++;
+        }
+        if (address != null) {
+            addressHits++;
+        }
+        return new Description(best != null ? formatPlace(best) : null, address);
+    }
+
+    /**
+     * Called with every location update. Geocodes the cell in the background
+     * if it is not cached yet and the connection is Wi-Fi.
+     */
+    public void onLocation(Location location) {
+        if (location == null || (location.hasAccuracy() && location.getAccuracy() > MAX_GEOCODE_ACCURACY)) {
+            return;
+        }
+        final double latitude = location.getLatitude();
+        final double longitude = location.getLongitude();
+        synchronized (this) {
+            if (addresses.containsKey(Geohash.encode(latitude, longitude, ADDRESS_PRECISION))
+                    || geocodeInFlight
+                    || SystemClock.elapsedRealtime() - lastGeocodeAt < MIN_GEOCODE_INTERVAL) {
+                return;
+            }
+        }
+        if (!isOnWifi()) {
+            return;
+        }
+        synchronized (this) {
+            geocodeInFlight = true;
+            lastGeocodeAt = SystemClock.elapsedRealtime();
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (geocode(latitude, longitude)) {
+                        save();
+                    }
+                } finally {
+                    synchronized (LocationContextCache.this) {
+                        geocodeInFlight = false;
+                    }
+                }
+            }
+        });
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("places", places.size());
+        stats.put("placeCells", placeGrid.size());
+        stats.put("addresses", addresses.size());
+        stats.put("lookups", lookups);
+        stats.put("placeHits", placeHits);
+        stats.put("addressHits", addressHits);
+        stats.put("geocodes", geocodes);
+        stats.put("geocodeFailures", geocodeFailures);
+        return stats;
+    }
+
+    private static String formatPlace(Place place) {
+        if (place.label.isEmpty()) {
+            return place.kind;
+        }
+        if (place.kind.isEmpty() || place.kind.equalsIgnoreCase(place.label)) {
+            return place.label;
+        }
+        return place.label + " (" + place.kind + ")";
+    }
+
+    // Adds every place to each cell its circle can overlap
+    private void rebuildGrid() {
+        placeGrid.clear();
+        double cellHeight = Geohash.cellHeight(PLACE_PRECISION);
+        double cellWidth = Geohash.cellWidth(PLACE_PRECISION);
+        for (Place place : places) {
+            double dLat = place.radius / 111320.0;
+            double dLon = place.radius / (111320.0 * Math.max(0.01, Math.cos(Math.toRadians(place.latitude))));
+            // Step at half a cell so no overlapped cell is skipped
+            for (double lat = place.latitude - dLat; lat <= place.latitude + dLat + cellHeight / 2; lat += cellHeight / 2) {
+                for (double lon = place.longitude - dLon; lon <= place.longitude + dLon + cellWidth / 2; lon += cellWidth / 2) {
+                    String cell = Geohash.encode(Math.max(-90, Math.min(89.9999999, lat)),
+                            Geohash.wrapLongitude(lon), PLACE_PRECISION);
+                    List<Place> bucket = placeGrid.get(cell);
+                    if (bucket == null) {
+                        bucket = new ArrayList<>(1);
+                        placeGrid.put(cell, bucket);
+                    }
+                    if (!bucket.contains(place)) {
+                        bucket.add(place);
+                    }
+                }
+            }
+        }
+    }
+
+    private void prefetchPlaces() {
+        if (!isOnWifi()) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Place> snapshot;
+                synchronized (LocationContextCache.this) {
+                    snapshot = new ArrayList<>(places);
+                }
+                boolean added = false;
+                for (Place place : snapshot) {
+                    boolean cached;
+                    synchronized (LocationContextCache.this) {
+                        cached = addresses.containsKey(Geohash.encode(place.latitude, place.longitude, ADDRESS_PRECISION));
+                    }
+                    if (!cached) {
+                        added |= geocode(place.latitude, place.longitude);
+                    }
+                }
+                if (added) {
+                    save();
+                }
+            }
+        });
+    }
+
+    // Runs on the executor only
+    private boolean geocode(double latitude, double longitude) {
+        if (!Geocoder.isPresent()) {
+            return false;
+        }
+        try {
+            List<Address> results = new Geocoder(context, Locale.getDefault()).getFromLocation(latitude, longitude, 1);
+            synchronized (this) {
+                geocodes++;
+            }
+            if (results == null || results.isEmpty()) {
+                return false;
+            }
+            String text = formatAddress(results.get(0));
+            if (text == null) {
+                return false;
+            }
+            synchronized (this) {
+                addresses.put(Geohash.encode(latitude, longitude, ADDRESS_PRECISION), text);
+            }
+            Log.d(TAG, "Cached address for " + Geohash.encode(latitude, longitude, ADDRESS_PRECISION));
+            return true;
+        } catch (Exception e) {
+            synchronized (this) {
+                geocodeFailures++;
+            }
+            Log.e(TAG, "Reverse geocoding failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static String formatAddress(Address address) {
+        if (address.getMaxAddressLineIndex() >= 0 && address.getAddressLine(0) != null) {
+            return address.getAddressLine(0);
+        }
+        StringBuilder text = new StringBuilder();
+        if (address.getThoroughfare() != null) {
+            text.append(address.getThoroughfare());
+            if (address.getSubThoroughfare() != null) {
+                text.append(' ').append(address.getSubThoroughfare());
+            }
+        }
+        if (address.getLocality() != null) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(address.getLocality());
+        }
+        return text.length() > 0 ? text.toString() : null;
+    }
+
+    private boolean isOnWifi() {
+        try {
+            ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkCapabilities capabilities = connectivity.getNetworkCapabilities(connectivity.getActiveNetwork());
+            return capabilities != null
+                    && (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)
+                        || capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED));
+        } catch (Exception e) {
+            Log.e(TAG, "Error checking connectivity: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void saveAsync() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                save();
+            }
+        });
+    }
+
+    private void load() {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Unknown location context file version - starting empty");
+                return;
+            }
+            synchronized (this) {
+                int placeCount = in.readInt();
+                for (int i = 0; i < placeCount; i++) {
+                    places.add(new Place(in.readUTF(), in.readUTF(), in.readUTF(),
+                            in.readDouble(), in.readDouble(), in.readFloat()));
+                }
+                // Stored least recently used first, so re-inserting keeps the order
+                int addressCount = in.readInt();
+                for (int i = 0; i < addressCount; i++) {
+                    addresses.put(in.readUTF(), in.readUTF());
+                }
+                rebuildGrid();
+            }
+            Log.d(TAG, "Restored " + places.size() + " place(s) and " + addresses.size() + " address(es)");
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading location context: " + e.getMessage());
+        }
+    }
+
+    // Runs on the executor only
+    private void save() {
+        List<Place> placeSnapshot;
+        List<Map.Entry<String, String>> addressSnapshot;
+        synchronized (this) {
+            placeSnapshot = new ArrayList<>(places);
+            addressSnapshot = new ArrayList<>(new LinkedHashMap<>(addresses).entrySet());
+        }
+
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(placeSnapshot.size());
+            for (Place place : placeSnapshot) {
+                out.writeUTF(place.id);
+                out.writeUTF(place.kind);
+                out.writeUTF(place.label);
+                out.writeDouble(place.latitude);
+                out.writeDouble(place.longitude);
+                out.writeFloat(place.radius);
+            }
+            out.writeInt(addressSnapshot.size());
+            for (Map.Entry<String, String> entry : addressSnapshot) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving location context: " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Could not replace " + file);
+        }
+    }
+}
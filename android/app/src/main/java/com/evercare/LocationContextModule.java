@@ -0,0 +1,77 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class LocationContextModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "LocationContextModule";
+    private static final float DEFAULT_RADIUS = 150; // meters
+
+    public LocationContextModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "LocationContext";
+    }
+
+    /**
+     * Replace the known places: [{id, kind, label, latitude, longitude, radius?}].
+     * kind is free text such as "home", "clinic" or "family".
+     */
+    @ReactMethod
+    public void setKnownPlaces(ReadableArray array, Promise promise) {
+        try {
+            List<LocationContextCache.Place> places = new ArrayList<>();
+            for (int i = 0; i < array.size(); i++) {
+                ReadableMap map = array.getMap(i);
+                places.add(new LocationContextCache.Place(
+                        map.hasKey("id") ? map.getString("id") : String.valueOf(i),
+                        map.hasKey("kind") ? map.getString("kind") : null,
+                        map.hasKey("label") ? map.getString("label") : null,
+                        map.getDouble("latitude"),
+                        map.getDouble("longitude"),
+                        map.hasKey("radius") ? (float) map.getDouble("radius") : DEFAULT_RADIUS));
+            }
+            LocationContextCache.getInstance(getReactApplicationContext()).setKnownPlaces(places);
+            promise.resolve(places.size());
+        } catch (Exception e) {
+            Log.e(TAG, "Error setting known places: " + e.getMessage());
+            promise.reject("LOCATION_CONTEXT_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * The cached place and address for a point, without any network access
+     */
+    @ReactMethod
+    public void describe(double latitude, double longitude, Promise promise) {
+        LocationContextCache.Description where =
+                LocationContextCache.getInstance(getReactApplicationContext()).describe(latitude, longitude);
+        WritableMap result = Arguments.createMap();
+        result.putString("place", where.place);
+        result.putString("address", where.address);
+        promise.resolve(result);
+    }
+
+    @ReactMethod
+    public void getStats(Promise promise) {
+        WritableMap result = Arguments.createMap();
+        for (Map.Entry<String, Object> entry : LocationContextCache.getInstance(getReactApplicationContext()).getStats().entrySet()) {
+            result.putDouble(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+        }
+        promise.resolve(result);
+    }
+}
@@ -30,6 +30,22 @@ public class MainApplication extends Application implements ReactApplication {
             packages.add(new AuthStoragePackage());
             packages.add(new ForegroundServicePackage());
             packages.add(new SettingsPackage());
+            packages.add(new SlotIndexPackage());
+            packages.add(new SearchIndexPackage());
+            packages.add(new FallUploaderPackage());
+            packages.add(new ReminderSchedulerPackage());
+            packages.add(new LocationContextPackage());
+            packages.add(new SmsAlertPackage());
+            packages.add(new AlertDispatcherPackage());
+            packages.add(new EnergyReportPackage());
+            packages.add(new FallTracePackage());
+            packages.add(new MotionStreamPackage());
+            packages.add(new ShadowDetectorsPackage());
+            packages.add(new FallExportPackage());
+            packages.add(new ActivitySummaryPackage());
+            packages.add(new InactivityPackage());
+            packages.add(new CalendarSyncPackage());
+            packages.add(new FallHotspotsPackage());
             return packages;
         }
 
@@ -0,0 +1,206 @@
+package com.evercare;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects accelerometer samples between display frames and hands them
+ * out once per frame, downsampled per source with Largest-Triangle-Three-
+ * Buckets on the magnitude so peaks and dips survive. Each frame's
+ * selection is anchored on the last point sent in the previous frame, so
+ * consecutive frames join into one line.
+ *
+ * Only reachable from the sensor threads while a live view is open: the
+ * sinks read active() and do nothing when it is null.
+ */
+public class MotionFrameCoalescer {
+
+    private static final int BUFFER_CAPACITY = 4096; // per source, ~10 s at 400 Hz
+    public static final int STRIDE = 4; // dt (ms from t0), x, y, z
+
+    private static volatile MotionFrameCoalescer active;
+
+    public static MotionFrameCoalescer active() {
+        return active;
+    }
+
+    public static void setActive(MotionFrameCoalescer coalescer) {
+        active = coalescer;
+    }
+
+    public static class Frame {
+        public final String source;
+        public final long t0; // sensor timestamp of the first point, ms
+        public final double[] packed; // STRIDE values per point
+        public final int rawCount; // samples this frame stood for
+        public final long dropped; // samples lost to a full buffer since the last frame
+
+        Frame(String source, long t0, double[] packed, int rawCount, long dropped) {
+            this.source = source;
+            this.t0 = t0;
+            this.packed = packed;
+            this.rawCount = rawCount;
+            this.dropped = dropped;
+        }
+
+        public int points() {
+            return packed.length / STRIDE;
+        }
+    }
+
+    private static class SourceBuffer {
+        final long[] t = new long[BUFFER_CAPACITY];
+        final float[] x = new float[BUFFER_CAPACITY];
+        final float[] y = new float[BUFFER_CAPACITY];
+        final float[] z = new float[BUFFER_CAPACITY];
+        int head = 0;
+        int size = 0;
+        long dropped = 0;
+        boolean hasAnchor = false;
+        long anchorT;
+        float anchorMagnitude;
+    }
+
+    private final Map<String, SourceBuffer> buffers = new LinkedHashMap<>();
+    // Scratch for one source's frame, reused on the frame thread
+    private long[] frameT = new long[BUFFER_CAPACITY];
+    private float[] frameX = new float[BUFFER_CAPACITY];
+    private float[] frameY = new float[BUFFER_CAPACITY];
+    private float[] frameZ = new float[BUFFER_CAPACITY];
+    private float[] frameMagnitude = new float[BUFFER_CAPACITY];
+    private int[] selected = new int[BUFFER_CAPACITY];
+
+    public synchronized void onSample(String source, float x, float y, float z, long timestampMs) {
+        SourceBuffer buffer = buffers.get(source);
+        if (buffer == null) {
+            buffer = new SourceBuffer();
+            buffers.put(source, buffer);
+        }
+        if (buffer.size == BUFFER_CAPACITY) {
+            buffer.head = (buffer.head + 1) % BUFFER_CAPACITY;
+            buffer.size--;
+            buffer.dropped++;
+        }
+        int tail = (buffer.head + buffer.size) % BUFFER_CAPACITY;
+        buffer.t[tail] = timestampMs;
+        buffer.x[tail] = x;
+        buffer.y[tail] = y;
+        buffer.z[tail] = z;
+        buffer.size++;
+    }
+
+    /**
+     * Everything collected since the last call, at most maxPoints points
+     * per source. Sources with nothing new are left out.
+     */
+    public List<Frame> drain(int maxPoints) {
+        List<Frame> frames = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, SourceBuffer> entry : buffers.entrySet()) {
+                SourceBuffer buffer = entry.getValue();
+                if (buffer.size == 0) {
+                    continue;
+                }
+                int n = buffer.size;
+                for (int i = 0; i < n; i++) {
+                    int index = (buffer.head + i) % BUFFER_CAPACITY;
+                    frameT[i] = buffer.t[index];
+                    frameX[i] = buffer.x[index];
+                    frameY[i] = buffer.y[index];
+                    frameZ[i] = buffer.z[index];
+                    frameMagnitude[i] = (float) Math.sqrt(frameX[i] * frameX[i] + frameY[i] * frameY[i] + frameZ[i] * frameZ[i]);
+                }
+                buffer.head = 0;
+                buffer.size = 0;
+
+                int count = select(frameT, frameMagnitude, n, buffer.hasAnchor, buffer.anchorT,
+                        buffer.anchorMagnitude, maxPoints, selected);
+                int last = selected[count - 1];
+                buffer.hasAnchor = true;
+                buffer.anchorT = frameT[last];
+                buffer.anchorMagnitude = frameMagnitude[last];
+
+                long t0 = frameT[selected[0]];
+                double[] packed = new double[count * STRIDE];
+                for (int i = 0; i < count; i++) {
+                    int s = selected[i];
+                    packed[i * STRIDE] = frameT[s] - t0;
+                    packed[i * STRIDE + 1] = frameX[s];
+                    packed[i * STRIDE + 2] = frameY[s];
+                    packed[i * STRIDE + 3] = frameZ[s];
+                }
+                frames.add(new Frame(entry.getKey(), t0, packed, n, buffer.dropped));
+                buffer.dropped = 0;
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * LTTB over n points, writing the chosen indices to out in order and
+     * returning how many. The last point is always kept; the first is too
+     * unless an anchor (the previous frame's last point) stands in for it.
+     */
+    static int select(long[] t, float[] v, int n, boolean hasAnchor, long anchorT, float anchorV,
+                      int maxPoints, int[] out) {
+        if (n <= maxPoints) {
+            for (int i = 0; i < n; i++) {
+                out[i] = i;
+            }
+            return n;
+        }
+        int count = 0;
+        int start = 0;
+        double previousT;
+        double previousV;
+        if (hasAnchor) {
+            previousT = anchorT;
+            previousV = anchorV;
+        } else {
+            out[count++] = 0;
+            previousT = t[0];
+            previousV = v[0];
+            start = 1;
+        }
+        // Points between start and the fixed last point go into this many buckets
+        int buckets = maxPoints - count - 1;
+        int middle = n - 1 - start;
+        for (int b = 0; b < buckets; b++) {
+            int from = start + (int) ((long) b * middle / buckets);
+            int to = start + (int) ((long) (b + 1) * middle / buckets);
+            // Average of the next bucket, or the last point for the final bucket
+            double nextT;
+            double nextV;
+            if (b + 1 < buckets) {
+                int nextTo = start + (int) ((long) (b + 2) * middle / buckets);
+                nextT = 0;
+                nextV = 0;
+                for (int i = to; i < nextTo; i++) {
+                    nextT += t[i];
+                    nextV += v[i];
+                }
+                nextT /= nextTo - to;
+                nextV /= nextTo - to;
+            } else {
+                nextT = t[n - 1];
+                nextV = v[n - 1];
+            }
+            int best = from;
+            double bestArea = -1;
+            for (int i = from; i < to; i++) {
+                double area = Math.abs((previousT - nextT) * (v[i] - previousV) - (previousT - t[i]) * (nextV - previousV));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+            out[count++] = best;
+            previousT = t[best];
+            previousV = v[best];
+        }
+        out[count++] = n - 1;
+        return count;
+    }
+}
@@ -0,0 +1,175 @@
+package com.evercare;
+
+import android.util.Log;
+import android.view.Choreographer;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live accelerometer view for JS. While at least one "MotionFrame" listener
+ * is attached, samples from every source are collected and sent once per
+ * display frame, at most 60 times a second:
+ *
+ *   {frames: [{source, t0, stride, data: [dt, x, y, z, dt, x, y, z, ...], raw, dropped}]}
+ *
+ * dt is milliseconds since t0 (a sensor timestamp), raw the number of
+ * samples the frame was downsampled from. With no listener nothing is
+ * collected and the sensor threads see only a null check.
+ */
+public class MotionStreamModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "MotionStreamModule";
+    public static final String EVENT_NAME = "MotionFrame";
+    private static final int MAX_POINTS_PER_FRAME = 8;
+    private static final long MIN_FRAME_INTERVAL_NS = 16000000L; // 60 per second, with room for vsync jitter
+
+    private int listenerCount = 0; // main thread only
+    private MotionFrameCoalescer coalescer;
+    private long lastEmitNs = 0;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (coalescer == null) {
+                return;
+            }
+            if (frameTimeNanos - lastEmitNs >= MIN_FRAME_INTERVAL_NS) {
+                emit(coalescer.drain(MAX_POINTS_PER_FRAME));
+                lastEmitNs = frameTimeNanos;
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    public MotionStreamModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "MotionStream";
+    }
+
+    // Called by NativeEventEmitter when JS subscribes
+    @ReactMethod
+    public void addListener(String eventName) {
+        if (!EVENT_NAME.equals(eventName)) {
+            return;
+        }
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                listenerCount++;
+                if (listenerCount == 1) {
+                    start();
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void removeListeners(final double count) {
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                boolean wasActive = listenerCount > 0;
+                listenerCount = Math.max(0, listenerCount - (int) count);
+                if (wasActive && listenerCount == 0) {
+                    stop();
+                }
+            }
+        });
+    }
+
+    /**
+     * Per source: {periodMs, inputSamples, outputSamples, outOfOrder,
+     * blindPeriods, blindMs, longestBlindMs} from the resampling stage in
+     * front of the detectors, since the service started.
+     */
+    @ReactMethod
+    public void getStreamStats(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+            for (Map.Entry<String, Map<String, Object>> source : UniformResampler.getAllStats().entrySet()) {
+                WritableMap map = Arguments.createMap();
+                for (Map.Entry<String, Object> entry : source.getValue().entrySet()) {
+                    map.putDouble(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+                }
+                result.putMap(source.getKey(), map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading stream stats: " + e.getMessage());
+            promise.reject("MOTION_STREAM_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                listenerCount = 0;
+                stop();
+            }
+        });
+        super.invalidate();
+    }
+
+    private void start() {
+        coalescer = new MotionFrameCoalescer();
+        MotionFrameCoalescer.setActive(coalescer);
+        lastEmitNs = 0;
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+        Log.d(TAG, "Live motion stream started");
+    }
+
+    private void stop() {
+        if (coalescer == null) {
+            return;
+        }
+        MotionFrameCoalescer.setActive(null);
+        coalescer = null;
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        Log.d(TAG, "Live motion stream stopped");
+    }
+
+    private void emit(List<MotionFrameCoalescer.Frame> frames) {
+        if (frames.isEmpty() || !getReactApplicationContext().hasActiveReactInstance()) {
+            return;
+        }
+        WritableArray array = Arguments.createArray();
+        for (MotionFrameCoalescer.Frame frame : frames) {
+            WritableArray data = Arguments.createArray();
+            for (double value : frame.packed) {
+                data.pushDouble(value);
+            }
+            WritableMap map = Arguments.createMap();
+            map.putString("source", frame.source);
+            map.putDouble("t0", frame.t0);
+            map.putInt("stride", MotionFrameCoalescer.STRIDE);
+            map.putArray("data", data);
+            map.putInt("raw", frame.rawCount);
+            map.putDouble("dropped", frame.dropped);
+            array.pushMap(map);
+        }
+        WritableMap params = Arguments.createMap();
+        params.putArray("frames", array);
+        try {
+            getReactApplicationContext()
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_NAME, params);
+        } catch (Exception e) {
+            Log.e(TAG, "Error emitting motion frame: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.evercare;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.service.notification.StatusBarNotification;
+import androidx.core.app.NotificationCompat;
+
+/**
+ * A high-priority notification on this device saying who is being
+ * contacted. Acknowledged once the system lists it as active.
+ */
+public class NotificationAlertChannel implements AlertChannel {
+
+    private final Context context;
+    private final String channelId;
+    private final int notificationId;
+    private final long timeoutMs;
+
+    public NotificationAlertChannel(Context context, String channelId, int notificationId, long timeoutMs) {
+        this.context = context;
+        this.channelId = channelId;
+        this.notificationId = notificationId;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public String getName() {
+        return "notification";
+    }
+
+    @Override
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    public void send(AlertDispatcher.Alert alert, Callback callback) {
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (!notificationManager.areNotificationsEnabled()) {
+            callback.onFailed("notifications disabled");
+            return;
+        }
+
+        String contact = alert.caretakerPhone != null ? "your caretaker" : "emergency services (101)";
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(android.R.drawable.stat_sys_warning)
+                .setContentTitle("Contacting help")
+                .setContentText("No response after the fall - contacting " + contact + ".")
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setColor(android.graphics.Color.RED);
+        notificationManager.notify(notificationId, builder.build());
+        EnergyLedger.getInstance(context).count(EnergyLedger.NOTIFICATIONS);
+
+        for (StatusBarNotification active : notificationManager.getActiveNotifications()) {
+            if (active.getId() == notificationId) {
+                callback.onAcknowledged(null);
+                return;
+            }
+        }
+        callback.onFailed("notification not shown");
+    }
+}
@@ -0,0 +1,201 @@
+package com.evercare;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming quantile estimator using the P² algorithm (Jain &amp; Chlamtac).
+ * Keeps five markers regardless of how many samples are observed, so the
+ * state is a fixed 96 bytes when serialized. Count and marker positions are
+ * longs: at 100 Hz an int would wrap after about eight months.
+ */
+public class P2QuantileEstimator {
+
+    public static final int SERIALIZED_SIZE = 8 + 8 + 5 * 8 + 5 * 8;
+
+    private final double p;
+    private final double[] heights = new double[5];
+    private final long[] positions = new long[5];
+    private final double[] desired = new double[5];
+    private final double[] increments = new double[5];
+    private long count = 0;
+
+    public P2QuantileEstimator(double p) {
+        if (p <= 0 || p >= 1) {
+            throw new IllegalArgumentException("Quantile must be in (0, 1): " + p);
+        }
+        this.p = p;
+        increments[0] = 0;
+        increments[1] = p / 2;
+        increments[2] = p;
+        increments[3] = (1 + p) / 2;
+        increments[4] = 1;
+        reset();
+    }
+
+    public void reset() {
+        count = 0;
+        for (int i = 0; i < 5; i++) {
+            heights[i] = 0;
+            positions[i] = i;
+        }
+        desired[0] = 0;
+        desired[1] = 2 * p;
+        desired[2] = 4 * p;
+        desired[3] = 2 + 2 * p;
+        desired[4] = 4;
+    }
+
+    public void add(double x) {
+        if (count < 5) {
+            // Insertion-sort the first five observations into the markers
+            int i = (int) count++;
+            while (i > 0 && heights[i - 1] > x) {
+                heights[i] = heights[i - 1];
+                i--;
+            }
+            heights[i] = x;
+            return;
+        }
+        count++;
+
+        int k;
+        if (x < heights[0]) {
+            heights[0] = x;
+            k = 0;
+        } else if (x >= heights[4]) {
+            heights[4] = x;
+            k = 3;
+        } else {
+            k = 0;
+            while (k < 3 && x >= heights[k + 1]) {
+                k++;
+            }
+        }
+
+        for (int i = k + 1; i < 5; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            desired[i] += increments[i];
+        }
+
+        // Nudge the three middle markers toward their desired positions
+        for (int i = 1; i <= 3; i++) {
+            double d = desired[i] - positions[i];
+            if ((d >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int sign = d >= 0 ? 1 : -1;
+                double candidate = parabolic(i, sign);
+                if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+                    heights[i] = candidate;
+                } else {
+                    heights[i] = linear(i, sign);
+                }
+                positions[i] += sign;
+            }
+        }
+    }
+
+    private double parabolic(int i, int sign) {
+        double nPrev = positions[i - 1];
+        double n = positions[i];
+        double nNext = positions[i + 1];
+        return heights[i] + sign / (nNext - nPrev)
+                * ((n - nPrev + sign) * (heights[i + 1] - heights[i]) / (nNext - n)
+                + (nNext - n - sign) * (heights[i] - heights[i - 1]) / (n - nPrev));
+    }
+
+    private double linear(int i, int sign) {
+        return heights[i] + sign * (heights[i + sign] - heights[i]) / (positions[i + sign] - positions[i]);
+    }
+
+    /**
+     * Current estimate, or NaN until at least one sample has been seen.
+     */
+    public double getQuantile() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count < 5) {
+            // Not enough samples for markers yet - use the exact order statistic
+            int idx = (int) Math.round(p * (count - 1));
+            return heights[idx];
+        }
+        return heights[2];
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getP() {
+        return p;
+    }
+
+    /**
+     * Writes the marker state. Desired positions are derived from the count on
+     * read, so only heights and integer positions are stored.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putDouble(p);
+        buffer.putLong(count);
+        for (int i = 0; i < 5; i++) {
+            buffer.putDouble(heights[i]);
+        }
+        for (int i = 0; i < 5; i++) {
+            buffer.putLong(positions[i]);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the state is not one add() could
+     * have left behind, e.g. from a corrupt file
+     */
+    public static P2QuantileEstimator readFrom(ByteBuffer buffer) {
+        P2QuantileEstimator estimator = new P2QuantileEstimator(buffer.getDouble());
+        estimator.count = buffer.getLong();
+        for (int i = 0; i < 5; i++) {
+            estimator.heights[i] = buffer.getDouble();
+        }
+        for (int i = 0; i < 5; i++) {
+            estimator.positions[i] = buffer.getLong();
+        }
+        estimator.validate();
+        if (estimator.count > 5) {
+            // Desired marker positions advance linearly with every sample after the fifth
+            long extra = estimator.count - 5;
+            for (int i = 0; i < 5; i++) {
+                estimator.desired[i] += extra * estimator.increments[i];
+            }
+        }
+        return estimator;
+    }
+
+    private void validate() {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative sample count: " + count);
+        }
+        int filled = (int) Math.min(count, 5);
+        for (int i = 0; i < filled; i++) {
+            if (Double.isNaN(heights[i]) || (i > 0 && heights[i] < heights[i - 1])) {
+                throw new IllegalArgumentException("Marker heights out of order");
+            }
+        }
+        if (count > 5) {
+            if (positions[0] != 0 || positions[4] != count - 1) {
+                throw new IllegalArgumentException("End markers do not match the count");
+            }
+            for (int i = 1; i < 5; i++) {
+                if (positions[i] <= positions[i - 1]) {
+                    throw new IllegalArgumentException("Marker positions out of order");
+                }
+            }
+        } else {
+            for (int i = 0; i < 5; i++) {
+                if (positions[i] != i) {
+                    throw new IllegalArgumentException("Markers moved before the fifth sample");
+                }
+            }
+        }
+    }
+}
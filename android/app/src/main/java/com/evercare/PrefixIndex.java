@@ -0,0 +1,300 @@
+package com.evercare;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Read-only prefix search over a sorted, memory-mapped file of names.
+ *
+ * File layout (little endian):
+ *   int magic, int version, int count
+ *   int[count] entry offsets, relative to the start of the entry area
+ *   entries: short keyLen, key (lowercased UTF-8), short nameLen, name,
+ *            short idLen, id, int weight
+ *
+ * Entries are sorted by key bytes, so all keys sharing a prefix form one
+ * contiguous range found with two binary searches. Nothing is loaded onto
+ * the heap; the OS pages the file in as it is touched.
+ */
+public class PrefixIndex {
+
+    private static final int MAGIC = 0x58505645; // "EVPX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int MAX_SCAN = 4096; // cap on entries ranked for very short prefixes
+
+    public static class Entry {
+        public final String name;
+        public final String id;
+        public final int weight;
+        final byte[] key;
+
+        public Entry(String name, String id, int weight) {
+            this(name, name, id, weight);
+        }
+
+        /**
+         * Entry found by a search key other than its display name, e.g. a
+         * doctor's surname first.
+         */
+        public Entry(String key, String name, String id, int weight) {
+            this.name = name;
+            this.id = id != null ? id : "";
+            this.weight = weight;
+            this.key = normalize(key).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int entriesStart;
+
+    private PrefixIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a prefix index file");
+        }
+        this.count = buffer.getInt(8);
+        this.entriesStart = HEADER_SIZE + count * 4;
+    }
+
+    public static PrefixIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PrefixIndex(mapped);
+        } finally {
+            // The mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    public static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Up to k entries whose key starts with the prefix, highest weight first
+     * (ties in key order).
+     */
+    public List<Entry> search(String prefix, int k) {
+        byte[] p = normalize(prefix).getBytes(StandardCharsets.UTF_8);
+        int from = lowerBound(p);
+        int to = Math.min(upperBound(p, from), from + MAX_SCAN);
+        if (from >= to || k <= 0) {
+            return Collections.emptyList();
+        }
+
+        // Keep the k best by weight; positions double as the key-order tie breaker
+        PriorityQueue<int[]> best = new PriorityQueue<>(k, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(b[0], a[0]);
+            }
+        });
+        for (int i = from; i < to; i++) {
+            int weight = weightAt(i);
+            if (best.size() < k) {
+                best.add(new int[]{i, weight});
+            } else if (weight > best.peek()[1]) {
+                best.poll();
+                best.add(new int[]{i, weight});
+            }
+        }
+
+        Entry[] result = new Entry[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = entryAt(best.poll()[0]);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Every entry in key order, for merging into a rebuilt index.
+     */
+    public List<Entry> entries() {
+        List<Entry> all = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            all.add(entryAt(i));
+        }
+        return all;
+    }
+
+    private int offsetOf(int i) {
+        return entriesStart + buffer.getInt(HEADER_SIZE + i * 4);
+    }
+
+    // Compares the entry key with the prefix, treating a key that starts with it as equal
+    private int comparePrefix(int i, byte[] prefix) {
+        int offset = offsetOf(i);
+        int keyLen = buffer.getShort(offset) & 0xFFFF;
+        int n = Math.min(keyLen, prefix.length);
+        for (int j = 0; j < n; j++) {
+            int a = buffer.get(offset + 2 + j) & 0xFF;
+            int b = prefix[j] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return keyLen < prefix.length ? -1 : 0;
+    }
+
+    private int lowerBound(byte[] prefix) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(mid, prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int upperBound(byte[] prefix, int from) {
+        int lo = from;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(mid, prefix) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int weightAt(int i) {
+        int offset = offsetOf(i);
+        offset += 2 + (buffer.getShort(offset) & 0xFFFF);
+        offset += 2 + (buffer.getShort(offset) & 0xFFFF);
+        offset += 2 + (buffer.getShort(offset) & 0xFFFF);
+        return buffer.getInt(offset);
+    }
+
+    private Entry entryAt(int i) {
+        int offset = offsetOf(i);
+        String key = readString(offset);
+        offset += 2 + (buffer.getShort(offset) & 0xFFFF);
+        String name = readString(offset);
+        offset += 2 + (buffer.getShort(offset) & 0xFFFF);
+        String id = readString(offset);
+        offset += 2 + (buffer.getShort(offset) & 0xFFFF);
+        return new Entry(key, name, id, buffer.getInt(offset));
+    }
+
+    private String readString(int offset) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int j = 0; j < length; j++) {
+            bytes[j] = buffer.get(offset + 2 + j);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes entries to a temp file and renames it over the target so readers
+     * never see a half-written index. Entries sharing a key are all kept,
+     * ordered by id, since different drugs or doctors can have the same
+     * name; an entry given twice with the same key and id keeps the last.
+     */
+    public static void write(File file, List<Entry> input) throws IOException {
+        List<Entry> entries = new ArrayList<>(input);
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                int byKey = compareBytes(a.key, b.key);
+                return byKey != 0 ? byKey : a.id.compareTo(b.id);
+            }
+        });
+        // Stable sort keeps input order among equal keys and ids - keep the last of each run
+        List<Entry> unique = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            if (i + 1 < entries.size() && compareBytes(entries.get(i).key, entries.get(i + 1).key) == 0
+                    && entries.get(i).id.equals(entries.get(i + 1).id)) {
+                continue;
+            }
+            if (entries.get(i).key.length > 0) {
+                unique.add(entries.get(i));
+            }
+        }
+
+        int entriesSize = 0;
+        int[] offsets = new int[unique.size()];
+        byte[][] names = new byte[unique.size()][];
+        byte[][] ids = new byte[unique.size()][];
+        for (int i = 0; i < unique.size(); i++) {
+            Entry entry = unique.get(i);
+            names[i] = truncate(entry.name.getBytes(StandardCharsets.UTF_8));
+            ids[i] = truncate(entry.id.getBytes(StandardCharsets.UTF_8));
+            offsets[i] = entriesSize;
+            entriesSize += 2 + truncate(entry.key).length + 2 + names[i].length + 2 + ids[i].length + 4;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + unique.size() * 4 + entriesSize).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(unique.size());
+        for (int offset : offsets) {
+            out.putInt(offset);
+        }
+        for (int i = 0; i < unique.size(); i++) {
+            byte[] key = truncate(unique.get(i).key);
+            out.putShort((short) key.length).put(key);
+            out.putShort((short) names[i].length).put(names[i]);
+            out.putShort((short) ids[i].length).put(ids[i]);
+            out.putInt(unique.get(i).weight);
+        }
+        out.flip();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    private static byte[] truncate(byte[] bytes) {
+        return bytes.length <= 0xFFFF ? bytes : Arrays.copyOf(bytes, 0xFFFF);
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,81 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+public class ReminderSchedulerModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "ReminderSchedulerModule";
+
+    public ReminderSchedulerModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "ReminderScheduler";
+    }
+
+    /**
+     * Schedule or replace a deadline: {id, kind, dueAt, repeatMs?, until?, title?, message?}.
+     * kind is "dose", "expiry" or "appointment"; times are epoch milliseconds.
+     */
+    @ReactMethod
+    public void schedule(ReadableMap options, Promise promise) {
+        try {
+            int kind = parseKind(options.getString("kind"));
+            DeadlineScheduler.Deadline deadline = new DeadlineScheduler.Deadline(
+                    options.getString("id"),
+                    kind,
+                    (long) options.getDouble("dueAt"),
+                    options.hasKey("repeatMs") ? (long) options.getDouble("repeatMs") : 0,
+                    options.hasKey("until") ? (long) options.getDouble("until") : 0,
+                    options.hasKey("title") ? options.getString("title") : null,
+                    options.hasKey("message") ? options.getString("message") : null);
+            DeadlineScheduler.getInstance(getReactApplicationContext()).schedule(deadline);
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Error scheduling deadline: " + e.getMessage());
+            promise.reject("SCHEDULE_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Cancel every deadline whose id starts with the prefix. Resolves with the number removed.
+     */
+    @ReactMethod
+    public void cancel(String idPrefix, Promise promise) {
+        try {
+            promise.resolve(DeadlineScheduler.getInstance(getReactApplicationContext()).cancel(idPrefix));
+        } catch (Exception e) {
+            Log.e(TAG, "Error cancelling deadline: " + e.getMessage());
+            promise.reject("SCHEDULE_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getStatus(Promise promise) {
+        DeadlineScheduler scheduler = DeadlineScheduler.getInstance(getReactApplicationContext());
+        WritableMap result = Arguments.createMap();
+        result.putInt("pending", scheduler.size());
+        result.putDouble("nextDeadline", scheduler.getNextDeadline());
+        promise.resolve(result);
+    }
+
+    private static int parseKind(String kind) {
+        if ("dose".equals(kind)) {
+            return DeadlineScheduler.KIND_MEDICATION_DOSE;
+        } else if ("expiry".equals(kind)) {
+            return DeadlineScheduler.KIND_MEDICATION_EXPIRY;
+        } else if ("appointment".equals(kind)) {
+            return DeadlineScheduler.KIND_APPOINTMENT_REMINDER;
+        }
+        throw new IllegalArgumentException("Unknown deadline kind: " + kind);
+    }
+}
@@ -0,0 +1,146 @@
+package com.evercare;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format for accelerometer samples pushed over a stream, all big endian:
+ *
+ *   handshake, once per connection:
+ *     int32   magic "EVSS"
+ *     uint8   version (1)
+ *     uint8   name length, then the UTF-8 name; identifies the device across reconnects
+ *
+ *   frames:
+ *     uint8   type
+ *     SAMPLES (1):
+ *       uint16  count, 1..MAX_SAMPLES_PER_FRAME
+ *       int64   timestamp of the first sample, sender clock, ns
+ *       count x { uint16 µs since the previous sample (0 for the first),
+ *                 int16 x, int16 y, int16 z in 0.01 m/s² }
+ *     CLOCK (2):
+ *       int64   sender clock, ns; keeps the offset estimate fresh while idle
+ *
+ * A sample costs 8 bytes plus an 11 byte frame header shared by the batch;
+ * 20 samples per frame (50 ms at 400 Hz) is ~2.6 bytes of overhead on top of
+ * the 6 bytes of axis data. Gaps over 65 ms between samples need a new frame.
+ */
+public final class SampleFrameCodec {
+
+    public static final int MAGIC = 0x45565353; // "EVSS"
+    public static final int VERSION = 1;
+    public static final int TYPE_SAMPLES = 1;
+    public static final int TYPE_CLOCK = 2;
+    public static final int MAX_SAMPLES_PER_FRAME = 1024;
+    public static final int FRAME_HEADER_BYTES = 11;
+    public static final int SAMPLE_BYTES = 8;
+    public static final int AXIS_BYTES = 6;
+    private static final float SCALE = 100f; // units per m/s²
+
+    public interface FrameListener {
+        /**
+         * Samples of one frame on the sender clock. The arrays are reused
+         * by the next call.
+         */
+        void onSamples(long[] senderTimestampsNs, float[] x, float[] y, float[] z, int count);
+
+        void onClock(long senderNs);
+    }
+
+    private final long[] timestamps = new long[MAX_SAMPLES_PER_FRAME];
+    private final float[] x = new float[MAX_SAMPLES_PER_FRAME];
+    private final float[] y = new float[MAX_SAMPLES_PER_FRAME];
+    private final float[] z = new float[MAX_SAMPLES_PER_FRAME];
+    private long bytesRead = 0;
+
+    /**
+     * Reads the handshake and returns the device name.
+     */
+    public String readHandshake(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a sample stream");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported sample stream version " + version);
+        }
+        byte[] name = new byte[in.readUnsignedByte()];
+        in.readFully(name);
+        bytesRead += 6 + name.length;
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads one frame and hands it to the listener. Throws EOFException at
+     * the end of the stream and IOException on a malformed frame.
+     */
+    public void readFrame(DataInputStream in, FrameListener listener) throws IOException {
+        int type = in.readUnsignedByte();
+        if (type == TYPE_SAMPLES) {
+            int count = in.readUnsignedShort();
+            if (count == 0 || count > MAX_SAMPLES_PER_FRAME) {
+                throw new IOException("Bad sample count " + count);
+            }
+            long t = in.readLong();
+            for (int i = 0; i < count; i++) {
+                t += in.readUnsignedShort() * 1000L;
+                timestamps[i] = t;
+                x[i] = in.readShort() / SCALE;
+                y[i] = in.readShort() / SCALE;
+                z[i] = in.readShort() / SCALE;
+            }
+            bytesRead += FRAME_HEADER_BYTES + (long) count * SAMPLE_BYTES;
+            listener.onSamples(timestamps, x, y, z, count);
+        } else if (type == TYPE_CLOCK) {
+            long senderNs = in.readLong();
+            bytesRead += 9;
+            listener.onClock(senderNs);
+        } else {
+            throw new IOException("Unknown frame type " + type);
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public static void writeHandshake(DataOutputStream out, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(Math.min(bytes.length, 255));
+        out.write(bytes, 0, Math.min(bytes.length, 255));
+    }
+
+    /**
+     * Writes samples [from, from + count) as one frame. Consecutive
+     * timestamps must be less than 65 ms apart.
+     */
+    public static void writeSamples(DataOutputStream out, long[] timestampsNs, float[] x, float[] y, float[] z,
+                                    int from, int count) throws IOException {
+        out.writeByte(TYPE_SAMPLES);
+        out.writeShort(count);
+        out.writeLong(timestampsNs[from]);
+        long previous = timestampsNs[from];
+        for (int i = from; i < from + count; i++) {
+            long deltaUs = (timestampsNs[i] - previous) / 1000L;
+            out.writeShort((int) Math.max(0, Math.min(0xFFFF, deltaUs)));
+            // Keep the receiver's running timestamp in step with the rounding
+            previous += Math.max(0, Math.min(0xFFFF, deltaUs)) * 1000L;
+            out.writeShort(quantize(x[i]));
+            out.writeShort(quantize(y[i]));
+            out.writeShort(quantize(z[i]));
+        }
+    }
+
+    public static void writeClock(DataOutputStream out, long senderNs) throws IOException {
+        out.writeByte(TYPE_CLOCK);
+        out.writeLong(senderNs);
+    }
+
+    private static int quantize(float value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * SCALE)));
+    }
+}
@@ -0,0 +1,106 @@
+package com.evercare;
+
+/**
+ * Bounded buffer of samples between the socket readers and the detector
+ * thread, kept in primitive arrays so steady state allocates nothing. When
+ * the detector falls behind the oldest samples are overwritten and counted
+ * against the device they came from.
+ */
+public class SampleRing {
+
+    public interface Consumer {
+        void onSample(int device, float x, float y, float z, long timestampNs);
+    }
+
+    private final int capacity;
+    private final int[] devices;
+    private final long[] timestamps;
+    private final float[] xs;
+    private final float[] ys;
+    private final float[] zs;
+    private final long[] dropped;
+    private int head = 0; // next to read
+    private int size = 0;
+
+    // What drainTo took out, handed on outside the lock; one drainer only
+    private final int[] outDevices;
+    private final long[] outTimestamps;
+    private final float[] outXs;
+    private final float[] outYs;
+    private final float[] outZs;
+
+    public SampleRing(int capacity, int maxDevices) {
+        this.capacity = capacity;
+        this.devices = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.xs = new float[capacity];
+        this.ys = new float[capacity];
+        this.zs = new float[capacity];
+        this.dropped = new long[maxDevices];
+        this.outDevices = new int[capacity];
+        this.outTimestamps = new long[capacity];
+        this.outXs = new float[capacity];
+        this.outYs = new float[capacity];
+        this.outZs = new float[capacity];
+    }
+
+    /**
+     * Adds one frame's samples. offsetNs is added to every timestamp.
+     */
+    public synchronized void put(int device, long[] timestampsNs, float[] x, float[] y, float[] z,
+                                 int count, long offsetNs) {
+        for (int i = 0; i < count; i++) {
+            if (size == capacity) {
+                dropped[devices[head]]++;
+                head = (head + 1) % capacity;
+                size--;
+            }
+            int tail = (head + size) % capacity;
+            devices[tail] = device;
+            timestamps[tail] = timestampsNs[i] + offsetNs;
+            xs[tail] = x[i];
+            ys[tail] = y[i];
+            zs[tail] = z[i];
+            size++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Hands everything buffered to the consumer, waiting up to waitMs for
+     * something to arrive. Returns the number of samples delivered. The
+     * samples are copied out under the lock and the consumer runs after it
+     * is released, so a slow consumer never holds up the readers' put.
+     * Called from one thread only.
+     */
+    public int drainTo(Consumer consumer, long waitMs) throws InterruptedException {
+        int count;
+        synchronized (this) {
+            if (size == 0 && waitMs > 0) {
+                wait(waitMs);
+            }
+            count = size;
+            for (int i = 0; i < count; i++) {
+                outDevices[i] = devices[head];
+                outTimestamps[i] = timestamps[head];
+                outXs[i] = xs[head];
+                outYs[i] = ys[head];
+                outZs[i] = zs[head];
+                head = (head + 1) % capacity;
+            }
+            size = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            consumer.onSample(outDevices[i], outXs[i], outYs[i], outZs[i], outTimestamps[i]);
+        }
+        return count;
+    }
+
+    public synchronized long getDropped(int device) {
+        return dropped[device];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
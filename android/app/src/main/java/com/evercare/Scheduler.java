@@ -0,0 +1,78 @@
+package com.evercare;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The clocks and delayed tasks the alert code runs on, so a whole alert
+ * timeline can be replayed in virtual time instead of waiting for it.
+ *
+ * Tasks are Runnables removed by identity, as with Handler; a task should
+ * be pending at most once at a time. Plain Java: HandlerScheduler is the
+ * Android one, VirtualScheduler the one for replays and tests.
+ */
+public interface Scheduler {
+
+    long currentTimeMillis();
+
+    /**
+     * Monotonic milliseconds; only differences mean anything.
+     */
+    long elapsedRealtime();
+
+    void postDelayed(Runnable task, long delayMs);
+
+    void removeCallbacks(Runnable task);
+
+    /**
+     * Runs tasks on its own thread; plain Java, for code that is also used
+     * off Android.
+     */
+    class ExecutorScheduler implements Scheduler {
+
+        private final ScheduledExecutorService executor;
+        private final Map<Runnable, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+
+        public ExecutorScheduler() {
+            this.executor = Executors.newSingleThreadScheduledExecutor();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return System.nanoTime() / 1000000L;
+        }
+
+        @Override
+        public void postDelayed(final Runnable task, long delayMs) {
+            pending.put(task, executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    pending.remove(task);
+                    task.run();
+                }
+            }, delayMs, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            ScheduledFuture<?> future = pending.remove(task);
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        public void shutdown() {
+            executor.shutdownNow();
+            pending.clear();
+        }
+    }
+}
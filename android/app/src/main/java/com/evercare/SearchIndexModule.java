@@ -0,0 +1,270 @@
+package com.evercare;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.JsonReader;
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SearchIndexModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "SearchIndexModule";
+    private static final String PREFS_NAME = "EverCareSearch";
+    private static final String KIND_DRUG = "drug";
+    private static final String KIND_DOCTOR = "doctor";
+
+    private static final long DRUG_REFRESH_INTERVAL = 24 * 60 * 60 * 1000L; // once a day
+    private static final long DRUG_FULL_RESYNC_INTERVAL = 7 * DRUG_REFRESH_INTERVAL; // catches docs without updatedAt
+    private static final int DRUG_PAGE_SIZE = 500;
+    private static final long FIRESTORE_TIMEOUT_SECONDS = 30;
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, PrefixIndex> indexes = new HashMap<>();
+    private final File indexDir;
+
+    public SearchIndexModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        indexDir = new File(reactContext.getFilesDir(), "search");
+        if (!indexDir.exists() && !indexDir.mkdirs()) {
+            Log.e(TAG, "Could not create " + indexDir);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "SearchIndex";
+    }
+
+    /**
+     * Top-k completions for a prefix from the on-device index. kind is
+     * "drug" or "doctor". Resolves [] if the index has not been built yet.
+     */
+    @ReactMethod
+    public void search(String kind, String prefix, int k, Promise promise) {
+        try {
+            WritableArray result = Arguments.createArray();
+            PrefixIndex index = getIndex(kind);
+            if (index != null) {
+                for (PrefixIndex.Entry entry : index.search(prefix, k)) {
+                    WritableMap map = Arguments.createMap();
+                    map.putString("name", entry.name);
+                    map.putString("id", entry.id);
+                    result.pushMap(map);
+                }
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error searching " + kind + ": " + e.getMessage());
+            promise.reject("SEARCH_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the index for kind has been built, so an empty search result
+     * means no match rather than nothing to search yet.
+     */
+    @ReactMethod
+    public void isReady(String kind, Promise promise) {
+        try {
+            promise.resolve(getIndex(kind) != null);
+        } catch (Exception e) {
+            Log.e(TAG, "Error opening " + kind + " index: " + e.getMessage());
+            promise.reject("SEARCH_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Brings the drug index up to date from Firestore in the background and
+     * builds the doctor index from the bundled catalogs if needed. Cheap to
+     * call often: drugs are only fetched once per DRUG_REFRESH_INTERVAL unless
+     * force is set. Resolves with the number of drug documents fetched.
+     */
+    @ReactMethod
+    public void refresh(final boolean force, final Promise promise) {
+        refreshExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ensureDoctorIndex();
+                    promise.resolve(refreshDrugs(force));
+                } catch (Exception e) {
+                    Log.e(TAG, "Error refreshing search index: " + e.getMessage());
+                    promise.reject("SEARCH_REFRESH_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    private synchronized PrefixIndex getIndex(String kind) throws Exception {
+        PrefixIndex index = indexes.get(kind);
+        if (index == null) {
+            File file = indexFile(kind);
+            if (!file.exists()) {
+                return null;
+            }
+            index = PrefixIndex.open(file);
+            indexes.put(kind, index);
+        }
+        return index;
+    }
+
+    private synchronized void replaceIndex(String kind, List<PrefixIndex.Entry> entries) throws Exception {
+        File file = indexFile(kind);
+        PrefixIndex.write(file, entries);
+        indexes.put(kind, PrefixIndex.open(file));
+        Log.d(TAG, "Rebuilt " + kind + " index with " + entries.size() + " entries");
+    }
+
+    private File indexFile(String kind) {
+        return new File(indexDir, kind + "s.idx");
+    }
+
+    private void ensureDoctorIndex() throws Exception {
+        File file = indexFile(KIND_DOCTOR);
+        long installed = getReactApplicationContext().getPackageManager()
+                .getPackageInfo(getReactApplicationContext().getPackageName(), 0).lastUpdateTime;
+        if (file.exists() && file.lastModified() >= installed) {
+            return; // Catalogs only change with an app update
+        }
+
+        List<PrefixIndex.Entry> entries = new ArrayList<>();
+        String[] assets = getReactApplicationContext().getAssets().list("");
+        if (assets != null) {
+            for (String asset : assets) {
+                if (asset.endsWith("Doctors.json")) {
+                    readDoctors(asset, entries);
+                }
+            }
+        }
+        replaceIndex(KIND_DOCTOR, entries);
+    }
+
+    private void readDoctors(String asset, List<PrefixIndex.Entry> entries) throws Exception {
+        InputStream in = getReactApplicationContext().getAssets().open(asset);
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"doctors".equals(reader.nextName())) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String id = null;
+                    String firstName = "";
+                    String lastName = "";
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if ("id".equals(name)) {
+                            id = reader.nextString();
+                        } else if ("firstName".equals(name)) {
+                            firstName = reader.nextString();
+                        } else if ("lastName".equals(name)) {
+                            lastName = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    // Findable by either first or last name
+                    String fullName = (firstName + " " + lastName).trim();
+                    entries.add(new PrefixIndex.Entry(fullName, fullName, id, 0));
+                    entries.add(new PrefixIndex.Entry((lastName + " " + firstName).trim(), fullName, id, 0));
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private int refreshDrugs(boolean force) throws Exception {
+        SharedPreferences prefs = getReactApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long lastSync = prefs.getLong("drugsLastSync", 0);
+        long lastFullSync = prefs.getLong("drugsLastFullSync", 0);
+        long now = System.currentTimeMillis();
+        if (!force && now - lastSync < DRUG_REFRESH_INTERVAL && indexFile(KIND_DRUG).exists()) {
+            return 0;
+        }
+
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        boolean fullSync = lastFullSync == 0 || now - lastFullSync >= DRUG_FULL_RESYNC_INTERVAL
+                || !indexFile(KIND_DRUG).exists();
+
+        // Merge changes over what is already on disk; later entries win on the same key and id
+        List<PrefixIndex.Entry> entries = new ArrayList<>();
+        PrefixIndex current = fullSync ? null : getIndex(KIND_DRUG);
+        if (current != null) {
+            entries.addAll(current.entries());
+        }
+
+        int fetched = 0;
+        DocumentSnapshot last = null;
+        while (true) {
+            Query query = fullSync
+                    ? db.collection("drugs").orderBy("name")
+                    : db.collection("drugs").whereGreaterThan("updatedAt", new Timestamp(new Date(lastSync)))
+                            .orderBy("updatedAt");
+            if (last != null) {
+                query = query.startAfter(last);
+            }
+            QuerySnapshot page = Tasks.await(query.limit(DRUG_PAGE_SIZE).get(), FIRESTORE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            for (DocumentSnapshot doc : page.getDocuments()) {
+                String name = doc.getString("name");
+                if (name != null) {
+                    Long popularity = doc.getLong("popularity");
+                    entries.add(new PrefixIndex.Entry(name, doc.getId(), popularity != null ? popularity.intValue() : 0));
+                }
+            }
+            fetched += page.size();
+            if (page.size() < DRUG_PAGE_SIZE) {
+                break;
+            }
+            last = page.getDocuments().get(page.size() - 1);
+        }
+
+        if (fullSync || fetched > 0) {
+            replaceIndex(KIND_DRUG, entries);
+        }
+        SharedPreferences.Editor editor = prefs.edit().putLong("drugsLastSync", now);
+        if (fullSync) {
+            editor.putLong("drugsLastFullSync", now);
+        }
+        editor.apply();
+        Log.d(TAG, (fullSync ? "Full" : "Incremental") + " drug sync fetched " + fetched + " documents");
+        return fetched;
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        refreshExecutor.shutdown();
+    }
+}
@@ -0,0 +1,32 @@
+package com.evercare;
+
+import java.util.Map;
+
+/**
+ * Something that delivers accelerometer samples to the fall detector: the
+ * phone's own sensor, or samples pushed from outside (a wristband bridge, a
+ * simulator, a replay). Timestamps are on the elapsedRealtime clock so
+ * every source can be compared with the phone's.
+ */
+public interface SensorSource {
+
+    interface Sink {
+        /**
+         * x, y, z in m/s². source names the device the sample came from;
+         * one SensorSource may carry several devices.
+         */
+        void onSample(String source, float x, float y, float z, long timestampMs);
+    }
+
+    String getName();
+
+    /**
+     * Starts delivering to the sink. Returns false if the source is not
+     * available on this device.
+     */
+    boolean start(Sink sink);
+
+    void stop();
+
+    Map<String, Object> getStats();
+}
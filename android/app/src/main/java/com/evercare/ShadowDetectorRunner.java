@@ -0,0 +1,403 @@
+package com.evercare;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs candidate free-fall thresholds next to the live detector on the
+ * same resampled phone stream, so a new configuration can be judged on
+ * real data before it ships. Shadow detections are counted, never alerted.
+ *
+ * All shadows are evaluated in one loop over parallel arrays from the one
+ * magnitude computed per sample; there is no detector object or sample
+ * copy per configuration. A shadow detection and a live one within
+ * MATCH_WINDOW_MS of each other count as agreement, otherwise as
+ * primaryOnly (the shadow missed it) or shadowOnly (the shadow fired
+ * alone). Counts survive restarts in shadow_detectors.bin.
+ *
+ * Every 64th sample is timed; if shadows cost more than BUDGET_NS per
+ * sample over three windows in a row they are suspended until reconfigured.
+ */
+public class ShadowDetectorRunner {
+
+    private static final String TAG = "ShadowDetectorRunner";
+    private static final String FILE_NAME = "shadow_detectors.bin";
+    private static final int FILE_VERSION = 1;
+    public static final int MAX_SHADOWS = 8;
+    private static final long MATCH_WINDOW_MS = 1000;
+    private static final int TIMING_INTERVAL = 64; // time every 64th sample
+    private static final int BUDGET_WINDOW = 256; // timed samples per budget check
+    private static final long BUDGET_NS = 5000;
+    private static final int OVER_BUDGET_WINDOWS = 3;
+
+    public static class Config {
+        public final String name;
+        public final float threshold; // m/s²
+        public final long timeMs;
+
+        public Config(String name, float threshold, long timeMs) {
+            this.name = name;
+            this.threshold = threshold;
+            this.timeMs = timeMs;
+        }
+    }
+
+    // Until someone configures shadows: the shipped defaults and one step either side
+    private static final Config[] DEFAULT_CONFIGS = {
+        new Config("default", ThresholdCalibrator.DEFAULT_FREE_FALL_THRESHOLD,
+                ThresholdCalibrator.DEFAULT_FREE_FALL_TIME_THRESHOLD),
+        new Config("lower", 1.5f, 80),
+        new Config("higher", 2.5f, 40),
+    };
+
+    private static ShadowDetectorRunner instance;
+
+    private final Context context;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    // Set on the bridge thread, taken by the sample thread; both under the lock,
+    // volatile so a sample without a change need not take it
+    private volatile Config[] pendingConfigs;
+
+    // Per shadow, indexed like configs - touched by the sample thread, counters under the lock
+    private Config[] configs = new Config[0];
+    private float[] thresholds = new float[0];
+    private long[] timeThresholds = new long[0];
+    private long[] startMs = new long[0]; // start of the current dip, -1 if above threshold
+    private boolean[] fired = new boolean[0];
+    private long[] shadowPendingMs = new long[0]; // unmatched shadow detection, -1 if none
+    private long[] primaryPendingMs = new long[0]; // unmatched live detection, -1 if none
+    private long[] detections = new long[0];
+    private long[] agree = new long[0];
+    private long[] primaryOnly = new long[0];
+    private long[] shadowOnly = new long[0];
+
+    private long primaryDetections = 0;
+    private long samples = 0;
+    private long timedNs = 0;
+    private long timedSamples = 0;
+    private long windowNs = 0;
+    private int windowSamples = 0;
+    private int overBudgetWindows = 0;
+    private volatile boolean suspended = false;
+
+    public static synchronized ShadowDetectorRunner getInstance(Context context) {
+        if (instance == null) {
+            instance = new ShadowDetectorRunner(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ShadowDetectorRunner(Context context) {
+        this.context = context;
+        if (!load()) {
+            apply(DEFAULT_CONFIGS, false);
+        }
+    }
+
+    /**
+     * Replaces the shadow set from the next sample on. Counts are kept for
+     * configurations with the same name and thresholds; others start from zero.
+     */
+    public synchronized void setConfigs(List<Config> configs) {
+        if (configs.size() > MAX_SHADOWS) {
+            throw new IllegalArgumentException("At most " + MAX_SHADOWS + " shadow configurations");
+        }
+        pendingConfigs = configs.toArray(new Config[0]);
+    }
+
+    public synchronized void resetCounts() {
+        apply(configs, false);
+        primaryDetections = 0;
+        samples = 0;
+        timedNs = 0;
+        timedSamples = 0;
+        saveAsync();
+    }
+
+    /**
+     * Saves the counts, e.g. when the service stops.
+     */
+    public void flush() {
+        saveAsync();
+    }
+
+    /**
+     * One resampled sample. Call from the thread that feeds the live detector.
+     */
+    public void onSample(float x, float y, float z, long timestampMs) {
+        if (pendingConfigs != null) {
+            synchronized (this) {
+                Config[] pending = pendingConfigs;
+                pendingConfigs = null;
+                if (pending != null) {
+                    apply(pending, true);
+                    saveAsync();
+                }
+            }
+        }
+        if (suspended) {
+            return;
+        }
+        boolean timed = samples % TIMING_INTERVAL == 0;
+        long start = timed ? System.nanoTime() : 0;
+
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        boolean changed = false;
+        synchronized (this) {
+            samples++;
+            for (int i = 0; i < thresholds.length; i++) {
+                if (magnitude < thresholds[i]) {
+                    if (startMs[i] < 0) {
+                        startMs[i] = timestampMs;
+                    }
+                    if (!fired[i] && timestampMs - startMs[i] >= timeThresholds[i]) {
+                        fired[i] = true;
+                        detections[i]++;
+                        changed |= onShadowDetection(i, timestampMs);
+                    }
+                } else {
+                    startMs[i] = -1;
+                    fired[i] = false;
+                }
+                // Unmatched detections expire into a disagreement
+                if (shadowPendingMs[i] >= 0 && timestampMs - shadowPendingMs[i] > MATCH_WINDOW_MS) {
+                    shadowPendingMs[i] = -1;
+                    shadowOnly[i]++;
+                    changed = true;
+                }
+                if (primaryPendingMs[i] >= 0 && timestampMs - primaryPendingMs[i] > MATCH_WINDOW_MS) {
+                    primaryPendingMs[i] = -1;
+                    primaryOnly[i]++;
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            saveAsync();
+        }
+        if (timed) {
+            onTimed(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Forgets dips in progress, as the live detector does after a blind period.
+     */
+    public synchronized void reset() {
+        Arrays.fill(startMs, -1);
+        Arrays.fill(fired, false);
+    }
+
+    /**
+     * The live detector fired on the sample at timestampMs.
+     */
+    public synchronized void onPrimaryDetection(long timestampMs) {
+        primaryDetections++;
+        for (int i = 0; i < configs.length; i++) {
+            if (shadowPendingMs[i] >= 0 && timestampMs - shadowPendingMs[i] <= MATCH_WINDOW_MS) {
+                shadowPendingMs[i] = -1;
+                agree[i]++;
+            } else {
+                primaryPendingMs[i] = timestampMs;
+            }
+        }
+        saveAsync();
+    }
+
+    /**
+     * Per configuration {threshold, timeMs, detections, agree, primaryOnly,
+     * shadowOnly, agreement}, plus the live detector's count, samples seen
+     * and the measured shadow cost per sample.
+     */
+    public synchronized Map<String, Object> getSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        List<Map<String, Object>> shadows = new ArrayList<>();
+        for (int i = 0; i < configs.length; i++) {
+            Map<String, Object> shadow = new LinkedHashMap<>();
+            shadow.put("name", configs[i].name);
+            shadow.put("threshold", configs[i].threshold);
+            shadow.put("timeMs", configs[i].timeMs);
+            shadow.put("detections", detections[i]);
+            shadow.put("agree", agree[i]);
+            shadow.put("primaryOnly", primaryOnly[i]);
+            shadow.put("shadowOnly", shadowOnly[i]);
+            long decided = agree[i] + primaryOnly[i] + shadowOnly[i];
+            shadow.put("agreement", decided > 0 ? (double) agree[i] / decided : 1.0);
+            shadows.add(shadow);
+        }
+        summary.put("shadows", shadows);
+        summary.put("primaryDetections", primaryDetections);
+        summary.put("samples", samples);
+        summary.put("nsPerSample", timedSamples > 0 ? (double) timedNs / timedSamples : 0.0);
+        summary.put("budgetNs", BUDGET_NS);
+        summary.put("suspended", suspended);
+        return summary;
+    }
+
+    private boolean onShadowDetection(int i, long timestampMs) {
+        Log.d(TAG, "Shadow " + configs[i].name + " detected a fall at " + timestampMs);
+        if (primaryPendingMs[i] >= 0 && timestampMs - primaryPendingMs[i] <= MATCH_WINDOW_MS) {
+            primaryPendingMs[i] = -1;
+            agree[i]++;
+            return true;
+        }
+        shadowPendingMs[i] = timestampMs;
+        return false;
+    }
+
+    private void onTimed(long ns) {
+        synchronized (this) {
+            timedNs += ns;
+            timedSamples++;
+        }
+        windowNs += ns;
+        if (++windowSamples < BUDGET_WINDOW) {
+            return;
+        }
+        long average = windowNs / windowSamples;
+        windowNs = 0;
+        windowSamples = 0;
+        // A single window can be skewed by one GC pause, so it takes several in a row
+        overBudgetWindows = average > BUDGET_NS ? overBudgetWindows + 1 : 0;
+        if (overBudgetWindows >= OVER_BUDGET_WINDOWS) {
+            suspended = true;
+            Log.w(TAG, "Shadow detectors took " + average + "ns per sample, over the " + BUDGET_NS
+                    + "ns budget - suspended until reconfigured");
+        }
+    }
+
+    // keepCounts carries over the counts of configurations that are unchanged
+    private void apply(Config[] next, boolean keepCounts) {
+        int n = next.length;
+        long[] newDetections = new long[n];
+        long[] newAgree = new long[n];
+        long[] newPrimaryOnly = new long[n];
+        long[] newShadowOnly = new long[n];
+        float[] newThresholds = new float[n];
+        long[] newTimeThresholds = new long[n];
+        for (int i = 0; i < n; i++) {
+            newThresholds[i] = next[i].threshold;
+            newTimeThresholds[i] = next[i].timeMs;
+            if (!keepCounts) {
+                continue;
+            }
+            for (int j = 0; j < configs.length; j++) {
+                if (configs[j].name.equals(next[i].name) && configs[j].threshold == next[i].threshold
+                        && configs[j].timeMs == next[i].timeMs) {
+                    newDetections[i] = detections[j];
+                    newAgree[i] = agree[j];
+                    newPrimaryOnly[i] = primaryOnly[j];
+                    newShadowOnly[i] = shadowOnly[j];
+                }
+            }
+        }
+        configs = next;
+        thresholds = newThresholds;
+        timeThresholds = newTimeThresholds;
+        detections = newDetections;
+        agree = newAgree;
+        primaryOnly = newPrimaryOnly;
+        shadowOnly = newShadowOnly;
+        startMs = filled(n, -1);
+        shadowPendingMs = filled(n, -1);
+        primaryPendingMs = filled(n, -1);
+        fired = new boolean[n];
+        suspended = false;
+        windowNs = 0;
+        windowSamples = 0;
+        overBudgetWindows = 0;
+    }
+
+    private static long[] filled(int n, long value) {
+        long[] array = new long[n];
+        Arrays.fill(array, value);
+        return array;
+    }
+
+    private synchronized boolean load() {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Unknown shadow detector file version - starting with the defaults");
+                return false;
+            }
+            int n = Math.max(0, Math.min(in.readInt(), MAX_SHADOWS));
+            Config[] loaded = new Config[n];
+            long[][] counts = new long[n][4];
+            for (int i = 0; i < n; i++) {
+                loaded[i] = new Config(in.readUTF(), in.readFloat(), in.readLong());
+                for (int c = 0; c < 4; c++) {
+                    counts[i][c] = in.readLong();
+                }
+            }
+            primaryDetections = in.readLong();
+            samples = in.readLong();
+            apply(loaded, false);
+            for (int i = 0; i < n; i++) {
+                detections[i] = counts[i][0];
+                agree[i] = counts[i][1];
+                primaryOnly[i] = counts[i][2];
+                shadowOnly[i] = counts[i][3];
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading shadow detectors: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void saveAsync() {
+        final Config[] snapshotConfigs = configs;
+        final long[][] snapshotCounts = new long[configs.length][];
+        for (int i = 0; i < configs.length; i++) {
+            snapshotCounts[i] = new long[] {detections[i], agree[i], primaryOnly[i], shadowOnly[i]};
+        }
+        final long snapshotPrimary = primaryDetections;
+        final long snapshotSamples = samples;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = new File(context.getFilesDir(), FILE_NAME);
+                File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    out.writeInt(FILE_VERSION);
+                    out.writeInt(snapshotConfigs.length);
+                    for (int i = 0; i < snapshotConfigs.length; i++) {
+                        out.writeUTF(snapshotConfigs[i].name);
+                        out.writeFloat(snapshotConfigs[i].threshold);
+                        out.writeLong(snapshotConfigs[i].timeMs);
+                        for (long count : snapshotCounts[i]) {
+                            out.writeLong(count);
+                        }
+                    }
+                    out.writeLong(snapshotPrimary);
+                    out.writeLong(snapshotSamples);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error saving shadow detectors: " + e.getMessage());
+                    return;
+                }
+                if (!tmp.renameTo(file)) {
+                    Log.e(TAG, "Could not replace " + file);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,100 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ShadowDetectorsModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "ShadowDetectorsModule";
+
+    public ShadowDetectorsModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "ShadowDetectors";
+    }
+
+    /**
+     * {shadows: [{name, threshold, timeMs, detections, agree, primaryOnly,
+     * shadowOnly, agreement}], primaryDetections, samples, nsPerSample,
+     * budgetNs, suspended}
+     */
+    @ReactMethod
+    public void getSummary(Promise promise) {
+        try {
+            Map<String, Object> summary = ShadowDetectorRunner.getInstance(getReactApplicationContext()).getSummary();
+            WritableMap result = Arguments.createMap();
+            for (Map.Entry<String, Object> entry : summary.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof List) {
+                    WritableArray shadows = Arguments.createArray();
+                    for (Object item : (List<?>) value) {
+                        shadows.pushMap(toMap((Map<?, ?>) item));
+                    }
+                    result.putArray(entry.getKey(), shadows);
+                } else if (value instanceof Boolean) {
+                    result.putBoolean(entry.getKey(), (Boolean) value);
+                } else {
+                    result.putDouble(entry.getKey(), ((Number) value).doubleValue());
+                }
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading shadow detector summary: " + e.getMessage());
+            promise.reject("SHADOW_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the shadow configurations: [{name, threshold (m/s²), timeMs}], at most 8
+     */
+    @ReactMethod
+    public void setConfigs(ReadableArray configs, Promise promise) {
+        try {
+            List<ShadowDetectorRunner.Config> list = new ArrayList<>();
+            for (int i = 0; i < configs.size(); i++) {
+                ReadableMap config = configs.getMap(i);
+                list.add(new ShadowDetectorRunner.Config(config.getString("name"),
+                        (float) config.getDouble("threshold"), (long) config.getDouble("timeMs")));
+            }
+            ShadowDetectorRunner.getInstance(getReactApplicationContext()).setConfigs(list);
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Error setting shadow configurations: " + e.getMessage());
+            promise.reject("SHADOW_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void resetCounts(Promise promise) {
+        ShadowDetectorRunner.getInstance(getReactApplicationContext()).resetCounts();
+        promise.resolve(true);
+    }
+
+    private static WritableMap toMap(Map<?, ?> source) {
+        WritableMap map = Arguments.createMap();
+        for (Map.Entry<?, ?> entry : source.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Number) {
+                map.putDouble(key, ((Number) value).doubleValue());
+            } else {
+                map.putString(key, String.valueOf(value));
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,208 @@
+package com.evercare;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Streams a provider slot catalog (mocks/*Slots.json format) into a SlotIndex
+ * without materialising the JSON tree. Accepts either a bare array of slots
+ * or an object with a "slots" array.
+ */
+public class SlotCatalogReader {
+
+    public static SlotIndex read(InputStream in) throws IOException {
+        SlotIndex index = new SlotIndex();
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("slots".equals(reader.nextName())) {
+                        readSlots(reader, index);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                readSlots(reader, index);
+            }
+        } finally {
+            reader.close();
+        }
+        index.build();
+        return index;
+    }
+
+    private static void readSlots(JsonReader reader, SlotIndex index) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String slotId = null;
+            String doctorId = null;
+            String doctorName = null;
+            String dateTime = null;
+            String siteCode = null;
+            String siteName = null;
+            String address = null;
+            String city = null;
+            boolean isOpen = true;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "slotId":
+                        slotId = reader.nextString();
+                        break;
+                    case "doctorId":
+                        doctorId = reader.nextString();
+                        break;
+                    case "doctorName":
+                        doctorName = reader.nextString();
+                        break;
+                    case "slotDateTime":
+                    case "startTime":
+                        dateTime = reader.nextString();
+                        break;
+                    case "status":
+                        isOpen = "Open".equals(reader.nextString());
+                        break;
+                    case "isAvailable":
+                        isOpen = reader.nextBoolean();
+                        break;
+                    case "location":
+                    case "branch":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String field = reader.nextName();
+                            if (reader.peek() == JsonToken.NULL) {
+                                reader.skipValue();
+                            } else if ("siteCode".equals(field) || "id".equals(field)) {
+                                siteCode = reader.nextString();
+                            } else if ("siteName".equals(field) || "name".equals(field)) {
+                                siteName = reader.nextString();
+                            } else if ("address".equals(field)) {
+                                address = reader.nextString();
+                            } else if ("city".equals(field)) {
+                                city = reader.nextString();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (slotId == null || dateTime == null) {
+                continue; // Not a usable slot
+            }
+            try {
+                index.addSlot(slotId, doctorId, doctorName, parseIsoUtc(dateTime),
+                        siteCode, siteName, address, city, isOpen);
+            } catch (IllegalArgumentException e) {
+                android.util.Log.w("SlotCatalogReader", "Skipping slot " + slotId + ": " + e.getMessage());
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Parses "YYYY-MM-DDTHH:MM[:SS[.fff]]Z" into epoch milliseconds without
+     * going through SimpleDateFormat.
+     */
+    public static long parseIsoUtc(String value) {
+        if (value.length() < 16 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T') {
+            throw new IllegalArgumentException("Unsupported date: " + value);
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = 0;
+        int millis = 0;
+        int pos = 16;
+        if (pos < value.length() && value.charAt(pos) == ':') {
+            second = digits(value, pos + 1, 2);
+            pos += 3;
+            if (pos < value.length() && value.charAt(pos) == '.') {
+                int start = ++pos;
+                while (pos < value.length() && Character.isDigit(value.charAt(pos))) {
+                    pos++;
+                }
+                String fraction = (value.substring(start, pos) + "000").substring(0, 3);
+                millis = Integer.parseInt(fraction);
+            }
+        }
+        if (pos != value.length() - 1 || value.charAt(pos) != 'Z') {
+            throw new IllegalArgumentException("Only UTC dates are supported: " + value);
+        }
+        return (daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second) * 1000L + millis;
+    }
+
+    /**
+     * Parses "YYYY-MM-DD" as the start of that UTC day.
+     */
+    public static long parseIsoDate(String value) {
+        if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            throw new IllegalArgumentException("Unsupported date: " + value);
+        }
+        return daysFromCivil(digits(value, 0, 4), digits(value, 5, 2), digits(value, 8, 2)) * 86400000L;
+    }
+
+    /**
+     * Formats epoch milliseconds as "YYYY-MM-DDTHH:MM:SSZ", the catalog format.
+     */
+    public static String formatIsoUtc(long epochMs) {
+        long days = Math.floorDiv(epochMs, 86400000L);
+        long secondsOfDay = Math.floorMod(epochMs, 86400000L) / 1000;
+
+        // Howard Hinnant's civil_from_days
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        return String.format(java.util.Locale.US, "%04d-%02d-%02dT%02d:%02d:%02dZ",
+                year, month, day, secondsOfDay / 3600, (secondsOfDay / 60) % 60, secondsOfDay % 60);
+    }
+
+    private static int digits(String value, int start, int length) {
+        int result = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Unsupported date: " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    // Howard Hinnant's days_from_civil
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
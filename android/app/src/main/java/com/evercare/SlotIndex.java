@@ -0,0 +1,292 @@
+package com.evercare;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time-sorted index over one provider's appointment slots.
+ *
+ * Slots are held in parallel primitive arrays sorted by start time, and every
+ * string (slot id, doctor, site) is stored once in a pool, so memory grows
+ * with the number of slots rather than with JSON object overhead. Per-doctor
+ * and per-site postings are kept as slices of a single int array, each slice
+ * already in time order, so range and next-available queries are a binary
+ * search followed by a linear walk over the matches only.
+ */
+public class SlotIndex {
+
+    public static final int ANY = -1;
+
+    // Pooled strings
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    // Site details, indexed by site number
+    private final List<String[]> sites = new ArrayList<>();
+    private final Map<String, Integer> siteIds = new HashMap<>();
+    private final Map<String, Integer> doctorIds = new HashMap<>();
+    private final List<String> doctorIdList = new ArrayList<>();
+    private final List<String> doctorNames = new ArrayList<>();
+
+    // Slot columns, sorted by start time after build()
+    private int size = 0;
+    private long[] startMs = new long[64];
+    private int[] slotIdRef = new int[64];
+    private int[] doctor = new int[64];
+    private int[] site = new int[64];
+    private boolean[] open = new boolean[64];
+
+    // Postings: slots of doctor d are doctorPostings[doctorOffsets[d] .. doctorOffsets[d + 1])
+    private int[] doctorOffsets;
+    private int[] doctorPostings;
+    private int[] siteOffsets;
+    private int[] sitePostings;
+
+    private boolean built = false;
+
+    public void addSlot(String slotId, String doctorId, String doctorName, long start,
+                        String siteCode, String siteName, String address, String city, boolean isOpen) {
+        if (built) {
+            throw new IllegalStateException("SlotIndex is already built");
+        }
+        if (size == startMs.length) {
+            int capacity = size * 2;
+            startMs = Arrays.copyOf(startMs, capacity);
+            slotIdRef = Arrays.copyOf(slotIdRef, capacity);
+            doctor = Arrays.copyOf(doctor, capacity);
+            site = Arrays.copyOf(site, capacity);
+            open = Arrays.copyOf(open, capacity);
+        }
+
+        Integer doctorIndex = doctorIds.get(doctorId);
+        if (doctorIndex == null) {
+            doctorIndex = doctorNames.size();
+            doctorIds.put(doctorId, doctorIndex);
+            doctorIdList.add(doctorId);
+            doctorNames.add(doctorName);
+        }
+        Integer siteIndex = siteIds.get(siteCode);
+        if (siteIndex == null) {
+            siteIndex = sites.size();
+            siteIds.put(siteCode, siteIndex);
+            sites.add(new String[]{siteCode, siteName, address, city});
+        }
+
+        startMs[size] = start;
+        slotIdRef[size] = intern(slotId);
+        doctor[size] = doctorIndex;
+        site[size] = siteIndex;
+        open[size] = isOpen;
+        size++;
+    }
+
+    private int intern(String value) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Sorts the slots by start time and builds the doctor and site postings.
+     */
+    public void build() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(startMs[a], startMs[b]);
+            }
+        });
+
+        long[] sortedStart = new long[size];
+        int[] sortedSlotId = new int[size];
+        int[] sortedDoctor = new int[size];
+        int[] sortedSite = new int[size];
+        boolean[] sortedOpen = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            sortedStart[i] = startMs[from];
+            sortedSlotId[i] = slotIdRef[from];
+            sortedDoctor[i] = doctor[from];
+            sortedSite[i] = site[from];
+            sortedOpen[i] = open[from];
+        }
+        startMs = sortedStart;
+        slotIdRef = sortedSlotId;
+        doctor = sortedDoctor;
+        site = sortedSite;
+        open = sortedOpen;
+
+        doctorOffsets = new int[doctorNames.size() + 1];
+        doctorPostings = buildPostings(doctor, doctorOffsets);
+        siteOffsets = new int[sites.size() + 1];
+        sitePostings = buildPostings(site, siteOffsets);
+
+        // Lookup maps are only needed while loading
+        stringIds.clear();
+        built = true;
+    }
+
+    private int[] buildPostings(int[] keys, int[] offsets) {
+        // Counting sort keeps each key's slice in time order
+        for (int i = 0; i < size; i++) {
+            offsets[keys[i] + 1]++;
+        }
+        for (int k = 1; k < offsets.length; k++) {
+            offsets[k] += offsets[k - 1];
+        }
+        int[] cursor = Arrays.copyOf(offsets, offsets.length);
+        int[] postings = new int[size];
+        for (int i = 0; i < size; i++) {
+            postings[cursor[keys[i]]++] = i;
+        }
+        return postings;
+    }
+
+    public int doctorIndex(String doctorId) {
+        Integer index = doctorId != null ? doctorIds.get(doctorId) : null;
+        return index != null ? index : ANY;
+    }
+
+    public int siteIndex(String siteCode) {
+        Integer index = siteCode != null ? siteIds.get(siteCode) : null;
+        return index != null ? index : ANY;
+    }
+
+    /**
+     * Slots starting in [fromMs, toMs), optionally narrowed to one doctor and/or
+     * site (pass ANY to skip a filter), in start-time order.
+     */
+    public int[] range(long fromMs, long toMs, int doctorFilter, int siteFilter, boolean onlyOpen, int limit) {
+        int[] result = new int[Math.min(limit, size)];
+        int count = 0;
+
+        if (doctorFilter != ANY || siteFilter != ANY) {
+            // Walk the narrower posting list and check the other filter per hit
+            boolean byDoctor = doctorFilter != ANY
+                    && (siteFilter == ANY || postingLength(doctorOffsets, doctorFilter) <= postingLength(siteOffsets, siteFilter));
+            int[] postings = byDoctor ? doctorPostings : sitePostings;
+            int[] offsets = byDoctor ? doctorOffsets : siteOffsets;
+            int key = byDoctor ? doctorFilter : siteFilter;
+            int end = offsets[key + 1];
+            for (int p = lowerBound(postings, offsets[key], end, fromMs); p < end && count < result.length; p++) {
+                int slot = postings[p];
+                if (startMs[slot] >= toMs) {
+                    break;
+                }
+                if (matches(slot, doctorFilter, siteFilter, onlyOpen)) {
+                    result[count++] = slot;
+                }
+            }
+        } else {
+            for (int slot = lowerBound(null, 0, size, fromMs); slot < size && count < result.length; slot++) {
+                if (startMs[slot] >= toMs) {
+                    break;
+                }
+                if (!onlyOpen || open[slot]) {
+                    result[count++] = slot;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * First open slot starting at or after afterMs that passes the filters and
+     * is accepted by the caller (e.g. does not clash with a booking), or -1.
+     */
+    public int nextAvailable(long afterMs, int doctorFilter, int siteFilter, SlotFilter accept) {
+        int[] postings = null;
+        int begin = 0;
+        int end = size;
+        if (doctorFilter != ANY) {
+            postings = doctorPostings;
+            begin = doctorOffsets[doctorFilter];
+            end = doctorOffsets[doctorFilter + 1];
+        } else if (siteFilter != ANY) {
+            postings = sitePostings;
+            begin = siteOffsets[siteFilter];
+            end = siteOffsets[siteFilter + 1];
+        }
+        for (int p = lowerBound(postings, begin, end, afterMs); p < end; p++) {
+            int slot = postings != null ? postings[p] : p;
+            if (matches(slot, doctorFilter, siteFilter, true) && (accept == null || accept.accept(slot))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    public interface SlotFilter {
+        boolean accept(int slot);
+    }
+
+    private boolean matches(int slot, int doctorFilter, int siteFilter, boolean onlyOpen) {
+        return (doctorFilter == ANY || doctor[slot] == doctorFilter)
+                && (siteFilter == ANY || site[slot] == siteFilter)
+                && (!onlyOpen || open[slot]);
+    }
+
+    private static int postingLength(int[] offsets, int key) {
+        return offsets[key + 1] - offsets[key];
+    }
+
+    /**
+     * First position in [begin, end) whose slot starts at or after the given
+     * time. With postings == null the positions are slot numbers themselves.
+     */
+    private int lowerBound(int[] postings, int begin, int end, long time) {
+        int lo = begin;
+        int hi = end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long value = startMs[postings != null ? postings[mid] : mid];
+            if (value < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getStartMs(int slot) {
+        return startMs[slot];
+    }
+
+    public String getSlotId(int slot) {
+        return strings.get(slotIdRef[slot]);
+    }
+
+    public String getDoctorId(int slot) {
+        return doctorIdList.get(doctor[slot]);
+    }
+
+    public String getDoctorName(int slot) {
+        return doctorNames.get(doctor[slot]);
+    }
+
+    public String[] getSite(int slot) {
+        return sites.get(site[slot]);
+    }
+
+    public boolean isOpen(int slot) {
+        return open[slot];
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.evercare;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SlotIndexModule extends ReactContextBaseJavaModule {
+
+    private static final String TAG = "SlotIndexModule";
+    private static final long SLOT_DURATION_MS = 30 * 60 * 1000; // catalog slots are 30 minutes
+
+    // Built lazily on first query for a provider and kept for the process lifetime
+    private final Map<String, SlotIndex> indexes = new HashMap<>();
+    private final BookingIntervals bookings = new BookingIntervals();
+
+    public SlotIndexModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "SlotIndex";
+    }
+
+    /**
+     * List slots for a provider starting in [from, to). Both bounds accept
+     * "YYYY-MM-DD" or a full UTC ISO timestamp and may be null. Options:
+     * doctorId, siteCode, onlyOpen (default false), limit (default none).
+     */
+    @ReactMethod
+    public void listSlots(String provider, String from, String to, ReadableMap options, Promise promise) {
+        try {
+            SlotIndex index = getIndex(provider);
+            long fromMs = from != null ? parseBound(from) : Long.MIN_VALUE;
+            long toMs = to != null ? parseBound(to) : Long.MAX_VALUE;
+            if (to != null && to.length() == 10) {
+                toMs += 86400000L; // A bare date includes the whole day
+            }
+
+            WritableArray result = Arguments.createArray();
+            int doctorFilter = filterIndex(index, options, "doctorId", true);
+            int siteFilter = filterIndex(index, options, "siteCode", false);
+            if (doctorFilter != Integer.MIN_VALUE && siteFilter != Integer.MIN_VALUE) {
+                boolean onlyOpen = options != null && options.hasKey("onlyOpen") && options.getBoolean("onlyOpen");
+                int limit = options != null && options.hasKey("limit") ? options.getInt("limit") : Integer.MAX_VALUE;
+                for (int slot : index.range(fromMs, toMs, doctorFilter, siteFilter, onlyOpen, limit)) {
+                    result.pushMap(toMap(provider, index, slot));
+                }
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error listing slots: " + e.getMessage());
+            promise.reject("SLOT_INDEX_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * First open slot at or after the given time that does not clash with a
+     * booked appointment, or null.
+     */
+    @ReactMethod
+    public void nextAvailable(String provider, String after, ReadableMap options, Promise promise) {
+        try {
+            final SlotIndex index = getIndex(provider);
+            int doctorFilter = filterIndex(index, options, "doctorId", true);
+            int siteFilter = filterIndex(index, options, "siteCode", false);
+            if (doctorFilter == Integer.MIN_VALUE || siteFilter == Integer.MIN_VALUE) {
+                promise.resolve(null);
+                return;
+            }
+
+            int slot;
+            synchronized (bookings) {
+                slot = index.nextAvailable(parseBound(after), doctorFilter, siteFilter, new SlotIndex.SlotFilter() {
+                    @Override
+                    public boolean accept(int candidate) {
+                        long start = index.getStartMs(candidate);
+                        return !bookings.conflicts(start, start + SLOT_DURATION_MS);
+                    }
+                });
+            }
+            promise.resolve(slot >= 0 ? toMap(provider, index, slot) : null);
+        } catch (Exception e) {
+            Log.e(TAG, "Error finding next available slot: " + e.getMessage());
+            promise.reject("SLOT_INDEX_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the known bookings with [{id, start, end}], e.g. after loading
+     * the user's appointments. Resolves with the ids that overlapped an
+     * earlier entry and were therefore not recorded.
+     */
+    @ReactMethod
+    public void setBookings(ReadableArray list, Promise promise) {
+        try {
+            WritableArray rejected = Arguments.createArray();
+            synchronized (bookings) {
+                bookings.clear();
+                for (int i = 0; i < list.size(); i++) {
+                    ReadableMap booking = list.getMap(i);
+                    String id = booking.getString("id");
+                    long start = SlotCatalogReader.parseIsoUtc(booking.getString("start"));
+                    if (!bookings.add(id, start, bookingEnd(booking, start))) {
+                        rejected.pushString(id);
+                    }
+                }
+            }
+            promise.resolve(rejected);
+        } catch (Exception e) {
+            Log.e(TAG, "Error setting bookings: " + e.getMessage());
+            promise.reject("SLOT_INDEX_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Whether [start, end) overlaps a known booking; end defaults to one
+     * slot after start.
+     */
+    @ReactMethod
+    public void hasConflict(String start, String end, Promise promise) {
+        try {
+            long startMs = SlotCatalogReader.parseIsoUtc(start);
+            long endMs = end != null ? SlotCatalogReader.parseIsoUtc(end) : startMs + SLOT_DURATION_MS;
+            synchronized (bookings) {
+                promise.resolve(bookings.conflicts(startMs, endMs));
+            }
+        } catch (Exception e) {
+            promise.reject("SLOT_INDEX_ERROR", e.getMessage());
+        }
+    }
+
+    private synchronized SlotIndex getIndex(String provider) throws Exception {
+        String key = provider.toLowerCase();
+        SlotIndex index = indexes.get(key);
+        if (index == null) {
+            long start = System.nanoTime();
+            try (InputStream in = getReactApplicationContext().getAssets().open(key + "Slots.json")) {
+                index = SlotCatalogReader.read(in);
+            } catch (FileNotFoundException e) {
+                Log.w(TAG, "No slot catalog for provider: " + key);
+                index = new SlotIndex();
+                index.build();
+            }
+            indexes.put(key, index);
+            Log.d(TAG, "Indexed " + index.size() + " slots for " + key + " in "
+                    + (System.nanoTime() - start) / 1000 + " µs");
+        }
+        return index;
+    }
+
+    /**
+     * Resolves a doctor/site filter option. Returns SlotIndex.ANY when the
+     * option is absent and Integer.MIN_VALUE when it names something the
+     * catalog does not contain (so the query matches nothing).
+     */
+    private static int filterIndex(SlotIndex index, ReadableMap options, String key, boolean doctor) {
+        if (options == null || !options.hasKey(key) || options.isNull(key)) {
+            return SlotIndex.ANY;
+        }
+        String value = options.getString(key);
+        int found = doctor ? index.doctorIndex(value) : index.siteIndex(value);
+        return found != SlotIndex.ANY ? found : Integer.MIN_VALUE;
+    }
+
+    private static long parseBound(String value) {
+        return value.length() == 10 ? SlotCatalogReader.parseIsoDate(value) : SlotCatalogReader.parseIsoUtc(value);
+    }
+
+    private static long bookingEnd(ReadableMap booking, long start) {
+        return booking.hasKey("end") && !booking.isNull("end")
+                ? SlotCatalogReader.parseIsoUtc(booking.getString("end"))
+                : start + SLOT_DURATION_MS;
+    }
+
+    private static WritableMap toMap(String provider, SlotIndex index, int slot) {
+        // Same shape as the entries in mocks/*Slots.json
+        String[] site = index.getSite(slot);
+        WritableMap location = Arguments.createMap();
+        location.putString("siteCode", site[0]);
+        location.putString("siteName", site[1]);
+        location.putString("address", site[2]);
+        location.putString("city", site[3]);
+
+        WritableMap map = Arguments.createMap();
+        map.putString("slotId", index.getSlotId(slot));
+        map.putString("providerId", provider.toLowerCase());
+        map.putString("doctorId", index.getDoctorId(slot));
+        map.putString("doctorName", index.getDoctorName(slot));
+        map.putString("slotDateTime", SlotCatalogReader.formatIsoUtc(index.getStartMs(slot)));
+        map.putMap("location", location);
+        map.putString("status", index.isOpen(slot) ? "Open" : "Booked");
+        return map;
+    }
+}
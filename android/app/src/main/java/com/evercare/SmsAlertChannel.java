@@ -0,0 +1,37 @@
+package com.evercare;
+
+/**
+ * The compact fall alert by SMS to the caretaker. Acknowledged once the
+ * message is handed to the radio.
+ */
+public class SmsAlertChannel implements AlertChannel {
+
+    private final FallAlertSms sms;
+    private final long timeoutMs;
+
+    public SmsAlertChannel(FallAlertSms sms, long timeoutMs) {
+        this.sms = sms;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public String getName() {
+        return "sms";
+    }
+
+    @Override
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    public void send(AlertDispatcher.Alert alert, Callback callback) {
+        if (alert.caretakerPhone == null) {
+            callback.onFailed("no caretaker number");
+        } else if (sms.send(alert.caretakerPhone, alert.event)) {
+            callback.onAcknowledged(null);
+        } else {
+            callback.onFailed("send failed");
+        }
+    }
+}
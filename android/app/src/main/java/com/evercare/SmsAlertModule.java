@@ -0,0 +1,43 @@
+package com.evercare;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableMap;
+
+public class SmsAlertModule extends ReactContextBaseJavaModule {
+
+    public SmsAlertModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "SmsAlert";
+    }
+
+    /**
+     * Expands a fall alert SMS into its fields. Resolves null if the text
+     * carries no valid alert tag.
+     */
+    @ReactMethod
+    public void decode(String text, Promise promise) {
+        FallAlertCodec.Alert alert = FallAlertCodec.decode(text);
+        if (alert == null) {
+            promise.resolve(null);
+            return;
+        }
+        WritableMap result = Arguments.createMap();
+        result.putDouble("timestamp", alert.timestamp);
+        result.putDouble("acceleration", alert.acceleration);
+        result.putDouble("duration", alert.duration);
+        if (alert.hasLocation) {
+            result.putDouble("latitude", alert.latitude);
+            result.putDouble("longitude", alert.longitude);
+            result.putDouble("accuracy", alert.accuracy);
+        }
+        promise.resolve(result);
+    }
+}
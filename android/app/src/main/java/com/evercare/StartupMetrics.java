@@ -0,0 +1,83 @@
+package com.evercare;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How quickly fall detection is armed after the device boots or the process
+ * starts. All times are elapsedRealtime milliseconds, which count from boot,
+ * so "boot to armed" is simply the elapsed clock at the moment the
+ * accelerometer listener was registered.
+ */
+public class StartupMetrics {
+
+    private static final String TAG = "StartupMetrics";
+    private static final String PREFS_NAME = "EverCareStartup";
+
+    private static long bootReceivedAt = 0;
+    private static long armedAt = 0;
+    private static long firstSampleAt = 0;
+    private static long deferredInitMs = -1;
+
+    public static long processStartedAt() {
+        return Process.getStartElapsedRealtime();
+    }
+
+    public static synchronized void onBootReceived() {
+        bootReceivedAt = SystemClock.elapsedRealtime();
+    }
+
+    public static synchronized void onArmed() {
+        armedAt = SystemClock.elapsedRealtime();
+        Log.i(TAG, "Accelerometer armed " + armedAt + "ms after boot, "
+                + (armedAt - processStartedAt()) + "ms after process start"
+                + (bootReceivedAt > 0 ? ", " + (armedAt - bootReceivedAt) + "ms after BOOT_COMPLETED" : ""));
+    }
+
+    /**
+     * The first sensor event's own timestamp, so queueing on the main looper
+     * is not counted against the sensor.
+     */
+    public static synchronized boolean onFirstSample(long sensorTimestampMs) {
+        if (firstSampleAt != 0) {
+            return false;
+        }
+        firstSampleAt = sensorTimestampMs;
+        Log.i(TAG, "First sample " + (firstSampleAt - processStartedAt()) + "ms after process start");
+        return true;
+    }
+
+    public static synchronized void onDeferredInitDone(long durationMs) {
+        deferredInitMs = durationMs;
+    }
+
+    /**
+     * Stores the numbers of this start, so they can still be read after the
+     * UI is opened much later. Called after the first sample and after the
+     * deferred init; only the later of the two writes, once both are known.
+     */
+    public static synchronized void save(Context context) {
+        if (firstSampleAt == 0 || deferredInitMs < 0) {
+            return;
+        }
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean("fromBoot", bootReceivedAt > 0)
+                .putLong("bootToArmedMs", armedAt)
+                .putLong("bootCompletedToArmedMs", bootReceivedAt > 0 ? armedAt - bootReceivedAt : -1)
+                .putLong("processToArmedMs", armedAt - processStartedAt())
+                .putLong("processToFirstSampleMs", firstSampleAt - processStartedAt())
+                .putLong("deferredInitMs", deferredInitMs)
+                .putLong("recordedAt", System.currentTimeMillis())
+                .apply();
+    }
+
+    public static Map<String, Object> load(Context context) {
+        Map<String, ?> stored = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getAll();
+        return new HashMap<String, Object>(stored);
+    }
+}
@@ -0,0 +1,129 @@
+package com.evercare;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Learns a user's normal acceleration profile online and proposes free-fall
+ * thresholds from it. Only samples outside a confirmed fall are observed.
+ *
+ * Two P² estimators are kept: the low tail of the acceleration magnitude, and
+ * the upper tail of how long "dips" (magnitude below DIP_LEVEL) last during
+ * normal movement. A cane tap or sitting down hard can produce short low-g
+ * dips, so the proposed thresholds are placed below/above those tails and then
+ * clamped to a safe range. Total state is well under 200 bytes.
+ */
+public class ThresholdCalibrator {
+
+    private static final byte FORMAT_VERSION = 1;
+    public static final int SERIALIZED_SIZE = 1 + 8 + 2 * P2QuantileEstimator.SERIALIZED_SIZE;
+
+    public static final float DEFAULT_FREE_FALL_THRESHOLD = 2.0f; // m/s²
+    public static final long DEFAULT_FREE_FALL_TIME_THRESHOLD = 50; // milliseconds
+
+    // Safe clamps - calibration can never move thresholds outside these
+    private static final float MIN_FREE_FALL_THRESHOLD = 1.0f;
+    private static final float MAX_FREE_FALL_THRESHOLD = 3.5f;
+    private static final long MIN_FREE_FALL_TIME_THRESHOLD = 30;
+    private static final long MAX_FREE_FALL_TIME_THRESHOLD = 120;
+
+    private static final float DIP_LEVEL = 5.0f; // m/s², roughly half of gravity
+    private static final double MAGNITUDE_MARGIN = 0.8; // threshold sits 20% below normal low tail
+    private static final double DIP_DURATION_MARGIN = 1.5; // and 50% above the normal dip length
+    private static final int MIN_MAGNITUDE_SAMPLES = 50000; // ~17 minutes at SENSOR_DELAY_GAME
+    private static final int MIN_DIP_SAMPLES = 50;
+
+    private final P2QuantileEstimator magnitudeLowTail;
+    private final P2QuantileEstimator dipDurationHighTail;
+    private long dipStartMs = 0;
+    private long lastUpdatedMs = 0;
+
+    public ThresholdCalibrator() {
+        this(new P2QuantileEstimator(0.005), new P2QuantileEstimator(0.99));
+    }
+
+    private ThresholdCalibrator(P2QuantileEstimator magnitudeLowTail, P2QuantileEstimator dipDurationHighTail) {
+        this.magnitudeLowTail = magnitudeLowTail;
+        this.dipDurationHighTail = dipDurationHighTail;
+    }
+
+    /**
+     * Feed one accelerometer magnitude from normal (non-fall) movement.
+     */
+    public void observe(float magnitude, long timestampMs) {
+        magnitudeLowTail.add(magnitude);
+        if (magnitude < DIP_LEVEL) {
+            if (dipStartMs == 0) {
+                dipStartMs = timestampMs;
+            }
+        } else if (dipStartMs != 0) {
+            dipDurationHighTail.add(timestampMs - dipStartMs);
+            dipStartMs = 0;
+        }
+        lastUpdatedMs = timestampMs;
+    }
+
+    /**
+     * Drops any dip in progress, e.g. when it turned into a detected fall.
+     */
+    public void discardCurrentDip() {
+        dipStartMs = 0;
+    }
+
+    public boolean isCalibrated() {
+        return magnitudeLowTail.getCount() >= MIN_MAGNITUDE_SAMPLES;
+    }
+
+    public float getFreeFallThreshold() {
+        if (!isCalibrated()) {
+            return DEFAULT_FREE_FALL_THRESHOLD;
+        }
+        double proposed = magnitudeLowTail.getQuantile() * MAGNITUDE_MARGIN;
+        return (float) Math.max(MIN_FREE_FALL_THRESHOLD, Math.min(MAX_FREE_FALL_THRESHOLD, proposed));
+    }
+
+    public long getFreeFallTimeThreshold() {
+        if (!isCalibrated() || dipDurationHighTail.getCount() < MIN_DIP_SAMPLES) {
+            return DEFAULT_FREE_FALL_TIME_THRESHOLD;
+        }
+        long proposed = Math.round(dipDurationHighTail.getQuantile() * DIP_DURATION_MARGIN);
+        return Math.max(MIN_FREE_FALL_TIME_THRESHOLD, Math.min(MAX_FREE_FALL_TIME_THRESHOLD, proposed));
+    }
+
+    public long getSampleCount() {
+        return magnitudeLowTail.getCount();
+    }
+
+    public long getLastUpdatedMs() {
+        return lastUpdatedMs;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(SERIALIZED_SIZE);
+        buffer.put(FORMAT_VERSION);
+        buffer.putLong(lastUpdatedMs);
+        magnitudeLowTail.writeTo(buffer);
+        dipDurationHighTail.writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Restores persisted state, or returns a fresh calibrator if the bytes are
+     * missing, truncated, corrupt or from an unknown format version.
+     */
+    public static ThresholdCalibrator fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != SERIALIZED_SIZE || bytes[0] != FORMAT_VERSION) {
+            return new ThresholdCalibrator();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        long lastUpdatedMs = buffer.getLong();
+        ThresholdCalibrator calibrator;
+        try {
+            calibrator = new ThresholdCalibrator(P2QuantileEstimator.readFrom(buffer), P2QuantileEstimator.readFrom(buffer));
+        } catch (IllegalArgumentException e) {
+            return new ThresholdCalibrator();
+        }
+        calibrator.lastUpdatedMs = lastUpdatedMs;
+        return calibrator;
+    }
+}
@@ -0,0 +1,211 @@
+package com.evercare;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sits between a sensor source and its detector and turns irregularly
+ * spaced samples (batching, bursts, a busy CPU) into one sample every
+ * periodMs, linearly interpolated between the two real samples around
+ * each grid point. Output timestamps are exact multiples of the period
+ * from the start of the current run.
+ *
+ * A gap longer than maxGapMs is not interpolated across: it is counted
+ * as a blind period, the gap listener is told, and the grid restarts at
+ * the next real sample. The last WINDOW_CAPACITY output samples are kept
+ * in a primitive ring so a detector can read a fixed-size window.
+ */
+public class UniformResampler implements SensorSource.Sink {
+
+    public static final long DEFAULT_PERIOD_MS = 20; // 50 Hz, what SENSOR_DELAY_GAME aims for
+    public static final long DEFAULT_MAX_GAP_MS = 100;
+    private static final int WINDOW_CAPACITY = 256;
+
+    public interface GapListener {
+        void onBlind(String source, long fromMs, long toMs);
+    }
+
+    // Every resampler in use, for the stats bridge
+    private static final Map<String, UniformResampler> live = new LinkedHashMap<>();
+
+    private final String source;
+    private final long periodMs;
+    private final long maxGapMs;
+    private final SensorSource.Sink downstream;
+    private final GapListener gapListener;
+
+    private boolean hasPrevious = false;
+    private long previousT;
+    private float previousX;
+    private float previousY;
+    private float previousZ;
+    private long nextGridT;
+
+    private final float[] windowX = new float[WINDOW_CAPACITY];
+    private final float[] windowY = new float[WINDOW_CAPACITY];
+    private final float[] windowZ = new float[WINDOW_CAPACITY];
+    private int windowHead = 0; // next write
+    private int windowSize = 0; // samples since the last blind period, capped
+
+    private long inputSamples = 0;
+    private long outputSamples = 0;
+    private long outOfOrder = 0;
+    private long blindPeriods = 0;
+    private long blindMs = 0;
+    private long longestBlindMs = 0;
+
+    public UniformResampler(String source, long periodMs, long maxGapMs,
+                            SensorSource.Sink downstream, GapListener gapListener) {
+        this.source = source;
+        this.periodMs = periodMs;
+        this.maxGapMs = maxGapMs;
+        this.downstream = downstream;
+        this.gapListener = gapListener;
+        synchronized (live) {
+            live.put(source, this);
+        }
+    }
+
+    /**
+     * A source's path to its detector, as the service wires it: the detector
+     * sees the default 50 Hz grid and is reset after a blind period. also,
+     * if not null, gets the same grid after the detector; gapListener, if
+     * not null, hears of each blind period after the reset.
+     */
+    public static UniformResampler toDetector(String source, final FreeFallDetector detector,
+                                              final SensorSource.Sink also, final GapListener gapListener) {
+        return new UniformResampler(source, DEFAULT_PERIOD_MS, DEFAULT_MAX_GAP_MS, new SensorSource.Sink() {
+            @Override
+            public void onSample(String source, float x, float y, float z, long timestampMs) {
+                detector.onSample(x, y, z, timestampMs);
+                if (also != null) {
+                    also.onSample(source, x, y, z, timestampMs);
+                }
+            }
+        }, new GapListener() {
+            @Override
+            public void onBlind(String source, long fromMs, long toMs) {
+                detector.reset();
+                if (gapListener != null) {
+                    gapListener.onBlind(source, fromMs, toMs);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops reporting this resampler's stats once its source is gone.
+     */
+    public void release() {
+        synchronized (live) {
+            if (live.get(source) == this) {
+                live.remove(source);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onSample(String ignored, float x, float y, float z, long timestampMs) {
+        inputSamples++;
+        if (!hasPrevious) {
+            setPrevious(x, y, z, timestampMs);
+            startRun(timestampMs);
+            return;
+        }
+        if (timestampMs < previousT) {
+            outOfOrder++;
+            return;
+        }
+        if (timestampMs == previousT) {
+            // Two samples in the same millisecond, e.g. a 400 Hz band - the later one wins
+            setPrevious(x, y, z, timestampMs);
+            return;
+        }
+        long gap = timestampMs - previousT;
+        if (gap > maxGapMs) {
+            blindPeriods++;
+            blindMs += gap;
+            longestBlindMs = Math.max(longestBlindMs, gap);
+            windowSize = 0;
+            if (gapListener != null) {
+                gapListener.onBlind(source, previousT, timestampMs);
+            }
+            setPrevious(x, y, z, timestampMs);
+            startRun(timestampMs);
+            return;
+        }
+        while (nextGridT <= timestampMs) {
+            float f = (float) (nextGridT - previousT) / gap;
+            emit(previousX + (x - previousX) * f, previousY + (y - previousY) * f,
+                    previousZ + (z - previousZ) * f, nextGridT);
+            nextGridT += periodMs;
+        }
+        setPrevious(x, y, z, timestampMs);
+    }
+
+    /**
+     * Copies the last n output samples, oldest first, into the arrays.
+     * Returns how many were copied: fewer than n if the run since the last
+     * blind period is shorter.
+     */
+    public synchronized int window(int n, float[] x, float[] y, float[] z) {
+        int count = Math.min(n, windowSize);
+        for (int i = 0; i < count; i++) {
+            int index = (windowHead - count + i + WINDOW_CAPACITY) % WINDOW_CAPACITY;
+            x[i] = windowX[index];
+            y[i] = windowY[index];
+            z[i] = windowZ[index];
+        }
+        return count;
+    }
+
+    public long getPeriodMs() {
+        return periodMs;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("periodMs", periodMs);
+        stats.put("inputSamples", inputSamples);
+        stats.put("outputSamples", outputSamples);
+        stats.put("outOfOrder", outOfOrder);
+        stats.put("blindPeriods", blindPeriods);
+        stats.put("blindMs", blindMs);
+        stats.put("longestBlindMs", longestBlindMs);
+        return stats;
+    }
+
+    public static Map<String, Map<String, Object>> getAllStats() {
+        Map<String, Map<String, Object>> all = new LinkedHashMap<>();
+        synchronized (live) {
+            for (Map.Entry<String, UniformResampler> entry : live.entrySet()) {
+                all.put(entry.getKey(), entry.getValue().getStats());
+            }
+        }
+        return all;
+    }
+
+    private void startRun(long timestampMs) {
+        emit(previousX, previousY, previousZ, timestampMs);
+        nextGridT = timestampMs + periodMs;
+    }
+
+    private void setPrevious(float x, float y, float z, long timestampMs) {
+        hasPrevious = true;
+        previousT = timestampMs;
+        previousX = x;
+        previousY = y;
+        previousZ = z;
+    }
+
+    private void emit(float x, float y, float z, long timestampMs) {
+        outputSamples++;
+        windowX[windowHead] = x;
+        windowY[windowHead] = y;
+        windowZ[windowHead] = z;
+        windowHead = (windowHead + 1) % WINDOW_CAPACITY;
+        windowSize = Math.min(WINDOW_CAPACITY, windowSize + 1);
+        downstream.onSample(source, x, y, z, timestampMs);
+    }
+}
@@ -0,0 +1,94 @@
+package com.evercare;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * A Scheduler whose clocks only move when told to, for the debug replays
+ * and the unit tests. Tasks due at the same time run in the order they were
+ * posted, as on a Handler, so a timeline replays the same way every time.
+ * Single-threaded: post, remove and advance from one thread.
+ */
+public class VirtualScheduler implements Scheduler {
+
+    private static class Task implements Comparable<Task> {
+        final long at;
+        final long seq;
+        final Runnable runnable;
+
+        Task(long at, long seq, Runnable runnable) {
+            this.at = at;
+            this.seq = seq;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            return at != other.at ? Long.compare(at, other.at) : Long.compare(seq, other.seq);
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private final long wallBase;
+    private long now = 0;
+    private long seq = 0;
+    private long tasksRun = 0;
+
+    public VirtualScheduler(long wallBase) {
+        this.wallBase = wallBase;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return wallBase + now;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return now;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        queue.add(new Task(now + Math.max(0, delayMs), seq++, task));
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        Iterator<Task> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().runnable == task) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs everything due up to and including time, then sets the clock to it.
+     */
+    public void advanceTo(long time) {
+        while (!queue.isEmpty() && queue.peek().at <= time) {
+            Task task = queue.poll();
+            now = task.at;
+            tasksRun++;
+            task.runnable.run();
+        }
+        now = Math.max(now, time);
+    }
+
+    /**
+     * Runs until nothing is left or the clock passes limit; false if tasks remain.
+     */
+    public boolean runUntilIdle(long limit) {
+        advanceTo(limit);
+        return queue.isEmpty();
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    public long getTasksRun() {
+        return tasksRun;
+    }
+}
@@ -0,0 +1,258 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * AlertDispatcher against stand-in channels: one that answers quickly, one
+ * slowly, one that fails, one that never answers and one that answers only
+ * after its timeout. Every alert must complete exactly once, with the fast
+ * channel first, the hanging one cut off at its own timeout without
+ * delaying the rest, and late answers ignored. First in virtual time, then
+ * on real threads with many alerts in flight.
+ */
+public class AlertDispatcherTest {
+
+    private static final String[] ALL = {"fast", "slow", "failing", "hanging", "late"};
+    private static final int[] ALL_STATUS = {AlertDispatcher.ACKNOWLEDGED, AlertDispatcher.ACKNOWLEDGED,
+            AlertDispatcher.FAILED, AlertDispatcher.TIMED_OUT, AlertDispatcher.TIMED_OUT};
+    private static final String[] SOME = {"fast", "failing"};
+    private static final int[] SOME_STATUS = {AlertDispatcher.ACKNOWLEDGED, AlertDispatcher.FAILED};
+    private static final long LONGEST_TIMEOUT_MS = 250;
+
+    /**
+     * Answers after a fixed delay, or never if delay is -1: in virtual time
+     * with a scheduler, otherwise by blocking the worker thread.
+     */
+    private static class StandIn implements AlertChannel {
+        final VirtualScheduler scheduler;
+        final String name;
+        final long delayMs;
+        final boolean fails;
+        final long timeoutMs;
+        final Random jitter;
+        final AtomicInteger sends = new AtomicInteger();
+
+        StandIn(VirtualScheduler scheduler, String name, long delayMs, boolean fails, long timeoutMs, long seed) {
+            this.scheduler = scheduler;
+            this.name = name;
+            this.delayMs = delayMs;
+            this.fails = fails;
+            this.timeoutMs = timeoutMs;
+            this.jitter = new Random(seed);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        @Override
+        public void send(AlertDispatcher.Alert alert, final Callback callback) {
+            sends.incrementAndGet();
+            if (delayMs < 0) {
+                return;
+            }
+            Runnable answer = new Runnable() {
+                @Override
+                public void run() {
+                    if (fails) {
+                        callback.onFailed("stand-in failure");
+                    } else {
+                        callback.onAcknowledged(null);
+                    }
+                }
+            };
+            if (scheduler != null) {
+                scheduler.postDelayed(answer, delayMs);
+                return;
+            }
+            long delay;
+            synchronized (jitter) {
+                delay = delayMs + jitter.nextInt(5);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            answer.run();
+        }
+    }
+
+    private static List<AlertChannel> channels(VirtualScheduler scheduler, long seed) {
+        List<AlertChannel> channels = new ArrayList<>();
+        channels.add(new StandIn(scheduler, "fast", 5, false, 1000, seed));
+        channels.add(new StandIn(scheduler, "slow", 150, false, 1000, seed + 1));
+        channels.add(new StandIn(scheduler, "failing", 20, true, 1000, seed + 2));
+        channels.add(new StandIn(scheduler, "hanging", -1, false, LONGEST_TIMEOUT_MS, seed + 3));
+        channels.add(new StandIn(scheduler, "late", 400, false, 100, seed + 4));
+        return channels;
+    }
+
+    private static AlertDispatcher.Alert alert(int i) {
+        FallEvent event = new FallEvent("fanout-" + i, 1704067200000L, 1.5f, 80,
+                false, 0, 0, 0, null, 0, null, null, 0, null);
+        return new AlertDispatcher.Alert(event, "+972500000000", "check");
+    }
+
+    private static AlertDispatcher virtualDispatcher(VirtualScheduler scheduler, List<AlertChannel> channels) {
+        return new AlertDispatcher(channels, scheduler, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    /**
+     * Empty if the result lists the expected channels with the expected
+     * status each, otherwise what differs.
+     */
+    private static String mismatch(AlertDispatcher.Result result, String[] names, int[] statuses) {
+        if (result.channels.size() != names.length) {
+            return "sent on " + result.channels.size() + " channels";
+        }
+        for (int c = 0; c < names.length; c++) {
+            AlertDispatcher.ChannelResult channel = result.channels.get(c);
+            if (!channel.channel.equals(names[c]) || channel.status != statuses[c]) {
+                return channel.channel + " " + channel.status + " at " + c;
+            }
+        }
+        return "";
+    }
+
+    @Test
+    public void everyChannelSettlesAtItsOwnTime() {
+        final VirtualScheduler scheduler = new VirtualScheduler(0);
+        AlertDispatcher dispatcher = virtualDispatcher(scheduler, channels(scheduler, 1));
+        final List<AlertDispatcher.Result> results = new ArrayList<>();
+        final long[] completedAt = new long[1];
+        dispatcher.dispatch(alert(0), new AlertDispatcher.Listener() {
+            @Override
+            public void onComplete(AlertDispatcher.Result result) {
+                results.add(result);
+                completedAt[0] = scheduler.elapsedRealtime();
+            }
+        });
+
+        scheduler.advanceTo(LONGEST_TIMEOUT_MS - 1);
+        assertTrue(results.isEmpty());
+        // The late channel answers at 400 ms, after its own timeout and the alert's completion
+        scheduler.advanceTo(1000);
+        assertEquals(1, results.size());
+        assertEquals(0, scheduler.pending());
+
+        AlertDispatcher.Result result = results.get(0);
+        assertEquals("", mismatch(result, ALL, ALL_STATUS));
+        assertEquals("fast", result.firstChannel);
+        assertEquals(5, result.firstLatencyMs);
+        long[] latencies = {5, 150, 20, LONGEST_TIMEOUT_MS, 100};
+        for (int c = 0; c < latencies.length; c++) {
+            assertEquals(ALL[c], latencies[c], result.channels.get(c).latencyMs);
+        }
+        assertEquals(LONGEST_TIMEOUT_MS, completedAt[0]);
+    }
+
+    @Test
+    public void onlyTheNamedChannelsAreSentOn() {
+        VirtualScheduler scheduler = new VirtualScheduler(0);
+        List<AlertChannel> channels = channels(scheduler, 2);
+        AlertDispatcher dispatcher = virtualDispatcher(scheduler, channels);
+        final List<AlertDispatcher.Result> results = new ArrayList<>();
+        dispatcher.dispatch(alert(0), new HashSet<>(Arrays.asList(SOME)), new AlertDispatcher.Listener() {
+            @Override
+            public void onComplete(AlertDispatcher.Result result) {
+                results.add(result);
+            }
+        });
+        scheduler.advanceTo(1000);
+
+        assertEquals(1, results.size());
+        assertEquals("", mismatch(results.get(0), SOME, SOME_STATUS));
+        assertEquals(20, results.get(0).channels.get(1).latencyMs);
+        for (AlertChannel channel : channels) {
+            boolean named = Arrays.asList(SOME).contains(channel.getName());
+            assertEquals(channel.getName(), named ? 1 : 0, ((StandIn) channel).sends.get());
+        }
+    }
+
+    @Test
+    public void noChannelsNamedCompletesAtOnce() {
+        VirtualScheduler scheduler = new VirtualScheduler(0);
+        AlertDispatcher dispatcher = virtualDispatcher(scheduler, channels(scheduler, 3));
+        final List<AlertDispatcher.Result> results = new ArrayList<>();
+        dispatcher.dispatch(alert(0), new HashSet<String>(), new AlertDispatcher.Listener() {
+            @Override
+            public void onComplete(AlertDispatcher.Result result) {
+                results.add(result);
+            }
+        });
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).channels.isEmpty());
+        assertNull(results.get(0).firstChannel);
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    public void concurrentAlertsOnRealThreads() throws InterruptedException {
+        int alerts = 100;
+        AlertDispatcher dispatcher = new AlertDispatcher(channels(null, 42));
+        final CountDownLatch done = new CountDownLatch(alerts);
+        final AtomicInteger completions = new AtomicInteger();
+        final AtomicInteger wrongFirst = new AtomicInteger();
+        final AtomicInteger wrongChannels = new AtomicInteger();
+        final AtomicInteger slowCompletion = new AtomicInteger();
+        final Set<String> some = new HashSet<>(Arrays.asList(SOME));
+
+        for (int i = 0; i < alerts; i++) {
+            final long dispatchedAt = System.nanoTime();
+            // Every other alert goes out on two channels, as a fall does before its countdown is up
+            final boolean subset = i % 2 == 1;
+            dispatcher.dispatch(alert(i), subset ? some : null, new AlertDispatcher.Listener() {
+                @Override
+                public void onComplete(AlertDispatcher.Result result) {
+                    completions.incrementAndGet();
+                    if (!"fast".equals(result.firstChannel)) {
+                        wrongFirst.incrementAndGet();
+                    }
+                    if (!mismatch(result, subset ? SOME : ALL, subset ? SOME_STATUS : ALL_STATUS).isEmpty()) {
+                        wrongChannels.incrementAndGet();
+                    }
+                    // Bounded by the longest timeout, not by the late channel's 400 ms
+                    if ((System.nanoTime() - dispatchedAt) / 1000000L > LONGEST_TIMEOUT_MS + 100) {
+                        slowCompletion.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        // Late acknowledgements must not complete an alert a second time
+        Thread.sleep(600);
+        dispatcher.shutdown();
+
+        assertEquals(alerts, completions.get());
+        assertEquals(0, wrongFirst.get());
+        assertEquals(0, wrongChannels.get());
+        assertEquals(0, slowCompletion.get());
+    }
+}
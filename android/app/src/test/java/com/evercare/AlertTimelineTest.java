@@ -0,0 +1,582 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * AlertTimeline on a VirtualScheduler: every countdown is replayed in
+ * virtual time and checked by what it showed, stored and escalated, first
+ * for hand-written cases and then for random timelines against a model.
+ */
+public class AlertTimelineTest {
+
+    private static final long WALL_BASE = 1704067200000L;
+    private static final long DELAY_MS = 120000;
+    private static final long TICK_MS = 1000;
+
+    private VirtualScheduler scheduler;
+    private Recorder recorder;
+    private AlertTimeline timeline;
+
+    private static class Escalation {
+        final int kind;
+        final FallEvent event;
+        final long at;
+
+        Escalation(int kind, FallEvent event, long at) {
+            this.kind = kind;
+            this.event = event;
+            this.at = at;
+        }
+    }
+
+    private class Recorder implements AlertTimeline.Actions, AlertTimeline.Store {
+        final List<Escalation> escalations = new ArrayList<>();
+        int shown;
+        int cleared;
+        int countdowns;
+        long lastRemainingMs = -1;
+        FallEvent savedEvent;
+        long savedDeadlineMs;
+        boolean stored;
+
+        @Override
+        public void showAlert(int kind, FallEvent event) {
+            shown++;
+        }
+
+        @Override
+        public void updateCountdown(int kind, long remainingMs) {
+            countdowns++;
+            lastRemainingMs = remainingMs;
+        }
+
+        @Override
+        public void clearAlert() {
+            cleared++;
+        }
+
+        @Override
+        public void escalate(int kind, FallEvent event) {
+            escalations.add(new Escalation(kind, event, scheduler.elapsedRealtime()));
+        }
+
+        @Override
+        public void save(int kind, FallEvent event, long deadlineMs) {
+            savedEvent = event;
+            savedDeadlineMs = deadlineMs;
+            stored = true;
+        }
+
+        @Override
+        public void clear() {
+            stored = false;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = new VirtualScheduler(WALL_BASE);
+        recorder = new Recorder();
+        timeline = new AlertTimeline(scheduler, DELAY_MS, TICK_MS, recorder, recorder);
+    }
+
+    private FallEvent newEvent(String id) {
+        return new FallEvent(id, scheduler.currentTimeMillis(), 1.5f, 80,
+                false, 0, 0, 0, null, 0, null, null, 0, null);
+    }
+
+    @Test
+    public void unansweredFallEscalatesOnceAtTheDeadline() {
+        assertTrue(timeline.onFall(5000));
+        FallEvent event = newEvent("a");
+        timeline.setEvent(event);
+        assertTrue(recorder.stored);
+        assertEquals(WALL_BASE + DELAY_MS, recorder.savedDeadlineMs);
+
+        scheduler.advanceTo(DELAY_MS - 1);
+        assertTrue(recorder.escalations.isEmpty());
+        assertEquals(TICK_MS, recorder.lastRemainingMs);
+
+        assertTrue(scheduler.runUntilIdle(10 * DELAY_MS));
+        assertEquals(1, recorder.escalations.size());
+        Escalation escalation = recorder.escalations.get(0);
+        assertEquals(AlertTimeline.KIND_FALL, escalation.kind);
+        assertSame(event, escalation.event);
+        assertEquals(DELAY_MS, escalation.at);
+        assertEquals(DELAY_MS / TICK_MS, recorder.countdowns);
+        assertEquals(1, recorder.cleared);
+        assertFalse(recorder.stored);
+        assertFalse(timeline.isRunning());
+    }
+
+    @Test
+    public void okCancelsTheCall() {
+        timeline.onFall(5000);
+        timeline.setEvent(newEvent("a"));
+        scheduler.advanceTo(30000);
+        timeline.onOk();
+
+        assertTrue(scheduler.runUntilIdle(10 * DELAY_MS));
+        assertTrue(recorder.escalations.isEmpty());
+        assertEquals(1, recorder.cleared);
+        assertFalse(recorder.stored);
+        assertEquals(0, timeline.getRemainingMs());
+    }
+
+    @Test
+    public void dismissingCancelsWithoutClearingTwice() {
+        timeline.onFall(5000);
+        scheduler.advanceTo(30000);
+        timeline.onDismissed();
+        timeline.onOk();
+
+        assertTrue(scheduler.runUntilIdle(10 * DELAY_MS));
+        assertTrue(recorder.escalations.isEmpty());
+        assertEquals(0, recorder.cleared);
+    }
+
+    @Test
+    public void sameFallFromTwoSourcesCountsOnce() {
+        assertTrue(timeline.onFall(5000));
+        scheduler.advanceTo(500);
+        assertFalse(timeline.onFall(5000 + AlertTimeline.DUPLICATE_WINDOW_MS - 1));
+
+        assertTrue(scheduler.runUntilIdle(10 * DELAY_MS));
+        assertEquals(1, recorder.shown);
+        assertEquals(1, recorder.escalations.size());
+        assertEquals(DELAY_MS, recorder.escalations.get(0).at);
+        assertNull(recorder.escalations.get(0).event);
+    }
+
+    @Test
+    public void laterFallRestartsTheCountdown() {
+        timeline.onFall(5000);
+        scheduler.advanceTo(60000);
+        assertTrue(timeline.onFall(65000));
+
+        assertTrue(scheduler.runUntilIdle(10 * DELAY_MS));
+        assertEquals(2, recorder.shown);
+        assertEquals(1, recorder.escalations.size());
+        assertEquals(60000 + DELAY_MS, recorder.escalations.get(0).at);
+    }
+
+    @Test
+    public void restoreKeepsTheRemainingTime() {
+        FallEvent event = newEvent("a");
+        timeline.restore(AlertTimeline.KIND_FALL, event, WALL_BASE + 45000);
+        assertEquals(45000, timeline.getRemainingMs());
+
+        assertTrue(scheduler.runUntilIdle(10 * DELAY_MS));
+        assertEquals(1, recorder.escalations.size());
+        assertEquals(45000, recorder.escalations.get(0).at);
+        assertSame(event, recorder.escalations.get(0).event);
+    }
+
+    @Test
+    public void restorePastTheDeadlineEscalatesRightAway() {
+        timeline.restore(AlertTimeline.KIND_INACTIVITY, newEvent("a"), WALL_BASE - 60000);
+
+        scheduler.advanceTo(0);
+        assertEquals(1, recorder.escalations.size());
+        assertEquals(AlertTimeline.KIND_INACTIVITY, recorder.escalations.get(0).kind);
+        assertEquals(0, recorder.escalations.get(0).at);
+    }
+
+    @Test
+    public void stopKeepsTheStoredAlert() {
+        timeline.startInactivity(newEvent("a"));
+        scheduler.advanceTo(10000);
+        timeline.stop();
+
+        assertTrue(scheduler.runUntilIdle(10 * DELAY_MS));
+        assertTrue(recorder.escalations.isEmpty());
+        assertTrue(recorder.stored);
+        assertEquals("a", recorder.savedEvent.id);
+        assertEquals(WALL_BASE + DELAY_MS, recorder.savedDeadlineMs);
+    }
+
+    // Random timelines: falls, a second source reporting the same fall,
+    // inactivity alerts, "I'm OK" taps, dismissals and service restarts
+
+    private static final long HANGING_TIMEOUT_MS = 5000;
+
+    private static final int FALL = 0;
+    private static final int BOUNCE = 1; // the same fall from another source
+    private static final int INACTIVITY = 2;
+    private static final int OK = 3;
+    private static final int DISMISS = 4;
+    private static final int RESTART = 5;
+
+    private static class Action {
+        final long at;
+        final int type;
+        final long gapMs; // RESTART only
+
+        Action(long at, int type, long gapMs) {
+            this.at = at;
+            this.type = type;
+            this.gapMs = gapMs;
+        }
+    }
+
+    /**
+     * What should happen, worked out while the timeline is generated.
+     */
+    private static class Model {
+        boolean running = false;
+        boolean stored = false;
+        int kind;
+        String eventId;
+        long deadline;
+        long segmentStart;
+        long lastFallMs = -AlertTimeline.DUPLICATE_WINDOW_MS;
+        int events = 0;
+        int shows = 0;
+        int clears = 0;
+        long ticks = 0;
+        final List<String> escalations = new ArrayList<>();
+
+        // Actions win a tie with the deadline - they were posted first
+        void advance(long t) {
+            if (running && deadline < t) {
+                ticks += ticksUntil(deadline);
+                clears++;
+                escalations.add(deadline + " " + kind + " " + eventId);
+                running = false;
+                stored = false;
+            }
+        }
+
+        long ticksUntil(long end) {
+            return (end - segmentStart + TICK_MS - 1) / TICK_MS;
+        }
+
+        void start(long t, int kind) {
+            stopSegment(t);
+            running = true;
+            stored = true;
+            this.kind = kind;
+            eventId = "e" + (events++);
+            deadline = t + DELAY_MS;
+            segmentStart = t;
+            shows++;
+        }
+
+        void stopSegment(long t) {
+            if (running) {
+                ticks += ticksUntil(t);
+            }
+        }
+
+        void apply(Action action) {
+            long t = action.at;
+            advance(t);
+            switch (action.type) {
+                case FALL:
+                case BOUNCE:
+                    if (Math.abs(t - lastFallMs) >= AlertTimeline.DUPLICATE_WINDOW_MS) {
+                        lastFallMs = t;
+                        start(t, AlertTimeline.KIND_FALL);
+                    }
+                    break;
+                case INACTIVITY:
+                    start(t, AlertTimeline.KIND_INACTIVITY);
+                    break;
+                case OK:
+                    if (running) {
+                        stopSegment(t);
+                        clears++;
+                        running = false;
+                        stored = false;
+                    }
+                    break;
+                case DISMISS:
+                    if (running) {
+                        stopSegment(t);
+                        running = false;
+                        stored = false;
+                    }
+                    break;
+                case RESTART:
+                    stopSegment(t);
+                    running = false;
+                    lastFallMs = -AlertTimeline.DUPLICATE_WINDOW_MS;
+                    long back = t + action.gapMs;
+                    if (stored) {
+                        running = true;
+                        deadline = Math.max(deadline, back);
+                        segmentStart = back;
+                        shows++;
+                        advance(back + 1); // already due: escalates as it comes back
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The service's side of one timeline: a timeline instance that restarts
+     * replace, a store that outlives them, and a dispatcher with one channel
+     * that answers and one that never does.
+     */
+    private static class ReplayedService implements AlertTimeline.Actions, AlertTimeline.Store {
+        final VirtualScheduler scheduler;
+        final AlertDispatcher dispatcher;
+        AlertTimeline timeline;
+        int storedKind;
+        FallEvent storedEvent;
+        long storedDeadline;
+        boolean stored = false;
+        int events = 0;
+        int shows = 0;
+        int clears = 0;
+        long ticks = 0;
+        long badTicks = 0;
+        long expectedDeadline; // of the countdown on screen, for checking its updates
+        final List<String> escalations = new ArrayList<>();
+        final List<Long> completedAfter = new ArrayList<>();
+        int wrongDispatch = 0;
+
+        ReplayedService(VirtualScheduler scheduler) {
+            this.scheduler = scheduler;
+            List<AlertChannel> channels = new ArrayList<>();
+            channels.add(new StandIn(scheduler, "fast", 30, 2000));
+            channels.add(new StandIn(scheduler, "hanging", -1, HANGING_TIMEOUT_MS));
+            this.dispatcher = new AlertDispatcher(channels, scheduler, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            });
+            this.timeline = newTimeline();
+        }
+
+        AlertTimeline newTimeline() {
+            return new AlertTimeline(scheduler, DELAY_MS, TICK_MS, this, this);
+        }
+
+        FallEvent newEvent() {
+            return new FallEvent("e" + (events++), scheduler.currentTimeMillis(), 1.5f, 80,
+                    false, 0, 0, 0, null, 0, null, null, 0, null);
+        }
+
+        void apply(final Action action) {
+            switch (action.type) {
+                case FALL:
+                case BOUNCE:
+                    // As BackgroundService: the event follows the notification in the same pass
+                    if (timeline.onFall(scheduler.elapsedRealtime())) {
+                        timeline.setEvent(newEvent());
+                    }
+                    break;
+                case INACTIVITY:
+                    timeline.startInactivity(newEvent());
+                    break;
+                case OK:
+                    timeline.onOk();
+                    break;
+                case DISMISS:
+                    timeline.onDismissed();
+                    break;
+                case RESTART:
+                    timeline.stop();
+                    timeline = null;
+                    scheduler.postDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            timeline = newTimeline();
+                            if (stored) {
+                                timeline.restore(storedKind, storedEvent, storedDeadline);
+                            }
+                        }
+                    }, action.gapMs);
+                    break;
+            }
+        }
+
+        @Override
+        public void showAlert(int kind, FallEvent event) {
+            shows++;
+            expectedDeadline = scheduler.elapsedRealtime() + timeline.getRemainingMs();
+        }
+
+        @Override
+        public void updateCountdown(int kind, long remainingMs) {
+            ticks++;
+            if (remainingMs <= 0 || remainingMs != expectedDeadline - scheduler.elapsedRealtime()) {
+                badTicks++;
+            }
+        }
+
+        @Override
+        public void clearAlert() {
+            clears++;
+        }
+
+        @Override
+        public void escalate(int kind, FallEvent event) {
+            final long at = scheduler.elapsedRealtime();
+            escalations.add(at + " " + kind + " " + (event != null ? event.id : null));
+            if (event == null) {
+                return;
+            }
+            dispatcher.dispatch(new AlertDispatcher.Alert(event, null, "check"), new AlertDispatcher.Listener() {
+                @Override
+                public void onComplete(AlertDispatcher.Result result) {
+                    completedAfter.add(scheduler.elapsedRealtime() - at);
+                    if (!"fast".equals(result.firstChannel)
+                            || result.channels.get(1).status != AlertDispatcher.TIMED_OUT) {
+                        wrongDispatch++;
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void save(int kind, FallEvent event, long deadlineMs) {
+            storedKind = kind;
+            storedEvent = event;
+            storedDeadline = deadlineMs;
+            stored = true;
+        }
+
+        @Override
+        public void clear() {
+            stored = false;
+            storedEvent = null;
+        }
+    }
+
+    /**
+     * Answers after a fixed virtual delay, or never if delay is -1
+     */
+    private static class StandIn implements AlertChannel {
+        final VirtualScheduler scheduler;
+        final String name;
+        final long delayMs;
+        final long timeoutMs;
+
+        StandIn(VirtualScheduler scheduler, String name, long delayMs, long timeoutMs) {
+            this.scheduler = scheduler;
+            this.name = name;
+            this.delayMs = delayMs;
+            this.timeoutMs = timeoutMs;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        @Override
+        public void send(AlertDispatcher.Alert alert, final Callback callback) {
+            if (delayMs < 0) {
+                return;
+            }
+            scheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onAcknowledged(null);
+                }
+            }, delayMs);
+        }
+    }
+
+    /**
+     * A timeline of 1-12 actions, fed through the model as it is built so
+     * some actions can be placed exactly on the running deadline.
+     */
+    private static List<Action> generate(Random random, Model model) {
+        List<Action> actions = new ArrayList<>();
+        int count = 1 + random.nextInt(12);
+        long t = random.nextInt(1000);
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            int type;
+            if (i == 0) {
+                type = random.nextInt(4) == 0 ? INACTIVITY : FALL;
+            } else {
+                int roll = random.nextInt(100);
+                type = roll < 25 ? FALL : roll < 40 ? BOUNCE : roll < 48 ? INACTIVITY
+                        : roll < 70 ? OK : roll < 82 ? DISMISS : RESTART;
+            }
+            if (type == BOUNCE && previous != FALL) {
+                type = FALL;
+            }
+            if (type == BOUNCE) {
+                t += 1 + random.nextInt((int) AlertTimeline.DUPLICATE_WINDOW_MS - 1);
+            } else if (model.running && model.deadline > t && random.nextInt(8) == 0) {
+                t = model.deadline; // exactly when the call would go out
+            } else {
+                t += 1 + random.nextInt((int) (DELAY_MS * 3 / 2));
+            }
+            long gap = type == RESTART ? 1 + random.nextInt((int) (DELAY_MS * 2)) : 0;
+            Action action = new Action(t, type, gap);
+            actions.add(action);
+            model.apply(action);
+            t += gap;
+            previous = type;
+        }
+        return actions;
+    }
+
+    @Test
+    public void randomTimelinesMatchTheModel() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            Model model = new Model();
+            List<Action> actions = generate(random, model);
+            long end = actions.get(actions.size() - 1).at + 2 * DELAY_MS + HANGING_TIMEOUT_MS;
+            model.advance(Long.MAX_VALUE);
+
+            VirtualScheduler virtual = new VirtualScheduler(WALL_BASE);
+            final ReplayedService service = new ReplayedService(virtual);
+            // Posted before anything the timeline schedules, so an action wins a tie with a deadline
+            for (final Action action : actions) {
+                virtual.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        service.apply(action);
+                    }
+                }, action.at);
+            }
+            String label = "timeline " + i;
+            assertTrue(label + " left tasks scheduled", virtual.runUntilIdle(end));
+
+            assertEquals(label, model.escalations, service.escalations);
+            assertEquals(label + " shows", model.shows, service.shows);
+            assertEquals(label + " clears", model.clears, service.clears);
+            assertEquals(label + " countdown updates", model.ticks, service.ticks);
+            assertEquals(label + " countdown updates with the wrong time left", 0, service.badTicks);
+
+            // Every call with an event is dispatched, and completes once the hanging channel times out
+            int dispatched = 0;
+            for (String escalation : service.escalations) {
+                if (!escalation.endsWith(" null")) {
+                    dispatched++;
+                }
+            }
+            assertEquals(label + " dispatches", dispatched, service.completedAfter.size());
+            for (long completion : service.completedAfter) {
+                assertEquals(label, HANGING_TIMEOUT_MS, completion);
+            }
+            assertEquals(label + " dispatch outcomes", 0, service.wrongDispatch);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * BookingIntervals: overlap checks and what re-adding an id does.
+ */
+public class BookingIntervalsTest {
+
+    @Test
+    public void overlappingBookingsAreRefused() {
+        BookingIntervals bookings = new BookingIntervals();
+        assertTrue(bookings.add("a", 100, 200));
+        assertTrue(bookings.add("b", 200, 300)); // touching is not overlapping
+        assertFalse(bookings.add("c", 150, 250));
+        assertFalse(bookings.add("d", 50, 101));
+        assertFalse(bookings.add("e", 120, 180));
+        assertFalse(bookings.add("f", 0, 1000));
+        assertTrue(bookings.add("g", 0, 100));
+        assertEquals(3, bookings.size());
+    }
+
+    @Test
+    public void reAddingAnIdMovesIt() {
+        BookingIntervals bookings = new BookingIntervals();
+        assertTrue(bookings.add("a", 100, 200));
+        assertTrue(bookings.add("b", 300, 400));
+        // Overlaps only its own old time
+        assertTrue(bookings.add("a", 150, 250));
+        assertEquals(2, bookings.size());
+        assertFalse(bookings.conflicts(100, 150));
+        assertTrue(bookings.conflicts(240, 260));
+    }
+
+    @Test
+    public void conflictingReAddKeepsTheOriginal() {
+        BookingIntervals bookings = new BookingIntervals();
+        assertTrue(bookings.add("a", 100, 200));
+        assertTrue(bookings.add("b", 300, 400));
+        assertFalse(bookings.add("a", 350, 450));
+        assertEquals(2, bookings.size());
+        assertTrue(bookings.conflicts(150, 160));
+        assertFalse(bookings.conflicts(200, 300));
+        // Still held under its id
+        bookings.remove("a");
+        assertFalse(bookings.conflicts(150, 160));
+        assertEquals(1, bookings.size());
+    }
+
+    @Test
+    public void reAddIsCheckedAgainstTheBookingBeforeItsOwn() {
+        BookingIntervals bookings = new BookingIntervals();
+        assertTrue(bookings.add("a", 100, 200));
+        assertTrue(bookings.add("b", 200, 300));
+        // b's own interval is the nearest one, a's is the one it would hit
+        assertFalse(bookings.add("b", 150, 260));
+        assertTrue(bookings.conflicts(250, 260));
+    }
+}
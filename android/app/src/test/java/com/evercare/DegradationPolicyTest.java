@@ -0,0 +1,277 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * The degradation tiers:
+ *
+ *   - recall: the synthetic stream at 50 Hz, delivered sample by sample as
+ *     in the full tier and a second at a time as in the batched sampling
+ *     tier, through the resampler and detector the service uses; every
+ *     incident caught one way must be caught the other
+ *   - margin: single free falls of a swept length at a random phase to the
+ *     sample clock, at 50 Hz and at lower rates; the shortest length each
+ *     rate always catches is why no tier lowers the rate
+ *   - policy: random thermal, battery saver and battery histories replayed
+ *     through DegradationPolicy in virtual time; the tier may never be below
+ *     what the conditions call for, may only step down STEP_DOWN_DELAY_MS
+ *     after its last change, and a battery wavering on a threshold must not
+ *     make it flap
+ */
+public class DegradationPolicyTest {
+
+    private static final int STREAM_RATE_HZ = 400;
+    private static final int RATE_HZ = 50; // SENSOR_DELAY_GAME, at every tier
+    private static final int[] LOWER_RATES_HZ = {40, 33, 25};
+    private static final long BATCH_MS = 1000; // the batched tier's report latency
+    private static final double INCIDENTS_PER_HOUR = 30.0;
+    private static final double SIMULATED_HOURS = 6.0;
+    private static final long MARGIN_LIMIT_MS = 100; // 50 Hz must catch every free fall this long
+    private static final int MARGIN_TRIALS = 200;
+
+    // Ground truth of the stream being replayed, in sensor time
+    private final long[] incidentStarts = new long[4096];
+    private final long[] incidentEnds = new long[4096];
+
+    @Test
+    public void batchedDeliveryCatchesWhatFullDeliveryCatches() {
+        int[] full = replay(42, false);
+        int[] batched = replay(42, true);
+        int incidents = full.length - 1;
+        assertEquals(incidents, batched.length - 1);
+        assertTrue(incidents > 0);
+        int caught = 0;
+        for (int i = 0; i < incidents; i++) {
+            assertEquals("incident " + i, full[i] > 0, batched[i] > 0);
+            caught += full[i] > 0 ? 1 : 0;
+        }
+        assertEquals(full[incidents], batched[incidents]);
+        System.out.println("Recall: " + caught + "/" + incidents + " caught either way, "
+                + full[incidents] + " false positives");
+    }
+
+    @Test
+    public void fiftyHertzCatchesEveryFreeFallFromTheLimit() {
+        Random random = new Random(42);
+        long atRate = shortestAlwaysCaught(RATE_HZ, random);
+        StringBuilder margin = new StringBuilder("Margin: every free fall from ").append(atRate)
+                .append("ms caught at ").append(RATE_HZ).append(" Hz");
+        for (int rate : LOWER_RATES_HZ) {
+            margin.append(", from ").append(shortestAlwaysCaught(rate, random)).append("ms at ").append(rate).append(" Hz");
+        }
+        System.out.println(margin);
+        assertTrue(margin.toString(), atRate > 0 && atRate <= MARGIN_LIMIT_MS);
+    }
+
+    @Test
+    public void randomHistoriesNeverLeaveTheTierTooLow() {
+        final Random random = new Random(42);
+        final VirtualScheduler scheduler = new VirtualScheduler(1704067200000L);
+        final long[] lastChange = {0};
+        final int[] calls = {0};
+        final int[] brokenChain = {0};
+        final int[] earlyStepDowns = {0};
+        final int[] lastTier = {DegradationPolicy.TIER_FULL};
+        DegradationPolicy policy = new DegradationPolicy(scheduler, new DegradationPolicy.Listener() {
+            @Override
+            public void onTierChanged(int tier, int previous, String cause) {
+                calls[0]++;
+                if (previous != lastTier[0] || tier == previous || cause == null) {
+                    brokenChain[0]++;
+                }
+                if (tier < previous && scheduler.elapsedRealtime() - lastChange[0] < DegradationPolicy.STEP_DOWN_DELAY_MS) {
+                    earlyStepDowns[0]++;
+                }
+                lastTier[0] = tier;
+                lastChange[0] = scheduler.elapsedRealtime();
+            }
+        });
+
+        // Thirty days of a phone heating up, cooling down, draining and charging
+        int thermal = 0;
+        boolean powerSave = false;
+        int battery = 100;
+        boolean charging = false;
+        int below = 0;
+        long end = 30L * 24 * 3600 * 1000;
+        while (scheduler.elapsedRealtime() < end) {
+            int pick = random.nextInt(20);
+            if (pick < 3) {
+                thermal = Math.max(0, Math.min(6, thermal + (random.nextInt(3) - 1)));
+                policy.onThermalStatus(thermal);
+            } else if (pick == 3) {
+                powerSave = random.nextInt(4) == 0;
+                policy.onPowerSaveMode(powerSave);
+            } else if (pick == 4) {
+                charging = battery < 20 || random.nextInt(3) == 0;
+                policy.onBattery(battery, charging);
+            } else {
+                battery = Math.max(0, Math.min(100, battery + (charging ? 1 : -1)));
+                policy.onBattery(battery, charging);
+            }
+            // Often in quick succession, as when a hot phone hovers between two thermal states
+            scheduler.advanceTo(scheduler.elapsedRealtime()
+                    + (random.nextBoolean() ? 1000 + random.nextInt(30000) : 30000 + random.nextInt(1200000)));
+            // A step-down may be pending, never a tier below what is called for
+            if (policy.getTier() < DegradationPolicy.requiredTier(thermal, powerSave, battery, charging, policy.getTier())) {
+                below++;
+            }
+        }
+
+        assertTrue(policy.getTransitions() > 0);
+        assertEquals(0, below);
+        assertEquals(0, earlyStepDowns[0]);
+        assertEquals(0, brokenChain[0]);
+        assertEquals(policy.getTransitions(), calls[0]);
+    }
+
+    @Test
+    public void batteryWaveringOnAThresholdDoesNotFlap() {
+        Random random = new Random(42);
+        final int[] flaps = {0};
+        VirtualScheduler scheduler = new VirtualScheduler(0);
+        DegradationPolicy policy = new DegradationPolicy(scheduler, new DegradationPolicy.Listener() {
+            @Override
+            public void onTierChanged(int tier, int previous, String cause) {
+                flaps[0]++;
+            }
+        });
+        // Around 30% for a day
+        for (int i = 0; i < 24 * 60; i++) {
+            policy.onBattery(29 + random.nextInt(4), false);
+            scheduler.advanceTo(scheduler.elapsedRealtime() + 60000);
+        }
+        assertTrue(flaps[0] + " transitions", flaps[0] <= 1);
+    }
+
+    /**
+     * Detections per ground-truth incident, false positives in the last slot.
+     */
+    private int[] replay(long seed, boolean batchedDelivery) {
+        final SyntheticMotionStream stream = new SyntheticMotionStream(seed, STREAM_RATE_HZ, INCIDENTS_PER_HOUR);
+        final int[] detections = new int[4096];
+        final int[] falsePositives = new int[1];
+        final FreeFallDetector detector = new FreeFallDetector(new ThresholdCalibrator(), new FreeFallDetector.Listener() {
+            @Override
+            public void onFreeFall(float acceleration, long durationMs, long timestampMs) {
+                // Batching delays delivery, so the incident is looked up by when it happened
+                int incident = incidentAt(timestampMs);
+                if (incident < 0) {
+                    falsePositives[0]++;
+                } else {
+                    detections[incident]++;
+                }
+            }
+        });
+        UniformResampler resampler = resampler("check", detector);
+
+        int decimation = STREAM_RATE_HZ / RATE_HZ;
+        long total = (long) (SIMULATED_HOURS * 3600 * STREAM_RATE_HZ);
+        float[] sample = new float[3];
+        long[] batchT = new long[(int) (2 * BATCH_MS * RATE_HZ / 1000)];
+        float[] batch = new float[3 * batchT.length];
+        int batched = 0;
+        long batchStart = 0;
+        int lastIncident = -1;
+        for (long i = 0; i < total; i++) {
+            long timestampMs = stream.next(sample) / 1000000L;
+            int incident = stream.getIncidentId();
+            if (incident >= 0) {
+                if (incident != lastIncident) {
+                    incidentStarts[incident] = timestampMs;
+                }
+                incidentEnds[incident] = timestampMs;
+                lastIncident = incident;
+            }
+            if (i % decimation != 0) {
+                continue;
+            }
+            if (!batchedDelivery) {
+                resampler.onSample("check", sample[0], sample[1], sample[2], timestampMs);
+                continue;
+            }
+            // The batched tier gets its samples from the sensor FIFO a second at a time
+            if (batched == 0) {
+                batchStart = timestampMs;
+            }
+            batch[batched * 3] = sample[0];
+            batch[batched * 3 + 1] = sample[1];
+            batch[batched * 3 + 2] = sample[2];
+            batchT[batched++] = timestampMs;
+            if (timestampMs - batchStart >= BATCH_MS || batched == batchT.length) {
+                for (int j = 0; j < batched; j++) {
+                    resampler.onSample("check", batch[j * 3], batch[j * 3 + 1], batch[j * 3 + 2], batchT[j]);
+                }
+                batched = 0;
+            }
+        }
+        resampler.release();
+        int incidentCount = stream.getIncidentCount();
+        int[] result = new int[incidentCount + 1];
+        System.arraycopy(detections, 0, result, 0, incidentCount);
+        result[incidentCount] = falsePositives[0];
+        return result;
+    }
+
+    private int incidentAt(long timestampMs) {
+        // Called while the stream is running, so only incidents seen so far count
+        for (int i = incidentEnds.length - 1; i >= 0; i--) {
+            if (incidentEnds[i] != 0 && timestampMs >= incidentStarts[i] && timestampMs <= incidentEnds[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static UniformResampler resampler(String source, final FreeFallDetector detector) {
+        return new UniformResampler(source, UniformResampler.DEFAULT_PERIOD_MS,
+                UniformResampler.DEFAULT_MAX_GAP_MS, new SensorSource.Sink() {
+            @Override
+            public void onSample(String source, float x, float y, float z, long timestampMs) {
+                detector.onSample(x, y, z, timestampMs);
+            }
+        }, null);
+    }
+
+    private static long shortestAlwaysCaught(int rateHz, Random random) {
+        long shortest = -1;
+        for (long length = 300; length >= 20; length -= 10) {
+            for (int trial = 0; trial < MARGIN_TRIALS; trial++) {
+                if (!detectsDip(rateHz, random.nextInt(1000), length)) {
+                    return shortest;
+                }
+            }
+            shortest = length;
+        }
+        return shortest;
+    }
+
+    /**
+     * One free fall of the given length, starting phase ms into the sample
+     * clock, at the given accelerometer rate.
+     */
+    private static boolean detectsDip(int rateHz, long phase, long lengthMs) {
+        final boolean[] detected = new boolean[1];
+        FreeFallDetector detector = new FreeFallDetector(new ThresholdCalibrator(), new FreeFallDetector.Listener() {
+            @Override
+            public void onFreeFall(float acceleration, long durationMs, long timestampMs) {
+                detected[0] = true;
+            }
+        });
+        UniformResampler resampler = resampler("dip", detector);
+        // Times in microseconds so 400 Hz and 25 Hz share one clock
+        long periodUs = 1000000L / rateHz;
+        long dipStartUs = 2000000L + phase * 1000;
+        long dipEndUs = dipStartUs + lengthMs * 1000;
+        for (long t = 0; t < dipEndUs + 2000000L; t += periodUs) {
+            float z = t >= dipStartUs && t < dipEndUs ? 0.8f : t >= dipEndUs && t < dipEndUs + 100000 ? 29.4f : 9.81f;
+            resampler.onSample("dip", 0, 0, z, t / 1000);
+        }
+        resampler.release();
+        return detected[0];
+    }
+}
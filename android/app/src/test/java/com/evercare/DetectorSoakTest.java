@@ -0,0 +1,85 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Endurance run of the BackgroundService detection path: hours of
+ * synthetic 400 Hz accelerometer data, as a band would send it, through the
+ * service's own wiring (UniformResampler.toDetector: resampled to the 50 Hz
+ * grid, reset after blind periods) into FreeFallDetector. Every incident
+ * must be detected exactly once and nothing else may be.
+ */
+public class DetectorSoakTest {
+
+    private static final String SOURCE = "soak";
+    private static final int SAMPLE_RATE_HZ = 400;
+    private static final double INCIDENTS_PER_HOUR = 2.0;
+    private static final double SIMULATED_HOURS = 12.0;
+
+    private int[] detectionsPerIncident = new int[64];
+    private int falsePositives = 0;
+
+    @Test
+    public void everyIncidentIsDetectedOnceAndNothingElse() {
+        final SyntheticMotionStream stream = new SyntheticMotionStream(42, SAMPLE_RATE_HZ, INCIDENTS_PER_HOUR);
+        FreeFallDetector detector = new FreeFallDetector(new ThresholdCalibrator(), new FreeFallDetector.Listener() {
+            @Override
+            public void onFreeFall(float acceleration, long durationMs, long timestampMs) {
+                recordDetection(stream.getIncidentId());
+            }
+        });
+        UniformResampler resampler = UniformResampler.toDetector(SOURCE, detector, null, null);
+
+        long totalSamples = (long) (SIMULATED_HOURS * 3600 * SAMPLE_RATE_HZ);
+        float[] sample = new float[3];
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        for (long i = 0; i < totalSamples; i++) {
+            long timestampNanos = stream.next(sample);
+            resampler.onSample(SOURCE, sample[0], sample[1], sample[2], timestampNanos / 1000000L);
+        }
+        long wallNanos = System.nanoTime() - start;
+        Map<String, Object> resampled = resampler.getStats();
+        resampler.release();
+        runtime.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        int missed = 0;
+        int duplicates = 0;
+        for (int i = 0; i < stream.getIncidentCount(); i++) {
+            if (detectionsPerIncident[i] == 0) {
+                missed++;
+            } else if (detectionsPerIncident[i] > 1) {
+                duplicates += detectionsPerIncident[i] - 1;
+            }
+        }
+        System.out.println("Soak: " + totalSamples + " samples in " + wallNanos / 1000000 + "ms ("
+                + wallNanos / totalSamples + " ns/sample), heap growth " + (heapAfter - heapBefore) / 1024
+                + " KB, " + stream.getFallCount() + " falls, " + stream.getDropCount() + " drops, resampled "
+                + resampled.get("outputSamples") + ", " + resampled.get("blindPeriods") + " blind periods");
+
+        assertTrue(stream.getIncidentCount() > 0);
+        assertEquals(0, missed);
+        assertEquals(0, duplicates);
+        assertEquals(0, falsePositives);
+    }
+
+    private void recordDetection(int incidentId) {
+        if (incidentId < 0) {
+            falsePositives++;
+            return;
+        }
+        if (incidentId >= detectionsPerIncident.length) {
+            int[] grown = new int[Math.max(incidentId + 1, detectionsPerIncident.length * 2)];
+            System.arraycopy(detectionsPerIncident, 0, grown, 0, detectionsPerIncident.length);
+            detectionsPerIncident = grown;
+        }
+        detectionsPerIncident[incidentId]++;
+    }
+}
@@ -0,0 +1,221 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * DirectReportReader against a stand-in for the sensor service writing the
+ * direct-report ring. Each record carries its sequence number in x, -x in y
+ * and 2x in z, so a record mixed from two writes shows.
+ */
+public class DirectReportReaderTest {
+
+    private static final int TOKEN = 7;
+    private static final int RING_RECORDS = 256;
+
+    private static class Checker implements SensorSource.Sink {
+        long received = 0;
+        long lastSeq = -1;
+        long outOfOrder = 0;
+        long mismatched = 0;
+
+        @Override
+        public void onSample(String source, float x, float y, float z, long timestampMs) {
+            long seq = (long) x;
+            if (y != -x || z != 2 * x || timestampMs != seq) {
+                mismatched++;
+            }
+            if (seq <= lastSeq) {
+                outOfOrder++;
+            }
+            lastSeq = seq;
+            received++;
+        }
+    }
+
+    private static class Writer {
+        final ByteBuffer ring = ByteBuffer.allocate(RING_RECORDS * DirectReportReader.RECORD_SIZE);
+        int slot = 0;
+        int counter = 0;
+        long written = 0; // accelerometer records of our token
+
+        void write(int token, int type) {
+            counter = DirectReportReader.next(counter);
+            float seq = type == DirectReportReader.TYPE_ACCELEROMETER && token == TOKEN ? written++ : -1;
+            writeRecord(ring, slot, token, type, counter, (long) seq * 1000000L, seq, -seq, 2 * seq);
+            slot = (slot + 1) % RING_RECORDS;
+        }
+
+        void write(int n) {
+            for (int i = 0; i < n; i++) {
+                write(TOKEN, DirectReportReader.TYPE_ACCELEROMETER);
+            }
+        }
+    }
+
+    /**
+     * Writes one record the way the sensor service does, in the layout
+     * DirectReportReader documents, counter last.
+     */
+    private static void writeRecord(ByteBuffer ring, int slot, int token, int type, int counter,
+                                    long timestampNs, float x, float y, float z) {
+        ByteBuffer buffer = ring.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int base = slot * DirectReportReader.RECORD_SIZE;
+        buffer.putInt(base, DirectReportReader.RECORD_SIZE);
+        buffer.putInt(base + 4, token);
+        buffer.putInt(base + 8, type);
+        buffer.putLong(base + 16, timestampNs);
+        buffer.putFloat(base + 24, x);
+        buffer.putFloat(base + 28, y);
+        buffer.putFloat(base + 32, z);
+        buffer.putInt(base + 12, counter);
+    }
+
+    /**
+     * Lets the writer run on in the middle of a copy, at a random byte, the
+     * way the sensor service can between two reads.
+     */
+    private static class InterleavedRegion implements DirectReportReader.Region {
+        final Writer writer;
+        final Random random;
+        boolean bursts = true;
+
+        InterleavedRegion(Writer writer, Random random) {
+            this.writer = writer;
+            this.random = random;
+        }
+
+        @Override
+        public int size() {
+            return writer.ring.capacity();
+        }
+
+        @Override
+        public void read(int offset, byte[] dst, int dstOffset, int count) {
+            ByteBuffer view = writer.ring.duplicate();
+            int split = random.nextInt(count + 1);
+            view.position(offset);
+            view.get(dst, dstOffset, split);
+            if (bursts && random.nextInt(4) == 0) {
+                writer.write(random.nextInt(2 * RING_RECORDS));
+            }
+            view.position(offset + split);
+            view.get(dst, dstOffset + split, count - split);
+        }
+    }
+
+    private static DirectReportReader reader(Writer writer) {
+        return new DirectReportReader(new DirectReportReader.BufferRegion(writer.ring), TOKEN);
+    }
+
+    @Test
+    public void inStepDeliversEveryRecordOnceInOrder() {
+        Random random = new Random(1);
+        Writer writer = new Writer();
+        DirectReportReader reader = reader(writer);
+        Checker checker = new Checker();
+        for (int burst = 0; burst < 5000; burst++) {
+            writer.write(random.nextInt(RING_RECORDS));
+            reader.poll(checker, "test");
+        }
+        assertEquals(writer.written, checker.received);
+        assertEquals(writer.written, reader.getDelivered());
+        assertEquals(0, reader.getLost());
+        assertEquals(0, checker.outOfOrder);
+        assertEquals(0, checker.mismatched);
+    }
+
+    @Test
+    public void nothingNewDeliversNothing() {
+        Writer writer = new Writer();
+        DirectReportReader reader = reader(writer);
+        Checker checker = new Checker();
+        assertEquals(0, reader.poll(checker, "test"));
+        writer.write(RING_RECORDS - 1);
+        assertEquals(RING_RECORDS - 1, reader.poll(checker, "test"));
+        assertEquals(0, reader.poll(checker, "test"));
+    }
+
+    @Test
+    public void lappedReaderCountsWhatWasOverwritten() {
+        Random random = new Random(2);
+        Writer writer = new Writer();
+        DirectReportReader reader = reader(writer);
+        Checker checker = new Checker();
+        long minLost = 0;
+        long maxLost = 0;
+        for (int burst = 0; burst < 2000; burst++) {
+            int n = random.nextInt(3 * RING_RECORDS);
+            writer.write(n);
+            // Overwritten records, plus the margin the reader leaves the writer after a lap
+            minLost += Math.max(0, n - RING_RECORDS);
+            maxLost += n >= RING_RECORDS ? n - RING_RECORDS + RING_RECORDS / DirectReportReader.RESYNC_MARGIN : 0;
+            reader.poll(checker, "test");
+        }
+        assertEquals(writer.written, checker.received + reader.getLost());
+        assertTrue(reader.getLost() + " lost, at least " + minLost, reader.getLost() >= minLost);
+        assertTrue(reader.getLost() + " lost, at most " + maxLost, reader.getLost() <= maxLost);
+        assertEquals(0, checker.outOfOrder);
+        assertEquals(0, checker.mismatched);
+    }
+
+    @Test
+    public void otherReportsAndSensorsAreCountedNotDelivered() {
+        Random random = new Random(3);
+        Writer writer = new Writer();
+        DirectReportReader reader = reader(writer);
+        Checker checker = new Checker();
+        long others = 0;
+        for (int burst = 0; burst < 2000; burst++) {
+            int n = random.nextInt(RING_RECORDS);
+            for (int i = 0; i < n; i++) {
+                int pick = random.nextInt(10);
+                if (pick == 0) {
+                    writer.write(TOKEN + 1, DirectReportReader.TYPE_ACCELEROMETER);
+                    others++;
+                } else if (pick == 1) {
+                    writer.write(TOKEN, 4); // gyroscope
+                    others++;
+                } else {
+                    writer.write(TOKEN, DirectReportReader.TYPE_ACCELEROMETER);
+                }
+            }
+            reader.poll(checker, "test");
+        }
+        assertEquals(writer.written, checker.received);
+        assertEquals(others, reader.getForeign());
+        assertEquals(0, checker.outOfOrder);
+        assertEquals(0, checker.mismatched);
+    }
+
+    @Test
+    public void writerRunningDuringCopiesNeverTearsARecord() {
+        Random random = new Random(4);
+        Writer writer = new Writer();
+        InterleavedRegion region = new InterleavedRegion(writer, random);
+        DirectReportReader reader = new DirectReportReader(region, TOKEN);
+        Checker checker = new Checker();
+        for (int burst = 0; burst < 2000; burst++) {
+            writer.write(random.nextInt(2 * RING_RECORDS));
+            reader.poll(checker, "test");
+        }
+        region.bursts = false;
+        while (reader.poll(checker, "test") > 0) {
+            // drain what the last copies let through
+        }
+        assertEquals(writer.written, checker.received + reader.getLost());
+        assertEquals(0, checker.outOfOrder);
+        assertEquals(0, checker.mismatched);
+    }
+
+    @Test
+    public void counterWrapsPastZero() {
+        assertEquals(1, DirectReportReader.next(-1));
+        assertEquals(2, DirectReportReader.next(1));
+    }
+}
@@ -0,0 +1,178 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import org.junit.Test;
+
+/**
+ * The SMS fall alert end to end: FallAlertSms encodes random falls into a
+ * transport that records the text instead of SmsManager, and the text is
+ * decoded and compared against the quantization limits.
+ */
+public class FallAlertCodecTest {
+
+    private static final String[] PLACES = {
+        null, "Home", "Clinic (clinic)", "Grandma Ruth (family)",
+        "12 Herzl St, Jerusalem, Israel", "הרצל 12, ירושלים",
+        "A very long place name that will certainly not fit into what is left of a single SMS segment",
+    };
+
+    private static class Recorder implements FallAlertSms.Transport {
+        final List<String> destinations = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+
+        @Override
+        public void send(String destination, String text) {
+            destinations.add(destination);
+            texts.add(text);
+        }
+    }
+
+    private static FallEvent randomFall(Random random, int i, boolean hasLocation) {
+        return new FallEvent("roundtrip-" + i,
+                1704067200000L + (long) (random.nextDouble() * 20L * 365 * 24 * 3600 * 1000),
+                random.nextFloat() * 60f,
+                random.nextInt(2000),
+                hasLocation,
+                hasLocation ? random.nextDouble() * 180 - 90 : 0,
+                hasLocation ? random.nextDouble() * 360 - 180 : 0,
+                hasLocation ? random.nextFloat() * 2000 : 0,
+                "gps", 0,
+                PLACES[random.nextInt(PLACES.length)], null, 0, null);
+    }
+
+    private static List<String> sendAll(Random random, int count, boolean hasLocation, List<FallEvent> sent) {
+        Recorder recorder = new Recorder();
+        FallAlertSms sender = new FallAlertSms(recorder);
+        for (int i = 0; i < count; i++) {
+            FallEvent event = randomFall(random, i, hasLocation);
+            assertTrue(sender.send("+972500000000", event));
+            sent.add(event);
+        }
+        assertEquals(count, sender.getSentCount());
+        return recorder.texts;
+    }
+
+    private static void assertRoundTrip(FallEvent event, String text) {
+        FallAlertCodec.Alert alert = FallAlertCodec.decode(text);
+        assertNotNull(text, alert);
+        assertEquals(text, event.timestamp / 1000 * 1000, alert.timestamp);
+        assertEquals(text, event.acceleration, alert.acceleration, 0.005f + 1e-4f);
+        assertEquals(text, event.duration, alert.duration);
+        assertEquals(text, event.hasLocation, alert.hasLocation);
+        if (event.hasLocation) {
+            assertEquals(text, event.latitude, alert.latitude, 180.0 / ((1 << 24) - 1));
+            assertEquals(text, event.longitude, alert.longitude, 360.0 / ((1 << 24) - 1));
+            // 4 m steps rounded up, saturating at 255 steps
+            assertEquals(text, Math.min(255, (int) Math.ceil(event.accuracy / 4f)) * 4f, alert.accuracy, 0f);
+        }
+    }
+
+    @Test
+    public void roundTripWithLocation() {
+        List<FallEvent> sent = new ArrayList<>();
+        List<String> texts = sendAll(new Random(1), 20000, true, sent);
+        for (int i = 0; i < sent.size(); i++) {
+            assertRoundTrip(sent.get(i), texts.get(i));
+            assertTrue(texts.get(i).contains("https://maps.google.com/?q="));
+        }
+    }
+
+    @Test
+    public void roundTripWithoutLocation() {
+        List<FallEvent> sent = new ArrayList<>();
+        List<String> texts = sendAll(new Random(2), 20000, false, sent);
+        for (int i = 0; i < sent.size(); i++) {
+            assertRoundTrip(sent.get(i), texts.get(i));
+            assertFalse(texts.get(i).contains("maps.google.com"));
+        }
+    }
+
+    @Test
+    public void everyMessageFitsOneSegment() {
+        Random random = new Random(3);
+        List<String> texts = sendAll(random, 5000, true, new ArrayList<FallEvent>());
+        texts.addAll(sendAll(random, 5000, false, new ArrayList<FallEvent>()));
+        for (String text : texts) {
+            assertTrue(text.length() + " chars: " + text, text.length() <= FallAlertCodec.MAX_SMS_LENGTH);
+        }
+
+        FallAlertCodec.Alert alert = new FallAlertCodec.Alert(1760000000000L, 29.5f, 1200, true, -89.99999, -179.99999, 9999);
+        StringBuilder place = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            place.append("Somewhere ");
+        }
+        String text = FallAlertCodec.encode(alert, place.toString(), TimeZone.getTimeZone("UTC"));
+        assertTrue(text, text.length() <= FallAlertCodec.MAX_SMS_LENGTH);
+        assertTrue(text, text.contains("Somewhere"));
+        assertNotNull(FallAlertCodec.decode(text));
+    }
+
+    @Test
+    public void messagesAreGsmOnly() {
+        Random random = new Random(4);
+        List<String> texts = sendAll(random, 5000, true, new ArrayList<FallEvent>());
+        texts.addAll(sendAll(random, 5000, false, new ArrayList<FallEvent>()));
+        for (String text : texts) {
+            for (int c = 0; c < text.length(); c++) {
+                char ch = text.charAt(c);
+                assertTrue(text, ch >= 0x20 && ch < 0x7F);
+                // '#' only in the tag marker; the rest are GSM escapes
+                assertTrue(text, "[]{}\\^~|`".indexOf(ch) < 0);
+            }
+            assertEquals(text, text.indexOf('#'), text.lastIndexOf(FallAlertCodec.TAG_MARKER));
+        }
+        assertEquals("Clinic clinic", FallAlertCodec.gsmSafe("Clinic  {clinic}"));
+        assertEquals("12,", FallAlertCodec.gsmSafe("הרצל 12, ירושלים"));
+    }
+
+    @Test
+    public void corruptedTagsAreRejectedByTheCrc() {
+        Random random = new Random(5);
+        List<String> texts = sendAll(random, 5000, true, new ArrayList<FallEvent>());
+        texts.addAll(sendAll(random, 5000, false, new ArrayList<FallEvent>()));
+        for (String text : texts) {
+            // Change one character of the tag
+            int tagStart = text.lastIndexOf(FallAlertCodec.TAG_MARKER) + FallAlertCodec.TAG_MARKER.length();
+            int position = tagStart + random.nextInt(text.length() - tagStart);
+            char replacement = text.charAt(position) == 'A' ? 'B' : 'A';
+            String corrupted = text.substring(0, position) + replacement + text.substring(position + 1);
+            assertNull(corrupted, FallAlertCodec.decode(corrupted));
+        }
+        assertNull(FallAlertCodec.decode("EverCare: possible fall at 03:12"));
+        assertNull(FallAlertCodec.decode(null));
+    }
+
+    @Test
+    public void transportGetsTheTrimmedNumberAndFailuresAreCounted() {
+        Recorder recorder = new Recorder();
+        FallAlertSms sender = new FallAlertSms(recorder);
+        FallEvent event = randomFall(new Random(6), 0, true);
+
+        assertFalse(sender.send(null, event));
+        assertFalse(sender.send("   ", event));
+        assertTrue(recorder.texts.isEmpty());
+
+        assertTrue(sender.send(" +972500000000 ", event));
+        assertEquals("+972500000000", recorder.destinations.get(0));
+        assertRoundTrip(event, recorder.texts.get(0));
+
+        FallAlertSms failing = new FallAlertSms(new FallAlertSms.Transport() {
+            @Override
+            public void send(String destination, String text) throws Exception {
+                throw new SecurityException("SEND_SMS not granted");
+            }
+        });
+        assertFalse(failing.send("+972500000000", event));
+        assertEquals(0, failing.getSentCount());
+        assertEquals(1, failing.getFailedCount());
+    }
+}
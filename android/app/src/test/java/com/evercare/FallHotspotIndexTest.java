@@ -0,0 +1,152 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * FallHotspotIndex against the obvious slow answers: a radius query against
+ * measuring every fall, and an index that had falls removed against one
+ * built from the falls that are left.
+ */
+public class FallHotspotIndexTest {
+
+    private static final double EPSILON = 1e-9;
+
+    // Falls in a few neighbourhoods, some with fixes too vague for the hotspots
+    private static List<FallHotspotIndex.Fall> randomFalls(Random random, int n, double[][] centres) {
+        List<FallHotspotIndex.Fall> falls = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double[] centre = centres[random.nextInt(centres.length)];
+            double spread = random.nextBoolean() ? 0.0005 : 0.02;
+            float accuracy = random.nextInt(10) == 0 ? 150 + random.nextInt(500) : random.nextInt(60);
+            falls.add(new FallHotspotIndex.Fall("fall-" + i, 1700000000000L + i * 60000L,
+                    centre[0] + (random.nextDouble() - 0.5) * spread,
+                    Geohash.wrapLongitude(centre[1] + (random.nextDouble() - 0.5) * spread),
+                    accuracy));
+        }
+        return falls;
+    }
+
+    private static final double[][] CENTRES = {
+        {32.0853, 34.7818}, // Tel Aviv
+        {31.7683, 35.2137}, // Jerusalem
+        {0.0001, 179.9995}, // on the antimeridian
+        {-89.9990, 12.0}, // next to the pole
+    };
+
+    private static List<String> bruteForce(List<FallHotspotIndex.Fall> falls,
+            double latitude, double longitude, double radius) {
+        List<String> ids = new ArrayList<>();
+        for (FallHotspotIndex.Fall fall : falls) {
+            if (Geohash.distanceMeters(latitude, longitude, fall.latitude, fall.longitude) <= radius) {
+                ids.add(fall.id);
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static List<String> ids(List<FallHotspotIndex.Nearby> nearby) {
+        List<String> ids = new ArrayList<>();
+        for (FallHotspotIndex.Nearby n : nearby) {
+            ids.add(n.fall.id);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void radiusQueryMatchesBruteForce() {
+        Random random = new Random(1);
+        List<FallHotspotIndex.Fall> falls = randomFalls(random, 2000, CENTRES);
+        FallHotspotIndex index = new FallHotspotIndex();
+        assertEquals(falls.size(), index.addAll(falls));
+
+        double[] radii = {0, 10, 75, 400, 2500, 9999, 20000};
+        for (int q = 0; q < 400; q++) {
+            double[] centre = CENTRES[random.nextInt(CENTRES.length)];
+            double latitude = Math.max(-90, Math.min(90, centre[0] + (random.nextDouble() - 0.5) * 0.05));
+            double longitude = Geohash.wrapLongitude(centre[1] + (random.nextDouble() - 0.5) * 0.05);
+            double radius = radii[random.nextInt(radii.length)];
+            List<FallHotspotIndex.Nearby> found = index.near(latitude, longitude, radius);
+            assertEquals("query " + q + " radius " + radius,
+                    bruteForce(falls, latitude, longitude, radius), ids(found));
+            for (int i = 1; i < found.size(); i++) {
+                assertTrue(found.get(i - 1).distance <= found.get(i).distance);
+            }
+        }
+    }
+
+    @Test
+    public void removingFallsLeavesTheIndexARebuildWouldHave() {
+        Random random = new Random(2);
+        List<FallHotspotIndex.Fall> falls = randomFalls(random, 1500, CENTRES);
+        FallHotspotIndex index = new FallHotspotIndex();
+        index.addAll(falls);
+
+        List<FallHotspotIndex.Fall> kept = new ArrayList<>();
+        for (FallHotspotIndex.Fall fall : falls) {
+            if (random.nextInt(3) == 0) {
+                assertTrue(index.remove(fall.id));
+            } else {
+                kept.add(fall);
+            }
+        }
+        assertFalse(index.remove("never-added"));
+
+        FallHotspotIndex rebuilt = new FallHotspotIndex();
+        rebuilt.addAll(kept);
+
+        assertEquals(rebuilt.size(), index.size());
+        assertEquals(rebuilt.cellCount(), index.cellCount());
+        assertEquals(rebuilt.impreciseCount(), index.impreciseCount());
+
+        List<FallHotspotIndex.Hotspot> expected = rebuilt.top(50, 0.5);
+        List<FallHotspotIndex.Hotspot> actual = index.top(50, 0.5);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).geohash, actual.get(i).geohash);
+            assertEquals(expected.get(i).falls, actual.get(i).falls);
+            assertEquals(expected.get(i).weight, actual.get(i).weight, EPSILON);
+            assertEquals(expected.get(i).latitude, actual.get(i).latitude, EPSILON);
+            assertEquals(expected.get(i).longitude, actual.get(i).longitude, EPSILON);
+        }
+
+        for (double[] centre : CENTRES) {
+            assertEquals(ids(rebuilt.near(centre[0], centre[1], 3000)), ids(index.near(centre[0], centre[1], 3000)));
+        }
+    }
+
+    @Test
+    public void removingEverythingEmptiesTheIndex() {
+        Random random = new Random(3);
+        List<FallHotspotIndex.Fall> falls = randomFalls(random, 300, CENTRES);
+        FallHotspotIndex index = new FallHotspotIndex();
+        index.addAll(falls);
+        for (FallHotspotIndex.Fall fall : falls) {
+            index.remove(fall.id);
+        }
+        assertEquals(0, index.size());
+        assertEquals(0, index.cellCount());
+        assertEquals(0, index.impreciseCount());
+        assertTrue(index.top(10, 0).isEmpty());
+    }
+
+    @Test
+    public void aFallAlreadyIndexedIsIgnored() {
+        FallHotspotIndex index = new FallHotspotIndex();
+        FallHotspotIndex.Fall fall = new FallHotspotIndex.Fall("a", 0, 32.0853, 34.7818, 10);
+        assertTrue(index.add(fall));
+        assertFalse(index.add(fall));
+        assertEquals(0, index.addAll(Collections.singletonList(fall)));
+        assertEquals(1, index.size());
+        assertEquals(1.0, index.top(1, 0).get(0).weight, EPSILON);
+    }
+}
@@ -0,0 +1,387 @@
+package com.evercare;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The fall records across schema versions: the current (version 1) reader
+ * against a version 2 writer with two more fields and the other way round,
+ * corrupt input, which may only ever throw IllegalArgumentException, and
+ * the cost of the record path against the map-based one it replaced.
+ */
+public class FallRecordsTest {
+
+    private static final int COUNT = 500;
+    private static final int CORRUPTIONS_PER_EVENT = 50;
+    private static final int BENCHMARK_ROUNDS = 5;
+
+    private static final FlatTable.Schema VERSION_2 = schemaUpTo(FallRecords.EVENT.size(), 2)
+            .field(FallRecords.EVENT.size(), "stepsBefore", FlatTable.INT, FlatTable.UPLOAD, null)
+            .field(FallRecords.EVENT.size() + 1, "impact", FlatTable.SHORTS, 0, null);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void eventsRoundTrip() {
+        Random random = new Random(1);
+        for (int i = 0; i < COUNT; i++) {
+            FallEvent event = randomEvent(random, i);
+            assertSame(event, FallRecords.decode(FallRecords.encode(event)));
+        }
+    }
+
+    @Test
+    public void windowsRoundTrip() {
+        Random random = new Random(2);
+        FallWindowStore.Window back = new FallWindowStore.Window();
+        for (int i = 0; i < COUNT; i++) {
+            FallWindowStore.Window window = randomWindow(random, "window-" + i);
+            FallRecords.decode(FallRecords.encode(window), back);
+            assertSame(window, back);
+        }
+    }
+
+    @Test
+    public void currentEventsReadByANewerReader() {
+        Random random = new Random(3);
+        for (int i = 0; i < COUNT; i++) {
+            FallEvent event = randomEvent(random, i);
+            FlatTable.Table table = FlatTable.Table.wrap(FallRecords.encode(event), VERSION_2);
+            assertEquals(1, table.version());
+            assertFalse(table.has(FallRecords.EVENT.size()));
+            assertFalse(table.has(FallRecords.EVENT.size() + 1));
+            assertEquals(-1, table.getInt(FallRecords.EVENT.size(), -1));
+            assertEquals(event.id, table.getString(FallRecords.EVENT_ID));
+            assertEquals(event.timestamp, table.getLong(FallRecords.TIMESTAMP, 0));
+            assertEquals(event.powerTier, table.getString(FallRecords.POWER_TIER));
+        }
+    }
+
+    @Test
+    public void versionTwoEventsReadWithoutTheNewFields() {
+        Random random = new Random(4);
+        FlatTable.Writer newer = new FlatTable.Writer(VERSION_2);
+        short[] impact = new short[64];
+        for (int i = 0; i < COUNT; i++) {
+            FallEvent event = randomEvent(random, i);
+            for (int j = 0; j < impact.length; j++) {
+                impact[j] = (short) random.nextInt();
+            }
+            byte[] record = write(newer.begin(), event)
+                    .putInt(FallRecords.EVENT.size(), random.nextInt(10000))
+                    .putShorts(FallRecords.EVENT.size() + 1, impact, impact.length)
+                    .finish();
+            assertEquals(2, FallRecords.wrapEvent(record).version());
+            assertSame(event, FallRecords.decode(record));
+        }
+    }
+
+    @Test
+    public void windowFilesReadBackAsTables() throws IOException {
+        FallWindowStore.Window window = randomWindow(new Random(6), "table-1-123456");
+        File file = folder.newFile("table.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(FallRecords.encode(window));
+        }
+        FallWindowStore.Window back = new FallWindowStore.Window();
+        FallWindowStore.read(file, back);
+        assertSame(window, back);
+    }
+
+    @Test(expected = IOException.class)
+    public void unreadableWindowFileIsAnIOException() throws IOException {
+        File file = folder.newFile("noise.bin");
+        byte[] noise = new byte[300];
+        new Random(7).nextBytes(noise);
+        noise[0] = (byte) FallRecords.WINDOW_SCHEMA_ID;
+        noise[1] = 0;
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(noise);
+        }
+        FallWindowStore.read(file, new FallWindowStore.Window());
+    }
+
+    @Test
+    public void corruptEventsDecodeOrThrowIllegalArgument() {
+        Random random = new Random(8);
+        for (int i = 0; i < COUNT; i++) {
+            byte[] record = FallRecords.encode(randomEvent(random, i));
+            for (int j = 0; j < CORRUPTIONS_PER_EVENT; j++) {
+                byte[] bad = corrupt(record, random);
+                try {
+                    FallRecords.decode(bad);
+                } catch (IllegalArgumentException e) {
+                    // rejected, as it should be
+                } catch (RuntimeException e) {
+                    fail("Corrupt record " + Arrays.toString(bad) + " threw " + e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void corruptWindowsDecodeOrThrowIllegalArgument() {
+        Random random = new Random(9);
+        FallWindowStore.Window back = new FallWindowStore.Window();
+        for (int i = 0; i < COUNT; i++) {
+            byte[] record = FallRecords.encode(randomWindow(random, "window-" + i));
+            for (int j = 0; j < CORRUPTIONS_PER_EVENT; j++) {
+                byte[] bad = corrupt(record, random);
+                try {
+                    FallRecords.decode(bad, back);
+                } catch (IllegalArgumentException e) {
+                    // rejected, as it should be
+                } catch (RuntimeException e) {
+                    fail("Corrupt window " + Arrays.toString(bad) + " threw " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Detection to bridge to document: the map path the records replaced,
+     * a map for the bridge and a map for the document, against one record
+     * read in place and the document generated from the schema. Reports the
+     * best of a few rounds; the documents must carry the same fields.
+     */
+    @Test
+    public void encodeDecodeCostAgainstMaps() {
+        Random random = new Random(10);
+        FallEvent[] events = new FallEvent[COUNT * 4];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = randomEvent(random, i);
+        }
+        for (FallEvent event : events) {
+            Set<String> expected = new HashSet<>(fieldsDocument(event, "benchmark").keySet());
+            expected.add("schemaVersion");
+            expected.add("record");
+            assertEquals(expected, FallEventUploader.toDocument(FallRecords.encode(event), "benchmark").keySet());
+        }
+
+        long[] sink = new long[1];
+        benchmarkFields(events, sink);
+        benchmarkRecords(events, sink);
+        long fieldsNs = Long.MAX_VALUE;
+        long recordsNs = Long.MAX_VALUE;
+        for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            fieldsNs = Math.min(fieldsNs, benchmarkFields(events, sink));
+            recordsNs = Math.min(recordsNs, benchmarkRecords(events, sink));
+        }
+        assertTrue(sink[0] > 0);
+        System.out.println("Fall event to bridge and document: maps " + fieldsNs / events.length
+                + " ns/event, record " + recordsNs / events.length + " ns/event");
+    }
+
+    private static long benchmarkFields(FallEvent[] events, long[] sink) {
+        long start = System.nanoTime();
+        for (FallEvent event : events) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("eventId", event.id);
+            params.put("acceleration", (double) event.acceleration);
+            params.put("duration", (double) event.duration);
+            params.put("timestamp", (double) event.timestamp);
+            if (event.powerTier != null) {
+                params.put("powerTier", event.powerTier);
+            }
+            if (event.hasLocation) {
+                params.put("latitude", event.latitude);
+                params.put("longitude", event.longitude);
+                params.put("accuracy", (double) event.accuracy);
+                params.put("provider", event.provider);
+                params.put("locationTimestamp", (double) event.locationTimestamp);
+                if (event.place != null) {
+                    params.put("place", event.place);
+                }
+                if (event.address != null) {
+                    params.put("address", event.address);
+                }
+            }
+            sink[0] += params.size() + fieldsDocument(event, "benchmark").size();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long benchmarkRecords(FallEvent[] events, long[] sink) {
+        long start = System.nanoTime();
+        for (FallEvent event : events) {
+            byte[] record = FallRecords.encode(event);
+            String id = FallRecords.wrapEvent(record).getString(FallRecords.EVENT_ID);
+            String bridged = Base64.getEncoder().encodeToString(record);
+            sink[0] += id.length() + bridged.length() + FallEventUploader.toDocument(record, "benchmark").size();
+        }
+        return System.nanoTime() - start;
+    }
+
+    // The Firestore document as it was built field by field before the records
+    private static Map<String, Object> fieldsDocument(FallEvent event, String uid) {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("timestamp", new Date(event.timestamp));
+        doc.put("acceleration", event.acceleration);
+        doc.put("duration", event.duration);
+        doc.put("deviceInfo", "Android Native Service");
+        doc.put("userId", uid);
+        doc.put("readableTimestamp", iso.format(new Date(event.timestamp)));
+        if (event.powerTier != null) {
+            doc.put("powerTier", event.powerTier);
+        }
+        if (event.hasLocation) {
+            Map<String, Object> location = new HashMap<>();
+            location.put("latitude", event.latitude);
+            location.put("longitude", event.longitude);
+            location.put("accuracy", event.accuracy);
+            location.put("provider", event.provider);
+            location.put("locationTimestamp", new Date(event.locationTimestamp));
+            if (event.place != null) {
+                location.put("place", event.place);
+            }
+            if (event.address != null) {
+                location.put("address", event.address);
+            }
+            doc.put("location", location);
+        } else {
+            doc.put("location", null);
+        }
+        return doc;
+    }
+
+    private static FlatTable.Schema schemaUpTo(int fields, int version) {
+        FlatTable.Schema current = FallRecords.EVENT;
+        FlatTable.Schema schema = new FlatTable.Schema(current.id, version);
+        for (int i = 0; i < fields; i++) {
+            schema.field(i, current.name(i), current.type(i), 0, current.group(i));
+        }
+        return schema;
+    }
+
+    private static FlatTable.Writer write(FlatTable.Writer writer, FallEvent event) {
+        writer.putString(FallRecords.EVENT_ID, event.id)
+                .putLong(FallRecords.TIMESTAMP, event.timestamp)
+                .putFloat(FallRecords.ACCELERATION, event.acceleration)
+                .putLong(FallRecords.DURATION, event.duration);
+        if (event.hasLocation) {
+            writer.putDouble(FallRecords.LATITUDE, event.latitude)
+                    .putDouble(FallRecords.LONGITUDE, event.longitude)
+                    .putFloat(FallRecords.ACCURACY, event.accuracy)
+                    .putString(FallRecords.PROVIDER, event.provider)
+                    .putLong(FallRecords.LOCATION_TIMESTAMP, event.locationTimestamp)
+                    .putString(FallRecords.PLACE, event.place)
+                    .putString(FallRecords.ADDRESS, event.address);
+        }
+        return writer.putLong(FallRecords.ENQUEUED_AT, event.enqueuedAt)
+                .putString(FallRecords.POWER_TIER, event.powerTier);
+    }
+
+    private static byte[] corrupt(byte[] record, Random random) {
+        switch (random.nextInt(4)) {
+            case 0: {
+                byte[] bad = record.clone();
+                for (int i = 1 + random.nextInt(4); i > 0; i--) {
+                    bad[random.nextInt(bad.length)] ^= (byte) (1 + random.nextInt(255));
+                }
+                return bad;
+            }
+            case 1: {
+                // Header and offsets only, where a flip does the most damage
+                byte[] bad = record.clone();
+                bad[random.nextInt(Math.min(bad.length, 8 + 2 * FallRecords.EVENT.size()))] = (byte) random.nextInt();
+                return bad;
+            }
+            case 2:
+                return Arrays.copyOf(record, random.nextInt(record.length));
+            default: {
+                byte[] bad = new byte[random.nextInt(2 * record.length)];
+                random.nextBytes(bad);
+                if (bad.length >= 2 && random.nextBoolean()) {
+                    bad[0] = record[0]; // past the schema check
+                    bad[1] = record[1];
+                }
+                return bad;
+            }
+        }
+    }
+
+    private static FallEvent randomEvent(Random random, int i) {
+        boolean hasLocation = random.nextInt(4) != 0;
+        String[] places = {null, "Home", "Café Olé", "בית", "公園 🌳"};
+        String[] tiers = {null, "full", "noLiveStreams", "batchedSampling"};
+        return new FallEvent(FallEvent.makeId("device" + random.nextInt(1000), random.nextInt(500), 1_000_000L + i),
+                1_700_000_000_000L + (long) (random.nextDouble() * 100_000_000_000L),
+                random.nextFloat() * 3f,
+                50 + random.nextInt(500),
+                hasLocation,
+                hasLocation ? random.nextDouble() * 180 - 90 : 0,
+                hasLocation ? random.nextDouble() * 360 - 180 : 0,
+                hasLocation ? random.nextFloat() * 100 : 0,
+                hasLocation ? (random.nextBoolean() ? "gps" : null) : null,
+                hasLocation ? 1_700_000_000_000L + random.nextInt(1_000_000) : 0,
+                hasLocation ? places[random.nextInt(places.length)] : null,
+                hasLocation && random.nextBoolean() ? random.nextInt(200) + " Herzl St, Tel Aviv" : null,
+                random.nextInt(Integer.MAX_VALUE),
+                tiers[random.nextInt(tiers.length)]);
+    }
+
+    private static FallWindowStore.Window randomWindow(Random random, String id) {
+        FallWindowStore.Window window = new FallWindowStore.Window();
+        window.id = id;
+        window.confirmSampleMs = random.nextInt(Integer.MAX_VALUE);
+        window.periodMs = 20;
+        window.count = random.nextInt(FallWindowStore.WINDOW_SAMPLES + 1);
+        for (int i = 0; i < window.count; i++) {
+            window.x[i] = (short) random.nextInt();
+            window.y[i] = (short) random.nextInt();
+            window.z[i] = (short) random.nextInt();
+        }
+        return window;
+    }
+
+    private static void assertSame(FallEvent expected, FallEvent actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.acceleration, actual.acceleration, 0f);
+        assertEquals(expected.duration, actual.duration);
+        assertEquals(expected.hasLocation, actual.hasLocation);
+        assertEquals(expected.latitude, actual.latitude, 0d);
+        assertEquals(expected.longitude, actual.longitude, 0d);
+        assertEquals(expected.accuracy, actual.accuracy, 0f);
+        assertEquals(expected.provider, actual.provider);
+        assertEquals(expected.locationTimestamp, actual.locationTimestamp);
+        assertEquals(expected.place, actual.place);
+        assertEquals(expected.address, actual.address);
+        assertEquals(expected.enqueuedAt, actual.enqueuedAt);
+        assertEquals(expected.powerTier, actual.powerTier);
+    }
+
+    private static void assertSame(FallWindowStore.Window expected, FallWindowStore.Window actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.confirmSampleMs, actual.confirmSampleMs);
+        assertEquals(expected.periodMs, actual.periodMs);
+        assertEquals(expected.count, actual.count);
+        assertArrayEquals(Arrays.copyOf(expected.x, expected.count), Arrays.copyOf(actual.x, actual.count));
+        assertArrayEquals(Arrays.copyOf(expected.y, expected.count), Arrays.copyOf(actual.y, actual.count));
+        assertArrayEquals(Arrays.copyOf(expected.z, expected.count), Arrays.copyOf(actual.z, actual.count));
+    }
+}
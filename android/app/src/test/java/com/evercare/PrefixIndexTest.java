@@ -0,0 +1,88 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * PrefixIndex written and searched through a file: ranking, entries that
+ * share a name, and what the same entry given twice does.
+ */
+public class PrefixIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PrefixIndex build(PrefixIndex.Entry... entries) throws IOException {
+        File file = new File(folder.getRoot(), "test.idx");
+        PrefixIndex.write(file, Arrays.asList(entries));
+        return PrefixIndex.open(file);
+    }
+
+    private static List<String> ids(List<PrefixIndex.Entry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (PrefixIndex.Entry entry : entries) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void prefixMatchesByWeight() throws IOException {
+        PrefixIndex index = build(
+                new PrefixIndex.Entry("Aspirin", "1", 5),
+                new PrefixIndex.Entry("Asmanex", "2", 9),
+                new PrefixIndex.Entry("Ibuprofen", "3", 7),
+                new PrefixIndex.Entry("ASPIRIN Junior", "4", 1));
+        assertEquals(Arrays.asList("2", "1", "4"), ids(index.search("as", 5)));
+        assertEquals(Arrays.asList("1", "4"), ids(index.search(" Aspi", 5)));
+        assertEquals(Arrays.asList("2"), ids(index.search("as", 1)));
+        assertTrue(index.search("x", 5).isEmpty());
+    }
+
+    @Test
+    public void entriesWithTheSameNameAreAllKept() throws IOException {
+        PrefixIndex index = build(
+                new PrefixIndex.Entry("Dana Cohen", "dr-1", 0),
+                new PrefixIndex.Entry("Dana Cohen", "dr-2", 0),
+                new PrefixIndex.Entry("dana cohen", "dr-3", 0),
+                new PrefixIndex.Entry("Cohen Dana", "Dana Cohen", "dr-1", 0),
+                new PrefixIndex.Entry("Cohen Dana", "Dana Cohen", "dr-2", 0));
+        assertEquals(5, index.size());
+        assertEquals(Arrays.asList("dr-1", "dr-2", "dr-3"), ids(index.search("dana", 5)));
+        assertEquals(Arrays.asList("dr-1", "dr-2"), ids(index.search("cohen", 5)));
+    }
+
+    @Test
+    public void theSameEntryGivenTwiceKeepsTheLast() throws IOException {
+        // As a drug sync merging a changed document over the index on disk
+        PrefixIndex index = build(
+                new PrefixIndex.Entry("Aspirin", "1", 5),
+                new PrefixIndex.Entry("Aspirin", "2", 3),
+                new PrefixIndex.Entry("Aspirin", "1", 8));
+        assertEquals(2, index.size());
+        List<PrefixIndex.Entry> found = index.search("aspirin", 5);
+        assertEquals(Arrays.asList("1", "2"), ids(found));
+        assertEquals(8, found.get(0).weight);
+    }
+
+    @Test
+    public void entriesSurviveARebuild() throws IOException {
+        PrefixIndex index = build(
+                new PrefixIndex.Entry("Dana Cohen", "dr-1", 0),
+                new PrefixIndex.Entry("Dana Cohen", "dr-2", 0),
+                new PrefixIndex.Entry("", "empty", 0));
+        List<PrefixIndex.Entry> entries = index.entries();
+        assertEquals(2, entries.size());
+        PrefixIndex rebuilt = build(entries.toArray(new PrefixIndex.Entry[0]));
+        assertEquals(Arrays.asList("dr-1", "dr-2"), ids(rebuilt.search("dana", 5)));
+    }
+}
@@ -0,0 +1,273 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * The path a sample takes through LocalSocketSensorSource, without the
+ * socket: several simulated devices at 400 Hz, each on a clock far from
+ * ours, write frames of 20 samples with SampleFrameCodec; they are read
+ * back in arrival order, moved onto our clock by a per-device
+ * ClockOffsetEstimator and passed through a SampleRing, as the source
+ * does. One device reconnects half way. Every sample sent must arrive once,
+ * in order, or be counted as dropped by the ring, and its corrected
+ * timestamp must be within the transport delay of when it was taken.
+ */
+public class SensorSourceLoadTest {
+
+    private static final int RATE_HZ = 400;
+    private static final int SAMPLES_PER_FRAME = 20;
+    private static final long PERIOD_NS = 1000000000L / RATE_HZ;
+    private static final long FRAME_NS = SAMPLES_PER_FRAME * PERIOD_NS;
+    private static final long OFFSET_WINDOW_NS = 30000000000L; // as the source
+    // Transport delay of a frame: under one sample period, so a better offset estimate never reorders samples
+    private static final long MAX_DELAY_US = 2000;
+    private static final long START_NS = 5000000000L; // our elapsedRealtime when the run starts
+
+    private static class Device {
+        final String name;
+        final long senderOffsetNs;
+        final List<byte[]> connections = new ArrayList<>();
+        // Receive time of every frame, in the order written, across connections
+        final List<Long> receivedAt = new ArrayList<>();
+        long sent;
+
+        Device(String name, long senderOffsetNs) {
+            this.name = name;
+            this.senderOffsetNs = senderOffsetNs;
+        }
+    }
+
+    private static class Received {
+        long samples;
+        long outOfOrder;
+        long maxErrorMs;
+        long lastTimestampMs = Long.MIN_VALUE;
+    }
+
+    /**
+     * Writes seconds of samples per device. x and y carry the true time the
+     * sample was taken on our clock, in ms modulo 300 s.
+     */
+    private static Device[] send(int deviceCount, int seconds, Random random) throws IOException {
+        Device[] devices = new Device[deviceCount];
+        long frames = seconds * (long) RATE_HZ / SAMPLES_PER_FRAME;
+        long[] timestamps = new long[SAMPLES_PER_FRAME];
+        float[] x = new float[SAMPLES_PER_FRAME];
+        float[] y = new float[SAMPLES_PER_FRAME];
+        float[] z = new float[SAMPLES_PER_FRAME];
+        for (int d = 0; d < deviceCount; d++) {
+            // Sender clocks anywhere within a day of ours
+            Device device = new Device("band-" + d, (long) ((random.nextDouble() - 0.5) * 86400e9));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            SampleFrameCodec.writeHandshake(out, device.name);
+            long next = START_NS + random.nextInt((int) PERIOD_NS);
+            for (long f = 0; f < frames; f++) {
+                if (d == 0 && f == frames / 2) {
+                    device.connections.add(bytes.toByteArray());
+                    bytes = new ByteArrayOutputStream();
+                    out = new DataOutputStream(bytes);
+                    SampleFrameCodec.writeHandshake(out, device.name);
+                }
+                for (int i = 0; i < SAMPLES_PER_FRAME; i++) {
+                    long takenAt = next + i * PERIOD_NS;
+                    timestamps[i] = takenAt + device.senderOffsetNs;
+                    long truthMs = takenAt / 1000000L % 300000L;
+                    x[i] = (truthMs / 10) / 100f; // wire resolution is 0.01
+                    y[i] = (truthMs % 10) / 100f;
+                    z[i] = 9.81f;
+                }
+                SampleFrameCodec.writeSamples(out, timestamps, x, y, z, 0, SAMPLES_PER_FRAME);
+                device.receivedAt.add(timestamps[SAMPLES_PER_FRAME - 1] - device.senderOffsetNs
+                        + (long) (random.nextDouble() * MAX_DELAY_US * 1000L));
+                device.sent += SAMPLES_PER_FRAME;
+                next += FRAME_NS;
+            }
+            device.connections.add(bytes.toByteArray());
+            devices[d] = device;
+        }
+        return devices;
+    }
+
+    /**
+     * Reads every device's frames round robin, one frame each per frame
+     * interval, into the ring, draining it every drainEvery rounds.
+     * Returns the ring.
+     */
+    private static SampleRing receive(final Device[] devices, final Received[] received, int capacity,
+                                      int drainEvery, long[] bytesRead) throws Exception {
+        final SampleRing ring = new SampleRing(capacity, devices.length);
+        SampleRing.Consumer consumer = new SampleRing.Consumer() {
+            @Override
+            public void onSample(int index, float x, float y, float z, long timestampNs) {
+                Received r = received[index];
+                long timestampMs = timestampNs / 1000000L;
+                r.samples++;
+                if (timestampMs < r.lastTimestampMs) {
+                    r.outOfOrder++;
+                }
+                r.lastTimestampMs = timestampMs;
+                long truth = Math.round(x * 100f) * 10 + Math.round(y * 100f);
+                long error = Math.abs(Math.floorMod(timestampMs, 300000L) - truth);
+                r.maxErrorMs = Math.max(r.maxErrorMs, Math.min(error, 300000L - error));
+            }
+        };
+
+        int n = devices.length;
+        final ClockOffsetEstimator[] clocks = new ClockOffsetEstimator[n];
+        SampleFrameCodec[] codecs = new SampleFrameCodec[n];
+        DataInputStream[] ins = new DataInputStream[n];
+        int[] connection = new int[n];
+        final int[] frame = new int[n];
+        for (int d = 0; d < n; d++) {
+            clocks[d] = new ClockOffsetEstimator(OFFSET_WINDOW_NS);
+        }
+
+        boolean any = true;
+        for (int round = 0; any; round++) {
+            any = false;
+            for (int d = 0; d < n; d++) {
+                final int device = d;
+                if (ins[d] == null) {
+                    if (connection[d] == devices[d].connections.size()) {
+                        continue;
+                    }
+                    // As attach(): a reconnecting sender may have restarted its clock
+                    codecs[d] = new SampleFrameCodec();
+                    ins[d] = new DataInputStream(new ByteArrayInputStream(devices[d].connections.get(connection[d]++)));
+                    assertEquals(devices[d].name, codecs[d].readHandshake(ins[d]));
+                    clocks[d].reset();
+                }
+                try {
+                    codecs[d].readFrame(ins[d], new SampleFrameCodec.FrameListener() {
+                        @Override
+                        public void onSamples(long[] timestampsNs, float[] x, float[] y, float[] z, int count) {
+                            clocks[device].observe(timestampsNs[count - 1], devices[device].receivedAt.get(frame[device]++));
+                            ring.put(device, timestampsNs, x, y, z, count, clocks[device].getOffsetNs());
+                        }
+
+                        @Override
+                        public void onClock(long senderNs) {
+                            fail("no clock frames sent");
+                        }
+                    });
+                    any = true;
+                } catch (EOFException e) {
+                    bytesRead[d] += codecs[d].getBytesRead();
+                    ins[d] = null;
+                    any = connection[d] < devices[d].connections.size();
+                }
+            }
+            if (round % drainEvery == 0) {
+                ring.drainTo(consumer, 0);
+            }
+        }
+        ring.drainTo(consumer, 0);
+        return ring;
+    }
+
+    private static Received[] received(int count) {
+        Received[] received = new Received[count];
+        for (int d = 0; d < count; d++) {
+            received[d] = new Received();
+        }
+        return received;
+    }
+
+    @Test
+    public void everySampleArrivesOnceInOrderOnOurClock() throws Exception {
+        Device[] devices = send(4, 30, new Random(42));
+        Received[] received = received(devices.length);
+        long[] bytesRead = new long[devices.length];
+        // Drained every 50 ms, as a delivery thread keeping up would
+        SampleRing ring = receive(devices, received, 8192, 1, bytesRead);
+
+        for (int d = 0; d < devices.length; d++) {
+            Received r = received[d];
+            assertEquals(devices[d].name, 0, ring.getDropped(d));
+            assertEquals(devices[d].name, devices[d].sent, r.samples);
+            assertEquals(devices[d].name, 0, r.outOfOrder);
+            // The first frame after a connection sets the offset alone, with its whole delay
+            assertTrue(devices[d].name + " off by " + r.maxErrorMs + "ms", r.maxErrorMs <= MAX_DELAY_US / 1000 + 1);
+            double overhead = (bytesRead[d] - (double) SampleFrameCodec.AXIS_BYTES * r.samples) / r.samples;
+            assertTrue(devices[d].name + " overhead " + overhead, overhead < 2.6);
+        }
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void aDetectorFallingBehindDropsOldSamplesAndCountsThem() throws Exception {
+        Device[] devices = send(4, 10, new Random(7));
+        Received[] received = received(devices.length);
+        // Drained every second into a ring that holds a quarter of that
+        SampleRing ring = receive(devices, received, 400, 20, new long[devices.length]);
+
+        long dropped = 0;
+        for (int d = 0; d < devices.length; d++) {
+            Received r = received[d];
+            assertEquals(devices[d].name, devices[d].sent, r.samples + ring.getDropped(d));
+            assertEquals(devices[d].name, 0, r.outOfOrder);
+            dropped += ring.getDropped(d);
+        }
+        assertTrue(dropped > 0);
+    }
+
+    @Test
+    public void malformedStreamsAreIOExceptions() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x12345678);
+        assertReadFails(bytes.toByteArray(), true);
+
+        bytes.reset();
+        SampleFrameCodec.writeHandshake(out, "band");
+        out.writeByte(SampleFrameCodec.TYPE_SAMPLES);
+        out.writeShort(0);
+        assertReadFails(bytes.toByteArray(), false);
+
+        bytes.reset();
+        SampleFrameCodec.writeHandshake(out, "band");
+        out.writeByte(9);
+        assertReadFails(bytes.toByteArray(), false);
+    }
+
+    private static void assertReadFails(byte[] stream, boolean inHandshake) {
+        SampleFrameCodec codec = new SampleFrameCodec();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(stream));
+        try {
+            codec.readHandshake(in);
+            if (inHandshake) {
+                fail("handshake accepted");
+            }
+            codec.readFrame(in, new SampleFrameCodec.FrameListener() {
+                @Override
+                public void onSamples(long[] timestampsNs, float[] x, float[] y, float[] z, int count) {
+                    fail("frame accepted");
+                }
+
+                @Override
+                public void onClock(long senderNs) {
+                    fail("frame accepted");
+                }
+            });
+            fail("frame accepted");
+        } catch (EOFException e) {
+            fail("truncated instead of malformed");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.evercare;
+
+import java.util.Random;
+
+/**
+ * Deterministic stand-in for the accelerometer: produces a fixed-rate stream
+ * that alternates between rest, walking, phone drops and falls, and remembers
+ * which free-fall incident (if any) the current sample belongs to so detections
+ * can be scored against ground truth.
+ */
+public class SyntheticMotionStream {
+
+    public static final int SEGMENT_REST = 0;
+    public static final int SEGMENT_WALK = 1;
+    public static final int SEGMENT_DROP = 2;
+    public static final int SEGMENT_FALL = 3;
+
+    private static final float GRAVITY = 9.81f;
+    private static final long NANOS_PER_MS = 1000000L;
+
+    private final Random random;
+    private final long sampleIntervalNanos;
+    private final double incidentsPerHour;
+
+    private long timestampNanos = 0;
+    private int segment = SEGMENT_REST;
+    private long segmentEndNanos = 0;
+    private long freeFallEndNanos = 0;
+    private float freeFallLevel = 0;
+    private float walkPhase = 0;
+
+    private int incidentId = -1;
+    private int dropCount = 0;
+    private int fallCount = 0;
+
+    public SyntheticMotionStream(long seed, int sampleRateHz, double incidentsPerHour) {
+        this.random = new Random(seed);
+        this.sampleIntervalNanos = 1000000000L / sampleRateHz;
+        this.incidentsPerHour = incidentsPerHour;
+    }
+
+    /**
+     * Writes the next sample into out[0..2] and returns its timestamp in nanoseconds.
+     */
+    public long next(float[] out) {
+        timestampNanos += sampleIntervalNanos;
+        if (timestampNanos >= segmentEndNanos) {
+            startNextSegment();
+        }
+
+        float noise = (float) random.nextGaussian() * 0.05f;
+        switch (segment) {
+            case SEGMENT_WALK:
+                // ~1.8 Hz gait with a ±3 m/s² vertical swing
+                walkPhase += (float) (2 * Math.PI * 1.8 * sampleIntervalNanos / 1e9);
+                out[0] = noise;
+                out[1] = noise;
+                out[2] = GRAVITY + 3f * (float) Math.sin(walkPhase) + noise;
+                break;
+            case SEGMENT_DROP:
+            case SEGMENT_FALL:
+                if (timestampNanos < freeFallEndNanos) {
+                    out[0] = freeFallLevel * 0.6f + noise;
+                    out[1] = freeFallLevel * 0.8f + noise;
+                    out[2] = noise;
+                } else {
+                    // Impact and settling after the free-fall phase
+                    out[0] = noise;
+                    out[1] = noise;
+                    out[2] = GRAVITY * 3f + noise;
+                }
+                break;
+            default:
+                out[0] = noise;
+                out[1] = noise;
+                out[2] = GRAVITY + noise;
+                break;
+        }
+        return timestampNanos;
+    }
+
+    private void startNextSegment() {
+        incidentId = -1;
+        double incidentChance = incidentsPerHour / 120.0; // segments average ~30 s
+        double roll = random.nextDouble();
+        if (roll < incidentChance) {
+            boolean isFall = random.nextBoolean();
+            segment = isFall ? SEGMENT_FALL : SEGMENT_DROP;
+            incidentId = dropCount + fallCount;
+            if (isFall) {
+                fallCount++;
+                freeFallLevel = 0.5f + random.nextFloat(); // body falls rarely reach 0 g
+                freeFallEndNanos = timestampNanos + (300 + random.nextInt(300)) * NANOS_PER_MS;
+            } else {
+                dropCount++;
+                freeFallLevel = 0.1f + random.nextFloat() * 0.3f;
+                freeFallEndNanos = timestampNanos + (150 + random.nextInt(250)) * NANOS_PER_MS;
+            }
+            segmentEndNanos = freeFallEndNanos + 200 * NANOS_PER_MS;
+        } else {
+            segment = roll < 0.5 ? SEGMENT_WALK : SEGMENT_REST;
+            segmentEndNanos = timestampNanos + (10000 + random.nextInt(40000)) * NANOS_PER_MS;
+        }
+    }
+
+    public int getSegment() {
+        return segment;
+    }
+
+    /**
+     * Ground-truth incident the current sample belongs to, or -1 outside drops and falls.
+     */
+    public int getIncidentId() {
+        return incidentId;
+    }
+
+    public int getIncidentCount() {
+        return dropCount + fallCount;
+    }
+
+    public int getDropCount() {
+        return dropCount;
+    }
+
+    public int getFallCount() {
+        return fallCount;
+    }
+}
@@ -0,0 +1,100 @@
+package com.evercare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * ThresholdCalibrator persistence: round trips, counts past the int range,
+ * and state that cannot be trusted.
+ */
+public class ThresholdCalibratorTest {
+
+    private static ThresholdCalibrator trained(long seed) {
+        Random random = new Random(seed);
+        ThresholdCalibrator calibrator = new ThresholdCalibrator();
+        long t = 0;
+        for (int i = 0; i < 60000; i++) {
+            t += 10;
+            calibrator.observe((float) (9.81 + random.nextGaussian() * 3), t);
+        }
+        return calibrator;
+    }
+
+    @Test
+    public void roundTripKeepsThresholds() {
+        ThresholdCalibrator calibrator = trained(1);
+        assertTrue(calibrator.isCalibrated());
+        ThresholdCalibrator restored = ThresholdCalibrator.fromBytes(calibrator.toBytes());
+        assertEquals(calibrator.getSampleCount(), restored.getSampleCount());
+        assertEquals(calibrator.getFreeFallThreshold(), restored.getFreeFallThreshold(), 0f);
+        assertEquals(calibrator.getFreeFallTimeThreshold(), restored.getFreeFallTimeThreshold());
+        assertEquals(calibrator.getLastUpdatedMs(), restored.getLastUpdatedMs());
+    }
+
+    @Test
+    public void countsPastIntRangeSurviveARoundTrip() {
+        ThresholdCalibrator calibrator = trained(2);
+        byte[] bytes = calibrator.toBytes();
+        // Push both estimators' counts and upper markers past 2^31
+        long shift = 3L * Integer.MAX_VALUE;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int base = 1 + 8; base < bytes.length; base += P2QuantileEstimator.SERIALIZED_SIZE) {
+            buffer.putLong(base + 8, buffer.getLong(base + 8) + shift);
+            int positions = base + 8 + 8 + 5 * 8;
+            for (int i = 1; i < 5; i++) {
+                buffer.putLong(positions + 8 * i, buffer.getLong(positions + 8 * i) + shift);
+            }
+        }
+        ThresholdCalibrator restored = ThresholdCalibrator.fromBytes(bytes);
+        assertEquals(calibrator.getSampleCount() + shift, restored.getSampleCount());
+        restored.observe(9.81f, restored.getLastUpdatedMs() + 10);
+        assertEquals(calibrator.getSampleCount() + shift + 1, restored.getSampleCount());
+        assertTrue(restored.isCalibrated());
+    }
+
+    @Test
+    public void corruptStateGivesAFreshCalibrator() {
+        Random random = new Random(4);
+        byte[] good = trained(4).toBytes();
+        for (int i = 0; i < 2000; i++) {
+            byte[] bytes = good.clone();
+            int flips = 1 + random.nextInt(4);
+            for (int f = 0; f < flips; f++) {
+                // Leave the version byte alone so the estimators are read
+                bytes[1 + random.nextInt(bytes.length - 1)] ^= (byte) (1 << random.nextInt(8));
+            }
+            ThresholdCalibrator restored = ThresholdCalibrator.fromBytes(bytes);
+            float threshold = restored.getFreeFallThreshold();
+            assertFalse(Float.isNaN(threshold));
+        }
+    }
+
+    @Test
+    public void badQuantileOrMarkersAreRejected() {
+        byte[] bytes = trained(5).toBytes();
+        ByteBuffer.wrap(bytes).putDouble(1 + 8, 2.0); // p outside (0, 1)
+        assertEquals(0, ThresholdCalibrator.fromBytes(bytes).getSampleCount());
+
+        bytes = trained(5).toBytes();
+        ByteBuffer.wrap(bytes).putLong(1 + 8 + 8, -1); // negative count
+        assertEquals(0, ThresholdCalibrator.fromBytes(bytes).getSampleCount());
+
+        bytes = trained(5).toBytes();
+        ByteBuffer.wrap(bytes).putLong(1 + 8 + 8 + 8 + 5 * 8 + 2 * 8, 0); // middle marker at 0
+        assertEquals(0, ThresholdCalibrator.fromBytes(bytes).getSampleCount());
+    }
+
+    @Test
+    public void missingOrUnknownStateGivesAFreshCalibrator() {
+        assertEquals(0, ThresholdCalibrator.fromBytes(null).getSampleCount());
+        assertEquals(0, ThresholdCalibrator.fromBytes(new byte[3]).getSampleCount());
+        byte[] bytes = trained(6).toBytes();
+        bytes[0] = 9;
+        assertEquals(0, ThresholdCalibrator.fromBytes(bytes).getSampleCount());
+    }
+}
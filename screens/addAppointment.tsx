@@ -17,6 +17,7 @@ import {
   FlatList,
   Dimensions,
   ImageBackground,
+  Alert,
 } from 'react-native';
 import { Picker } from '@react-native-picker/picker';
 import { Calendar, DateData, CalendarProps } from 'react-native-calendars';
@@ -25,7 +26,11 @@ import {
   getSlots,
   saveBookedAppointment,
 } from '../services/appointment/appointmentService';
-import { addAppointmentToCalendar } from '../services/calendarService';
+import {
+  addAppointmentToCalendar,
+  syncAppointmentsToCalendar,
+} from '../services/calendarService';
+import { scheduleAppointmentReminder } from '../services/notificationService';
 import type { Provider, Slot, Appointment } from '../types/appointment';
 import Colors from '../styles/Colors';
 import { SettingsContext } from '../context/SettingsContext';
@@ -118,7 +123,10 @@ export default function AddAppointment() {
       };
       try {
         await saveBookedAppointment(appt);
-        await addAppointmentToCalendar(appt);
+        scheduleAppointmentReminder(appt);
+        if (!(await syncAppointmentsToCalendar())) {
+          await addAppointmentToCalendar(appt);
+        }
         setSlotsByDay(prev => {
           const day = slot.startTime.split('T')[0];
           const filtered = (prev[day] || []).filter(s => s.slotId !== slot.slotId);
@@ -130,6 +138,7 @@ export default function AddAppointment() {
         });
       } catch (err) {
         console.error('Error booking slot:', err);
+        Alert.alert('Could not book', err instanceof Error ? err.message : 'Please try again');
       }
     },
     [providers, selProv]
@@ -19,6 +19,8 @@ import {
   getBookedAppointments,
   removeBookedAppointment,
 } from '../services/appointment/appointmentService';
+import { syncAppointmentsToCalendar } from '../services/calendarService';
+import { cancelAppointmentNotification } from '../services/notificationService';
 import type { Appointment } from '../types/appointment';
 
 const { width } = Dimensions.get('window');
@@ -58,6 +60,11 @@ export default function AppointmentCenter() {
 
   const handleCancel = useCallback(async (slotId: string) => {
     await removeBookedAppointment(slotId);
+    cancelAppointmentNotification(slotId);
+    // Take the event off the calendar too; the booking is gone either way
+    syncAppointmentsToCalendar().catch(err =>
+      console.warn('Calendar sync failed:', err)
+    );
     loadBooked();
   }, [loadBooked]);
 
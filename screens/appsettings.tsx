@@ -1,6 +1,6 @@
 // src/screens/AppSettings.tsx
 
-import React, { useContext } from 'react';
+import React, { useContext, useEffect, useState } from 'react';
 import {
   SafeAreaView,
   ScrollView,
@@ -11,9 +11,12 @@ import {
   StyleSheet,
   Dimensions,
   ImageBackground,
+  NativeModules,
+  Platform,
 } from 'react-native';
 import { SettingsContext, FontSizeKey } from '../context/SettingsContext';
 import { useTheme } from '../utils/theme';
+import MotionGraph from './components/MotionGraph';
 
 const { width } = Dimensions.get('window');
 const FONT_SIZES: Record<FontSizeKey, number> = {
@@ -23,9 +26,66 @@ const FONT_SIZES: Record<FontSizeKey, number> = {
   xlarge: 20,
 };
 
+type InactivityConfig = {
+  enabled: boolean;
+  periodMinutes: number;
+  quietStart: number;
+  quietEnd: number;
+};
+
+const CHECK_IN_PERIODS = [120, 240, 480]; // minutes without motion
+
+const minuteOfDay = (m: number) =>
+  `${String(Math.floor(m / 60)).padStart(2, '0')}:${String(m % 60).padStart(2, '0')}`;
+
+type EnergyDay = {
+  date: string;
+  cpuProcessMs: number;
+  locationGpsMs: number;
+  locationNetworkMs: number;
+  wakeMs: number;
+  notifications: number;
+};
+
 export default function AppSettings() {
   const { settings, updateSettings } = useContext(SettingsContext);
   const { colors, typography, backgroundImage } = useTheme();
+  const [energyDays, setEnergyDays] = useState<EnergyDay[]>([]);
+  // Off by default: the native side only collects samples while it is shown
+  const [showMotion, setShowMotion] = useState(false);
+  const [inactivity, setInactivity] = useState<InactivityConfig | null>(null);
+
+  // Fall detection's own battery accounting, kept natively for the last week
+  useEffect(() => {
+    if (Platform.OS !== 'android' || !NativeModules.EnergyReport) return;
+    NativeModules.EnergyReport.getBreakdown(7)
+      .then((report: { days: EnergyDay[] }) => setEnergyDays(report.days))
+      .catch((e: any) => console.warn('Energy report unavailable:', e));
+  }, []);
+
+  // Check-ins after a long stretch without motion, off until turned on here
+  useEffect(() => {
+    if (Platform.OS !== 'android' || !NativeModules.Inactivity) return;
+    NativeModules.Inactivity.getConfig()
+      .then(setInactivity)
+      .catch((e: any) => console.warn('Inactivity config unavailable:', e));
+  }, []);
+
+  const updateInactivity = (change: Partial<InactivityConfig>) => {
+    if (!inactivity) return;
+    const previous = inactivity;
+    setInactivity({ ...inactivity, ...change });
+    NativeModules.Inactivity.setConfig(change).catch((e: any) => {
+      console.warn('Could not update inactivity check-ins:', e);
+      setInactivity(previous);
+    });
+  };
+
+  const textStyle = [
+    styles.label,
+    { fontSize: typography.fontSize, fontWeight: typography.fontWeight, color: typography.textColor },
+    settings.boldText && styles.boldText,
+  ];
 
   return (
     <SafeAreaView style={[styles.safe, { backgroundColor: colors.background }]}>
@@ -208,6 +268,82 @@ export default function AppSettings() {
               onValueChange={v => updateSettings({ remindersEnabled: v })}
             />
           </View>
+
+          {/* Inactivity Check-ins */}
+          {inactivity && (
+            <View style={styles.section}>
+              <View style={styles.row}>
+                <Text style={textStyle}>Inactivity Check-ins</Text>
+                <Switch
+                  value={inactivity.enabled}
+                  onValueChange={v => updateInactivity({ enabled: v })}
+                />
+              </View>
+              {inactivity.enabled && (
+                <>
+                  <View style={styles.rowInline}>
+                    {CHECK_IN_PERIODS.map(minutes => (
+                      <Pressable
+                        key={minutes}
+                        style={[
+                          styles.langButton,
+                          { borderColor: colors.primary },
+                          inactivity.periodMinutes === minutes && [
+                            styles.langButtonSelected,
+                            { backgroundColor: colors.primary + '20' },
+                          ],
+                        ]}
+                        onPress={() => updateInactivity({ periodMinutes: minutes })}
+                      >
+                        <Text
+                          style={[
+                            styles.langText,
+                            { fontSize: typography.fontSize, fontWeight: typography.fontWeight, color: typography.textColor },
+                            inactivity.periodMinutes === minutes && styles.boldText,
+                          ]}
+                        >
+                          {`${minutes / 60} h`}
+                        </Text>
+                      </Pressable>
+                    ))}
+                  </View>
+                  <Text style={[textStyle, styles.hint]}>
+                    {`Not during quiet hours, ${minuteOfDay(inactivity.quietStart)}–${minuteOfDay(
+                      inactivity.quietEnd,
+                    )}`}
+                  </Text>
+                </>
+              )}
+            </View>
+          )}
+
+          {/* Battery use of fall detection */}
+          {energyDays.length > 0 && (
+            <View style={styles.section}>
+              <Text style={textStyle}>Battery Use (last 7 days)</Text>
+              {energyDays.map(day => (
+                <View key={day.date} style={styles.energyRow}>
+                  <Text style={textStyle}>{day.date.slice(5)}</Text>
+                  <Text style={textStyle}>
+                    {`CPU ${Math.round(day.cpuProcessMs / 1000)}s · location ${Math.round(
+                      (day.locationGpsMs + day.locationNetworkMs) / 60000,
+                    )}m · awake ${Math.round(day.wakeMs / 1000)}s · ${day.notifications} notifications`}
+                  </Text>
+                </View>
+              ))}
+            </View>
+          )}
+
+          {/* Live sensor view, to check what fall detection sees */}
+          {Platform.OS === 'android' && !!NativeModules.MotionStream && (
+            <View style={styles.section}>
+              <View style={styles.row}>
+                <Text style={textStyle}>Live Motion</Text>
+                <Switch value={showMotion} onValueChange={setShowMotion} />
+              </View>
+              <MotionGraph enabled={showMotion} />
+            </View>
+          )}
         </ScrollView>
       </ImageBackground>
     </SafeAreaView>
@@ -280,4 +416,12 @@ const styles = StyleSheet.create({
   },
   fontButtonSelected: {},
   fontChar: {},
+  hint: {
+    marginTop: 6,
+  },
+  energyRow: {
+    flexDirection: 'row',
+    justifyContent: 'space-between',
+    marginTop: 6,
+  },
 });
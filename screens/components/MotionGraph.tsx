@@ -0,0 +1,103 @@
+// src/components/MotionGraph.tsx
+
+import React, { useRef, useState } from 'react';
+import { View, Text, StyleSheet } from 'react-native';
+import { useMotionStream, MotionFrame } from '../../services/useMotionStream';
+import { useTheme } from '../../utils/theme';
+
+const POINTS = 64; // bars on screen, oldest on the left
+const FULL_SCALE = 30; // m/s² at the top of the graph
+const GRAVITY = 9.81;
+
+/**
+ * Live acceleration magnitude of one source as a strip of bars, with a
+ * line at 1 g. Only subscribes, and so only has the native side collect
+ * samples, while enabled.
+ */
+export default function MotionGraph({
+  enabled,
+  source = 'phone',
+  height = 120,
+}: {
+  enabled: boolean;
+  source?: string;
+  height?: number;
+}) {
+  const { colors, typography } = useTheme();
+  const points = useRef<number[]>([]);
+  const [snapshot, setSnapshot] = useState<number[]>([]);
+
+  useMotionStream((frames: MotionFrame[]) => {
+    let added = false;
+    for (const frame of frames) {
+      if (frame.source !== source) {
+        continue;
+      }
+      for (let i = 0; i + 3 < frame.data.length; i += frame.stride) {
+        const x = frame.data[i + 1];
+        const y = frame.data[i + 2];
+        const z = frame.data[i + 3];
+        points.current.push(Math.sqrt(x * x + y * y + z * z));
+        added = true;
+      }
+    }
+    if (added) {
+      points.current = points.current.slice(-POINTS);
+      setSnapshot(points.current);
+    }
+  }, enabled);
+
+  if (!enabled) {
+    return null;
+  }
+
+  const latest = snapshot.length ? snapshot[snapshot.length - 1] : null;
+  return (
+    <View>
+      <View style={[styles.graph, { height, backgroundColor: colors.card }]}>
+        <View
+          style={[
+            styles.gravityLine,
+            { bottom: (GRAVITY / FULL_SCALE) * height, backgroundColor: colors.textSecondary },
+          ]}
+        />
+        {snapshot.map((magnitude, i) => (
+          <View
+            key={i}
+            style={[
+              styles.bar,
+              {
+                height: Math.min(1, magnitude / FULL_SCALE) * height,
+                backgroundColor: magnitude < GRAVITY / 4 ? colors.danger : colors.primary,
+              },
+            ]}
+          />
+        ))}
+      </View>
+      <Text style={{ fontSize: typography.fontSize - 2, color: colors.textSecondary }}>
+        {latest !== null ? `${latest.toFixed(1)} m/s²` : 'Waiting for samples…'}
+      </Text>
+    </View>
+  );
+}
+
+const styles = StyleSheet.create({
+  graph: {
+    flexDirection: 'row',
+    alignItems: 'flex-end',
+    borderRadius: 8,
+    overflow: 'hidden',
+    marginVertical: 6,
+  },
+  gravityLine: {
+    position: 'absolute',
+    left: 0,
+    right: 0,
+    height: 1,
+    opacity: 0.5,
+  },
+  bar: {
+    flex: 1,
+    marginHorizontal: 0.5,
+  },
+});
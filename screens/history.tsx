@@ -1,5 +1,5 @@
 import React, { useState, useEffect } from 'react';
-import { View, Text, StyleSheet, FlatList, RefreshControl, Alert, TouchableOpacity, Linking, Platform, ImageBackground, Image, Pressable } from 'react-native';
+import { View, Text, StyleSheet, FlatList, RefreshControl, Alert, TouchableOpacity, Linking, Platform, ImageBackground, Image, Pressable, NativeModules, DeviceEventEmitter } from 'react-native';
 import { SafeAreaView } from 'react-native-safe-area-context';
 import { useNavigation } from '@react-navigation/native';
 import { collection, query, orderBy, getDocs } from 'firebase/firestore';
@@ -28,6 +28,7 @@ const HistoryScreen: React.FC = () => {
   const [fallHistory, setFallHistory] = useState<FallEvent[]>([]);
   const [loading, setLoading] = useState(true);
   const [refreshing, setRefreshing] = useState(false);
+  const [exportProgress, setExportProgress] = useState<string | null>(null);
 
   const fetchFallHistory = async () => {
     try {
@@ -55,6 +56,11 @@ const HistoryScreen: React.FC = () => {
       });
 
       setFallHistory(falls);
+
+      // Backfill the native hotspot index; falls it already has are skipped
+      NativeModules.FallHotspots?.addFalls(
+        falls.map(fall => ({ id: fall.id, timestamp: fall.timestamp.getTime(), location: fall.location ?? null }))
+      ).catch((err: any) => console.warn('Hotspot backfill failed:', err));
     } catch (error) {
       console.error('Error fetching fall history:', error);
       Alert.alert('Error', 'Failed to load fall history');
@@ -68,6 +74,39 @@ const HistoryScreen: React.FC = () => {
     fetchFallHistory();
   }, []);
 
+  // The native exporter streams the whole history to files, so size is no concern here
+  const exportHistory = async () => {
+    if (!NativeModules.FallExport || !auth.currentUser) {
+      return;
+    }
+    if (exportProgress !== null) {
+      NativeModules.FallExport.cancel();
+      return;
+    }
+    setExportProgress('Starting export...');
+    const subscription = DeviceEventEmitter.addListener(
+      'FALL_EXPORT_PROGRESS',
+      (progress: { phase: string; done: number; total: number }) => {
+        const of = progress.total >= 0 ? ` of ${progress.total}` : '';
+        setExportProgress(`Exporting ${progress.phase}: ${progress.done}${of}`);
+      }
+    );
+    try {
+      const result = await NativeModules.FallExport.exportHistory(auth.currentUser.uid);
+      await NativeModules.FallExport.share([result.fallsCsv, result.windowsCsv, result.archive]);
+    } catch (error: any) {
+      if (error?.code === 'NOT_SIGNED_IN') {
+        Alert.alert('Sign in again', 'Sign out and back in once to export the fall history from this device.');
+      } else if (error?.code !== 'EXPORT_CANCELLED') {
+        console.error('Error exporting fall history:', error);
+        Alert.alert('Error', 'Failed to export fall history');
+      }
+    } finally {
+      subscription.remove();
+      setExportProgress(null);
+    }
+  };
+
   const onRefresh = () => {
     setRefreshing(true);
     fetchFallHistory();
@@ -184,6 +223,13 @@ const HistoryScreen: React.FC = () => {
           <Text style={[styles.title, { color: typography.textColor, fontSize: typography.fontSize + 8, fontWeight: typography.fontWeight }]}>
             Fall History
           </Text>
+          {Platform.OS === 'android' && (
+            <TouchableOpacity onPress={exportHistory} style={styles.exportButton}>
+              <Text style={[styles.exportText, { color: colors.primary, fontSize: typography.fontSize }]}>
+                {exportProgress !== null ? `${exportProgress} (tap to cancel)` : 'Export for clinician'}
+              </Text>
+            </TouchableOpacity>
+          )}
         </View>
 
         <View style={styles.container}>
@@ -241,6 +287,14 @@ const styles = StyleSheet.create({
   title: {
     textAlign: 'center',
   },
+  exportButton: {
+    marginTop: 12,
+    padding: 8,
+  },
+  exportText: {
+    fontWeight: '500',
+    textAlign: 'center',
+  },
   container: {
     flex: 1,
     paddingHorizontal: 16,
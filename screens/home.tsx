@@ -10,6 +10,7 @@ import {
   StyleSheet,
   Dimensions,
   Image,
+  NativeModules,
 } from 'react-native';
 import { useNavigation } from '@react-navigation/native';
 import type { NativeStackNavigationProp } from '@react-navigation/native-stack';
@@ -58,6 +59,7 @@ export default function HomeScreen() {
   const handleLogout = async () => {
     try {
       await signOut(auth);
+      await NativeModules.AuthStorage?.signOutNative();
       navigation.replace('Login');
     } catch (err) {
       console.error('Logout error', err);
@@ -9,6 +9,7 @@ import {
   Image,
   StyleSheet,
   Alert,
+  NativeModules,
 } from 'react-native';
 import { signInWithEmailAndPassword } from 'firebase/auth';
 import { auth } from '../firebase';
@@ -28,6 +29,13 @@ export default function LoginScreen({ navigation }: Props) {
 
   const handleLogin = async () => {
     try {
+      // The native service keeps its own Firebase session for uploading falls with the app
+      // closed; signed in first so it is ready by the time the app is
+      try {
+        await NativeModules.AuthStorage?.signInNative(email, password);
+      } catch (err: any) {
+        console.warn('Native sign-in failed - falls will be saved from the app:', err?.message);
+      }
       await signInWithEmailAndPassword(auth, email, password);
     } catch (err: any) {
       Alert.alert('Login Failed', err.message);
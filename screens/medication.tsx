@@ -15,6 +15,7 @@ import {
   ToastAndroid,
   Alert,
   ImageBackground,
+  NativeModules,
 } from 'react-native';
 import firebase, { auth, db } from '../firebase';
 import { Picker } from '@react-native-picker/picker';
@@ -22,6 +23,7 @@ import { SettingsContext } from '../context/SettingsContext';
 import { useTheme } from '../utils/theme';
 
 const { width, height } = Dimensions.get('window');
+const { SearchIndex, ReminderScheduler } = NativeModules;
 
 export default function MedicationScreen() {
   const { settings } = useContext(SettingsContext);
@@ -72,6 +74,13 @@ export default function MedicationScreen() {
     return () => unsub();
   }, []);
 
+  // Keep the on-device drug index fresh; it only hits Firestore when stale
+  useEffect(() => {
+    if (SearchIndex) {
+      SearchIndex.refresh(false).catch(console.error);
+    }
+  }, []);
+
   // Autocomplete
   useEffect(() => {
     if (searchText.length < 2) {
@@ -79,6 +88,26 @@ export default function MedicationScreen() {
       return;
     }
     const q = searchText.toLowerCase();
+    if (SearchIndex) {
+      // Offline prefix lookup; fall back to Firestore only until the index exists
+      SearchIndex.search('drug', q, 5)
+        .then(async (results: { name: string }[]) => {
+          if (results.length > 0) {
+            // Drugs can share a name; the form only records the name
+            setSuggestions(Array.from(new Set(results.map(r => r.name))));
+          } else if (await SearchIndex.isReady('drug')) {
+            setSuggestions([]);
+          } else {
+            queryDrugs(q);
+          }
+        })
+        .catch(console.error);
+    } else {
+      queryDrugs(q);
+    }
+  }, [searchText]);
+
+  const queryDrugs = (q: string) => {
     db.collection('drugs')
       .orderBy('name')
       .startAt(q)
@@ -87,7 +116,7 @@ export default function MedicationScreen() {
       .get()
       .then(snap => setSuggestions(snap.docs.map(d => d.data().name)))
       .catch(console.error);
-  }, [searchText]);
+  };
 
   const addMedication = async () => {
     if (!name) {
@@ -100,7 +129,7 @@ export default function MedicationScreen() {
       now + days * 24*60*60*1000
     );
 
-    await medsRef.add({
+    const docRef = await medsRef.add({
       name,
       amount,
       doseCount,
@@ -112,6 +141,26 @@ export default function MedicationScreen() {
       expiresAt,
     });
 
+    if (ReminderScheduler) {
+      // Doses spread evenly over the period, plus one deadline for expiry
+      const periodMs = (periodUnit === 'week' ? 7 : 1) * periodCount * 24*60*60*1000;
+      const until = expiresAt.toMillis();
+      ReminderScheduler.schedule({
+        id: `med:${docRef.id}:dose`,
+        kind: 'dose',
+        dueAt: now + periodMs / doseCount,
+        repeatMs: periodMs / doseCount,
+        until,
+        title: 'Medication reminder',
+        message: `Time to take ${amount} × ${name}`,
+      }).catch(console.error);
+      ReminderScheduler.schedule({
+        id: `med:${docRef.id}:expiry`,
+        kind: 'expiry',
+        dueAt: until,
+      }).catch(console.error);
+    }
+
     // reset form
     setName('');
     setSearchText('');
@@ -126,6 +175,9 @@ export default function MedicationScreen() {
 
   const removeMedication = (id: string) => {
     medsRef.doc(id).delete().catch(console.error);
+    if (ReminderScheduler) {
+      ReminderScheduler.cancel(`med:${id}:`).catch(console.error);
+    }
   };
 
   // Render header (form) for FlatList
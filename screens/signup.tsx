@@ -8,6 +8,7 @@ import {
   Pressable,
   StyleSheet,
   Alert,
+  NativeModules,
 } from 'react-native';
 import {
   createUserWithEmailAndPassword,
@@ -49,6 +50,12 @@ export default function SignupScreen({ navigation }: any) {
     try {
       // create & auto-login
       await createUserWithEmailAndPassword(auth, email, password);
+      // The native service uploads falls with its own session, as after login
+      try {
+        await NativeModules.AuthStorage?.signInNative(email, password);
+      } catch (err: any) {
+        console.warn('Native sign-in failed - falls will be saved from the app:', err?.message);
+      }
       // persist into context + AsyncStorage
       await updateSettings({ name: name.trim(), provider });
       // immediately sign out so we drop back to AuthNavigator
@@ -17,6 +17,8 @@ import {
   getBookedAppointments,
   removeBookedAppointment,
 } from '../services/appointment/appointmentService';
+import { syncAppointmentsToCalendar } from '../services/calendarService';
+import { cancelAppointmentNotification } from '../services/notificationService';
 import type { Appointment } from '../types/appointment';
 import { SettingsContext } from '../context/SettingsContext';
 import { useTheme } from '../utils/theme';
@@ -94,6 +96,11 @@ export default function UpcomingAppointments({ navigation }: Props) {
             style: 'destructive',
             onPress: async () => {
               await removeBookedAppointment(slotId);
+              cancelAppointmentNotification(slotId);
+              // Take the event off the calendar too; the booking is gone either way
+              syncAppointmentsToCalendar().catch(err =>
+                console.warn('Calendar sync failed:', err)
+              );
               await loadAppointments();
               Alert.alert('Canceled', 'Appointment has been canceled.');
             },
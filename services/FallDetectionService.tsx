@@ -1,18 +1,8 @@
 import { useEffect } from 'react';
 import { DeviceEventEmitter, NativeModules, Platform } from 'react-native';
-import { collection, addDoc } from 'firebase/firestore';
+import { Bytes, doc, setDoc } from 'firebase/firestore';
 import { auth, db } from '../firebase';
-
-interface FallEventData {
-  acceleration: number;
-  duration: number;
-  timestamp: number;
-  latitude?: number;
-  longitude?: number;
-  accuracy?: number;
-  provider?: string;
-  locationTimestamp?: number;
-}
+import { readFallRecord, toFallDocument } from './fallRecord';
 
 export const useFallDetectionService = () => {
   useEffect(() => {
@@ -37,49 +27,51 @@ export const useFallDetectionService = () => {
       console.log('FallDetectionService: ForegroundServiceModule not available');
     }
 
+    // Flush any falls queued natively while nobody was signed in
+    const { FallUploader } = NativeModules;
+    if (FallUploader && auth.currentUser) {
+      FallUploader.retryNow().catch((error: any) => {
+        console.error('FallDetectionService: Failed to trigger fall upload -', error);
+      });
+    }
+
     const subscription = DeviceEventEmitter.addListener(
       'FREE_FALL_DETECTED',
-      async (eventData: FallEventData) => {
-        console.log('Fall detected event received:', eventData);
-        
+      async (eventData: { record: string }) => {
         try {
+          const record = readFallRecord(eventData.record);
+          const eventId = record.getString('eventId');
+          if (!eventId) {
+            console.error('Fall event record without an id');
+            return;
+          }
+          NativeModules.FallTrace?.markJsReceived(eventId);
+          console.log('Fall event', eventId, 'received:', record.getNumber('acceleration'),
+            'm/s2 for', record.getNumber('duration'), 'ms');
+
+          // The native FallUploader queued this fall, but it can only upload once its own
+          // session is signed in as this user; until then the app writes the same document
           const currentUser = auth.currentUser;
           if (!currentUser) {
-            console.log('No authenticated user - cannot save fall event');
+            console.log('No authenticated user - the native service keeps the fall queued');
             return;
           }
-
-          // Create fall event data
-          const fallEvent: any = {
-            timestamp: new Date(eventData.timestamp),
-            acceleration: eventData.acceleration,
-            duration: eventData.duration,
+          const nativeUid = await NativeModules.AuthStorage?.getNativeUserId();
+          if (nativeUid === currentUser.uid) {
+            return;
+          }
+          const fallEvent = {
+            ...toFallDocument(record),
             deviceInfo: 'React Native App',
             userId: currentUser.uid,
-            readableTimestamp: new Date(eventData.timestamp).toISOString(),
+            readableTimestamp: new Date(record.getNumber('timestamp') || 0).toISOString(),
+            record: Bytes.fromBase64String(eventData.record),
           };
-
-          // Add location data if available
-          if (eventData.latitude && eventData.longitude) {
-            fallEvent.location = {
-              latitude: eventData.latitude,
-              longitude: eventData.longitude,
-              accuracy: eventData.accuracy,
-              provider: eventData.provider,
-              locationTimestamp: new Date(eventData.locationTimestamp || eventData.timestamp),
-            };
-          } else {
-            fallEvent.location = null;
-          }
-
-          // Save to Firestore
-          const fallsCollection = collection(db, 'users', currentUser.uid, 'falls');
-          const docRef = await addDoc(fallsCollection, fallEvent);
-          
-          console.log('Fall event saved to Firebase with ID:', docRef.id);
-          
+          // Same deterministic id as the native upload, so whichever writes second overwrites
+          await setDoc(doc(db, 'users', currentUser.uid, 'falls', eventId), fallEvent);
+          console.log('Fall event saved to Firebase from the app with ID:', eventId);
         } catch (error) {
-          console.error('Error saving fall event to Firebase:', error);
+          console.error('Error handling fall event:', error);
         }
       }
     );
@@ -1,9 +1,8 @@
 // src/services/appointmentService.ts
 
 import AsyncStorage from '@react-native-async-storage/async-storage';
+import { NativeModules, Platform } from 'react-native';
 import providersRaw from '../../mocks/providers.json';
-import maccabiRaw   from '../../mocks/maccabiSlots.json';
-import clalitRaw    from '../../mocks/clalitSlots.json';
 import type { Provider, Slot, Appointment } from '../../types/appointment';
 
 const STORAGE_KEY = 'BOOKED_APPOINTMENTS';
@@ -20,10 +19,14 @@ export function getProviders(): Provider[] {
 export async function getSlots(providerId: string): Promise<Slot[]> {
   let source: any[] = [];
 
-  if (providerId === 'maccabi') {
-    source = maccabiRaw.slots;
+  const { SlotIndex } = NativeModules;
+  if (Platform.OS === 'android' && SlotIndex) {
+    // Native index streams the catalog once and returns open slots in time order
+    source = await SlotIndex.listSlots(providerId, null, null, { onlyOpen: true });
+  } else if (providerId === 'maccabi') {
+    source = require('../../mocks/maccabiSlots.json').slots;
   } else if (providerId === 'clalit') {
-    source = clalitRaw.slots;
+    source = require('../../mocks/clalitSlots.json').slots;
   }
 
   return source
@@ -51,15 +54,43 @@ export async function getSlots(providerId: string): Promise<Slot[]> {
 /** Local persistence for booked appointments */
 export async function getBookedAppointments(): Promise<Appointment[]> {
   try {
-    const raw = await AsyncStorage.getItem(STORAGE_KEY);
-    return raw ? JSON.parse(raw) : [];
+    return await loadBookedAppointments();
   } catch {
     return [];
   }
 }
 
+/** Like getBookedAppointments, but throws when storage cannot be read */
+export async function loadBookedAppointments(): Promise<Appointment[]> {
+  const raw = await AsyncStorage.getItem(STORAGE_KEY);
+  return raw ? JSON.parse(raw) : [];
+}
+
+/**
+ * Store a booking. Rejects, storing nothing, if it overlaps one already
+ * booked (checked natively on Android).
+ */
 export async function saveBookedAppointment(appt: Appointment): Promise<void> {
   const current = await getBookedAppointments();
+  const { SlotIndex } = NativeModules;
+  if (Platform.OS === 'android' && SlotIndex) {
+    // The stored list is the source of truth; the native interval set mirrors it
+    let conflict = false;
+    try {
+      await SlotIndex.setBookings(current.map(a => ({
+        id: a.slot.slotId,
+        start: a.slot.startTime,
+        end: a.slot.endTime,
+      })));
+      conflict = await SlotIndex.hasConflict(appt.slot.startTime, appt.slot.endTime);
+    } catch (err) {
+      // A date the index cannot read should not stop the booking
+      console.warn('Booking conflict check failed:', err);
+    }
+    if (conflict) {
+      throw new Error('This slot overlaps an appointment you already booked');
+    }
+  }
   await AsyncStorage.setItem(
     STORAGE_KEY,
     JSON.stringify([...current, appt])
@@ -1,3 +1,4 @@
+import { NativeModules, Platform } from 'react-native';
 import auth from '@react-native-firebase/auth';
 import firestore from '@react-native-firebase/firestore';
 import {
@@ -6,18 +7,23 @@ import {
   Appointment,
 } from './AppointmentService';
 
-// Static imports for each provider’s mock slots
 import providersMock from '../../mocks/providers.json';
-import maccabiSlotsMock from '../../mocks/maccabiSlots.json';
-import clalitSlotsMock  from '../../mocks/clalitSlots.json';
-import meuhedetSlotsMock from '../../mocks/meuhedetSlots.json';
-import leumitSlotsMock   from '../../mocks/leumitSlots.json';
 
-const slotMocks: Record<string, Slot[]> = {
-  maccabi:   maccabiSlotsMock as Slot[],
-  clalit:    clalitSlotsMock  as Slot[],
-  meuhedet:  meuhedetSlotsMock as Slot[],
-  leumit:    leumitSlotsMock   as Slot[],
+// On Android the catalogs are indexed natively (SlotIndexModule); the JS
+// copies are only loaded, on first use, where that module is unavailable.
+const { SlotIndex } = NativeModules;
+
+let slotMocks: Record<string, Slot[]> | null = null;
+const getSlotMocks = (): Record<string, Slot[]> => {
+  if (!slotMocks) {
+    slotMocks = {
+      maccabi:   require('../../mocks/maccabiSlots.json') as Slot[],
+      clalit:    require('../../mocks/clalitSlots.json') as Slot[],
+      meuhedet:  require('../../mocks/meuhedetSlots.json') as Slot[],
+      leumit:    require('../../mocks/leumitSlots.json') as Slot[],
+    };
+  }
+  return slotMocks;
 };
 
 export class FirebaseAppointmentService implements AppointmentService {
@@ -29,7 +35,11 @@ export class FirebaseAppointmentService implements AppointmentService {
   async listSlots(provider: string, date: string): Promise<Slot[]> {
     // Normalize to lowercase key
     const key = provider.toLowerCase();
-    const allSlots = slotMocks[key] || [];
+    if (Platform.OS === 'android' && SlotIndex) {
+      // Binary search over the time-sorted native index for that UTC day
+      return SlotIndex.listSlots(key, date, date, null);
+    }
+    const allSlots = getSlotMocks()[key] || [];
     // Filter by ISO date prefix "YYYY-MM-DD"
     return allSlots.filter(slot => slot.start.startsWith(date));
   }
@@ -1,8 +1,16 @@
 // src/services/calendarService.ts
 
+import { NativeModules, Platform } from 'react-native';
 import RNCalendarEvents from 'react-native-calendar-events';
+import { loadBookedAppointments } from './appointment/appointmentService';
 import type { Appointment } from '../types/appointment';
 
+const { CalendarSync } = NativeModules;
+
+function appointmentTitle({ provider, doctor }: Appointment) {
+  return `Appointment: ${doctor.firstName} ${doctor.lastName} (${provider.name})`;
+}
+
 export async function addAppointmentToCalendar(appointment: Appointment) {
   // 1) Request calendar permission
   const status = await RNCalendarEvents.requestPermissions();
@@ -10,7 +18,7 @@ export async function addAppointmentToCalendar(appointment: Appointment) {
     throw new Error('No calendar permission');
   }
 
-  const { provider, doctor, slot } = appointment;
+  const { slot } = appointment;
 
   // 2) Use the full ISO string (including milliseconds + "Z") so Android/iOS can parse it
   //    Example: "2025-06-01T09:00:00.000Z"
@@ -18,7 +26,7 @@ export async function addAppointmentToCalendar(appointment: Appointment) {
   const endDate   = new Date(slot.endTime).toISOString();
 
   // 3) Build a title/notes/location
-  const title = `Appointment: ${doctor.firstName} ${doctor.lastName} (${provider.name})`;
+  const title = appointmentTitle(appointment);
 
   // 4) Save to the native calendar
   await RNCalendarEvents.saveEvent(title, {
@@ -28,3 +36,36 @@ export async function addAppointmentToCalendar(appointment: Appointment) {
     notes: 'EverCare reminder',
   });
 }
+
+/**
+ * Make the device calendar match the booked appointments: one batch that
+ * adds new bookings, updates moved ones and removes cancelled ones, so
+ * syncing again never duplicates an event. Resolves the native counts and
+ * timings, or null where the native module is missing (iOS) and the caller
+ * should fall back to addAppointmentToCalendar. Rejects, deleting nothing,
+ * when the booked list cannot be read.
+ */
+export async function syncAppointmentsToCalendar() {
+  if (Platform.OS !== 'android' || !CalendarSync) {
+    return null;
+  }
+
+  // Read here rather than taken from the caller: an unreadable list must not
+  // look like "everything was cancelled"
+  const appointments = await loadBookedAppointments();
+
+  const status = await RNCalendarEvents.requestPermissions();
+  if (status !== 'authorized') {
+    throw new Error('No calendar permission');
+  }
+
+  return CalendarSync.sync(
+    appointments.map(appointment => ({
+      id: `${appointment.provider.id}:${appointment.slot.slotId}`,
+      title: appointmentTitle(appointment),
+      start: new Date(appointment.slot.startTime).toISOString(),
+      end: new Date(appointment.slot.endTime).toISOString(),
+      location: appointment.slot.branch.name,
+    }))
+  );
+}
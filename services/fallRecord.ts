@@ -0,0 +1,195 @@
+import { NativeModules } from 'react-native';
+
+// Field types, as in FlatTable.java
+const LONG = 1;
+const TIME = 2;
+const INT = 3;
+const FLOAT = 4;
+const DOUBLE = 5;
+const STRING = 6;
+const SHORTS = 7;
+
+const HEADER_BYTES = 8;
+
+export interface FlatTableField {
+  id: number;
+  name: string;
+  type: number;
+  upload: boolean; // goes into the Firestore document
+  group: string | null; // nested object it goes in there, e.g. 'location'
+}
+
+export interface FlatTableSchema {
+  id: number;
+  version: number;
+  fields: FlatTableField[];
+}
+
+/**
+ * Read access to a fall event record straight from its bytes, the same
+ * FlatTable layout the native side writes and uploads. Fields are looked
+ * up by name in the native schema and decoded only when asked for; fields
+ * the writer did not have read as undefined, fields this build does not
+ * know are never looked at.
+ */
+export class FlatTableView {
+  private readonly view: DataView;
+  private readonly slots: number;
+  private readonly byName: { [name: string]: FlatTableField } = {};
+
+  readonly schema: FlatTableSchema;
+
+  constructor(bytes: Uint8Array, schema: FlatTableSchema) {
+    this.schema = schema;
+    this.view = new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength);
+    if (bytes.byteLength < HEADER_BYTES || this.view.getUint16(0, true) !== schema.id) {
+      throw new Error('Not a record of schema ' + schema.id);
+    }
+    if (this.view.getUint32(4, true) !== bytes.byteLength) {
+      throw new Error('Record size does not match');
+    }
+    this.slots = this.view.getUint8(3);
+    for (const field of schema.fields) {
+      this.byName[field.name] = field;
+    }
+  }
+
+  get version(): number {
+    return this.view.getUint8(2);
+  }
+
+  has(name: string): boolean {
+    return this.offset(name) !== 0;
+  }
+
+  get(name: string): number | string | number[] | undefined {
+    const offset = this.offset(name);
+    if (offset === 0) {
+      return undefined;
+    }
+    const view = this.view;
+    switch (this.byName[name].type) {
+      case LONG:
+      case TIME:
+        // Exact up to 2^53, which covers epoch milliseconds and durations
+        return view.getUint32(offset, true) + view.getInt32(offset + 4, true) * 0x100000000;
+      case INT:
+        return view.getInt32(offset, true);
+      case FLOAT:
+        return view.getFloat32(offset, true);
+      case DOUBLE:
+        return view.getFloat64(offset, true);
+      case STRING:
+        return decodeUtf8(view, offset + 2, view.getUint16(offset, true));
+      case SHORTS: {
+        const values: number[] = [];
+        const count = view.getUint16(offset, true);
+        for (let i = 0; i < count; i++) {
+          values.push(view.getInt16(offset + 2 + 2 * i, true));
+        }
+        return values;
+      }
+      default:
+        return undefined;
+    }
+  }
+
+  getNumber(name: string): number | undefined {
+    const value = this.get(name);
+    return typeof value === 'number' ? value : undefined;
+  }
+
+  getString(name: string): string | undefined {
+    const value = this.get(name);
+    return typeof value === 'string' ? value : undefined;
+  }
+
+  private offset(name: string): number {
+    const field = this.byName[name];
+    if (!field || field.id >= this.slots) {
+      return 0;
+    }
+    const offset = this.view.getUint16(HEADER_BYTES + 2 * field.id, true);
+    if (offset !== 0 && offset >= this.view.byteLength) {
+      throw new Error('Field ' + name + ' outside the record');
+    }
+    return offset;
+  }
+}
+
+/**
+ * The Firestore document for a record, the same fields the native uploader
+ * writes: every upload field under its name, grouped ones nested (null when
+ * none are present), times as Dates.
+ */
+export function toFallDocument(record: FlatTableView): { [name: string]: any } {
+  const document: { [name: string]: any } = {};
+  for (const field of record.schema.fields) {
+    if (!field.upload) {
+      continue;
+    }
+    if (field.group && !(field.group in document)) {
+      document[field.group] = null;
+    }
+    let value: any = record.get(field.name);
+    if (value === undefined) {
+      continue;
+    }
+    if (field.type === TIME) {
+      value = new Date(value);
+    }
+    if (field.group) {
+      document[field.group] = document[field.group] || {};
+      document[field.group][field.name] = value;
+    } else {
+      document[field.name] = value;
+    }
+  }
+  document.schemaVersion = record.version;
+  return document;
+}
+
+/**
+ * The fall event record sent with FREE_FALL_DETECTED, base64 encoded.
+ */
+export function readFallRecord(base64: string): FlatTableView {
+  const schema: FlatTableSchema | undefined = NativeModules.AuthStorage?.fallEventSchema;
+  if (!schema) {
+    throw new Error('Fall event schema not available');
+  }
+  return new FlatTableView(decodeBase64(base64), schema);
+}
+
+function decodeBase64(base64: string): Uint8Array {
+  const binary = atob(base64);
+  const bytes = new Uint8Array(binary.length);
+  for (let i = 0; i < binary.length; i++) {
+    bytes[i] = binary.charCodeAt(i);
+  }
+  return bytes;
+}
+
+function decodeUtf8(view: DataView, start: number, length: number): string {
+  if (start + length > view.byteLength) {
+    throw new Error('String runs past the record');
+  }
+  let text = '';
+  let i = start;
+  const end = start + length;
+  while (i < end) {
+    const b = view.getUint8(i++);
+    let code: number;
+    if (b < 0x80) {
+      code = b;
+    } else if (b < 0xe0) {
+      code = ((b & 0x1f) << 6) | (view.getUint8(i++) & 0x3f);
+    } else if (b < 0xf0) {
+      code = ((b & 0x0f) << 12) | ((view.getUint8(i++) & 0x3f) << 6) | (view.getUint8(i++) & 0x3f);
+    } else {
+      code = ((b & 0x07) << 18) | ((view.getUint8(i++) & 0x3f) << 12)
+        | ((view.getUint8(i++) & 0x3f) << 6) | (view.getUint8(i++) & 0x3f);
+    }
+    text += String.fromCodePoint(code);
+  }
+  return text;
+}
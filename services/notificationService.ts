@@ -1,6 +1,18 @@
+import { NativeModules, Platform } from 'react-native';
 import PushNotification, {
   PushNotificationScheduleObject,
 } from 'react-native-push-notification';
+import type { Appointment } from '../types/appointment';
+
+// On Android all reminders share one native deadline queue and a single alarm
+const { ReminderScheduler } = NativeModules;
+const useNativeScheduler = Platform.OS === 'android' && !!ReminderScheduler;
+
+// Cancelling is by id prefix, so the id ends in a separator: appt:1: never matches appt:12:
+const nativeId = (notificationId: string) => `appt:${notificationId}:`;
+
+// How long before an appointment its reminder goes off
+export const APPOINTMENT_REMINDER_LEAD_MS = 60 * 60 * 1000;
 
 /**
  * Create or update the "appointments" notification channel on Android.
@@ -41,6 +53,17 @@ export function scheduleAppointmentNotification(
   title: string,
   message: string,
 ): void {
+  if (useNativeScheduler) {
+    ReminderScheduler.schedule({
+      id: `${nativeId(notificationId)}reminder`,
+      kind: 'appointment',
+      dueAt: fireDate.getTime(),
+      title,
+      message,
+    }).catch(console.error);
+    return;
+  }
+
   const options: PushNotificationScheduleObject = {
     id: notificationId,
     date: fireDate, // required for scheduled notifications
@@ -63,5 +86,30 @@ export function scheduleAppointmentNotification(
 export function cancelAppointmentNotification(
   notificationId: string,
 ): void {
+  if (useNativeScheduler) {
+    ReminderScheduler.cancel(nativeId(notificationId)).catch(console.error);
+    return;
+  }
   PushNotification.cancelLocalNotification(notificationId);
 }
+
+/**
+ * Remind the patient of a booked appointment APPOINTMENT_REMINDER_LEAD_MS
+ * before it starts, or right away if that time has passed. The slot id is
+ * the reminder id, so cancelAppointmentNotification(slotId) removes it.
+ */
+export function scheduleAppointmentReminder(appointment: Appointment): void {
+  const { slot, doctor, provider } = appointment;
+  const start = new Date(slot.startTime);
+  if (start.getTime() <= Date.now()) {
+    return;
+  }
+  const fireDate = new Date(Math.max(Date.now(), start.getTime() - APPOINTMENT_REMINDER_LEAD_MS));
+  const who = doctor.lastName ? `Dr. ${doctor.lastName}` : provider.name;
+  scheduleAppointmentNotification(
+    slot.slotId,
+    fireDate,
+    'Appointment reminder',
+    `${who} at ${start.toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' })}, ${slot.branch.name}`,
+  );
+}
@@ -0,0 +1,35 @@
+import { useEffect, useRef } from 'react';
+import { NativeEventEmitter, NativeModules, Platform } from 'react-native';
+
+// One source's samples for one display frame, packed as [dt, x, y, z, ...]
+export interface MotionFrame {
+  source: string;
+  t0: number;
+  stride: number;
+  data: number[];
+  raw: number;
+  dropped: number;
+}
+
+type MotionFrameHandler = (frames: MotionFrame[]) => void;
+
+/**
+ * Calls onFrames with live accelerometer data, at most 60 times a second,
+ * while the calling component is mounted. The native side only collects
+ * samples while a listener is attached.
+ */
+export function useMotionStream(onFrames: MotionFrameHandler, enabled: boolean = true) {
+  const handlerRef = useRef(onFrames);
+  handlerRef.current = onFrames;
+
+  useEffect(() => {
+    if (!enabled || Platform.OS !== 'android' || !NativeModules.MotionStream) {
+      return;
+    }
+    const emitter = new NativeEventEmitter(NativeModules.MotionStream);
+    const subscription = emitter.addListener('MotionFrame', (event: { frames: MotionFrame[] }) => {
+      handlerRef.current(event.frames);
+    });
+    return () => subscription.remove();
+  }, [enabled]);
+}
@@ -143,6 +143,7 @@ export const usePermissions = (): UsePermissionsReturn => {
         PermissionsAndroid.PERMISSIONS.ACCESS_FINE_LOCATION,
         PermissionsAndroid.PERMISSIONS.ACCESS_COARSE_LOCATION,
         PermissionsAndroid.PERMISSIONS.CALL_PHONE,
+        PermissionsAndroid.PERMISSIONS.SEND_SMS,
       ];
 
       // Add POST_NOTIFICATIONS for Android 13+ (API 33+)
@@ -150,6 +151,11 @@ export const usePermissions = (): UsePermissionsReturn => {
         basicPermissions.push(PermissionsAndroid.PERMISSIONS.POST_NOTIFICATIONS);
       }
 
+      // The hardware step counter needs this from Android 10 (API 29); without it steps are estimated
+      if (Platform.Version >= 29) {
+        basicPermissions.push(PermissionsAndroid.PERMISSIONS.ACTIVITY_RECOGNITION);
+      }
+
       console.log('Requesting basic permissions...', basicPermissions);
       
       // Request permissions individually with proper rationale
@@ -175,6 +181,22 @@ export const usePermissions = (): UsePermissionsReturn => {
               buttonNegative: 'Deny',
             };
             break;
+          case PermissionsAndroid.PERMISSIONS.SEND_SMS:
+            rationale = {
+              title: 'SMS Permission',
+              message: 'EverCare can text your caretaker about a fall when there is no internet connection.',
+              buttonPositive: 'Allow',
+              buttonNegative: 'Deny',
+            };
+            break;
+          case PermissionsAndroid.PERMISSIONS.ACTIVITY_RECOGNITION:
+            rationale = {
+              title: 'Physical Activity Permission',
+              message: 'EverCare uses your phone\'s step counter to show daily activity trends to your caretaker.',
+              buttonPositive: 'Allow',
+              buttonNegative: 'Deny',
+            };
+            break;
           case PermissionsAndroid.PERMISSIONS.POST_NOTIFICATIONS:
             rationale = {
               title: 'Notification Permission',